@@ -1,26 +1,47 @@
 package wayfarer.gemgame;
 
+import android.app.ActivityManager;
+import android.content.pm.ApplicationInfo;
+import android.content.res.AssetFileDescriptor;
 import android.os.Bundle;
 import android.support.v4.app.FragmentActivity;
 import android.support.v4.app.FragmentTransaction;
 import android.util.Log;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+
 import wayfarer.gemgame.game.Playground;
+import wayfarer.gemgame.game.pack.LevelPack;
 import wayfarer.gemgame.game.util.PlaygroundUtil;
 import wayfarer.gemgame.gl.GemGameGLSurfaceView;
 import wayfarer.gemgame.mesh.Mesh;
-import wayfarer.gemgame.util.TextureHelper;
+import wayfarer.gemgame.util.MemoryLedger;
+import wayfarer.gemgame.util.TraceLog;
 
 public class MainActivity extends FragmentActivity {
     public static final String TAG = "MainActivity";
     public static final String FRAGTAG = "ImmersiveModeFragment";
+    /** Level pack asset, has to be stored uncompressed in the APK so it can be mapped. */
+    public static final String LEVEL_PACK = "levels.pack";
 
     private GemGameGLSurfaceView mGLView;
+    private LevelPack mLevels;
+    /** Board of the current level, refilled for the next one. */
+    private final Playground mPlayground = new Playground();
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        // trace events are only recorded in debuggable builds
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            TraceLog.setLevel(TraceLog.DEBUG);
+        }
+
+        // memory budgets follow the heap limit of the device
+        MemoryLedger.setMemoryClass(((ActivityManager) getSystemService(ACTIVITY_SERVICE)).getMemoryClass());
+
         // Create a GLSurfaceView instance
         mGLView = new GemGameGLSurfaceView(this);
         realGameSetup();
@@ -39,16 +60,47 @@ public class MainActivity extends FragmentActivity {
     private void realGameSetup() {
         // set camera position
         mGLView.getRenderer().setCamera(0, 0, 10);
-        // clear texture cache
-        TextureHelper.resetTextureCache();
         Mesh background = new Mesh(this, R.raw.per_pixel_fragment_shader, R.raw.per_pixel_vertex_shader, R.drawable.beach_sand_backgroung);
-        Playground playground = PlaygroundUtil.calculateHexCircle(this, 0, 0, 0, 10, 0.2f);
         // background
         background.setPosition(0.0f, 0.0f, -0.1f);
         background.setScaling(25f, 25f, 1f);
+        background.setMaterial(Mesh.MATERIAL_OPAQUE);
         mGLView.getRenderer().addMesh(background);
-        // hexes
-        mGLView.getRenderer().addAllMeshes(playground.getHexes());
+        // hexes go straight into the board storage
+        mLevels = openLevels();
+
+        try {
+            if (mLevels != null && mLevels.size() > 0) {
+                PlaygroundUtil.buildLevel(mPlayground, mGLView.getRenderer().getHexagonPool(), 0, 0, 0,
+                        mLevels.get(0));
+                return;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Can't load level 0", e);
+        }
+
+        PlaygroundUtil.calculateHexCircle(mPlayground, mGLView.getRenderer().getHexagonPool(), 0, 0, 0, 10, 0.2f);
+    }
+
+    /**
+     * @return the level pack shipped with the game, or null if there is none
+     */
+    private LevelPack openLevels() {
+        try {
+            AssetFileDescriptor fd = getAssets().openFd(LEVEL_PACK);
+
+            try {
+                FileInputStream stream = fd.createInputStream();
+                return LevelPack.open(stream.getChannel(), fd.getStartOffset(), fd.getLength(),
+                        LevelPack.DEFAULT_CACHE_SIZE);
+            } finally {
+                fd.close();
+            }
+        } catch (IOException e) {
+            // also what openFd throws for a compressed asset, see noCompress in build.gradle
+            Log.w(TAG, "No level pack, using the default board: " + e.getMessage());
+            return null;
+        }
     }
 
     private void gameSetup() {
@@ -56,8 +108,6 @@ public class MainActivity extends FragmentActivity {
         // set camera position
         mGLView.getRenderer().setCamera(0, 0, 5);
 
-        // clear texture cache
-        TextureHelper.resetTextureCache();
         // Create test mesh
         Mesh background = new Mesh(this, R.raw.per_pixel_fragment_shader, R.raw.per_pixel_vertex_shader, R.drawable.beach_sand_backgroung);
         Mesh blueHexMesh = new Mesh(this, R.raw.per_pixel_fragment_shader, R.raw.per_pixel_vertex_shader, R.drawable.blue_hex_800);
@@ -66,6 +116,7 @@ public class MainActivity extends FragmentActivity {
         // background
         background.setPosition(0.0f, 0.0f, -0.1f);
         background.setScaling(20f, 20f, 1f);
+        background.setMaterial(Mesh.MATERIAL_OPAQUE);
         // hexes
         whiteHexMesh.setPosition(0.0f, 0.0f, 0.0f);
         blueHexMesh.setPosition(-2.0f, 0.0f, 0.0f);
@@ -96,4 +147,17 @@ public class MainActivity extends FragmentActivity {
         // this is a good place to re-allocate them.
         mGLView.onResume();
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        if (mLevels != null) {
+            try {
+                mLevels.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Can't close the level pack", e);
+            }
+        }
+    }
 }
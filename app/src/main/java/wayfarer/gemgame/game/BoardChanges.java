@@ -0,0 +1,99 @@
+package wayfarer.gemgame.game;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Change events of a {@link HexagonPool}: a slot index and a mask of the fields that changed.
+ * Events of one slot are merged until they are drained, so there are never more pending
+ * events than slots however often a field is set. The renderer drains once per frame.
+ *
+ * Recording and draining are synchronized, so the renderer can drain on its own thread while
+ * the single writer of the pool records, see {@link HexagonPool}.
+ */
+public class BoardChanges {
+    public static final int POSITION = 1;
+    public static final int RADIUS = 1 << 1;
+    public static final int GEM = 1 << 2;
+    public static final int FLAGS = 1 << 3;
+    public static final int TEXT = 1 << 4;
+    public static final int ALL = POSITION | RADIUS | GEM | FLAGS | TEXT;
+
+    /**
+     * Events taken out by {@link #drain(Batch)}. Owned by the consumer and reused every frame.
+     */
+    public static class Batch {
+        private int[] mIndexes = new int[0];
+        private int[] mFields = new int[0];
+        private int mSize = 0;
+
+        public int size() {
+            return mSize;
+        }
+
+        public int getIndex(int n) {
+            return mIndexes[n];
+        }
+
+        public int getFields(int n) {
+            return mFields[n];
+        }
+    }
+
+    // guarded by this
+    /** Pending field mask of every slot, 0 if it has no event. */
+    private int[] mFields;
+    /** Slots with an event, in order of their first change. */
+    private int[] mIndexes;
+    private int mSize = 0;
+
+    BoardChanges(int capacity) {
+        mFields = new int[capacity];
+        mIndexes = new int[capacity];
+    }
+
+    synchronized void record(int index, int fields) {
+        if (index >= mFields.length) {
+            final int capacity = Math.max(index + 1, mFields.length * 2);
+            final int[] grown = new int[capacity];
+            System.arraycopy(mFields, 0, grown, 0, mFields.length);
+            mFields = grown;
+            final int[] indexes = new int[capacity];
+            System.arraycopy(mIndexes, 0, indexes, 0, mSize);
+            mIndexes = indexes;
+        }
+
+        if (mFields[index] == 0) {
+            mIndexes[mSize++] = index;
+        }
+
+        mFields[index] |= fields;
+    }
+
+    /**
+     * Moves all pending events into the batch, replacing what it held.
+     */
+    public synchronized void drain(Batch batch) {
+        if (batch.mIndexes.length < mSize) {
+            batch.mIndexes = new int[mIndexes.length];
+            batch.mFields = new int[mIndexes.length];
+        }
+
+        for (int n = 0; n < mSize; ++n) {
+            final int index = mIndexes[n];
+            batch.mIndexes[n] = index;
+            batch.mFields[n] = mFields[index];
+            mFields[index] = 0;
+        }
+
+        batch.mSize = mSize;
+        mSize = 0;
+    }
+
+    /**
+     * @return number of slots with pending events
+     */
+    public synchronized int pending() {
+        return mSize;
+    }
+}
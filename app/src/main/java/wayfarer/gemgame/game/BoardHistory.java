@@ -0,0 +1,105 @@
+package wayfarer.gemgame.game;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Undo and redo over {@link BoardState}s. States share all unchanged cells, so keeping one
+ * per move is cheap, and undo, redo or handing the current state to a look-ahead search
+ * are just reference swaps. At most a fixed number of moves is kept, the oldest is
+ * forgotten first, so long sessions stay within a bounded amount of memory.
+ *
+ * Not thread safe, states taken from it are.
+ */
+public class BoardHistory {
+    /** Ring of past states, the current one is not in it. */
+    private final BoardState[] mUndo;
+    private int mUndoStart = 0;
+    private int mUndoCount = 0;
+
+    /** Stack of undone states. */
+    private final BoardState[] mRedo;
+    private int mRedoCount = 0;
+
+    private BoardState mCurrent;
+
+    /**
+     * @param maxUndo - moves that can be undone at most
+     */
+    public BoardHistory(BoardState initial, int maxUndo) {
+        mCurrent = initial;
+        mUndo = new BoardState[maxUndo];
+        mRedo = new BoardState[maxUndo];
+    }
+
+    public BoardState current() {
+        return mCurrent;
+    }
+
+    /**
+     * Makes the state current, the previous one can be undone. Clears the redo stack.
+     */
+    public void push(BoardState state) {
+        if (state == mCurrent) {
+            return;
+        }
+
+        if (mUndo.length > 0) {
+            if (mUndoCount == mUndo.length) {
+                // forget the oldest move
+                mUndo[mUndoStart] = null;
+                mUndoStart = (mUndoStart + 1) % mUndo.length;
+                mUndoCount--;
+            }
+
+            mUndo[(mUndoStart + mUndoCount) % mUndo.length] = mCurrent;
+            mUndoCount++;
+        }
+
+        for (int i = 0; i < mRedoCount; ++i) {
+            mRedo[i] = null;
+        }
+
+        mRedoCount = 0;
+        mCurrent = state;
+    }
+
+    /**
+     * @return the state before the last move, or the current one if there is nothing to undo
+     */
+    public BoardState undo() {
+        if (mUndoCount == 0) {
+            return mCurrent;
+        }
+
+        mRedo[mRedoCount++] = mCurrent;
+        final int last = (mUndoStart + mUndoCount - 1) % mUndo.length;
+        mCurrent = mUndo[last];
+        mUndo[last] = null;
+        mUndoCount--;
+        return mCurrent;
+    }
+
+    /**
+     * @return the state of the last undone move, or the current one if there is nothing to redo
+     */
+    public BoardState redo() {
+        if (mRedoCount == 0) {
+            return mCurrent;
+        }
+
+        mUndo[(mUndoStart + mUndoCount) % mUndo.length] = mCurrent;
+        mUndoCount++;
+        mCurrent = mRedo[--mRedoCount];
+        mRedo[mRedoCount] = null;
+        return mCurrent;
+    }
+
+    public int getUndoCount() {
+        return mUndoCount;
+    }
+
+    public int getRedoCount() {
+        return mRedoCount;
+    }
+}
@@ -0,0 +1,213 @@
+package wayfarer.gemgame.game;
+
+import java.util.Arrays;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Immutable int per cell of a board, indexed like {@link HexGrid} and {@link Playground#getCells()}.
+ *
+ * Values are kept in a 32-way trie. A change copies only the path from the root to its
+ * leaf and shares everything else with the state it was made from, so a new state costs
+ * O(changed cells) instead of a copy of the board. Many states can be alive at once for
+ * undo or look-ahead. Changes of one move go through an {@link Editor}, which copies every
+ * touched node once however many of its cells change.
+ *
+ * States are immutable and safe to share between threads, editors are not.
+ */
+public final class BoardState {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final class Node {
+        /** Token of the editor that made this node, only that editor changes it in place. */
+        final Object edit;
+        /** Children of inner nodes, null for leaves. */
+        final Node[] children;
+        /** Cell values of leaves, null for inner nodes. */
+        final int[] values;
+
+        Node(Object edit, Node[] children, int[] values) {
+            this.edit = edit;
+            this.children = children;
+            this.values = values;
+        }
+
+        Node copy(Object edit) {
+            return new Node(edit, children == null ? null : children.clone(), values == null ? null : values.clone());
+        }
+    }
+
+    private final int mSize;
+    private final int mShift;
+    private final Node mRoot;
+
+    private BoardState(int size, int shift, Node root) {
+        mSize = size;
+        mShift = shift;
+        mRoot = root;
+    }
+
+    /**
+     * Board of the given size with every cell set to the value. Costs O(depth), all leaves
+     * are the same node until they are changed.
+     */
+    public static BoardState filled(int size, int value) {
+        int shift = 0;
+
+        while ((long) WIDTH << shift < size) {
+            shift += BITS;
+        }
+
+        final int[] values = new int[WIDTH];
+        Arrays.fill(values, value);
+        Node node = new Node(null, null, values);
+
+        for (int s = BITS; s <= shift; s += BITS) {
+            final Node[] children = new Node[WIDTH];
+            Arrays.fill(children, node);
+            node = new Node(null, children, null);
+        }
+
+        return new BoardState(size, shift, node);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int get(int cell) {
+        check(cell);
+        return leaf(mRoot, mShift, cell).values[cell & MASK];
+    }
+
+    /**
+     * @return state with the one cell changed, this if it already has the value
+     */
+    public BoardState with(int cell, int value) {
+        if (get(cell) == value) {
+            return this;
+        }
+
+        return new BoardState(mSize, mShift, set(mRoot, null, mShift, cell, value));
+    }
+
+    public Editor edit() {
+        return new Editor(this);
+    }
+
+    /**
+     * Collects the cells that differ from another state of the same board. Subtrees both
+     * states share are skipped, so the cost follows the changes between them, not the board.
+     *
+     * @param out - receives cell indexes, at least {@link #size()} long for the worst case
+     * @return number of cells written
+     */
+    public int diff(BoardState other, int[] out) {
+        if (other.mSize != mSize || other.mShift != mShift) {
+            throw new IllegalArgumentException("States of different boards");
+        }
+
+        return diff(mRoot, other.mRoot, mShift, 0, out, 0);
+    }
+
+    private int diff(Node a, Node b, int shift, int base, int[] out, int count) {
+        if (a == b || base >= mSize) {
+            return count;
+        }
+
+        if (shift == 0) {
+            for (int i = 0; i < WIDTH && base + i < mSize; ++i) {
+                if (a.values[i] != b.values[i]) {
+                    out[count++] = base + i;
+                }
+            }
+
+            return count;
+        }
+
+        for (int i = 0; i < WIDTH; ++i) {
+            count = diff(a.children[i], b.children[i], shift - BITS, base + (i << shift), out, count);
+        }
+
+        return count;
+    }
+
+    private void check(int cell) {
+        if (cell < 0 || cell >= mSize) {
+            throw new IndexOutOfBoundsException("Cell " + cell + " of " + mSize);
+        }
+    }
+
+    private static Node leaf(Node node, int shift, int cell) {
+        for (int s = shift; s > 0; s -= BITS) {
+            node = node.children[(cell >>> s) & MASK];
+        }
+
+        return node;
+    }
+
+    /**
+     * Returns the node with the cell changed. Nodes owned by the edit are changed in place,
+     * others are copied and the copy is owned by the edit.
+     */
+    private static Node set(Node node, Object edit, int shift, int cell, int value) {
+        final Node result = edit != null && node.edit == edit ? node : node.copy(edit);
+
+        if (shift == 0) {
+            result.values[cell & MASK] = value;
+        } else {
+            final int i = (cell >>> shift) & MASK;
+            result.children[i] = set(node.children[i], edit, shift - BITS, cell, value);
+        }
+
+        return result;
+    }
+
+    /**
+     * Batches the changes of one move into one new state. Not thread safe, and not to be used
+     * any more after {@link #commit()}.
+     */
+    public static final class Editor {
+        private final int mSize;
+        private final int mShift;
+        private Node mRoot;
+        private Object mEdit = new Object();
+
+        private Editor(BoardState state) {
+            mSize = state.mSize;
+            mShift = state.mShift;
+            mRoot = state.mRoot;
+        }
+
+        public int get(int cell) {
+            if (cell < 0 || cell >= mSize) {
+                throw new IndexOutOfBoundsException("Cell " + cell + " of " + mSize);
+            }
+
+            return leaf(mRoot, mShift, cell).values[cell & MASK];
+        }
+
+        public Editor set(int cell, int value) {
+            if (mEdit == null) {
+                throw new IllegalStateException("Editor already committed");
+            }
+
+            if (get(cell) != value) {
+                mRoot = BoardState.set(mRoot, mEdit, mShift, cell, value);
+            }
+
+            return this;
+        }
+
+        /**
+         * @return the edited state, nodes it holds are never changed again
+         */
+        public BoardState commit() {
+            mEdit = null;
+            return new BoardState(mSize, mShift, mRoot);
+        }
+    }
+}
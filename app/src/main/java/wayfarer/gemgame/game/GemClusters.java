@@ -0,0 +1,378 @@
+package wayfarer.gemgame.game;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Connected groups of equal gems over the hex adjacency of a {@link HexGrid}, for mechanics
+ * like "clear every group of five or more".
+ *
+ * Groups are kept in a union-find over the dense cell index, with path compression and
+ * union by rank, so a landing gem joins its neighbours in near constant time. Union-find
+ * can't split, so removing gems dissolves only the groups they belonged to and joins their
+ * remaining cells again; the cost follows those groups, not the board. Members of a group
+ * are chained in a circular list that is spliced on every union, a group is listed without
+ * looking at any other cell. Group sizes are counted per size, so the largest size is known
+ * without a scan.
+ *
+ * Nothing is allocated after construction. Not thread safe.
+ */
+public class GemClusters {
+    private final HexGrid mGrid;
+    private final int mSize;
+
+    /** Neighbour of every cell in every direction, -1 off the board. */
+    private final int[] mNeighbours;
+
+    private final int[] mGems;
+    private final int[] mParent;
+    private final byte[] mRank;
+    /** Members of the group of a root, 0 for empty cells. */
+    private final int[] mGroupSize;
+    /** Next member of the same group, circular. */
+    private final int[] mNext;
+
+    /** Number of groups of every size, and the largest size with any. */
+    private final int[] mSizeCount;
+    private int mLargest = 0;
+
+    // scratch of remove()
+    private final boolean[] mDissolved;
+    private final int[] mRoots;
+    private final int[] mAffected;
+    private final int[] mOne = new int[1];
+
+    /**
+     * All cells start empty.
+     */
+    public GemClusters(HexGrid grid) {
+        mGrid = grid;
+        mSize = grid.size();
+        mNeighbours = new int[mSize * HexGrid.DIRECTIONS];
+
+        for (int cell = 0; cell < mSize; ++cell) {
+            for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+                mNeighbours[cell * HexGrid.DIRECTIONS + d] = grid.neighbour(cell, d);
+            }
+        }
+
+        mGems = new int[mSize];
+        mParent = new int[mSize];
+        mRank = new byte[mSize];
+        mGroupSize = new int[mSize];
+        mNext = new int[mSize];
+        mSizeCount = new int[mSize + 1];
+        mDissolved = new boolean[mSize];
+        mRoots = new int[mSize];
+        mAffected = new int[mSize];
+        clear();
+    }
+
+    public HexGrid getGrid() {
+        return mGrid;
+    }
+
+    /**
+     * Empties every cell.
+     */
+    public void clear() {
+        for (int cell = 0; cell < mSize; ++cell) {
+            mGems[cell] = Hexagon.GEM_EMPTY;
+            single(cell);
+        }
+
+        for (int i = 0; i <= mSize; ++i) {
+            mSizeCount[i] = 0;
+        }
+
+        mLargest = 0;
+    }
+
+    /**
+     * Replaces every gem and groups them from scratch, O(cells).
+     *
+     * @param gems - gem per cell, {@link Hexagon#GEM_EMPTY} for none
+     */
+    public void build(int[] gems) {
+        clear();
+
+        for (int cell = 0; cell < mSize; ++cell) {
+            mGems[cell] = gems[cell];
+            single(cell);
+        }
+
+        // every edge once: up, up-right and down-right cover the other three from the far side
+        for (int cell = 0; cell < mSize; ++cell) {
+            if (mGems[cell] != Hexagon.GEM_EMPTY) {
+                for (int d = 0; d < HexGrid.DIRECTIONS / 2; ++d) {
+                    final int n = mNeighbours[cell * HexGrid.DIRECTIONS + d];
+
+                    if (n >= 0 && mGems[n] == mGems[cell]) {
+                        union(cell, n);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A gem lands on an empty cell and joins the equal gems around it.
+     */
+    public void place(int cell, int gem) {
+        if (mGems[cell] != Hexagon.GEM_EMPTY) {
+            throw new IllegalStateException("Cell " + cell + " is not empty");
+        }
+
+        if (gem == Hexagon.GEM_EMPTY) {
+            return;
+        }
+
+        mGems[cell] = gem;
+        single(cell);
+        join(cell);
+    }
+
+    /**
+     * Changes the gem of one cell, e.g. half of a swap. Same as removing it and placing the new one.
+     */
+    public void set(int cell, int gem) {
+        if (mGems[cell] == gem) {
+            return;
+        }
+
+        if (mGems[cell] != Hexagon.GEM_EMPTY) {
+            mOne[0] = cell;
+            remove(mOne, 1);
+        }
+
+        place(cell, gem);
+    }
+
+    /**
+     * Empties the cells. Every group one of them belonged to is taken apart and its remaining
+     * cells are joined again, other groups are not touched.
+     *
+     * @param cells - may hold empty cells and repeats, is not changed
+     */
+    public void remove(int[] cells, int count) {
+        int roots = 0;
+
+        for (int i = 0; i < count; ++i) {
+            final int root = find(cells[i]);
+
+            if (root >= 0 && !mDissolved[root]) {
+                mDissolved[root] = true;
+                mRoots[roots++] = root;
+            }
+        }
+
+        // list the members before anything is emptied, the chains are still intact
+        int affected = 0;
+
+        for (int r = 0; r < roots; ++r) {
+            final int root = mRoots[r];
+            mDissolved[root] = false;
+            countGroup(mGroupSize[root], -1);
+            int member = root;
+
+            do {
+                mAffected[affected++] = member;
+                member = mNext[member];
+            } while (member != root);
+        }
+
+        for (int i = 0; i < count; ++i) {
+            mGems[cells[i]] = Hexagon.GEM_EMPTY;
+        }
+
+        for (int i = 0; i < affected; ++i) {
+            single(mAffected[i]);
+        }
+
+        for (int i = 0; i < affected; ++i) {
+            if (mGems[mAffected[i]] != Hexagon.GEM_EMPTY) {
+                join(mAffected[i]);
+            }
+        }
+
+        while (mLargest > 0 && mSizeCount[mLargest] == 0) {
+            mLargest--;
+        }
+    }
+
+    public int getGem(int cell) {
+        return mGems[cell];
+    }
+
+    /**
+     * @return representative cell of the group, the same for all of its members; -1 for an empty cell
+     */
+    public int find(int cell) {
+        if (mGems[cell] == Hexagon.GEM_EMPTY) {
+            return -1;
+        }
+
+        int root = cell;
+
+        while (mParent[root] != root) {
+            root = mParent[root];
+        }
+
+        // path compression, everything on the way now points at the root
+        while (mParent[cell] != root) {
+            final int parent = mParent[cell];
+            mParent[cell] = root;
+            cell = parent;
+        }
+
+        return root;
+    }
+
+    /**
+     * @return true if both cells hold gems of one group
+     */
+    public boolean connected(int a, int b) {
+        final int root = find(a);
+        return root >= 0 && root == find(b);
+    }
+
+    /**
+     * @return members of the group of the cell, 0 for an empty cell
+     */
+    public int getClusterSize(int cell) {
+        final int root = find(cell);
+        return root < 0 ? 0 : mGroupSize[root];
+    }
+
+    /**
+     * Lists the group of the cell, in no particular order. Costs the size of the group.
+     *
+     * @param out - at least {@link #getClusterSize(int)} elements
+     * @return number of cells written, 0 for an empty cell
+     */
+    public int getCluster(int cell, int[] out) {
+        final int root = find(cell);
+
+        if (root < 0) {
+            return 0;
+        }
+
+        int count = 0;
+        int member = root;
+
+        do {
+            out[count++] = member;
+            member = mNext[member];
+        } while (member != root);
+
+        return count;
+    }
+
+    /**
+     * @return size of the largest group, 0 for an empty board
+     */
+    public int getLargestSize() {
+        return mLargest;
+    }
+
+    /**
+     * Finds a group of the largest size. Scans the cells, meant for hints and tests rather
+     * than every move, where {@link #getClusterSize(int)} of the landed cells is enough.
+     *
+     * @return representative cell of the group, -1 for an empty board
+     */
+    public int getLargest() {
+        if (mLargest == 0) {
+            return -1;
+        }
+
+        for (int cell = 0; cell < mSize; ++cell) {
+            if (mParent[cell] == cell && mGroupSize[cell] == mLargest) {
+                return cell;
+            }
+        }
+
+        throw new IllegalStateException("No group of " + mLargest);
+    }
+
+    /**
+     * @return number of groups of at least the given size
+     */
+    public int getClusterCount(int minSize) {
+        int count = 0;
+
+        for (int size = Math.max(minSize, 1); size <= mLargest; ++size) {
+            count += mSizeCount[size];
+        }
+
+        return count;
+    }
+
+    /**
+     * Makes the cell a group of its own, empty cells are in no group.
+     */
+    private void single(int cell) {
+        mParent[cell] = cell;
+        mRank[cell] = 0;
+        mNext[cell] = cell;
+
+        if (mGems[cell] == Hexagon.GEM_EMPTY) {
+            mGroupSize[cell] = 0;
+        } else {
+            mGroupSize[cell] = 1;
+            countGroup(1, 1);
+        }
+    }
+
+    /**
+     * Unites the group of a gem with the equal gems next to it.
+     */
+    private void join(int cell) {
+        final int gem = mGems[cell];
+
+        for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+            final int n = mNeighbours[cell * HexGrid.DIRECTIONS + d];
+
+            if (n >= 0 && mGems[n] == gem) {
+                union(cell, n);
+            }
+        }
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+
+        if (rootA == rootB) {
+            return;
+        }
+
+        // union by rank, the shallower tree goes under the deeper one
+        if (mRank[rootA] < mRank[rootB]) {
+            final int t = rootA;
+            rootA = rootB;
+            rootB = t;
+        } else if (mRank[rootA] == mRank[rootB]) {
+            mRank[rootA]++;
+        }
+
+        countGroup(mGroupSize[rootA], -1);
+        countGroup(mGroupSize[rootB], -1);
+        mParent[rootB] = rootA;
+        mGroupSize[rootA] += mGroupSize[rootB];
+        countGroup(mGroupSize[rootA], 1);
+
+        // splicing two circular lists is swapping one successor of each
+        final int next = mNext[rootA];
+        mNext[rootA] = mNext[rootB];
+        mNext[rootB] = next;
+    }
+
+    private void countGroup(int size, int delta) {
+        mSizeCount[size] += delta;
+
+        if (delta > 0 && size > mLargest) {
+            mLargest = size;
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package wayfarer.gemgame.game;
+
+import java.util.List;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Dense index over the cube coordinates of a board plus the usual hex queries on top of it.
+ *
+ * Every cell gets an index 0..size()-1 and all queries talk in these indexes. Results go
+ * either into a caller supplied int buffer (methods return the count written) or into a
+ * {@link CellVisitor}, nothing is allocated per query. Cells outside the board are
+ * skipped, the lookup table doubles as bounds check.
+ */
+public class HexGrid {
+    /**
+     * Cube offsets of the six neighbours: up, up-right, down-right, down, down-left, up-left.
+     * Consecutive directions are 60 degrees apart clockwise.
+     */
+    public static final int[] DIRECTION_X = {0, 1, 1, 0, -1, -1};
+    public static final int[] DIRECTION_Y = {1, 0, -1, -1, 0, 1};
+    public static final int[] DIRECTION_Z = {-1, -1, 0, 1, 1, 0};
+
+    /** Screen angle of every direction in degrees, for placing meshes. */
+    public static final float[] DIRECTION_ANGLE = {90, 30, -30, -90, -150, 150};
+
+    public static final int DIRECTIONS = 6;
+
+    public interface CellVisitor {
+        /**
+         * @param cell - dense cell index
+         * @return false to stop the query
+         */
+        boolean visit(int cell);
+    }
+
+    private final int mSize;
+    private final int[] mX;
+    private final int[] mY;
+    private final int[] mZ;
+
+    // lookup table over the bounding box of (x, y), -1 for holes
+    private final int mMinX;
+    private final int mMinY;
+    private final int mSpanX;
+    private final int mSpanY;
+    private final int[] mIndex;
+
+    /**
+     * Hexagon shaped board, cells go in spiral order: center first, then ring by ring.
+     */
+    public static HexGrid hexagon(int radius) {
+        final int size = 3 * radius * (radius + 1) + 1;
+        int[] x = new int[size];
+        int[] y = new int[size];
+        int[] z = new int[size];
+        int n = 1;
+
+        for (int r = 1; r <= radius; ++r) {
+            int cx = DIRECTION_X[5] * r;
+            int cy = DIRECTION_Y[5] * r;
+
+            for (int side = 0; side < DIRECTIONS; ++side) {
+                final int d = (side + 1) % DIRECTIONS;
+
+                for (int step = 0; step < r; ++step) {
+                    x[n] = cx;
+                    y[n] = cy;
+                    z[n] = -cx - cy;
+                    n++;
+                    cx += DIRECTION_X[d];
+                    cy += DIRECTION_Y[d];
+                }
+            }
+        }
+
+        return new HexGrid(x, y, z);
+    }
+
+    /**
+     * Board made of the given cells, cell index is the position in the list.
+     */
+    public static HexGrid fromCells(List<PlaygroundCell> cells) {
+        final int size = cells.size();
+        int[] x = new int[size];
+        int[] y = new int[size];
+        int[] z = new int[size];
+
+        for (int i = 0; i < size; ++i) {
+            PlaygroundCell c = cells.get(i);
+            x[i] = c.x;
+            y[i] = c.y;
+            z[i] = c.z;
+        }
+
+        return new HexGrid(x, y, z);
+    }
+
+    private HexGrid(int[] x, int[] y, int[] z) {
+        mSize = x.length;
+        mX = x;
+        mY = y;
+        mZ = z;
+
+        int minX = 0, maxX = 0, minY = 0, maxY = 0;
+
+        for (int i = 0; i < mSize; ++i) {
+            if (x[i] + y[i] + z[i] != 0) {
+                throw new IllegalArgumentException("Not a cube coordinate: " + x[i] + ", " + y[i] + ", " + z[i]);
+            }
+
+            minX = i == 0 ? x[i] : Math.min(minX, x[i]);
+            maxX = i == 0 ? x[i] : Math.max(maxX, x[i]);
+            minY = i == 0 ? y[i] : Math.min(minY, y[i]);
+            maxY = i == 0 ? y[i] : Math.max(maxY, y[i]);
+        }
+
+        mMinX = minX;
+        mMinY = minY;
+        mSpanX = maxX - minX + 1;
+        mSpanY = maxY - minY + 1;
+        mIndex = new int[mSpanX * mSpanY];
+
+        for (int i = 0; i < mIndex.length; ++i) {
+            mIndex[i] = -1;
+        }
+
+        for (int i = 0; i < mSize; ++i) {
+            mIndex[(x[i] - mMinX) + (y[i] - mMinY) * mSpanX] = i;
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getX(int cell) {
+        return mX[cell];
+    }
+
+    public int getY(int cell) {
+        return mY[cell];
+    }
+
+    public int getZ(int cell) {
+        return mZ[cell];
+    }
+
+    /**
+     * @return dense index of the cell or -1 if it is not on the board
+     */
+    public int indexOf(int x, int y) {
+        final int ix = x - mMinX;
+        final int iy = y - mMinY;
+
+        if (ix < 0 || iy < 0 || ix >= mSpanX || iy >= mSpanY) {
+            return -1;
+        }
+
+        return mIndex[ix + iy * mSpanX];
+    }
+
+    /**
+     * @return dense index of the cell or -1 if it is not on the board
+     */
+    public int indexOf(int x, int y, int z) {
+        return x + y + z == 0 ? indexOf(x, y) : -1;
+    }
+
+    /**
+     * @return number of steps between two cells, ignoring holes in the board
+     */
+    public int distance(int a, int b) {
+        return (Math.abs(mX[a] - mX[b]) + Math.abs(mY[a] - mY[b]) + Math.abs(mZ[a] - mZ[b])) / 2;
+    }
+
+    /**
+     * @return neighbour in the given direction or -1 if it is not on the board
+     */
+    public int neighbour(int cell, int direction) {
+        return indexOf(mX[cell] + DIRECTION_X[direction], mY[cell] + DIRECTION_Y[direction]);
+    }
+
+    /**
+     * @param out - at least 6 elements
+     * @return number of neighbours written
+     */
+    public int neighbours(int cell, int[] out) {
+        int count = 0;
+
+        for (int d = 0; d < DIRECTIONS; ++d) {
+            final int n = neighbour(cell, d);
+
+            if (n >= 0) {
+                out[count++] = n;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return false if the visitor stopped the query
+     */
+    public boolean forEachNeighbour(int cell, CellVisitor visitor) {
+        for (int d = 0; d < DIRECTIONS; ++d) {
+            final int n = neighbour(cell, d);
+
+            if (n >= 0 && !visitor.visit(n)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Cells exactly radius steps away, clockwise starting from up-left.
+     *
+     * @param out - at least 6 * radius elements (1 for radius 0)
+     * @return number of cells written
+     */
+    public int ring(int center, int radius, int[] out) {
+        return ring(center, radius, out, 0);
+    }
+
+    private int ring(int center, int radius, int[] out, int offset) {
+        if (radius == 0) {
+            out[offset] = center;
+            return 1;
+        }
+
+        int x = mX[center] + DIRECTION_X[5] * radius;
+        int y = mY[center] + DIRECTION_Y[5] * radius;
+        int count = 0;
+
+        for (int side = 0; side < DIRECTIONS; ++side) {
+            final int d = (side + 1) % DIRECTIONS;
+
+            for (int step = 0; step < radius; ++step) {
+                final int n = indexOf(x, y);
+
+                if (n >= 0) {
+                    out[offset + count++] = n;
+                }
+
+                x += DIRECTION_X[d];
+                y += DIRECTION_Y[d];
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return false if the visitor stopped the query
+     */
+    public boolean forEachInRing(int center, int radius, CellVisitor visitor) {
+        if (radius == 0) {
+            return visitor.visit(center);
+        }
+
+        int x = mX[center] + DIRECTION_X[5] * radius;
+        int y = mY[center] + DIRECTION_Y[5] * radius;
+
+        for (int side = 0; side < DIRECTIONS; ++side) {
+            final int d = (side + 1) % DIRECTIONS;
+
+            for (int step = 0; step < radius; ++step) {
+                final int n = indexOf(x, y);
+
+                if (n >= 0 && !visitor.visit(n)) {
+                    return false;
+                }
+
+                x += DIRECTION_X[d];
+                y += DIRECTION_Y[d];
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Center and then rings 1..radius.
+     *
+     * @param out - at least 3 * radius * (radius + 1) + 1 elements
+     * @return number of cells written
+     */
+    public int spiral(int center, int radius, int[] out) {
+        int count = 0;
+
+        for (int r = 0; r <= radius; ++r) {
+            count += ring(center, r, out, count);
+        }
+
+        return count;
+    }
+
+    /**
+     * @return false if the visitor stopped the query
+     */
+    public boolean forEachInSpiral(int center, int radius, CellVisitor visitor) {
+        for (int r = 0; r <= radius; ++r) {
+            if (!forEachInRing(center, r, visitor)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * All cells up to radius steps away, in memory friendly row order.
+     *
+     * @param out - at least 3 * radius * (radius + 1) + 1 elements
+     * @return number of cells written
+     */
+    public int range(int center, int radius, int[] out) {
+        final int cx = mX[center];
+        final int cy = mY[center];
+        int count = 0;
+
+        for (int dy = -radius; dy <= radius; ++dy) {
+            final int fromX = Math.max(-radius, -dy - radius);
+            final int toX = Math.min(radius, -dy + radius);
+
+            for (int dx = fromX; dx <= toX; ++dx) {
+                final int n = indexOf(cx + dx, cy + dy);
+
+                if (n >= 0) {
+                    out[count++] = n;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return false if the visitor stopped the query
+     */
+    public boolean forEachInRange(int center, int radius, CellVisitor visitor) {
+        final int cx = mX[center];
+        final int cy = mY[center];
+
+        for (int dy = -radius; dy <= radius; ++dy) {
+            final int fromX = Math.max(-radius, -dy - radius);
+            final int toX = Math.min(radius, -dy + radius);
+
+            for (int dx = fromX; dx <= toX; ++dx) {
+                final int n = indexOf(cx + dx, cy + dy);
+
+                if (n >= 0 && !visitor.visit(n)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Cells on the straight line between two cells, both ends included.
+     * Cells of the line that fall into holes of the board are skipped.
+     *
+     * @param out - at least distance(from, to) + 1 elements
+     * @return number of cells written
+     */
+    public int line(int from, int to, int[] out) {
+        final int steps = distance(from, to);
+        int count = 0;
+
+        for (int i = 0; i <= steps; ++i) {
+            final int n = lineCell(from, to, steps, i);
+
+            if (n >= 0) {
+                out[count++] = n;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return false if the visitor stopped the query
+     */
+    public boolean forEachOnLine(int from, int to, CellVisitor visitor) {
+        final int steps = distance(from, to);
+
+        for (int i = 0; i <= steps; ++i) {
+            final int n = lineCell(from, to, steps, i);
+
+            if (n >= 0 && !visitor.visit(n)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int lineCell(int from, int to, int steps, int i) {
+        if (steps == 0) {
+            return from;
+        }
+
+        // Interpolate in cube space and round to the closest cell. The tiny nudge keeps
+        // points lying exactly on a cell edge from flipping between both sides.
+        final double t = (double) i / steps;
+        final double x = mX[from] + (mX[to] - mX[from]) * t + 1e-6;
+        final double y = mY[from] + (mY[to] - mY[from]) * t + 2e-6;
+        final double z = mZ[from] + (mZ[to] - mZ[from]) * t - 3e-6;
+
+        long rx = Math.round(x);
+        long ry = Math.round(y);
+        long rz = Math.round(z);
+        final double ex = Math.abs(rx - x);
+        final double ey = Math.abs(ry - y);
+        final double ez = Math.abs(rz - z);
+
+        // keep x + y + z = 0 by fixing the component with the largest rounding error
+        if (ex > ey && ex > ez) {
+            rx = -ry - rz;
+        } else if (ey > ez) {
+            ry = -rx - rz;
+        }
+
+        return indexOf((int) rx, (int) ry);
+    }
+}
@@ -1,46 +1,78 @@
 package wayfarer.gemgame.game;
 
-import android.content.Context;
-
 import javax.vecmath.Point3d;
 
-import wayfarer.gemgame.mesh.Mesh;
-
 /**
  * Project GemGame
  * Created by wayfarer on 12/6/15.
+ *
+ * Handle of a board hex. The hex data lives in a {@link HexagonPool} slot, the handle
+ * only remembers where, and is recycled together with the slot.
  */
-public class Hexagon extends Mesh {
+public class Hexagon {
     private static final String TAG = "Hexagon";
 
-    private Point3d mPoint;
-    private final String id;
-    private float mRadius;
-    private String mText;
+    public static final int GEM_EMPTY = 0;
+    public static final int GEM_BLUE = 1;
+    public static final int GEM_RED = 2;
+    public static final int GEM_WHITE = 3;
+
+    /** Hex changes every frame, keep it out of cached board layers and draw it on top. */
+    public static final int FLAG_ANIMATED = 1;
 
-    public Hexagon(Context context, int fragmentShaderRes, int vertexShaderRes, int textureRes, String id) {
-        super(context, fragmentShaderRes, vertexShaderRes, textureRes);
-        this.id = id;
+    private final HexagonPool mPool;
+    private final int mIndex;
+
+    Hexagon(HexagonPool pool, int index) {
+        this.mPool = pool;
+        this.mIndex = index;
     }
 
     public void setPoint(Point3d point) {
-        this.mPoint = point;
-        this.setPosition((float)point.x, (float)point.y, (float)point.z);
+        mPool.setPosition(mIndex, (float) point.x, (float) point.y, (float) point.z);
+    }
+
+    public void setPosition(float x, float y, float z) {
+        mPool.setPosition(mIndex, x, y, z);
     }
 
     public void setRadius(float radius) {
-        this.mRadius = radius;
+        mPool.setRadius(mIndex, radius);
+    }
+
+    public void setGem(int gem) {
+        mPool.setGem(mIndex, gem);
+    }
+
+    public void setFlags(int flags) {
+        mPool.setFlags(mIndex, flags);
     }
 
     public void setText(String text) {
-        this.mText = text;
+        mPool.setText(mIndex, text);
+    }
+
+    public int getIndex() {
+        return mIndex;
     }
 
     public String getId() {
-        return id;
+        return "hex" + mIndex;
     }
 
     public Point3d getPoint() {
-        return mPoint;
+        return new Point3d(mPool.getX(mIndex), mPool.getY(mIndex), mPool.getZ(mIndex));
+    }
+
+    public int getGem() {
+        return mPool.getGem(mIndex);
+    }
+
+    public int getFlags() {
+        return mPool.getFlags(mIndex);
+    }
+
+    public String getText() {
+        return mPool.getText(mIndex);
     }
 }
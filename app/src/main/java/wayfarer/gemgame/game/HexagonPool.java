@@ -0,0 +1,241 @@
+package wayfarer.gemgame.game;
+
+import wayfarer.gemgame.util.MemoryLedger;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Storage of all board hexes. Every hex is a slot in a set of parallel primitive arrays,
+ * a few tens of bytes each, GPU resources are shared by all of them in the renderer.
+ * {@link #reset()} recycles every slot together with its {@link Hexagon} handle, so building
+ * a new level of at most the same size allocates nothing.
+ *
+ * Every change is recorded in {@link #getChanges()}, so the renderer can update exactly the
+ * slots that changed.
+ *
+ * Single writer: one thread at a time adds, recycles and updates slots. That is the thread
+ * building the board before the first frame, and the GL thread from then on, where the
+ * {@link TweenScheduler} runs and game logic posts its moves with GLSurfaceView.queueEvent.
+ * The renderer reads slots after draining the changes of the frame; recording and draining
+ * are synchronized, so a drain publishes every field written before the events it returns.
+ * The slot count is volatile, so a reader never sees more slots than the arrays it reads hold.
+ */
+public class HexagonPool {
+    /** Seven primitive and two reference arrays, 4 bytes each. */
+    private static final int SLOT_BYTES = 9 * 4;
+    private static final int ARRAYS = 9;
+
+    /** Object header and two fields. */
+    private static final int HANDLE_BYTES = 16;
+
+    private float[] mX;
+    private float[] mY;
+    private float[] mZ;
+    private float[] mRadius;
+    private int[] mGem;
+    private int[] mFlags;
+    private String[] mText;
+    private int[] mTextVersion;
+    private Hexagon[] mHandles;
+    private final BoardChanges mChanges;
+
+    private volatile int mSize = 0;
+    /** Incremented by the single writer only, so no increment is lost. */
+    private volatile int mVersion = 0;
+    private volatile int mLabelCount = 0;
+
+    public HexagonPool(int initialCapacity) {
+        allocate(Math.max(initialCapacity, 1));
+        mChanges = new BoardChanges(mX.length);
+    }
+
+    private void allocate(int capacity) {
+        if (mX != null) {
+            MemoryLedger.remove(MemoryLedger.HEAP, (long) mX.length * SLOT_BYTES, ARRAYS);
+        }
+
+        MemoryLedger.add(MemoryLedger.HEAP, (long) capacity * SLOT_BYTES, ARRAYS);
+        mX = grow(mX, capacity);
+        mY = grow(mY, capacity);
+        mZ = grow(mZ, capacity);
+        mRadius = grow(mRadius, capacity);
+        mGem = grow(mGem, capacity);
+        mFlags = grow(mFlags, capacity);
+        mTextVersion = grow(mTextVersion, capacity);
+
+        String[] text = new String[capacity];
+        Hexagon[] handles = new Hexagon[capacity];
+
+        if (mText != null) {
+            System.arraycopy(mText, 0, text, 0, mSize);
+            System.arraycopy(mHandles, 0, handles, 0, mHandles.length);
+        }
+
+        mText = text;
+        mHandles = handles;
+    }
+
+    /**
+     * Takes a free slot, growing the storage if there is none.
+     */
+    public Hexagon acquire() {
+        final int index = mSize;
+
+        if (index == mX.length) {
+            allocate(index * 2);
+        }
+
+        if (mHandles[index] == null) {
+            mHandles[index] = new Hexagon(this, index);
+            MemoryLedger.add(MemoryLedger.HEAP, HANDLE_BYTES, 1);
+        }
+
+        mX[index] = 0;
+        mY[index] = 0;
+        mZ[index] = 0;
+        mRadius[index] = 1.0f;
+        mGem[index] = Hexagon.GEM_EMPTY;
+        mFlags[index] = 0;
+        mText[index] = null;
+        mTextVersion[index]++;
+        mSize = index + 1;
+        mVersion++;
+        mChanges.record(index, BoardChanges.ALL);
+        return mHandles[index];
+    }
+
+    /**
+     * Recycles all slots. Handles taken before point to whatever gets acquired next in their slot.
+     */
+    public void reset() {
+        for (int i = 0; i < mSize; ++i) {
+            mText[i] = null;
+        }
+
+        mLabelCount = 0;
+        mSize = 0;
+        mVersion++;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Changes whenever slots are added, recycled, moved or change gem or flags. Label changes are
+     * tracked per slot by {@link #getTextVersion(int)}. Says that something changed, not what;
+     * the renderer goes by {@link #getChanges()}.
+     */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return per slot change events, recorded after the new values are stored
+     */
+    public BoardChanges getChanges() {
+        return mChanges;
+    }
+
+    public Hexagon get(int index) {
+        return mHandles[index];
+    }
+
+    public float getX(int index) {
+        return mX[index];
+    }
+
+    public float getY(int index) {
+        return mY[index];
+    }
+
+    public float getZ(int index) {
+        return mZ[index];
+    }
+
+    public float getRadius(int index) {
+        return mRadius[index];
+    }
+
+    public int getGem(int index) {
+        return mGem[index];
+    }
+
+    public int getFlags(int index) {
+        return mFlags[index];
+    }
+
+    public String getText(int index) {
+        return mText[index];
+    }
+
+    public int getTextVersion(int index) {
+        return mTextVersion[index];
+    }
+
+    /**
+     * @return how many slots have a label
+     */
+    public int getLabelCount() {
+        return mLabelCount;
+    }
+
+    void setPosition(int index, float x, float y, float z) {
+        mX[index] = x;
+        mY[index] = y;
+        mZ[index] = z;
+        mVersion++;
+        mChanges.record(index, BoardChanges.POSITION);
+    }
+
+    void setRadius(int index, float radius) {
+        mRadius[index] = radius;
+        mVersion++;
+        mChanges.record(index, BoardChanges.RADIUS);
+    }
+
+    void setGem(int index, int gem) {
+        mGem[index] = gem;
+        mVersion++;
+        mChanges.record(index, BoardChanges.GEM);
+    }
+
+    void setFlags(int index, int flags) {
+        mFlags[index] = flags;
+        mVersion++;
+        mChanges.record(index, BoardChanges.FLAGS);
+    }
+
+    void setText(int index, String text) {
+        if (mText[index] == null && text != null) {
+            mLabelCount++;
+        } else if (mText[index] != null && text == null) {
+            mLabelCount--;
+        }
+
+        mText[index] = text;
+        mTextVersion[index]++;
+        mChanges.record(index, BoardChanges.TEXT);
+    }
+
+    private static float[] grow(float[] array, int capacity) {
+        float[] result = new float[capacity];
+
+        if (array != null) {
+            System.arraycopy(array, 0, result, 0, array.length);
+        }
+
+        return result;
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] result = new int[capacity];
+
+        if (array != null) {
+            System.arraycopy(array, 0, result, 0, array.length);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,509 @@
+package wayfarer.gemgame.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Fills a board with gems so that it starts without matches (three or more equal gems in a
+ * row along any of the three axes) and with at least one swap that makes a match.
+ *
+ * The board is cut into square regions of cube (x, y) coordinates. Every region is filled
+ * on its own with a random generator seeded by the level seed and the region, picking for
+ * each cell a gem that makes no match with the cells of the region filled so far. Regions
+ * don't look at each other, so they are filled in parallel. Matches can only appear across
+ * region borders afterwards, those cells are repaired serially in cell order.
+ * Regions, their seeds and the repair order depend on the grid and the seed only, so the
+ * same seed gives the same board whatever the number of threads.
+ *
+ * Generation allocates per call, it is meant for level setup, not for frames.
+ */
+public class LevelGenerator {
+    /** Region edge in cells. */
+    private static final int REGION_SIZE = 16;
+
+    /** Repair passes before giving up, one or two are enough in practice. */
+    private static final int MAX_REPAIR_PASSES = 8;
+
+    private static final int AXES = 3;
+
+    /** Marks cells not filled yet, never a gem. */
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private final HexGrid mGrid;
+    private final int[] mGems;
+
+    /** Neighbour of every cell in every direction, -1 off the board. */
+    private final int[] mNeighbours;
+
+    /** Cell indexes grouped by region, region r owns mRegionCells[mRegionStart[r]..mRegionStart[r + 1]). */
+    private final int[] mRegionStart;
+    private final int[] mRegionCells;
+    private final int[] mRegion;
+
+    /** Cells two steps or less along an axis from another region, in cell order. */
+    private final int[] mBorder;
+
+    /**
+     * @param gems - gem types to pick from, at least three
+     */
+    public LevelGenerator(HexGrid grid, int[] gems) {
+        if (gems.length < 3) {
+            throw new IllegalArgumentException("Need at least three gem types, got " + gems.length);
+        }
+
+        mGrid = grid;
+        mGems = gems.clone();
+        final int size = grid.size();
+        mNeighbours = new int[size * HexGrid.DIRECTIONS];
+
+        for (int cell = 0; cell < size; ++cell) {
+            for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+                mNeighbours[cell * HexGrid.DIRECTIONS + d] = grid.neighbour(cell, d);
+            }
+        }
+
+        // Row by row order: a cell then has filled neighbours on one side of every axis only,
+        // which leaves the most gems to pick from.
+        final int[] raster = rasterOrder(grid);
+
+        // regions are numbered in order of their first cell, which only depends on the grid
+        final List<Long> keys = new ArrayList<>();
+        final Map<Long, Integer> ids = new HashMap<>();
+        mRegion = new int[size];
+
+        for (int cell : raster) {
+            final long key = ((long) floorDiv(grid.getX(cell), REGION_SIZE) << 32)
+                    ^ (floorDiv(grid.getY(cell), REGION_SIZE) & 0xffffffffL);
+            Integer id = ids.get(key);
+
+            if (id == null) {
+                id = keys.size();
+                ids.put(key, id);
+                keys.add(key);
+            }
+
+            mRegion[cell] = id;
+        }
+
+        mRegionStart = new int[keys.size() + 1];
+
+        for (int cell = 0; cell < size; ++cell) {
+            mRegionStart[mRegion[cell] + 1]++;
+        }
+
+        for (int r = 0; r < keys.size(); ++r) {
+            mRegionStart[r + 1] += mRegionStart[r];
+        }
+
+        mRegionCells = new int[size];
+        final int[] fill = mRegionStart.clone();
+
+        for (int cell : raster) {
+            mRegionCells[fill[mRegion[cell]]++] = cell;
+        }
+
+        int borders = 0;
+        final int[] border = new int[size];
+
+        for (int cell = 0; cell < size; ++cell) {
+            if (nearOtherRegion(cell)) {
+                border[borders++] = cell;
+            }
+        }
+
+        mBorder = Arrays.copyOf(border, borders);
+    }
+
+    private static int[] rasterOrder(HexGrid grid) {
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+
+        for (int cell = 0; cell < grid.size(); ++cell) {
+            minX = Math.min(minX, grid.getX(cell));
+            maxX = Math.max(maxX, grid.getX(cell));
+            minY = Math.min(minY, grid.getY(cell));
+            maxY = Math.max(maxY, grid.getY(cell));
+        }
+
+        final int[] order = new int[grid.size()];
+        int n = 0;
+
+        for (int y = minY; y <= maxY; ++y) {
+            for (int x = minX; x <= maxX; ++x) {
+                final int cell = grid.indexOf(x, y);
+
+                if (cell >= 0) {
+                    order[n++] = cell;
+                }
+            }
+        }
+
+        return order;
+    }
+
+    private boolean nearOtherRegion(int cell) {
+        for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+            int other = cell;
+
+            for (int step = 0; step < 2; ++step) {
+                other = mNeighbours[other * HexGrid.DIRECTIONS + d];
+
+                if (other < 0) {
+                    break;
+                }
+
+                if (mRegion[other] != mRegion[cell]) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    public int getRegionCount() {
+        return mRegionStart.length - 1;
+    }
+
+    /**
+     * Fills the board.
+     *
+     * @param board    - receives the gem of every cell, at least {@link HexGrid#size()} long
+     * @param executor - fills regions in parallel, null to do everything on the calling thread
+     * @return true if the board has no match and at least one move, false if it is too small for that
+     */
+    public boolean generate(final long seed, final int[] board, ExecutorService executor)
+            throws InterruptedException {
+        final int regions = getRegionCount();
+
+        if (executor == null) {
+            for (int r = 0; r < regions; ++r) {
+                fillRegion(seed, r, board);
+            }
+        } else {
+            final List<Callable<Void>> tasks = new ArrayList<>(regions);
+
+            for (int r = 0; r < regions; ++r) {
+                final int region = r;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        fillRegion(seed, region, board);
+                        return null;
+                    }
+                });
+            }
+
+            // invokeAll waits for all tasks, which also publishes their writes to this thread
+            for (Future<Void> done : executor.invokeAll(tasks)) {
+                try {
+                    done.get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Filling a region failed", e.getCause());
+                }
+            }
+        }
+
+        final long[] random = {mix(seed ^ 0x5DEECE66DL)};
+        settle(board, mBorder, 0, mBorder.length, -1, random);
+
+        // Border repair may have to touch a cell further in. Checking everything is cheap
+        // next to filling, and a rare leftover gets a full pass.
+        if (!hasNoMatch(board)) {
+            final int[] all = new int[mGrid.size()];
+
+            for (int cell = 0; cell < all.length; ++cell) {
+                all[cell] = cell;
+            }
+
+            if (!settle(board, all, 0, all.length, -1, random)) {
+                return false;
+            }
+        }
+
+        return ensureMove(board, random);
+    }
+
+    /**
+     * Fills the region in cell order, every gem avoids matches with the region cells filled before.
+     */
+    private void fillRegion(long seed, int region, int[] board) {
+        final long[] random = {mix(seed + 0x9E3779B97F4A7C15L * (region + 1))};
+
+        // whatever the array held before must not count as filled
+        for (int n = mRegionStart[region]; n < mRegionStart[region + 1]; ++n) {
+            board[mRegionCells[n]] = NONE;
+        }
+
+        for (int n = mRegionStart[region]; n < mRegionStart[region + 1]; ++n) {
+            final int cell = mRegionCells[n];
+            board[cell] = pick(board, cell, region, random);
+        }
+
+        // cells where every gem made a match are fixed up with both sides known
+        settle(board, mRegionCells, mRegionStart[region], mRegionStart[region + 1], region, random);
+    }
+
+    /**
+     * Repairs cells[from..to) that are part of a match until none is, or gives up after a few passes.
+     * A cell picks a new gem, if every gem makes a match its neighbours along the run do too.
+     *
+     * @param region - only cells of this region count and change, -1 for all cells
+     * @return true if no cell of the range is part of a match any more
+     */
+    private boolean settle(int[] board, int[] cells, int from, int to, int region, long[] random) {
+        for (int pass = 0; pass < MAX_REPAIR_PASSES; ++pass) {
+            boolean changed = false;
+
+            for (int n = from; n < to; ++n) {
+                final int cell = cells[n];
+
+                if (longestRun(board, cell, board[cell], region) < 3) {
+                    continue;
+                }
+
+                changed = true;
+                board[cell] = pick(board, cell, region, random);
+
+                for (int axis = 0; axis < AXES; ++axis) {
+                    if (run(board, cell, axis, board[cell], region) >= 3) {
+                        repick(board, mNeighbours[cell * HexGrid.DIRECTIONS + axis], region, random);
+                        repick(board, mNeighbours[cell * HexGrid.DIRECTIONS + axis + 3], region, random);
+                    }
+                }
+            }
+
+            if (!changed) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void repick(int[] board, int cell, int region, long[] random) {
+        if (cell >= 0 && (region < 0 || mRegion[cell] == region)) {
+            board[cell] = pick(board, cell, region, random);
+        }
+    }
+
+    /**
+     * Picks a random gem that makes no match at the cell. Only cells of the region count,
+     * all filled cells for region -1. If every gem makes a match the shortest run wins.
+     */
+    private int pick(int[] board, int cell, int region, long[] random) {
+        final int start = (int) ((next(random) >>> 33) % mGems.length);
+        int best = mGems[start];
+        int bestRun = Integer.MAX_VALUE;
+
+        for (int i = 0; i < mGems.length; ++i) {
+            final int gem = mGems[(start + i) % mGems.length];
+            final int run = longestRun(board, cell, gem, region);
+
+            if (run < 3) {
+                return gem;
+            }
+
+            if (run < bestRun) {
+                best = gem;
+                bestRun = run;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Longest run of the gem through the cell over the three axes, as if the cell held it.
+     *
+     * @param region - only cells of this region count, -1 for all cells
+     */
+    private int longestRun(int[] board, int cell, int gem, int region) {
+        int longest = 1;
+
+        for (int axis = 0; axis < AXES; ++axis) {
+            longest = Math.max(longest, run(board, cell, axis, gem, region));
+        }
+
+        return longest;
+    }
+
+    private int run(int[] board, int cell, int axis, int gem, int region) {
+        return 1 + count(board, cell, axis, gem, region) + count(board, cell, axis + 3, gem, region);
+    }
+
+    private int count(int[] board, int cell, int direction, int gem, int region) {
+        int count = 0;
+        int other = mNeighbours[cell * HexGrid.DIRECTIONS + direction];
+
+        // cells of other regions may hold anything while regions are filled, they don't count
+        while (other >= 0 && (region < 0 || mRegion[other] == region) && board[other] == gem) {
+            count++;
+            other = mNeighbours[other * HexGrid.DIRECTIONS + direction];
+        }
+
+        return count;
+    }
+
+    private boolean inMatch(int[] board, int cell, int gem) {
+        return longestRun(board, cell, gem, -1) >= 3;
+    }
+
+    /**
+     * @return true if the board has no match at all
+     */
+    public boolean hasNoMatch(int[] board) {
+        for (int cell = 0; cell < mGrid.size(); ++cell) {
+            if (inMatch(board, cell, board[cell])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return number of neighbour swaps that make a match
+     */
+    public int countMoves(int[] board) {
+        int moves = 0;
+
+        for (int cell = 0; cell < mGrid.size(); ++cell) {
+            // every pair once
+            for (int d = 0; d < AXES; ++d) {
+                final int other = mNeighbours[cell * HexGrid.DIRECTIONS + d];
+
+                if (other >= 0 && swapMatches(board, cell, other)) {
+                    moves++;
+                }
+            }
+        }
+
+        return moves;
+    }
+
+    private boolean swapMatches(int[] board, int a, int b) {
+        final int gemA = board[a];
+        final int gemB = board[b];
+
+        if (gemA == gemB) {
+            return false;
+        }
+
+        board[a] = gemB;
+        board[b] = gemA;
+        final boolean match = inMatch(board, a, gemB) || inMatch(board, b, gemA);
+        board[a] = gemA;
+        board[b] = gemB;
+        return match;
+    }
+
+    /**
+     * Makes sure there is a move. Large boards practically always have one, otherwise a
+     * near match is planted at a seeded spot: two equal gems in a row and a third one next
+     * to the cell that continues the row, so swapping it in completes three.
+     */
+    private boolean ensureMove(int[] board, long[] random) {
+        final int size = mGrid.size();
+
+        for (int cell = 0; cell < size; ++cell) {
+            for (int d = 0; d < AXES; ++d) {
+                final int other = mNeighbours[cell * HexGrid.DIRECTIONS + d];
+
+                if (other >= 0 && swapMatches(board, cell, other)) {
+                    return true;
+                }
+            }
+        }
+
+        final int first = size == 0 ? 0 : (int) ((next(random) >>> 33) % size);
+
+        for (int i = 0; i < size; ++i) {
+            final int a = (first + i) % size;
+
+            for (int axis = 0; axis < AXES; ++axis) {
+                if (plant(board, a, axis)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Tries to make a, b = a + axis both hold gem g and put g next to c = b + axis,
+     * keeping the board free of matches.
+     */
+    private boolean plant(int[] board, int a, int axis) {
+        final int b = mNeighbours[a * HexGrid.DIRECTIONS + axis];
+        final int c = b < 0 ? -1 : mNeighbours[b * HexGrid.DIRECTIONS + axis];
+
+        if (c < 0) {
+            return false;
+        }
+
+        final int oldA = board[a];
+        final int oldB = board[b];
+
+        for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+            final int donor = mNeighbours[c * HexGrid.DIRECTIONS + d];
+
+            if (donor < 0 || donor == b) {
+                continue;
+            }
+
+            final int oldDonor = board[donor];
+
+            for (int gem : mGems) {
+                if (board[c] == gem) {
+                    continue;
+                }
+
+                board[a] = gem;
+                board[b] = gem;
+                board[donor] = gem;
+
+                if (!inMatch(board, a, gem) && !inMatch(board, b, gem) && !inMatch(board, donor, gem)
+                        && swapMatches(board, c, donor)) {
+                    return true;
+                }
+
+                board[a] = oldA;
+                board[b] = oldB;
+                board[donor] = oldDonor;
+            }
+        }
+
+        return false;
+    }
+
+    private static int floorDiv(int a, int b) {
+        final int q = a / b;
+        return (a % b != 0 && (a < 0) != (b < 0)) ? q - 1 : q;
+    }
+
+    /** splitmix64 finaliser, spreads seeds that differ in a few bits. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long next(long[] state) {
+        state[0] += 0x9E3779B97F4A7C15L;
+        return mix(state[0]);
+    }
+}
@@ -10,12 +10,45 @@ import java.util.List;
 public class Playground {
     private List<Hexagon> mHexesList = new ArrayList<>();
     private List<PlaygroundCell> mCellsList = new ArrayList<>();
+    private HexGrid mGrid;
+    /** Cells are made from mGrid on the first {@link #getCells()} only. */
+    private boolean mCellsPending = false;
+
+    /**
+     * Empties the playground and makes it the board of the grid, for reuse by a new level.
+     * Keeps the list storage, nothing is allocated until the cells are asked for.
+     */
+    public void reset(HexGrid grid) {
+        mHexesList.clear();
+        mCellsList.clear();
+        mGrid = grid;
+        mCellsPending = true;
+    }
 
     public List<Hexagon> getHexes() {
         return mHexesList;
     }
 
     public List<PlaygroundCell> getCells() {
+        if (mCellsPending) {
+            mCellsPending = false;
+
+            for (int i = 0; i < mGrid.size(); ++i) {
+                mCellsList.add(new PlaygroundCell("hex" + i, mGrid.getX(i), mGrid.getY(i), mGrid.getZ(i)));
+            }
+        }
+
         return mCellsList;
     }
+
+    /**
+     * Dense index and hex queries over the cells. Cell index is the position in {@link #getCells()}.
+     */
+    public HexGrid getGrid() {
+        if (!mCellsPending && (mGrid == null || mGrid.size() != mCellsList.size())) {
+            mGrid = HexGrid.fromCells(mCellsList);
+        }
+
+        return mGrid;
+    }
 }
@@ -0,0 +1,434 @@
+package wayfarer.gemgame.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Remembers solver results per board, boards that are rotations or mirrors of each other
+ * share one entry. A board is looked at through every cube coordinate transform that maps the
+ * grid onto itself, six rotations times an optional mirror, twelve for a hexagon around the
+ * origin like {@link wayfarer.gemgame.game.util.PlaygroundUtil#calculateHexCircle} builds.
+ * The key is the smallest hash of those views, the entry keeps that view of the board so a
+ * hash collision is a miss and never a wrong answer.
+ *
+ * A {@link Result} has a value that does not depend on the orientation, like a move count,
+ * and cells that do, like the two cells of a hint. Cells are stored in the orientation of the
+ * key and turned back into the orientation of every query.
+ *
+ * The least recently used entry goes when the cache is full. {@link #save(File)} and
+ * {@link #load(File)} keep the cache between sessions, big endian:
+ *
+ * <pre>
+ * header  magic "GEMS", version, cell count, grid hash (long), entry count
+ * entry   key (long), gem per cell (byte), value (int), cell count (int), cells (int)
+ * </pre>
+ *
+ * Thread safe, the solver runs outside of the lock.
+ */
+public class SolverCache {
+    static final int MAGIC = 0x47454d53;
+    static final int VERSION = 1;
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /** Rotations by 60 degrees, each with and without a mirror. */
+    private static final int TRANSFORMS = 12;
+
+    public interface Solver {
+        /**
+         * @param board - gem per cell, must not be changed
+         */
+        Result solve(int[] board);
+    }
+
+    public static final class Result {
+        private final int mValue;
+        private final int[] mCells;
+
+        /**
+         * @param cells - dense cell indexes, copied
+         */
+        public Result(int value, int... cells) {
+            mValue = value;
+            mCells = cells.clone();
+        }
+
+        public int getValue() {
+            return mValue;
+        }
+
+        public int getCellCount() {
+            return mCells.length;
+        }
+
+        public int getCell(int i) {
+            return mCells[i];
+        }
+    }
+
+    private static final class Cached {
+        final byte[] board;
+        final int value;
+        /** In the orientation of the key. */
+        final int[] cells;
+
+        Cached(byte[] board, int value, int[] cells) {
+            this.board = board;
+            this.value = value;
+            this.cells = cells;
+        }
+    }
+
+    private final HexGrid mGrid;
+    private final int mSize;
+    private final int mCapacity;
+
+    /** Cell every cell is moved to by a transform and back, for the transforms the grid allows. */
+    private final int[][] mForward;
+    private final int[][] mInverse;
+    private final long mGridHash;
+
+    private final Map<Long, Cached> mEntries;
+
+    // scratch of canonicalize(), guarded by this
+    private final byte[] mView;
+    private final byte[] mBest;
+    private int mBestTransform;
+
+    // metrics, guarded by this
+    private long mHits = 0;
+    private long mMisses = 0;
+
+    public SolverCache(HexGrid grid) {
+        this(grid, DEFAULT_CAPACITY);
+    }
+
+    public SolverCache(HexGrid grid, final int capacity) {
+        mGrid = grid;
+        mSize = grid.size();
+        mCapacity = capacity;
+        mView = new byte[mSize];
+        mBest = new byte[mSize];
+
+        final int[][] forward = new int[TRANSFORMS][];
+        int count = 0;
+
+        for (int t = 0; t < TRANSFORMS; ++t) {
+            final int[] cells = transform(grid, t);
+
+            if (cells != null) {
+                forward[count++] = cells;
+            }
+        }
+
+        mForward = Arrays.copyOf(forward, count);
+        mInverse = new int[count][mSize];
+
+        for (int t = 0; t < count; ++t) {
+            for (int cell = 0; cell < mSize; ++cell) {
+                mInverse[t][mForward[t][cell]] = cell;
+            }
+        }
+
+        long gridHash = mSize;
+
+        for (int cell = 0; cell < mSize; ++cell) {
+            gridHash = mix(gridHash ^ ((long) grid.getX(cell) << 32 ^ (grid.getY(cell) & 0xffffffffL)));
+        }
+
+        mGridHash = gridHash;
+        mEntries = new LinkedHashMap<Long, Cached>(capacity + 1, 1.0f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Cached> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Where every cell goes under the transform, or null if a cell falls off the board.
+     * Transform t mirrors y and z if t >= 6, then rotates t % 6 times by 60 degrees.
+     */
+    private static int[] transform(HexGrid grid, int t) {
+        final int[] cells = new int[grid.size()];
+
+        for (int cell = 0; cell < cells.length; ++cell) {
+            int x = grid.getX(cell);
+            int y = t >= 6 ? grid.getZ(cell) : grid.getY(cell);
+            int z = t >= 6 ? grid.getY(cell) : grid.getZ(cell);
+
+            for (int r = 0; r < t % 6; ++r) {
+                final int nx = -z;
+                final int ny = -x;
+                z = -y;
+                x = nx;
+                y = ny;
+            }
+
+            cells[cell] = grid.indexOf(x, y, z);
+
+            if (cells[cell] < 0) {
+                return null;
+            }
+        }
+
+        return cells;
+    }
+
+    public HexGrid getGrid() {
+        return mGrid;
+    }
+
+    /**
+     * @return transforms that map the grid onto itself, identity included
+     */
+    public int getSymmetryCount() {
+        return mForward.length;
+    }
+
+    /**
+     * @return the same for every rotation and mirror of the board the grid allows
+     */
+    public synchronized long canonicalHash(int[] board) {
+        return canonicalize(board);
+    }
+
+    /**
+     * Fills mBest with the view of the board with the smallest hash and mBestTransform with its transform.
+     *
+     * @return the smallest hash
+     */
+    private long canonicalize(int[] board) {
+        if (board.length != mSize) {
+            throw new IllegalArgumentException("Board of " + board.length + " cells, grid has " + mSize);
+        }
+
+        long best = 0;
+
+        for (int t = 0; t < mForward.length; ++t) {
+            final int[] forward = mForward[t];
+
+            for (int cell = 0; cell < mSize; ++cell) {
+                mView[forward[cell]] = (byte) board[cell];
+            }
+
+            long hash = 0xcbf29ce484222325L;
+
+            for (int cell = 0; cell < mSize; ++cell) {
+                hash = (hash ^ (mView[cell] & 0xff)) * 0x100000001b3L;
+            }
+
+            hash = mix(hash);
+
+            // ties are equal views or collisions, the first one is as good as any
+            if (t == 0 || hash < best) {
+                best = hash;
+                mBestTransform = t;
+                System.arraycopy(mView, 0, mBest, 0, mSize);
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @return the cached result in the orientation of the board, null if there is none
+     */
+    public synchronized Result lookup(int[] board) {
+        final long key = canonicalize(board);
+        final Cached entry = mEntries.get(key);
+
+        if (entry == null || !Arrays.equals(entry.board, mBest)) {
+            mMisses++;
+            return null;
+        }
+
+        mHits++;
+        final int[] inverse = mInverse[mBestTransform];
+        final int[] cells = new int[entry.cells.length];
+
+        for (int i = 0; i < cells.length; ++i) {
+            cells[i] = inverse[entry.cells[i]];
+        }
+
+        return new Result(entry.value, cells);
+    }
+
+    /**
+     * Remembers the result of the board, for the board and all of its rotations and mirrors.
+     */
+    public synchronized void put(int[] board, Result result) {
+        final long key = canonicalize(board);
+        final int[] forward = mForward[mBestTransform];
+        final int[] cells = new int[result.getCellCount()];
+
+        for (int i = 0; i < cells.length; ++i) {
+            cells[i] = forward[result.getCell(i)];
+        }
+
+        mEntries.put(key, new Cached(mBest.clone(), result.getValue(), cells));
+    }
+
+    /**
+     * Cached result, or the one the solver finds, which is then cached. Two threads asking for
+     * the same new board may both solve it.
+     */
+    public Result get(int[] board, Solver solver) {
+        Result result = lookup(board);
+
+        if (result == null) {
+            result = solver.solve(board);
+            put(board, result);
+        }
+
+        return result;
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * @return share of lookups answered from the cache, 0 before the first one
+     */
+    public synchronized float getHitRate() {
+        final long lookups = mHits + mMisses;
+        return lookups == 0 ? 0.0f : (float) mHits / lookups;
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mHits = 0;
+        mMisses = 0;
+    }
+
+    /**
+     * Writes every entry, least recently used first, so loading keeps the order.
+     */
+    public synchronized void save(File file) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(mSize);
+            out.writeLong(mGridHash);
+            out.writeInt(mEntries.size());
+
+            for (Map.Entry<Long, Cached> e : mEntries.entrySet()) {
+                final Cached entry = e.getValue();
+                out.writeLong(e.getKey());
+                out.write(entry.board);
+                out.writeInt(entry.value);
+                out.writeInt(entry.cells.length);
+
+                for (int cell : entry.cells) {
+                    out.writeInt(cell);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Adds the entries of a file written by {@link #save(File)} for the same grid. Hit counts
+     * start over, they describe this session.
+     *
+     * @return number of entries read
+     */
+    public synchronized int load(File file) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a solver cache, bad magic");
+            }
+
+            final int version = in.readInt();
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported solver cache version " + version);
+            }
+
+            if (in.readInt() != mSize || in.readLong() != mGridHash) {
+                throw new IOException("Solver cache of another grid");
+            }
+
+            final int count = in.readInt();
+
+            if (count < 0) {
+                throw new IOException("Solver cache is corrupt");
+            }
+
+            for (int i = 0; i < count; ++i) {
+                final long key = in.readLong();
+                final byte[] board = new byte[mSize];
+                in.readFully(board);
+                final int value = in.readInt();
+                final int[] cells = new int[checkCells(in.readInt())];
+
+                for (int c = 0; c < cells.length; ++c) {
+                    cells[c] = checkCell(in.readInt());
+                }
+
+                mEntries.put(key, new Cached(board, value, cells));
+            }
+
+            mHits = 0;
+            mMisses = 0;
+            return count;
+        } catch (EOFException e) {
+            throw new IOException("Solver cache is truncated", e);
+        } finally {
+            in.close();
+        }
+    }
+
+    private int checkCells(int count) throws IOException {
+        if (count < 0 || count > mSize) {
+            throw new IOException("Solver cache is corrupt");
+        }
+
+        return count;
+    }
+
+    private int checkCell(int cell) throws IOException {
+        if (cell < 0 || cell >= mSize) {
+            throw new IOException("Solver cache is corrupt");
+        }
+
+        return cell;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
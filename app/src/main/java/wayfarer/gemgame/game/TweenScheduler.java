@@ -0,0 +1,279 @@
+package wayfarer.gemgame.game;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Drives hex animations like swaps, falls and clears. Tweens are simulated in fixed steps
+ * of {@link #STEP} whatever the frame rate. Every frame writes the value between the last
+ * two steps into the {@link HexagonPool}, so motion stays smooth when frames and steps
+ * don't line up.
+ *
+ * Tween state lives in preallocated parallel arrays and finished tweens are swapped out
+ * with the last active one, so nothing is allocated after construction. Hexes are flagged
+ * {@link Hexagon#FLAG_ANIMATED} while they have active tweens. The renderer only asks for
+ * frames while {@link #isActive()}, an idle board costs no frames at all.
+ *
+ * All methods must be called on the GL thread (use GLSurfaceView.queueEvent from elsewhere,
+ * then requestRender to wake the renderer up).
+ */
+public class TweenScheduler {
+    /** Simulation step in seconds. */
+    public static final float STEP = 1.0f / 60.0f;
+
+    /** Steps simulated in one frame at most, a longer hitch slows the animation down instead. */
+    private static final int MAX_STEPS = 8;
+
+    public static final int PROPERTY_X = 0;
+    public static final int PROPERTY_Y = 1;
+    public static final int PROPERTY_Z = 2;
+    public static final int PROPERTY_RADIUS = 3;
+
+    public static final int EASE_LINEAR = 0;
+    /** Starts slow and accelerates, e.g. falling gems. */
+    public static final int EASE_IN = 1;
+    /** Starts fast and settles, e.g. gems popping into place. */
+    public static final int EASE_OUT = 2;
+    /** Slow on both ends, e.g. swaps. */
+    public static final int EASE_IN_OUT = 3;
+
+    private final HexagonPool mPool;
+    private final int mCapacity;
+    private int mActive = 0;
+    private float mAccumulator = 0.0f;
+
+    // tween state, one slot per tween
+    private final int[] mHex;
+    private final int[] mProperty;
+    private final int[] mEasing;
+    private final float[] mFrom;
+    private final float[] mTo;
+    private final float[] mDelay;
+    private final float[] mDuration;
+    private final float[] mElapsed;
+    private final float[] mPrevious;
+    private final float[] mCurrent;
+
+    /**
+     * @param maxTweens - cap on active tweens, tweens over the cap jump to their end value
+     */
+    public TweenScheduler(HexagonPool pool, int maxTweens) {
+        mPool = pool;
+        mCapacity = maxTweens;
+        mHex = new int[maxTweens];
+        mProperty = new int[maxTweens];
+        mEasing = new int[maxTweens];
+        mFrom = new float[maxTweens];
+        mTo = new float[maxTweens];
+        mDelay = new float[maxTweens];
+        mDuration = new float[maxTweens];
+        mElapsed = new float[maxTweens];
+        mPrevious = new float[maxTweens];
+        mCurrent = new float[maxTweens];
+    }
+
+    /**
+     * Animates a property of a hex from its current value. A running tween of the same hex
+     * and property is replaced and the new one starts where the old one is now.
+     *
+     * @param delay    - seconds before the value starts moving
+     * @param duration - seconds the movement takes
+     */
+    public void start(int hex, int property, float to, float delay, float duration, int easing) {
+        int t = find(hex, property);
+
+        if (t < 0) {
+            if (mActive == mCapacity) {
+                write(hex, property, to);
+                return;
+            }
+
+            t = mActive++;
+        }
+
+        final float from = read(hex, property);
+        mHex[t] = hex;
+        mProperty[t] = property;
+        mEasing[t] = easing;
+        mFrom[t] = from;
+        mTo[t] = to;
+        mDelay[t] = delay;
+        mDuration[t] = Math.max(duration, STEP);
+        mElapsed[t] = 0.0f;
+        mPrevious[t] = from;
+        mCurrent[t] = from;
+        setAnimated(hex, true);
+    }
+
+    /**
+     * Moves a hex to a new position, e.g. one half of a swap.
+     */
+    public void moveTo(int hex, float x, float y, float delay, float duration, int easing) {
+        start(hex, PROPERTY_X, x, delay, duration, easing);
+        start(hex, PROPERTY_Y, y, delay, duration, easing);
+    }
+
+    /**
+     * Runs the simulation for the frame time and writes interpolated values into the pool.
+     */
+    public void advance(float dt) {
+        if (mActive == 0) {
+            mAccumulator = 0.0f;
+            return;
+        }
+
+        mAccumulator += dt;
+        int steps = 0;
+
+        while (mAccumulator >= STEP) {
+            if (steps == MAX_STEPS) {
+                mAccumulator = 0.0f;
+                break;
+            }
+
+            step();
+            mAccumulator -= STEP;
+            steps++;
+        }
+
+        final float alpha = mAccumulator / STEP;
+        int t = 0;
+
+        while (t < mActive) {
+            if (mElapsed[t] >= mDelay[t] + mDuration[t]) {
+                // land exactly on the end value, up to one step early
+                write(mHex[t], mProperty[t], mTo[t]);
+                remove(t);
+                continue;
+            }
+
+            write(mHex[t], mProperty[t], mPrevious[t] + (mCurrent[t] - mPrevious[t]) * alpha);
+            t++;
+        }
+    }
+
+    private void step() {
+        for (int t = 0; t < mActive; ++t) {
+            mPrevious[t] = mCurrent[t];
+            mElapsed[t] += STEP;
+            final float progress = Math.max(0.0f, Math.min(1.0f, (mElapsed[t] - mDelay[t]) / mDuration[t]));
+            mCurrent[t] = mFrom[t] + (mTo[t] - mFrom[t]) * ease(mEasing[t], progress);
+        }
+    }
+
+    private static float ease(int easing, float p) {
+        switch (easing) {
+            case EASE_IN:
+                return p * p;
+            case EASE_OUT:
+                return p * (2 - p);
+            case EASE_IN_OUT:
+                return p * p * (3 - 2 * p);
+            default:
+                return p;
+        }
+    }
+
+    private void remove(int t) {
+        final int hex = mHex[t];
+        final int last = --mActive;
+        mHex[t] = mHex[last];
+        mProperty[t] = mProperty[last];
+        mEasing[t] = mEasing[last];
+        mFrom[t] = mFrom[last];
+        mTo[t] = mTo[last];
+        mDelay[t] = mDelay[last];
+        mDuration[t] = mDuration[last];
+        mElapsed[t] = mElapsed[last];
+        mPrevious[t] = mPrevious[last];
+        mCurrent[t] = mCurrent[last];
+
+        if (find(hex, -1) < 0) {
+            setAnimated(hex, false);
+        }
+    }
+
+    /**
+     * @param property - or -1 for any property
+     * @return the active tween of the hex, -1 if there is none
+     */
+    private int find(int hex, int property) {
+        for (int t = 0; t < mActive; ++t) {
+            if (mHex[t] == hex && (property < 0 || mProperty[t] == property)) {
+                return t;
+            }
+        }
+
+        return -1;
+    }
+
+    private void setAnimated(int hex, boolean animated) {
+        final int flags = mPool.getFlags(hex);
+        final int changed = animated ? flags | Hexagon.FLAG_ANIMATED : flags & ~Hexagon.FLAG_ANIMATED;
+
+        if (changed != flags) {
+            mPool.setFlags(hex, changed);
+        }
+    }
+
+    private float read(int hex, int property) {
+        switch (property) {
+            case PROPERTY_X:
+                return mPool.getX(hex);
+            case PROPERTY_Y:
+                return mPool.getY(hex);
+            case PROPERTY_Z:
+                return mPool.getZ(hex);
+            default:
+                return mPool.getRadius(hex);
+        }
+    }
+
+    private void write(int hex, int property, float value) {
+        // waiting tweens would otherwise report their hex as changed every frame
+        if (read(hex, property) == value) {
+            return;
+        }
+
+        switch (property) {
+            case PROPERTY_X:
+                mPool.setPosition(hex, value, mPool.getY(hex), mPool.getZ(hex));
+                break;
+            case PROPERTY_Y:
+                mPool.setPosition(hex, mPool.getX(hex), value, mPool.getZ(hex));
+                break;
+            case PROPERTY_Z:
+                mPool.setPosition(hex, mPool.getX(hex), mPool.getY(hex), value);
+                break;
+            default:
+                mPool.setRadius(hex, value);
+                break;
+        }
+    }
+
+    /**
+     * Drops all tweens where they are, e.g. before the pool is reset for a new level.
+     */
+    public void clear() {
+        while (mActive > 0) {
+            remove(mActive - 1);
+        }
+
+        mAccumulator = 0.0f;
+    }
+
+    /**
+     * @return true while any tween runs, the renderer keeps frames coming until then
+     */
+    public boolean isActive() {
+        return mActive > 0;
+    }
+
+    public int getActiveCount() {
+        return mActive;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+}
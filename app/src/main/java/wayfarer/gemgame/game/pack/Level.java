@@ -0,0 +1,77 @@
+package wayfarer.gemgame.game.pack;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * One decoded level of a {@link LevelPack}: board geometry, the starting gem of every cell
+ * and what the player has to reach. Immutable, arrays are not copied, so don't change them.
+ */
+public class Level {
+    private final int mRadius;
+    private final float mDelta;
+    private final byte[] mGems;
+    private final int mMoveLimit;
+    private final int mScoreGoal;
+    private final int[] mGemGoals;
+
+    /**
+     * @param radius    - board radius in hexes, see PlaygroundUtil.calculateHexCircle
+     * @param delta     - space between hexes
+     * @param gems      - gem of every cell in HexGrid order
+     * @param moveLimit - moves the player has, 0 for no limit
+     * @param scoreGoal - score to reach, 0 for none
+     * @param gemGoals  - gems of every type to clear, indexed by gem type
+     */
+    public Level(int radius, float delta, byte[] gems, int moveLimit, int scoreGoal, int[] gemGoals) {
+        mRadius = radius;
+        mDelta = delta;
+        mGems = gems;
+        mMoveLimit = moveLimit;
+        mScoreGoal = scoreGoal;
+        mGemGoals = gemGoals;
+    }
+
+    public int getRadius() {
+        return mRadius;
+    }
+
+    public float getDelta() {
+        return mDelta;
+    }
+
+    public int getCellCount() {
+        return mGems.length;
+    }
+
+    public int getGem(int cell) {
+        return mGems[cell];
+    }
+
+    byte[] getGems() {
+        return mGems;
+    }
+
+    public int getMoveLimit() {
+        return mMoveLimit;
+    }
+
+    public int getScoreGoal() {
+        return mScoreGoal;
+    }
+
+    public int getGemGoalCount() {
+        return mGemGoals.length;
+    }
+
+    /**
+     * @return gems of the type the player has to clear
+     */
+    public int getGemGoal(int gem) {
+        return gem < mGemGoals.length ? mGemGoals[gem] : 0;
+    }
+
+    int[] getGemGoals() {
+        return mGemGoals;
+    }
+}
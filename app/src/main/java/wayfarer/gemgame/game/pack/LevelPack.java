@@ -0,0 +1,235 @@
+package wayfarer.gemgame.game.pack;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Read side of a level pack file, big endian:
+ *
+ * <pre>
+ * header  magic "GEMP", version, level count, reserved         4 x int
+ * index   payload offset (long), compressed and raw size (int)  16 bytes per level
+ * payload deflated level records, see {@link LevelPackWriter}
+ * </pre>
+ *
+ * The file is memory mapped, opening it reads the header only and an index lookup touches
+ * one index entry, so startup time and heap stay the same for ten or ten thousand levels.
+ * A level is inflated the first time it is asked for, the last few decoded levels are kept
+ * in a small LRU cache.
+ *
+ * Thread safe.
+ */
+public class LevelPack implements Closeable {
+    static final int MAGIC = 0x47454d50;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int INDEX_ENTRY_SIZE = 16;
+
+    /** Decoded levels kept by default, about one screen of a level select menu. */
+    public static final int DEFAULT_CACHE_SIZE = 8;
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mMap;
+    private final int mCount;
+    private final Map<Integer, Level> mCache;
+    private final Inflater mInflater = new Inflater();
+
+    // guarded by this
+    private boolean mClosed = false;
+    private int mDecodes = 0;
+    private int mHits = 0;
+
+    public static LevelPack open(File file) throws IOException {
+        return open(file, DEFAULT_CACHE_SIZE);
+    }
+
+    public static LevelPack open(File file, int cacheSize) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            return new LevelPack(raf, raf.getChannel(), 0, raf.length(), cacheSize);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps a pack stored inside another file, e.g. an uncompressed APK asset opened through
+     * AssetFileDescriptor. The channel stays owned by the caller, the mapping stays valid
+     * after it is closed.
+     */
+    public static LevelPack open(FileChannel channel, long offset, long length, int cacheSize) throws IOException {
+        return new LevelPack(null, channel, offset, length, cacheSize);
+    }
+
+    private LevelPack(RandomAccessFile file, FileChannel channel, long offset, long length, final int cacheSize)
+            throws IOException {
+        mFile = file;
+
+        if (length < HEADER_SIZE) {
+            throw new IOException("Not a level pack, " + length + " bytes");
+        }
+
+        mMap = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+
+        if (mMap.getInt(0) != MAGIC) {
+            throw new IOException("Not a level pack, bad magic");
+        }
+
+        if (mMap.getInt(4) != VERSION) {
+            throw new IOException("Unsupported level pack version " + mMap.getInt(4));
+        }
+
+        mCount = mMap.getInt(8);
+
+        if (mCount < 0 || HEADER_SIZE + (long) mCount * INDEX_ENTRY_SIZE > length) {
+            throw new IOException("Level pack index of " + mCount + " levels does not fit the file");
+        }
+
+        mCache = new LinkedHashMap<Integer, Level>(cacheSize + 1, 1.0f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Level> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Decodes the level, or takes it from the cache.
+     */
+    public synchronized Level get(int index) throws IOException {
+        if (mClosed) {
+            throw new IllegalStateException("Level pack is closed");
+        }
+
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("Level " + index + " of " + mCount);
+        }
+
+        Level level = mCache.get(index);
+
+        if (level != null) {
+            mHits++;
+            return level;
+        }
+
+        level = decode(index);
+        mCache.put(index, level);
+        mDecodes++;
+        return level;
+    }
+
+    private Level decode(int index) throws IOException {
+        final int entry = HEADER_SIZE + index * INDEX_ENTRY_SIZE;
+        final long offset = mMap.getLong(entry);
+        final int length = mMap.getInt(entry + 8);
+        final int rawLength = mMap.getInt(entry + 12);
+
+        if (offset < 0 || length < 0 || offset + length > mMap.capacity()) {
+            throw new IOException("Level " + index + " lies outside the pack");
+        }
+
+        final byte[] compressed = new byte[length];
+        final ByteBuffer payload = mMap.duplicate();
+        payload.position((int) offset);
+        payload.get(compressed);
+
+        mInflater.reset();
+        final DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(compressed), mInflater, Math.max(64, Math.min(rawLength, 8192))));
+
+        try {
+            final int radius = in.readInt();
+
+            // a hexagon of that radius has more cells than the record has bytes
+            if (radius < 0 || cellCount(radius) > rawLength) {
+                throw new IOException("Level " + index + " has a radius of " + radius);
+            }
+
+            final float delta = in.readFloat();
+            final int moveLimit = in.readInt();
+            final int scoreGoal = in.readInt();
+            final int[] gemGoals = new int[checkCount(in.readInt(), rawLength, index)];
+
+            for (int i = 0; i < gemGoals.length; ++i) {
+                gemGoals[i] = in.readInt();
+            }
+
+            final byte[] gems = new byte[checkCount(in.readInt(), rawLength, index)];
+
+            if (gems.length != cellCount(radius)) {
+                throw new IOException("Level " + index + " has " + gems.length + " gems for "
+                        + cellCount(radius) + " cells");
+            }
+
+            in.readFully(gems);
+            return new Level(radius, delta, gems, moveLimit, scoreGoal, gemGoals);
+        } catch (EOFException e) {
+            throw new IOException("Level " + index + " is truncated", e);
+        }
+    }
+
+    /**
+     * Cells of a hexagon board of the given radius, see {@link wayfarer.gemgame.game.HexGrid#hexagon}.
+     */
+    static long cellCount(int radius) {
+        return 3L * radius * (radius + 1) + 1;
+    }
+
+    private static int checkCount(int count, int rawLength, int index) throws IOException {
+        if (count < 0 || count > rawLength) {
+            throw new IOException("Level " + index + " is corrupt");
+        }
+
+        return count;
+    }
+
+    /**
+     * @return levels inflated so far, cache misses
+     */
+    public synchronized int getDecodeCount() {
+        return mDecodes;
+    }
+
+    public synchronized int getCacheHits() {
+        return mHits;
+    }
+
+    /**
+     * Releases the file. The mapping itself goes away with the buffer.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+
+        mClosed = true;
+        mCache.clear();
+        mInflater.end();
+
+        if (mFile != null) {
+            mFile.close();
+        }
+    }
+}
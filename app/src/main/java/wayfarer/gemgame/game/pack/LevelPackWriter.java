@@ -0,0 +1,81 @@
+package wayfarer.gemgame.game.pack;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Builds a {@link LevelPack}. Levels are compressed as they are added, the file is written
+ * in one go by {@link #writeTo(OutputStream)}. Meant for tools and tests, not for the game.
+ */
+public class LevelPackWriter {
+    private final List<byte[]> mPayloads = new ArrayList<>();
+    private final List<Integer> mRawLengths = new ArrayList<>();
+    private final ByteArrayOutputStream mRaw = new ByteArrayOutputStream();
+    private final Deflater mDeflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+    public void add(Level level) throws IOException {
+        mRaw.reset();
+        final DataOutputStream out = new DataOutputStream(mRaw);
+        out.writeInt(level.getRadius());
+        out.writeFloat(level.getDelta());
+        out.writeInt(level.getMoveLimit());
+        out.writeInt(level.getScoreGoal());
+        out.writeInt(level.getGemGoals().length);
+
+        for (int goal : level.getGemGoals()) {
+            out.writeInt(goal);
+        }
+
+        out.writeInt(level.getGems().length);
+        out.write(level.getGems());
+        out.flush();
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        mDeflater.reset();
+        final DeflaterOutputStream deflate = new DeflaterOutputStream(compressed, mDeflater);
+        mRaw.writeTo(deflate);
+        deflate.finish();
+
+        mPayloads.add(compressed.toByteArray());
+        mRawLengths.add(mRaw.size());
+    }
+
+    public int size() {
+        return mPayloads.size();
+    }
+
+    /**
+     * Writes header, index and payloads. Leaves the stream open.
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        final DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(LevelPack.MAGIC);
+        out.writeInt(LevelPack.VERSION);
+        out.writeInt(mPayloads.size());
+        out.writeInt(0);
+
+        long offset = LevelPack.HEADER_SIZE + (long) mPayloads.size() * LevelPack.INDEX_ENTRY_SIZE;
+
+        for (int i = 0; i < mPayloads.size(); ++i) {
+            out.writeLong(offset);
+            out.writeInt(mPayloads.get(i).length);
+            out.writeInt(mRawLengths.get(i));
+            offset += mPayloads.get(i).length;
+        }
+
+        for (byte[] payload : mPayloads) {
+            out.write(payload);
+        }
+
+        out.flush();
+    }
+}
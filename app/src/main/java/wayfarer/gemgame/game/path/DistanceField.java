@@ -0,0 +1,198 @@
+package wayfarer.gemgame.game.path;
+
+import wayfarer.gemgame.game.HexGrid;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Steps from every cell to the closest of a set of source cells. Units follow the field by
+ * stepping to the neighbour with the smallest distance, which makes it a flow field shared
+ * by any number of movers heading to the same goals.
+ *
+ * The field is built once per source set. Blocking or freeing a cell in the owning
+ * {@link NavGrid} repairs only the cells whose distance actually changes.
+ */
+public class DistanceField {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final NavGrid mNav;
+    private final HexGrid mGrid;
+    private final int[] mDistance;
+    private final boolean[] mSource;
+
+    // scratch for rebuilds and repairs
+    private final int[] mQueue;
+    private final int[] mOldDistance;
+    private final IntMinHeap mHeap;
+
+    DistanceField(NavGrid nav) {
+        mNav = nav;
+        mGrid = nav.getGrid();
+        final int size = mGrid.size();
+        mDistance = new int[size];
+        mSource = new boolean[size];
+        mQueue = new int[size];
+        mOldDistance = new int[size];
+        mHeap = new IntMinHeap(size);
+
+        for (int i = 0; i < size; ++i) {
+            mDistance[i] = UNREACHABLE;
+        }
+    }
+
+    /**
+     * Replaces the sources and rebuilds the whole field.
+     */
+    public void setSources(int[] cells, int count) {
+        for (int i = 0; i < mSource.length; ++i) {
+            mSource[i] = false;
+        }
+
+        for (int i = 0; i < count; ++i) {
+            mSource[cells[i]] = true;
+        }
+
+        rebuild();
+    }
+
+    public int getDistance(int cell) {
+        return mDistance[cell];
+    }
+
+    /**
+     * @return neighbour one step closer to a source, -1 for sources and unreachable cells
+     */
+    public int nextStep(int cell) {
+        int best = -1;
+        int bestDistance = mDistance[cell];
+
+        for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+            final int n = mGrid.neighbour(cell, d);
+
+            if (n >= 0 && mDistance[n] < bestDistance) {
+                best = n;
+                bestDistance = mDistance[n];
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Multi-source breadth first search, every step costs the same.
+     */
+    private void rebuild() {
+        int head = 0;
+        int tail = 0;
+
+        for (int i = 0; i < mDistance.length; ++i) {
+            if (mSource[i] && !mNav.isBlocked(i)) {
+                mDistance[i] = 0;
+                mQueue[tail++] = i;
+            } else {
+                mDistance[i] = UNREACHABLE;
+            }
+        }
+
+        while (head < tail) {
+            final int cell = mQueue[head++];
+            final int next = mDistance[cell] + 1;
+
+            for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+                final int n = mGrid.neighbour(cell, d);
+
+                if (n >= 0 && mDistance[n] == UNREACHABLE && !mNav.isBlocked(n)) {
+                    mDistance[n] = next;
+                    mQueue[tail++] = n;
+                }
+            }
+        }
+    }
+
+    void onBlocked(int cell) {
+        if (mDistance[cell] == UNREACHABLE) {
+            // nothing could go through it
+            return;
+        }
+
+        // Everything reachable from the cell by steps that increase the distance by one may
+        // have its shortest path through it. Forget those distances, the rest stays valid.
+        int tail = 0;
+        mOldDistance[cell] = mDistance[cell];
+        mDistance[cell] = UNREACHABLE;
+        mQueue[tail++] = cell;
+
+        for (int head = 0; head < tail; ++head) {
+            final int current = mQueue[head];
+            final int dependent = mOldDistance[current] + 1;
+
+            for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+                final int n = mGrid.neighbour(current, d);
+
+                if (n >= 0 && !mSource[n] && mDistance[n] == dependent) {
+                    mOldDistance[n] = mDistance[n];
+                    mDistance[n] = UNREACHABLE;
+                    mQueue[tail++] = n;
+                }
+            }
+        }
+
+        // seed forgotten cells from their still valid neighbours and let Dijkstra fill the hole
+        mHeap.clear();
+
+        for (int i = 1; i < tail; ++i) {
+            final int current = mQueue[i];
+
+            for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+                final int n = mGrid.neighbour(current, d);
+
+                if (n >= 0 && mDistance[n] != UNREACHABLE && mDistance[n] + 1 < mDistance[current]) {
+                    mDistance[current] = mDistance[n] + 1;
+                    mHeap.offer(current, mDistance[current]);
+                }
+            }
+        }
+
+        propagate();
+    }
+
+    void onFreed(int cell) {
+        int distance = mSource[cell] ? 0 : UNREACHABLE;
+
+        for (int d = 0; d < HexGrid.DIRECTIONS && distance > 0; ++d) {
+            final int n = mGrid.neighbour(cell, d);
+
+            if (n >= 0 && mDistance[n] != UNREACHABLE) {
+                distance = Math.min(distance, mDistance[n] + 1);
+            }
+        }
+
+        mDistance[cell] = distance;
+
+        if (distance != UNREACHABLE) {
+            mHeap.clear();
+            mHeap.offer(cell, distance);
+            propagate();
+        }
+    }
+
+    /**
+     * Dijkstra from the queued cells, lowers distances that got shorter.
+     */
+    private void propagate() {
+        while (!mHeap.isEmpty()) {
+            final int cell = mHeap.poll();
+            final int next = mDistance[cell] + 1;
+
+            for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+                final int n = mGrid.neighbour(cell, d);
+
+                if (n >= 0 && next < mDistance[n] && !mNav.isBlocked(n)) {
+                    mDistance[n] = next;
+                    mHeap.offer(n, next);
+                }
+            }
+        }
+    }
+}
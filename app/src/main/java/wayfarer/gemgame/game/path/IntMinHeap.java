@@ -0,0 +1,141 @@
+package wayfarer.gemgame.game.path;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Binary min-heap of cell indexes keyed by int priority, backed by primitive arrays.
+ * Every cell is in the heap at most once, {@link #offer} on a queued cell changes its priority.
+ */
+public class IntMinHeap {
+    private final int[] mItems;
+    private final int[] mPriorities;
+    /** Heap slot of every cell, -1 when not queued. */
+    private final int[] mSlots;
+    private int mSize = 0;
+
+    /**
+     * @param capacity - number of cells, items must be in 0..capacity-1
+     */
+    public IntMinHeap(int capacity) {
+        mItems = new int[capacity];
+        mPriorities = new int[capacity];
+        mSlots = new int[capacity];
+
+        for (int i = 0; i < capacity; ++i) {
+            mSlots[i] = -1;
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public boolean contains(int item) {
+        return mSlots[item] >= 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mSize; ++i) {
+            mSlots[mItems[i]] = -1;
+        }
+
+        mSize = 0;
+    }
+
+    /**
+     * Adds the item or moves it to the new priority if it is queued already.
+     */
+    public void offer(int item, int priority) {
+        int slot = mSlots[item];
+
+        if (slot < 0) {
+            slot = mSize++;
+            mItems[slot] = item;
+            mPriorities[slot] = priority;
+            mSlots[item] = slot;
+            siftUp(slot);
+        } else if (priority < mPriorities[slot]) {
+            mPriorities[slot] = priority;
+            siftUp(slot);
+        } else if (priority > mPriorities[slot]) {
+            mPriorities[slot] = priority;
+            siftDown(slot);
+        }
+    }
+
+    public int peekPriority() {
+        return mPriorities[0];
+    }
+
+    /**
+     * Removes and returns the item with the lowest priority.
+     */
+    public int poll() {
+        final int top = mItems[0];
+        mSlots[top] = -1;
+        mSize--;
+
+        if (mSize > 0) {
+            move(mSize, 0);
+            siftDown(0);
+        }
+
+        return top;
+    }
+
+    private void siftUp(int slot) {
+        final int item = mItems[slot];
+        final int priority = mPriorities[slot];
+
+        while (slot > 0) {
+            final int parent = (slot - 1) >>> 1;
+
+            if (mPriorities[parent] <= priority) {
+                break;
+            }
+
+            move(parent, slot);
+            slot = parent;
+        }
+
+        place(item, priority, slot);
+    }
+
+    private void siftDown(int slot) {
+        final int item = mItems[slot];
+        final int priority = mPriorities[slot];
+        final int half = mSize >>> 1;
+
+        while (slot < half) {
+            int child = 2 * slot + 1;
+
+            if (child + 1 < mSize && mPriorities[child + 1] < mPriorities[child]) {
+                child++;
+            }
+
+            if (priority <= mPriorities[child]) {
+                break;
+            }
+
+            move(child, slot);
+            slot = child;
+        }
+
+        place(item, priority, slot);
+    }
+
+    private void move(int from, int to) {
+        place(mItems[from], mPriorities[from], to);
+    }
+
+    private void place(int item, int priority, int slot) {
+        mItems[slot] = item;
+        mPriorities[slot] = priority;
+        mSlots[item] = slot;
+    }
+}
@@ -0,0 +1,61 @@
+package wayfarer.gemgame.game.path;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import wayfarer.gemgame.game.HexGrid;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Walkable state of the board cells. Distance fields attached to it are repaired
+ * incrementally whenever a cell gets blocked or freed.
+ */
+public class NavGrid {
+    private final HexGrid mGrid;
+    private final boolean[] mBlocked;
+    private final List<DistanceField> mFields = new ArrayList<>();
+
+    public NavGrid(HexGrid grid) {
+        mGrid = grid;
+        mBlocked = new boolean[grid.size()];
+    }
+
+    public HexGrid getGrid() {
+        return mGrid;
+    }
+
+    public boolean isBlocked(int cell) {
+        return mBlocked[cell];
+    }
+
+    public void setBlocked(int cell, boolean blocked) {
+        if (mBlocked[cell] == blocked) {
+            return;
+        }
+
+        mBlocked[cell] = blocked;
+
+        for (int i = 0; i < mFields.size(); ++i) {
+            if (blocked) {
+                mFields.get(i).onBlocked(cell);
+            } else {
+                mFields.get(i).onFreed(cell);
+            }
+        }
+    }
+
+    /**
+     * Creates a distance field that follows changes of this grid.
+     */
+    public DistanceField createDistanceField() {
+        DistanceField field = new DistanceField(this);
+        mFields.add(field);
+        return field;
+    }
+
+    public void removeDistanceField(DistanceField field) {
+        mFields.remove(field);
+    }
+}
@@ -0,0 +1,80 @@
+package wayfarer.gemgame.game.path;
+
+import wayfarer.gemgame.game.HexGrid;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * A* search over the walkable cells of a {@link NavGrid}. Every step costs 1 and the hex
+ * distance is used as heuristic, so found paths are shortest. Searches allocate nothing,
+ * all scratch memory comes from the {@link SearchContext}.
+ */
+public class PathFinder {
+    private PathFinder() {}
+
+    /**
+     * @param out - receives cells of the path from start to goal, both included.
+     *            Needs room for the whole path, grid size is always enough.
+     * @return number of cells in the path or 0 if the goal can not be reached
+     */
+    public static int findPath(NavGrid nav, int from, int to, SearchContext context, int[] out) {
+        final HexGrid grid = nav.getGrid();
+
+        if (nav.isBlocked(from) || nav.isBlocked(to)) {
+            return 0;
+        }
+
+        context.begin();
+        final int generation = context.generation;
+        final int[] cost = context.cost;
+        final int[] parent = context.parent;
+        final int[] visited = context.visited;
+        final int[] closed = context.closed;
+        final IntMinHeap heap = context.heap;
+
+        cost[from] = 0;
+        parent[from] = -1;
+        visited[from] = generation;
+        heap.offer(from, grid.distance(from, to));
+
+        while (!heap.isEmpty()) {
+            final int cell = heap.poll();
+
+            if (cell == to) {
+                return unwind(parent, to, cost[to] + 1, out);
+            }
+
+            closed[cell] = generation;
+            final int nextCost = cost[cell] + 1;
+
+            for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+                final int n = grid.neighbour(cell, d);
+
+                if (n < 0 || closed[n] == generation || nav.isBlocked(n)) {
+                    continue;
+                }
+
+                if (visited[n] != generation || nextCost < cost[n]) {
+                    visited[n] = generation;
+                    cost[n] = nextCost;
+                    parent[n] = cell;
+                    heap.offer(n, nextCost + grid.distance(n, to));
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    private static int unwind(int[] parent, int to, int length, int[] out) {
+        int cell = to;
+
+        for (int i = length - 1; i >= 0; --i) {
+            out[i] = cell;
+            cell = parent[cell];
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,42 @@
+package wayfarer.gemgame.game.path;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Scratch memory of a path search. Keep one per thread and grid and pass it to every
+ * search, per-cell arrays are invalidated by bumping a generation instead of clearing them.
+ */
+public class SearchContext {
+    final IntMinHeap heap;
+    final int[] cost;
+    final int[] parent;
+    /** Generation in which cost and parent of the cell were written. */
+    final int[] visited;
+    /** Generation in which the cell was expanded. */
+    final int[] closed;
+    int generation = 0;
+
+    public SearchContext(int cells) {
+        heap = new IntMinHeap(cells);
+        cost = new int[cells];
+        parent = new int[cells];
+        visited = new int[cells];
+        closed = new int[cells];
+    }
+
+    void begin() {
+        heap.clear();
+        generation++;
+
+        if (generation == Integer.MAX_VALUE) {
+            // wrapped around, stale stamps could match again
+            for (int i = 0; i < visited.length; ++i) {
+                visited[i] = 0;
+                closed[i] = 0;
+            }
+
+            generation = 1;
+        }
+    }
+}
@@ -1,48 +1,38 @@
 package wayfarer.gemgame.game.util;
 
-import android.content.Context;
-
 import javax.vecmath.Point3d;
 
 import wayfarer.gemgame.game.Hexagon;
+import wayfarer.gemgame.game.HexagonPool;
 
 /**
  * Project GemGame
  * Created by wayfarer on 12/6/15.
  */
 public class HexagonBuilder {
+    private final HexagonPool mPool;
     private Point3d mPoint;
-    private Context mContext;
-    private int mFragmentShaderRes;
-    private int mVertexShaderRes;
-    private int mTextureRes;
-    private String mId;
-    private float mRadius;
+    private int mGem = Hexagon.GEM_EMPTY;
+    private int mFlags;
+    private float mRadius = 1.0f;
     private String mText;
 
-    public HexagonBuilder(String id, Context context) {
-        this.mId = id;
-        this.mContext = context;
+    public HexagonBuilder(HexagonPool pool) {
+        this.mPool = pool;
     }
 
-    public HexagonBuilder(String id,  Context context, Point3d point) {
-        this.mId = id;
+    public HexagonBuilder(HexagonPool pool, Point3d point) {
+        this.mPool = pool;
         this.mPoint = point;
-        this.mContext = context;
-    }
-
-    public HexagonBuilder setFragmentShader(int fragmentShaderRes) {
-        this.mFragmentShaderRes = fragmentShaderRes;
-        return this;
     }
 
-    public HexagonBuilder setVertexShader(int vertexShaderRes) {
-        this.mVertexShaderRes = vertexShaderRes;
+    public HexagonBuilder setGem(int gem) {
+        this.mGem = gem;
         return this;
     }
 
-    public HexagonBuilder setTexture(int textureRes) {
-        this.mTextureRes = textureRes;
+    public HexagonBuilder setFlags(int flags) {
+        this.mFlags = flags;
         return this;
     }
 
@@ -57,9 +47,15 @@ public class HexagonBuilder {
     }
 
     public Hexagon build() {
-        Hexagon result = new Hexagon(mContext, mFragmentShaderRes, mVertexShaderRes, mTextureRes, mId);
-        result.setPoint(mPoint);
+        Hexagon result = mPool.acquire();
+
+        if (mPoint != null) {
+            result.setPoint(mPoint);
+        }
+
         result.setRadius(mRadius);
+        result.setGem(mGem);
+        result.setFlags(mFlags);
         result.setText(mText);
         return result;
     }
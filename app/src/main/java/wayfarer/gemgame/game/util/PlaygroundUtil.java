@@ -1,20 +1,14 @@
 package wayfarer.gemgame.game.util;
 
-import android.content.Context;
-import android.util.Log;
-
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.ExecutorService;
 
+import wayfarer.gemgame.game.HexGrid;
 import wayfarer.gemgame.game.Hexagon;
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.game.LevelGenerator;
 import wayfarer.gemgame.game.Playground;
-import wayfarer.gemgame.game.PlaygroundCell;
-
-import static ch.lambdaj.Lambda.exists;
-import static ch.lambdaj.Lambda.filter;
-import static org.hamcrest.Matchers.equalTo;
-import static org.hamcrest.Matchers.isIn;
-import static org.hamcrest.Matchers.not;
+import wayfarer.gemgame.game.pack.Level;
+import wayfarer.gemgame.util.TraceLog;
 
 /**
  * Project GemGame
@@ -22,12 +16,31 @@ import static org.hamcrest.Matchers.not;
  */
 public class PlaygroundUtil {
     private static final String TAG = "MainActivity";
+    private static final int TRACE_HEX = TraceLog.define(TAG, TraceLog.VERBOSE, "Hexagon_hex%d: (%f, %f, %f)");
+
+    /** Hexagon grids by radius, immutable and shared by every board of that size. */
+    private static HexGrid[] sGrids = new HexGrid[0];
 
     private PlaygroundUtil() {}
 
+    private static synchronized HexGrid hexagon(int radius) {
+        if (radius >= sGrids.length) {
+            final HexGrid[] grids = new HexGrid[Math.max(radius + 1, 2 * sGrids.length)];
+            System.arraycopy(sGrids, 0, grids, 0, sGrids.length);
+            sGrids = grids;
+        }
+
+        if (sGrids[radius] == null) {
+            sGrids[radius] = HexGrid.hexagon(radius);
+        }
+
+        return sGrids[radius];
+    }
+
     /**
      * Builds Playground object.
      *
+     * @param pool - storage for the hexes, recycled for the new board. May be null if only the grid is needed.
      * @param x - X of the playground center
      * @param y - Y of the playground center
      * @param z - Z of the playground center
@@ -35,120 +48,101 @@ public class PlaygroundUtil {
      *            R = 0 - circle with 1 hex
      *            R = 1 - circle with 6 hexes around 1 hex
      * @param delta - space between hexes
-     * @return Playground object that contains Hex Meshes and Playground Grid
+     * @return Playground object that contains Hexes and Playground Grid
      */
-    public static Playground calculateHexCircle(Context c, float x, float y, float z, int radius, float delta) {
-        Playground result = new Playground();
+    public static Playground calculateHexCircle(HexagonPool pool, float x, float y, float z, int radius, float delta) {
+        return calculateHexCircle(new Playground(), pool, x, y, z, radius, delta);
+    }
+
+    /**
+     * Builds the board into a playground of an earlier board. With a grid of a radius seen
+     * before and a pool big enough, a new level allocates nothing.
+     */
+    public static Playground calculateHexCircle(Playground result, HexagonPool pool, float x, float y, float z,
+                                                int radius, float delta) {
         final float HEX_SIZE = 1.0f;
         float h = HEX_SIZE * MathUtil.sin(60);
-        CoordList coordList = new CoordList();
 
         if (radius == 0) delta = 0;
-        // result coord array
-        coordList.placing.add(new Point3D(x, y, z));
-        coordList.grid.add(new Point3D(0, 0, 0));
-        // temporary coord array. always recalculated
-        CoordList circle = new CoordList();
-        circle.placing.add(new Point3D(x, y, z));
-        circle.grid.add(new Point3D(0, 0, 0));
-
-        for (int i = 1; i <= radius; i++) {
-            circle = buildHexCircle(circle, h, delta);
-            List<Point3D> tmp = filter(not(isIn(coordList.placing)), circle.placing);
-            coordList.placing.addAll(tmp);
-            tmp = filter(not(isIn(coordList.grid)), circle.grid);
-            coordList.grid.addAll(tmp);
+        // Distance between centers of neighbouring hexes. Moving along cube x goes up-right
+        // (30 degrees), moving along cube y goes straight up.
+        final float step = 2 * h + delta;
+        final float stepXx = step * MathUtil.cos(30);
+        final float stepXy = step * MathUtil.sin(30);
+        // center first, then ring by ring
+        final HexGrid grid = hexagon(radius);
+        result.reset(grid);
+
+        if (pool != null) {
+            pool.reset();
         }
 
-        if (c != null) {
-            for (int i = 0; i < coordList.grid.size(); ++i) {
-                Point3D e = coordList.grid.get(i);
-                Point3D placingPoint3d = coordList.placing.get(i);
-                HexagonBuilder hb = new HexagonBuilder("hex" + i, c, placingPoint3d);
-                hb.setRadius(HEX_SIZE).setTexture(wayfarer.gemgame.R.drawable.opaque_hex_800);
-                hb.setFragmentShader(wayfarer.gemgame.R.raw.per_pixel_fragment_shader);
-                hb.setVertexShader(wayfarer.gemgame.R.raw.per_pixel_vertex_shader);
-                Hexagon hex = hb.build();
-                Log.d(TAG, "Hexagon_" + hex.getId() + ": " + hex.getPoint());
+        for (int i = 0; i < grid.size(); ++i) {
+            final int gx = grid.getX(i);
+            final int gy = grid.getY(i);
+
+            if (pool != null) {
+                final float hx = x + gx * stepXx;
+                final float hy = y + gx * stepXy + gy * step;
+                Hexagon hex = pool.acquire();
+                hex.setPosition(hx, hy, z);
+                hex.setRadius(HEX_SIZE);
+                TraceLog.log(TRACE_HEX, hex.getIndex(), TraceLog.bits(hx), TraceLog.bits(hy), TraceLog.bits(z));
                 result.getHexes().add(hex);
-                result.getCells().add(new PlaygroundCell("hex" + i, (int) e.x, (int) e.y, (int) e.z));
             }
         }
 
         return result;
     }
 
-    private static CoordList buildHexCircle(CoordList coordList, float h, float delta) {
-        CoordList result = new CoordList();
-
-        for (int i = 0; i < coordList.placing.size(); ++i) {
-            Point3D n = coordList.placing.get(i);
-            Point3D gridPoint = coordList.grid.get(i);
-            // get points for hexes around current point
-            if (n != null) {
-                double z = n.z;
-                // up
-                double x = n.x;
-                double y = n.y + 2 * h + delta;
-                Point3D p = new Point3D(x, y, z);
-
-                if (!exists(result.placing, equalTo(p))) {
-                    result.placing.add(p);
-                    result.grid.add(new Point3D(gridPoint.x, gridPoint.y + 1, gridPoint.z - 1));
-                }
-                // + 60 grad
-                x = n.x + (2 * h + delta) * MathUtil.cos(30);
-                y = n.y + (2 * h + delta) * MathUtil.sin(30);
-                p = new Point3D(x, y, z);
-
-                if (!exists(result.placing, equalTo(p))) {
-                    result.placing.add(p);
-                    result.grid.add(new Point3D(gridPoint.x + 1, gridPoint.y, gridPoint.z - 1));
-                }
-                // + 60 grad
-                x = n.x + (2 * h + delta) * MathUtil.cos(30);
-                y = n.y - (2 * h + delta) * MathUtil.sin(30);
-                p = new Point3D(x, y, z);
-
-                if (!exists(result.placing, equalTo(p))) {
-                    result.placing.add(p);
-                    result.grid.add(new Point3D(gridPoint.x + 1, gridPoint.y - 1, gridPoint.z));
-                }
-                // down
-                x = n.x;
-                y = n.y - (2 * h + delta);
-                p = new Point3D(x, y, z);
-
-                if (!exists(result.placing, equalTo(p))) {
-                    result.placing.add(p);
-                    result.grid.add(new Point3D(gridPoint.x, gridPoint.y - 1, gridPoint.z + 1));
-                }
-                // + 60 grad
-                x = n.x - (2 * h + delta) * MathUtil.cos(30);
-                y = n.y - (2 * h + delta) * MathUtil.sin(30);
-                p = new Point3D(x, y, z);
-
-                if (!exists(result.placing, equalTo(p))) {
-                    result.placing.add(p);
-                    result.grid.add(new Point3D(gridPoint.x - 1, gridPoint.y, gridPoint.z + 1));
-                }
-                // + 60 grad
-                x = n.x - (2 * h + delta) * MathUtil.cos(30);
-                y = n.y + (2 * h + delta) * MathUtil.sin(30);
-                p = new Point3D(x, y, z);
-
-                if (!exists(result.placing, equalTo(p))) {
-                    result.placing.add(p);
-                    result.grid.add(new Point3D(gridPoint.x - 1, gridPoint.y + 1, gridPoint.z));
-                }
-            }
+    /**
+     * Gives every hex of a board built by {@link #calculateHexCircle} a gem, without matches
+     * and with at least one move. The same seed always gives the same board.
+     *
+     * @param executor - fills the board in parallel, null for the calling thread
+     * @return false if the board is too small for that
+     */
+    public static boolean generateGems(Playground playground, long seed, ExecutorService executor)
+            throws InterruptedException {
+        final HexGrid grid = playground.getGrid();
+        final LevelGenerator generator = new LevelGenerator(grid,
+                new int[]{Hexagon.GEM_BLUE, Hexagon.GEM_RED, Hexagon.GEM_WHITE});
+        final int[] board = new int[grid.size()];
+        final boolean playable = generator.generate(seed, board, executor);
+
+        // hexes are acquired in grid order
+        for (int i = 0; i < playground.getHexes().size(); ++i) {
+            playground.getHexes().get(i).setGem(board[i]);
         }
 
-        return result;
+        return playable;
+    }
+
+    /**
+     * Builds the board of a level from a level pack, centered at (x, y, z).
+     */
+    public static Playground buildLevel(HexagonPool pool, float x, float y, float z, Level level) {
+        return buildLevel(new Playground(), pool, x, y, z, level);
     }
 
-    private static class CoordList {
-        public List<Point3D> placing = new LinkedList<>();
-        public List<Point3D> grid = new LinkedList<>();
+    /**
+     * Builds the board of a level into a playground of an earlier board.
+     */
+    public static Playground buildLevel(Playground playground, HexagonPool pool, float x, float y, float z,
+                                        Level level) {
+        calculateHexCircle(playground, pool, x, y, z, level.getRadius(), level.getDelta());
+        final int cells = playground.getHexes().size();
+
+        if (level.getCellCount() != cells) {
+            throw new IllegalArgumentException("Level has " + level.getCellCount() + " gems for "
+                    + cells + " cells");
+        }
+
+        // hexes are acquired in grid order, the same order the level stores its gems in
+        for (int i = 0; i < cells; ++i) {
+            playground.getHexes().get(i).setGem(level.getGem(i));
+        }
+
+        return playground;
     }
 }
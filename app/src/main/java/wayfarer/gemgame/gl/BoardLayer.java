@@ -0,0 +1,484 @@
+package wayfarer.gemgame.gl;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import java.util.Arrays;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.game.BoardChanges;
+import wayfarer.gemgame.game.Hexagon;
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.mesh.HexagonBatch;
+import wayfarer.gemgame.mesh.Mesh;
+import wayfarer.gemgame.util.MatrixHelper;
+import wayfarer.gemgame.util.MemoryLedger;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * The static part of the full detail board, cached in a texture that covers the visible part
+ * of the board plane plus a margin at screen resolution. A steady frame costs one quad for the
+ * layer plus one per hex flagged {@link Hexagon#FLAG_ANIMATED}, which are drawn on top.
+ *
+ * Cells that move, change gem or start or stop animating are taken from the {@link BoardChanges}
+ * of every frame and mark the texture tiles under their old and new area. Dirty tiles are
+ * merged into a few rectangles that are redrawn one by one, so changes at opposite ends of
+ * the board don't redraw everything between them. Panning past the margin or zooming by more
+ * than the tolerance rebuilds the whole layer.
+ *
+ * GL thread only.
+ */
+public class BoardLayer extends Mesh {
+    /** Extra board around the visible part on every side, relative to the visible size. */
+    private static final float MARGIN = 0.2f;
+
+    /** Relative zoom change the baked resolution is still good for. */
+    private static final float ZOOM_TOLERANCE = 0.25f;
+
+    private static final int MAX_TEXTURE_SIZE = 2048;
+
+    /** Edge of a dirty tile in texels, a 2048 texel layer has 128 x 128 of them. */
+    private static final int TILE_SIZE = 16;
+
+    /** Rectangles redrawn per bake, the tiles left after the last one are redrawn as one. */
+    private static final int MAX_REGIONS = 8;
+
+    /** Fields that show in the layer, labels are drawn separately. */
+    private static final int VISIBLE_FIELDS = BoardChanges.POSITION | BoardChanges.RADIUS | BoardChanges.GEM
+            | BoardChanges.FLAGS;
+
+    private final HexagonBatch mBoard;
+
+    /** Board plane rectangle covered by the texture. */
+    private float mMinX;
+    private float mMinY;
+    private float mMaxX;
+    private float mMaxY;
+    private float mPixelsPerUnit;
+    /** Resolution the camera asked for at the last rebuild, the texture may be capped below it. */
+    private float mRequestedPixelsPerUnit;
+    private int mTextureWidth = 0;
+    private int mTextureHeight = 0;
+
+    private int mFramebufferHandle;
+    private int mRenderTextureHandle;
+    private boolean mValid = false;
+
+    /** Board as baked, per slot. */
+    private float[] mBakedX = new float[0];
+    private float[] mBakedY = new float[0];
+    private float[] mBakedRadius = new float[0];
+    private int[] mBakedGem = new int[0];
+    private boolean[] mBakedStatic = new boolean[0];
+    private int mBakedCount = 0;
+
+    /** Tiles to redraw, row by row from the top edge of the layer. */
+    private int mTileColumns = 0;
+    private int mTileRows = 0;
+    private boolean[] mDirtyTiles = new boolean[0];
+    private int mDirtyTileCount = 0;
+
+    private int[] mHexes = new int[16];
+    private int[] mAnimated = new int[16];
+    /** Index of every slot in mAnimated, -1 if it is static. */
+    private int[] mAnimatedIndex = new int[16];
+    private int mAnimatedCount = 0;
+
+    private final float[] mBakeViewMatrix = new float[16];
+    private final float[] mBakeProjectionMatrix = new float[16];
+
+    public BoardLayer(Context context, HexagonBatch board) {
+        super(context, R.raw.per_pixel_fragment_shader, R.raw.per_pixel_vertex_shader, 0);
+        mBoard = board;
+    }
+
+    /**
+     * Allocates the render target instead of loading a texture resource.
+     */
+    @Override
+    protected int loadTexture(int res) {
+        final int[] handle = new int[1];
+
+        Gl.glGenTextures(1, handle, 0);
+        mRenderTextureHandle = handle[0];
+        Gl.glBindTexture(GLES20.GL_TEXTURE_2D, mRenderTextureHandle);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+        Gl.glGenFramebuffers(1, handle, 0);
+        mFramebufferHandle = handle[0];
+
+        // storage comes with the first rebuild
+        mTextureWidth = 0;
+        mTextureHeight = 0;
+        mValid = false;
+        return mRenderTextureHandle;
+    }
+
+    private void allocate(int width, int height) {
+        Gl.glBindTexture(GLES20.GL_TEXTURE_2D, mRenderTextureHandle);
+        Gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+        MemoryLedger.resize(MemoryLedger.TEXTURE, 4L * mTextureWidth * mTextureHeight, 4L * width * height);
+        Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferHandle);
+        Gl.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, mRenderTextureHandle, 0);
+        final int status = Gl.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+
+        if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+            throw new RuntimeException("Error creating board layer framebuffer: " + status);
+        }
+
+        mTextureWidth = width;
+        mTextureHeight = height;
+        mTileColumns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        mTileRows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        mDirtyTiles = new boolean[mTileColumns * mTileRows];
+        mDirtyTileCount = 0;
+    }
+
+    /**
+     * Brings the layer up to date for the camera, rebaking what is stale. Leaves the surface
+     * bound with a texture sized viewport, so the caller has to restore its target afterwards.
+     *
+     * @return true if anything was baked
+     */
+    public boolean update(float cameraX, float cameraY, float distance, int viewportWidth, int viewportHeight) {
+        restore();
+
+        // frustum half height is 1 at the near plane 1 unit away, see GemGameGLRenderer
+        final float halfHeight = distance;
+        final float halfWidth = distance * viewportWidth / viewportHeight;
+        final float pixelsPerUnit = viewportHeight / (2 * distance);
+
+        if (!mValid || cameraX - halfWidth < mMinX || cameraX + halfWidth > mMaxX || cameraY - halfHeight < mMinY
+                || cameraY + halfHeight > mMaxY || Math.abs(pixelsPerUnit / mRequestedPixelsPerUnit - 1) > ZOOM_TOLERANCE) {
+            rebuild(cameraX, cameraY, halfWidth * (1 + 2 * MARGIN), halfHeight * (1 + 2 * MARGIN), pixelsPerUnit);
+        }
+
+        if (mDirtyTileCount == 0) {
+            return false;
+        }
+
+        bake();
+        return true;
+    }
+
+    private void rebuild(float centerX, float centerY, float halfWidth, float halfHeight, float requested) {
+        // the texture is capped, far out zooms and tall surfaces get a blurrier layer
+        final float pixelsPerUnit = Math.min(requested, MAX_TEXTURE_SIZE / (2 * Math.max(halfWidth, halfHeight)));
+        final int width = Math.max(1, (int) Math.ceil(2 * halfWidth * pixelsPerUnit));
+        final int height = Math.max(1, (int) Math.ceil(2 * halfHeight * pixelsPerUnit));
+
+        if (width != mTextureWidth || height != mTextureHeight) {
+            allocate(width, height);
+        }
+
+        mMinX = centerX - halfWidth;
+        mMaxX = centerX + halfWidth;
+        mMinY = centerY - halfHeight;
+        mMaxY = centerY + halfHeight;
+        mPixelsPerUnit = pixelsPerUnit;
+        mRequestedPixelsPerUnit = requested;
+        mValid = true;
+
+        // the layer quad spans exactly the covered rectangle
+        setPosition(centerX, centerY, 0.0f);
+        setScaling(halfWidth, halfHeight, 1.0f);
+
+        snapshot();
+        markAll();
+    }
+
+    /**
+     * Remembers the board as it is about to be baked and collects the animated hexes.
+     */
+    private void snapshot() {
+        final HexagonPool pool = mBoard.getPool();
+        final int size = pool.size();
+
+        if (mBakedX.length < size) {
+            mBakedX = new float[size];
+            mBakedY = new float[size];
+            mBakedRadius = new float[size];
+            mBakedGem = new int[size];
+            mBakedStatic = new boolean[size];
+            mAnimated = new int[size];
+            mAnimatedIndex = new int[size];
+        }
+
+        mAnimatedCount = 0;
+
+        for (int i = 0; i < size; ++i) {
+            mBakedStatic[i] = true;
+            mAnimatedIndex[i] = -1;
+            remember(pool, i);
+        }
+
+        mBakedCount = size;
+    }
+
+    /**
+     * Stores the hex as it is about to be baked and keeps the animated list up to date.
+     */
+    private void remember(HexagonPool pool, int i) {
+        mBakedX[i] = pool.getX(i);
+        mBakedY[i] = pool.getY(i);
+        mBakedRadius[i] = pool.getRadius(i);
+        mBakedGem[i] = pool.getGem(i);
+        final boolean isStatic = (pool.getFlags(i) & Hexagon.FLAG_ANIMATED) == 0;
+
+        if (isStatic == mBakedStatic[i]) {
+            return;
+        }
+
+        mBakedStatic[i] = isStatic;
+
+        if (!isStatic) {
+            mAnimatedIndex[i] = mAnimatedCount;
+            mAnimated[mAnimatedCount++] = i;
+        } else {
+            // the last one takes the place of the removed one
+            final int index = mAnimatedIndex[i];
+            final int last = mAnimated[--mAnimatedCount];
+            mAnimated[index] = last;
+            mAnimatedIndex[last] = index;
+            mAnimatedIndex[i] = -1;
+        }
+    }
+
+    /**
+     * Marks the old and new area of every static cell changed by the batch. Call every frame
+     * the layer exists, whether it is drawn or not. No GL calls.
+     */
+    public void apply(BoardChanges.Batch changes) {
+        if (!mValid) {
+            // the next update rebuilds everything anyway
+            return;
+        }
+
+        final HexagonPool pool = mBoard.getPool();
+
+        if (pool.size() != mBakedCount) {
+            // slots were added or recycled, everything may have moved
+            snapshot();
+            markAll();
+            return;
+        }
+
+        for (int n = 0; n < changes.size(); ++n) {
+            final int i = changes.getIndex(n);
+
+            if (i >= mBakedCount || (changes.getFields(n) & VISIBLE_FIELDS) == 0) {
+                continue;
+            }
+
+            final boolean isStatic = (pool.getFlags(i) & Hexagon.FLAG_ANIMATED) == 0;
+
+            // animated hexes are drawn live, only starting or stopping shows in the layer
+            if (isStatic || mBakedStatic[i]) {
+                markHex(mBakedX[i], mBakedY[i], mBakedRadius[i]);
+                markHex(pool.getX(i), pool.getY(i), pool.getRadius(i));
+            }
+
+            remember(pool, i);
+        }
+    }
+
+    private void markAll() {
+        Arrays.fill(mDirtyTiles, true);
+        mDirtyTileCount = mDirtyTiles.length;
+    }
+
+    /**
+     * Marks the tiles under the bounds of a hex, rows counted from the top edge of the layer.
+     */
+    private void markHex(float x, float y, float radius) {
+        // a texel of slack for filtering at the hex edge
+        final int x0 = Math.max(0, (int) Math.floor((x - radius - mMinX) * mPixelsPerUnit) - 1);
+        final int x1 = Math.min(mTextureWidth, (int) Math.ceil((x + radius - mMinX) * mPixelsPerUnit) + 1);
+        final int y0 = Math.max(0, (int) Math.floor((mMaxY - y - radius) * mPixelsPerUnit) - 1);
+        final int y1 = Math.min(mTextureHeight, (int) Math.ceil((mMaxY - y + radius) * mPixelsPerUnit) + 1);
+
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+
+        for (int row = y0 / TILE_SIZE; row <= (y1 - 1) / TILE_SIZE; ++row) {
+            for (int column = x0 / TILE_SIZE; column <= (x1 - 1) / TILE_SIZE; ++column) {
+                final int tile = row * mTileColumns + column;
+
+                if (!mDirtyTiles[tile]) {
+                    mDirtyTiles[tile] = true;
+                    mDirtyTileCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Redraws the dirty tiles, grouped into rectangles: each grows right along its first row,
+     * then down as long as the whole span below is dirty.
+     */
+    private void bake() {
+        Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferHandle);
+        Gl.glViewport(0, 0, mTextureWidth, mTextureHeight);
+        Gl.glEnable(GLES20.GL_SCISSOR_TEST);
+
+        // Render target rows go bottom-up while the quad texture coordinates are laid out
+        // for bitmaps, so the projection is flipped vertically. That also flips the winding.
+        Gl.glDisable(GLES20.GL_CULL_FACE);
+        MatrixHelper.setIdentityM(mBakeViewMatrix, 0);
+        MatrixHelper.orthoM(mBakeProjectionMatrix, 0, mMinX, mMaxX, mMaxY, mMinY, -10.0f, 10.0f);
+
+        int regions = 0;
+
+        for (int tile = 0; tile < mDirtyTiles.length && mDirtyTileCount > 0; ++tile) {
+            if (!mDirtyTiles[tile]) {
+                continue;
+            }
+
+            final int row = tile / mTileColumns;
+            final int column = tile % mTileColumns;
+            int right = column + 1;
+            int bottom = row + 1;
+
+            if (++regions == MAX_REGIONS) {
+                // everything left in one go, the last dirty tile closes it
+                int left = column;
+
+                for (int t = tile; t < mDirtyTiles.length; ++t) {
+                    if (mDirtyTiles[t]) {
+                        left = Math.min(left, t % mTileColumns);
+                        right = Math.max(right, t % mTileColumns + 1);
+                        bottom = t / mTileColumns + 1;
+                    }
+                }
+
+                clearTiles(left, row, right, bottom);
+                bakeRegion(left * TILE_SIZE, row * TILE_SIZE, right * TILE_SIZE, bottom * TILE_SIZE);
+                break;
+            }
+
+            while (right < mTileColumns && mDirtyTiles[row * mTileColumns + right]) {
+                right++;
+            }
+
+            while (bottom < mTileRows && isDirtySpan(bottom, column, right)) {
+                bottom++;
+            }
+
+            clearTiles(column, row, right, bottom);
+            bakeRegion(column * TILE_SIZE, row * TILE_SIZE, right * TILE_SIZE, bottom * TILE_SIZE);
+        }
+
+        Gl.glEnable(GLES20.GL_CULL_FACE);
+        Gl.glDisable(GLES20.GL_SCISSOR_TEST);
+        Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+    }
+
+    private boolean isDirtySpan(int row, int left, int right) {
+        for (int column = left; column < right; ++column) {
+            if (!mDirtyTiles[row * mTileColumns + column]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void clearTiles(int left, int top, int right, int bottom) {
+        for (int row = top; row < bottom; ++row) {
+            for (int column = left; column < right; ++column) {
+                final int tile = row * mTileColumns + column;
+
+                if (mDirtyTiles[tile]) {
+                    mDirtyTiles[tile] = false;
+                    mDirtyTileCount--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears a texel rectangle, rows counted from the top edge of the layer, and redraws the
+     * static hexes touching it. Expects the layer bound with the bake matrices set.
+     */
+    private void bakeRegion(int x0, int y0, int x1, int y1) {
+        x1 = Math.min(x1, mTextureWidth);
+        y1 = Math.min(y1, mTextureHeight);
+        final float minX = mMinX + x0 / mPixelsPerUnit;
+        final float maxX = mMinX + x1 / mPixelsPerUnit;
+        final float minY = mMaxY - y1 / mPixelsPerUnit;
+        final float maxY = mMaxY - y0 / mPixelsPerUnit;
+        int count = 0;
+
+        for (int i = 0; i < mBakedCount; ++i) {
+            final float r = mBakedRadius[i];
+
+            if (mBakedStatic[i] && mBakedX[i] + r >= minX && mBakedX[i] - r <= maxX && mBakedY[i] + r >= minY
+                    && mBakedY[i] - r <= maxY) {
+                if (count == mHexes.length) {
+                    final int[] hexes = new int[count * 2];
+                    System.arraycopy(mHexes, 0, hexes, 0, count);
+                    mHexes = hexes;
+                }
+
+                mHexes[count++] = i;
+            }
+        }
+
+        Gl.glScissor(x0, y0, x1 - x0, y1 - y0);
+        Gl.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        if (count > 0) {
+            mBoard.draw(mBakeViewMatrix, mBakeProjectionMatrix, mHexes, count);
+        }
+    }
+
+    /**
+     * Draws the layer and the animated hexes over it.
+     */
+    @Override
+    public void draw(float[] viewMatrix, float[] projectionMatrix) {
+        super.draw(viewMatrix, projectionMatrix);
+
+        if (mAnimatedCount > 0) {
+            mBoard.draw(viewMatrix, projectionMatrix, mAnimated, mAnimatedCount);
+        }
+    }
+
+    /**
+     * Frees the render target and the quad. GL thread only, the target of a lost context is
+     * just forgotten.
+     */
+    @Override
+    public void release() {
+        if (isInitialized() && mTextureWidth != 0) {
+            Gl.glDeleteFramebuffers(1, new int[]{mFramebufferHandle}, 0);
+            Gl.glDeleteTextures(1, new int[]{mRenderTextureHandle}, 0);
+            MemoryLedger.resize(MemoryLedger.TEXTURE, 4L * mTextureWidth * mTextureHeight, 0);
+        }
+
+        mTextureWidth = 0;
+        mTextureHeight = 0;
+        mValid = false;
+        super.release();
+    }
+
+    public int getAnimatedCount() {
+        return mAnimatedCount;
+    }
+
+    public int getTextureWidth() {
+        return mTextureWidth;
+    }
+
+    public int getTextureHeight() {
+        return mTextureHeight;
+    }
+}
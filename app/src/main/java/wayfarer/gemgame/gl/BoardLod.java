@@ -0,0 +1,451 @@
+package wayfarer.gemgame.gl;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import wayfarer.gemgame.game.BoardChanges;
+import wayfarer.gemgame.game.Hexagon;
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.mesh.BoardBuffer;
+import wayfarer.gemgame.mesh.HexagonBatch;
+import wayfarer.gemgame.util.MemoryLedger;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Level-of-detail switch for the board. Close to the board every hex is drawn in full,
+ * further away hexes are grouped into square chunks that are drawn as baked impostors.
+ * Chunk size doubles together with the switch distance, so the amount of quads and
+ * their on-screen size stays roughly the same whatever the zoom.
+ *
+ * Board changes mark only the chunks of the changed hexes unbaked, the chunk grid of a level
+ * is kept until hexes are added, recycled or moved into another chunk. Hexes flagged
+ * {@link Hexagon#FLAG_ANIMATED} are left out of the chunks and drawn on top, so tween frames
+ * don't touch the impostors.
+ */
+public class BoardLod {
+    /** Relative width of the band around a switch distance where the level is kept. */
+    private static final float HYSTERESIS = 0.15f;
+
+    /** How many impostors may be baked per frame, the rest is drawn at full detail meanwhile. */
+    private static final int BAKES_PER_FRAME = 4;
+
+    /** Fields that show in a baked chunk, labels are not drawn at impostor levels. */
+    private static final int VISIBLE_FIELDS = BoardChanges.POSITION | BoardChanges.RADIUS | BoardChanges.GEM;
+    private static final int MOVING_FIELDS = BoardChanges.POSITION | BoardChanges.RADIUS;
+
+    private static class Level {
+        /** Camera distance from which this level is used. */
+        final float distance;
+        /** Chunk edge in world units. 0 means no impostors. */
+        final float chunkSize;
+        /** Impostor texture edge in pixels. */
+        final int textureSize;
+
+        Level(float distance, float chunkSize, int textureSize) {
+            this.distance = distance;
+            this.chunkSize = chunkSize;
+            this.textureSize = textureSize;
+        }
+    }
+
+    /**
+     * Impostors of one level, kept for as long as no hex is added, recycled or moved into
+     * another chunk. Other changes only mark the chunk of the hex unbaked.
+     */
+    private static class Grid {
+        final List<ChunkImpostor> chunks = new ArrayList<>();
+        /** Chunk of every slot, index into chunks. */
+        final int[] chunkOf;
+        /** Chunk at every grid cell, index into chunks, -1 where the board has no hex. */
+        final int[] cells;
+        /** Chunk coordinates of the first grid cell and grid width. */
+        final int left;
+        final int bottom;
+        final int columns;
+        final int rows;
+
+        Grid(int slots, int left, int bottom, int columns, int rows) {
+            chunkOf = new int[slots];
+            cells = new int[columns * rows];
+            Arrays.fill(cells, -1);
+            this.left = left;
+            this.bottom = bottom;
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        /**
+         * @return chunk covering the given chunk coordinates, -1 if there is none
+         */
+        int at(int cx, int cy) {
+            final int column = cx - left;
+            final int row = cy - bottom;
+            return column < 0 || row < 0 || column >= columns || row >= rows ? -1 : cells[row * columns + column];
+        }
+    }
+
+    private final Level[] mLevels = {
+            new Level(0.0f, 0.0f, 0),
+            new Level(25.0f, 8.0f, 256),
+            new Level(50.0f, 16.0f, 256)
+    };
+
+    private final Context mContext;
+    private final HexagonBatch mBoard;
+    private final BoardBuffer mBuffer;
+    private final FramePreparer mPreparer;
+    private final Grid[] mGrids = new Grid[mLevels.length];
+    private final List<ChunkImpostor> mDiscarded = new ArrayList<>();
+    private int mLevel = 0;
+
+    /** Hexes flagged {@link Hexagon#FLAG_ANIMATED}, drawn over the impostors every frame. */
+    private int[] mAnimated = new int[0];
+    /** Index of every slot in mAnimated, -1 if it is static. */
+    private int[] mAnimatedIndex = new int[0];
+    private int mAnimatedCount = 0;
+    private int mSlots = 0;
+    private int mFramebufferHandle = 0;
+    private float mCameraX;
+    private float mCameraY;
+    private float mDistance;
+
+    /** Static board cache for full detail, null while layer caching is off. */
+    private BoardLayer mLayer;
+    private boolean mLayerCaching = false;
+    private int mViewportWidth;
+    private int mViewportHeight;
+
+    public BoardLod(Context context, HexagonBatch board) {
+        mContext = context;
+        mBoard = board;
+        mBuffer = new BoardBuffer(context, board);
+        mPreparer = new FramePreparer(mBuffer);
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * Where the frame is drawn, restored after every impostor bake.
+     *
+     * @param framebufferHandle - 0 for the surface
+     */
+    public void setTarget(int framebufferHandle, int width, int height) {
+        mFramebufferHandle = framebufferHandle;
+        mViewportWidth = width;
+        mViewportHeight = height;
+    }
+
+    /**
+     * Picks the level for the given camera distance. A level is left only when the
+     * distance moves past its bounds by more than the hysteresis band, so hovering
+     * around a switch distance does not flip between levels every frame.
+     *
+     * @param x        - camera position over the board
+     * @param y        - camera position over the board
+     * @param distance - camera distance to the board plane
+     */
+    public int update(float x, float y, float distance) {
+        mCameraX = x;
+        mCameraY = y;
+        mDistance = distance;
+
+        while (mLevel + 1 < mLevels.length && distance > mLevels[mLevel + 1].distance * (1 + HYSTERESIS)) {
+            mLevel++;
+        }
+
+        while (mLevel > 0 && distance < mLevels[mLevel].distance * (1 - HYSTERESIS)) {
+            mLevel--;
+        }
+
+        return mLevel;
+    }
+
+    /**
+     * Switches between drawing the full detail board hex by hex and drawing its static part
+     * from a cached {@link BoardLayer}. GL thread only.
+     */
+    public void setLayerCaching(boolean enabled) {
+        if (!enabled && mLayer != null) {
+            mLayer.release();
+            mLayer = null;
+        }
+
+        mLayerCaching = enabled;
+    }
+
+    public BoardLayer getLayer() {
+        return mLayer;
+    }
+
+    /**
+     * Drops all impostors, they get rebuilt and rebaked on demand. Board changes are picked up
+     * by {@link #apply}, this is for when something else than the board makes them stale.
+     */
+    public void invalidate() {
+        for (int i = 0; i < mGrids.length; ++i) {
+            discard(i);
+        }
+    }
+
+    private void discard(int level) {
+        if (mGrids[level] != null) {
+            mDiscarded.addAll(mGrids[level].chunks);
+            mGrids[level] = null;
+        }
+    }
+
+    /**
+     * GL context is gone together with all impostor textures. Impostors and layer are dropped,
+     * only their quads are left to take off the ledger.
+     */
+    public void onContextLost() {
+        invalidate();
+        releaseDiscarded();
+
+        if (mLayer != null) {
+            mLayer.release();
+            mLayer = new BoardLayer(mContext, mBoard);
+        }
+    }
+
+    /**
+     * Takes the board changes of the frame. Call every frame whatever the level, the full
+     * detail buffer keeps them until it is drawn again. Their layout starts on the workers
+     * and is waited for in {@link #draw}, so call this before the other passes of the frame.
+     */
+    public void apply(BoardChanges.Batch changes) {
+        mPreparer.await();
+        mBuffer.apply(changes);
+        mPreparer.prepare();
+
+        if (mLayer != null) {
+            mLayer.apply(changes);
+        }
+
+        final HexagonPool pool = mBoard.getPool();
+
+        if (pool.size() != mSlots) {
+            // slots were added or recycled, the chunks are built again when they are drawn
+            invalidate();
+            findAnimated();
+            return;
+        }
+
+        for (int n = 0; n < changes.size(); ++n) {
+            final int slot = changes.getIndex(n);
+            final int fields = changes.getFields(n);
+
+            if (slot >= mSlots) {
+                continue;
+            }
+
+            final boolean animated = (pool.getFlags(slot) & Hexagon.FLAG_ANIMATED) != 0;
+
+            if (animated != mAnimatedIndex[slot] >= 0) {
+                // the hex moves into or out of the baked textures
+                setAnimated(slot, animated);
+                invalidateChunks(slot, true);
+            } else if (!animated && (fields & VISIBLE_FIELDS) != 0) {
+                invalidateChunks(slot, (fields & MOVING_FIELDS) != 0);
+            }
+        }
+    }
+
+    /**
+     * Marks the chunk of the slot unbaked at every level that has impostors.
+     *
+     * @param moved - the hex may have left its chunk
+     */
+    private void invalidateChunks(int slot, boolean moved) {
+        final HexagonPool pool = mBoard.getPool();
+
+        for (int level = 0; level < mGrids.length; ++level) {
+            final Grid grid = mGrids[level];
+
+            if (grid == null) {
+                continue;
+            }
+
+            final int index = grid.chunkOf[slot];
+            final ChunkImpostor chunk = grid.chunks.get(index);
+
+            if (moved) {
+                final float size = mLevels[level].chunkSize;
+
+                if (grid.at(chunkCoordinate(pool.getX(slot), size), chunkCoordinate(pool.getY(slot), size)) != index) {
+                    // rare, tweens flag what they move as animated
+                    discard(level);
+                    continue;
+                }
+
+                chunk.cover(slot);
+            }
+
+            chunk.invalidate();
+        }
+    }
+
+    private void setAnimated(int slot, boolean animated) {
+        if (animated) {
+            mAnimatedIndex[slot] = mAnimatedCount;
+            mAnimated[mAnimatedCount++] = slot;
+        } else {
+            // the last one takes the place of the removed one
+            final int index = mAnimatedIndex[slot];
+            final int last = mAnimated[--mAnimatedCount];
+            mAnimated[index] = last;
+            mAnimatedIndex[last] = index;
+            mAnimatedIndex[slot] = -1;
+        }
+    }
+
+    /**
+     * Collects the animated hexes from scratch, after slots were added or recycled.
+     */
+    private void findAnimated() {
+        final HexagonPool pool = mBoard.getPool();
+        mSlots = pool.size();
+
+        if (mAnimatedIndex.length < mSlots) {
+            mAnimated = new int[mSlots];
+            mAnimatedIndex = new int[mSlots];
+        }
+
+        mAnimatedCount = 0;
+
+        for (int i = 0; i < mSlots; ++i) {
+            mAnimatedIndex[i] = -1;
+
+            if ((pool.getFlags(i) & Hexagon.FLAG_ANIMATED) != 0) {
+                setAnimated(i, true);
+            }
+        }
+    }
+
+    public BoardBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * Draws the board.
+     */
+    public void draw(float[] viewMatrix, float[] projectionMatrix) {
+        releaseDiscarded();
+
+        if (mLevel == 0 && mLayerCaching) {
+            if (mLayer == null) {
+                mLayer = new BoardLayer(mContext, mBoard);
+            }
+
+            if (mLayer.update(mCameraX, mCameraY, mDistance, mViewportWidth, mViewportHeight)) {
+                Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferHandle);
+                Gl.glViewport(0, 0, mViewportWidth, mViewportHeight);
+            }
+
+            mLayer.draw(viewMatrix, projectionMatrix);
+            return;
+        }
+
+        if (mLevel == 0) {
+            mPreparer.await();
+
+            if (mBuffer.update()) {
+                Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferHandle);
+                Gl.glViewport(0, 0, mViewportWidth, mViewportHeight);
+            }
+
+            mBuffer.draw(viewMatrix, projectionMatrix);
+            return;
+        }
+
+        if (mGrids[mLevel] == null) {
+            mGrids[mLevel] = buildGrid(mLevels[mLevel]);
+        }
+
+        final List<ChunkImpostor> impostors = mGrids[mLevel].chunks;
+        int bakes = 0;
+
+        for (int i = 0; i < impostors.size(); ++i) {
+            final ChunkImpostor chunk = impostors.get(i);
+
+            // past the texture budget the chunk stays at full detail, slower but it fits
+            if (!chunk.isBaked() && bakes < BAKES_PER_FRAME
+                    && (chunk.hasTexture() || MemoryLedger.fits(MemoryLedger.TEXTURE, chunk.getTextureBytes()))) {
+                chunk.bake();
+                Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferHandle);
+                Gl.glViewport(0, 0, mViewportWidth, mViewportHeight);
+                bakes++;
+            }
+
+            if (chunk.isBaked()) {
+                chunk.draw(viewMatrix, projectionMatrix);
+            } else {
+                chunk.drawHexes(viewMatrix, projectionMatrix);
+            }
+        }
+
+        // animations stay live, chunks are baked without them
+        if (mAnimatedCount > 0) {
+            mBoard.draw(viewMatrix, projectionMatrix, mAnimated, mAnimatedCount);
+        }
+    }
+
+    private static int chunkCoordinate(float position, float chunkSize) {
+        return (int) Math.floor(position / chunkSize);
+    }
+
+    /**
+     * Groups the hexes into chunks. Only runs when a level is first drawn and after slots were
+     * added, recycled or moved across a chunk border.
+     */
+    private Grid buildGrid(Level level) {
+        final HexagonPool pool = mBoard.getPool();
+        int left = Integer.MAX_VALUE;
+        int bottom = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int top = Integer.MIN_VALUE;
+
+        for (int i = 0; i < mSlots; ++i) {
+            final int cx = chunkCoordinate(pool.getX(i), level.chunkSize);
+            final int cy = chunkCoordinate(pool.getY(i), level.chunkSize);
+            left = Math.min(left, cx);
+            right = Math.max(right, cx);
+            bottom = Math.min(bottom, cy);
+            top = Math.max(top, cy);
+        }
+
+        final Grid grid = mSlots == 0 ? new Grid(0, 0, 0, 0, 0)
+                : new Grid(mSlots, left, bottom, right - left + 1, top - bottom + 1);
+
+        for (int i = 0; i < mSlots; ++i) {
+            final int cell = (chunkCoordinate(pool.getY(i), level.chunkSize) - bottom) * grid.columns
+                    + chunkCoordinate(pool.getX(i), level.chunkSize) - left;
+            if (grid.cells[cell] < 0) {
+                grid.cells[cell] = grid.chunks.size();
+                grid.chunks.add(new ChunkImpostor(mContext, mBoard, level.textureSize));
+            }
+
+            grid.chunkOf[i] = grid.cells[cell];
+            grid.chunks.get(grid.cells[cell]).add(i);
+        }
+
+        return grid;
+    }
+
+    private void releaseDiscarded() {
+        // runs every frame, index loops don't allocate an iterator
+        for (int i = 0; i < mDiscarded.size(); ++i) {
+            mDiscarded.get(i).release();
+        }
+
+        mDiscarded.clear();
+    }
+}
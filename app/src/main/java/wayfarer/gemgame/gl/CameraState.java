@@ -0,0 +1,61 @@
+package wayfarer.gemgame.gl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Double-buffered camera position. The GL thread is the only writer and fills the
+ * back slot before flipping the sequence, readers on any thread copy the front slot
+ * and retry if a flip happened meanwhile, so they never see a half-written position.
+ */
+public class CameraState {
+    private static final int SLOT_SIZE = 3;
+
+    /** Two slots of x, y, z stored as raw float bits. */
+    private final AtomicIntegerArray mSlots = new AtomicIntegerArray(2 * SLOT_SIZE);
+
+    /** Number of publishes so far, its lowest bit is the front slot. */
+    private final AtomicLong mSequence = new AtomicLong();
+
+    public CameraState(float x, float y, float z) {
+        write(0, x, y, z);
+    }
+
+    /**
+     * Writer (GL thread only).
+     */
+    public void publish(float x, float y, float z) {
+        final long sequence = mSequence.get();
+        write((int) ((sequence + 1) & 1), x, y, z);
+        mSequence.set(sequence + 1);
+    }
+
+    /**
+     * Reader (any thread).
+     *
+     * @param out - receives x, y, z
+     */
+    public void read(float[] out) {
+        long before;
+        long after;
+
+        do {
+            before = mSequence.get();
+            final int offset = (int) (before & 1) * SLOT_SIZE;
+            out[0] = Float.intBitsToFloat(mSlots.get(offset));
+            out[1] = Float.intBitsToFloat(mSlots.get(offset + 1));
+            out[2] = Float.intBitsToFloat(mSlots.get(offset + 2));
+            after = mSequence.get();
+        } while (before != after);
+    }
+
+    private void write(int slot, float x, float y, float z) {
+        final int offset = slot * SLOT_SIZE;
+        mSlots.set(offset, Float.floatToRawIntBits(x));
+        mSlots.set(offset + 1, Float.floatToRawIntBits(y));
+        mSlots.set(offset + 2, Float.floatToRawIntBits(z));
+    }
+}
@@ -0,0 +1,212 @@
+package wayfarer.gemgame.gl;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.game.Hexagon;
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.mesh.HexagonBatch;
+import wayfarer.gemgame.mesh.Mesh;
+import wayfarer.gemgame.util.MemoryLedger;
+import wayfarer.gemgame.util.MatrixHelper;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * A single textured quad standing in for a group of board hexes at distant zoom levels.
+ * The group is rendered once into an offscreen texture ("baked") and from then on costs
+ * one quad instead of one quad per hex. Hexes flagged {@link Hexagon#FLAG_ANIMATED} are left
+ * out, the caller draws them on top, so a running animation does not make the texture stale.
+ */
+public class ChunkImpostor extends Mesh {
+    private final HexagonBatch mBoard;
+    private int[] mHexes = new int[16];
+    private int mCount = 0;
+    /** Static hexes of the chunk, refilled for every bake or hex by hex draw. */
+    private int[] mStatic = new int[16];
+    private final int mTextureSize;
+
+    private float mMinX = Float.MAX_VALUE;
+    private float mMinY = Float.MAX_VALUE;
+    private float mMaxX = -Float.MAX_VALUE;
+    private float mMaxY = -Float.MAX_VALUE;
+
+    private int mFramebufferHandle;
+    private int mRenderTextureHandle;
+    private boolean mAllocated = false;
+    private boolean mBaked = false;
+
+    private float[] mBakeViewMatrix = new float[16];
+    private float[] mBakeProjectionMatrix = new float[16];
+
+    public ChunkImpostor(Context context, HexagonBatch board, int textureSize) {
+        super(context, R.raw.per_pixel_fragment_shader, R.raw.per_pixel_vertex_shader, 0);
+        mBoard = board;
+        mTextureSize = textureSize;
+    }
+
+    /**
+     * Adds a board hex to this chunk and grows the chunk bounds to cover it.
+     */
+    public void add(int hex) {
+        if (mCount == mHexes.length) {
+            int[] hexes = new int[mCount * 2];
+            System.arraycopy(mHexes, 0, hexes, 0, mCount);
+            mHexes = hexes;
+            mStatic = new int[mCount * 2];
+        }
+
+        mHexes[mCount++] = hex;
+        cover(hex);
+    }
+
+    /**
+     * Grows the chunk bounds to cover a hex of the chunk where it is now.
+     */
+    public void cover(int hex) {
+        final HexagonPool pool = mBoard.getPool();
+        final float radius = pool.getRadius(hex);
+        mMinX = Math.min(mMinX, pool.getX(hex) - radius);
+        mMaxX = Math.max(mMaxX, pool.getX(hex) + radius);
+        mMinY = Math.min(mMinY, pool.getY(hex) - radius);
+        mMaxY = Math.max(mMaxY, pool.getY(hex) + radius);
+
+        // the impostor quad spans exactly the chunk bounds
+        setPosition((mMinX + mMaxX) / 2, (mMinY + mMaxY) / 2, pool.getZ(hex));
+        setScaling((mMaxX - mMinX) / 2, (mMaxY - mMinY) / 2, 1.0f);
+    }
+
+    /**
+     * Draws the static chunk hexes one by one, for when the impostor is not baked yet.
+     */
+    public void drawHexes(float[] viewMatrix, float[] projectionMatrix) {
+        final int count = collectStatic();
+
+        if (count > 0) {
+            mBoard.draw(viewMatrix, projectionMatrix, mStatic, count);
+        }
+    }
+
+    private int collectStatic() {
+        final HexagonPool pool = mBoard.getPool();
+        int count = 0;
+
+        for (int n = 0; n < mCount; ++n) {
+            if ((pool.getFlags(mHexes[n]) & Hexagon.FLAG_ANIMATED) == 0) {
+                mStatic[count++] = mHexes[n];
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return estimated size of the impostor texture
+     */
+    public long getTextureBytes() {
+        return 4L * mTextureSize * mTextureSize;
+    }
+
+    /**
+     * @return true if the texture shows the chunk as it is
+     */
+    public boolean isBaked() {
+        return mBaked;
+    }
+
+    /**
+     * @return true if the render target exists, a stale chunk is rebaked into it
+     */
+    public boolean hasTexture() {
+        return mAllocated;
+    }
+
+    /**
+     * A static hex of the chunk changed, the texture is baked again when there is time.
+     */
+    public void invalidate() {
+        mBaked = false;
+    }
+
+    /**
+     * Allocates the render target instead of loading a texture resource.
+     */
+    @Override
+    protected int loadTexture(int res) {
+        final int[] handle = new int[1];
+
+        Gl.glGenTextures(1, handle, 0);
+        mRenderTextureHandle = handle[0];
+        Gl.glBindTexture(GLES20.GL_TEXTURE_2D, mRenderTextureHandle);
+        // impostors are minified a lot, so take the cheap smoothing we can get
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        Gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, mTextureSize, mTextureSize, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+        MemoryLedger.add(MemoryLedger.TEXTURE, getTextureBytes(), 1);
+
+        Gl.glGenFramebuffers(1, handle, 0);
+        mFramebufferHandle = handle[0];
+        Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferHandle);
+        Gl.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, mRenderTextureHandle, 0);
+        final int status = Gl.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+        Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+
+        if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+            throw new RuntimeException("Error creating impostor framebuffer: " + status);
+        }
+
+        mAllocated = true;
+        return mRenderTextureHandle;
+    }
+
+    /**
+     * Renders the chunk hexes into the impostor texture. Changes the viewport and leaves
+     * the surface bound, so the caller has to restore its target afterwards.
+     */
+    public void bake() {
+        init();
+
+        Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferHandle);
+        Gl.glViewport(0, 0, mTextureSize, mTextureSize);
+        Gl.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        // Render target rows go bottom-up while the quad texture coordinates are laid out
+        // for bitmaps, so the projection is flipped vertically. That also flips the winding.
+        Gl.glDisable(GLES20.GL_CULL_FACE);
+        MatrixHelper.setIdentityM(mBakeViewMatrix, 0);
+        MatrixHelper.orthoM(mBakeProjectionMatrix, 0, mMinX, mMaxX, mMaxY, mMinY, -10.0f, 10.0f);
+
+        final int count = collectStatic();
+
+        if (count > 0) {
+            mBoard.draw(mBakeViewMatrix, mBakeProjectionMatrix, mStatic, count);
+        }
+
+        Gl.glEnable(GLES20.GL_CULL_FACE);
+        Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        mBaked = true;
+    }
+
+    /**
+     * Frees the render target and the quad. GL thread only, the target of a lost context is
+     * just forgotten.
+     */
+    @Override
+    public void release() {
+        if (mAllocated && isInitialized()) {
+            Gl.glDeleteFramebuffers(1, new int[]{mFramebufferHandle}, 0);
+            Gl.glDeleteTextures(1, new int[]{mRenderTextureHandle}, 0);
+            MemoryLedger.remove(MemoryLedger.TEXTURE, getTextureBytes(), 1);
+        }
+
+        mAllocated = false;
+        mBaked = false;
+        super.release();
+    }
+}
@@ -0,0 +1,165 @@
+package wayfarer.gemgame.gl;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import wayfarer.gemgame.mesh.BoardBuffer;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Lays out the changed hexes of a {@link BoardBuffer} on worker threads. The GL thread calls
+ * {@link #prepare()} right after the board changes of the frame are applied, draws everything
+ * else meanwhile and calls {@link #await()} before the buffer is uploaded, so its own board
+ * work is glBufferSubData and the draw call.
+ *
+ * Nothing is handed over when no hex changed, a frame of a still board costs one check.
+ *
+ * No draw commands are recorded for replay. The board is one buffer drawn with a single call,
+ * so what is left of the per-hex work is laying out the quads of changed hexes, and that is
+ * what the workers do. Scene meshes stay on the GL thread, there are only a handful.
+ *
+ * GL thread only, apart from the workers.
+ */
+public class FramePreparer {
+    /** Hexes per worker task. */
+    private static final int CHUNK = 64;
+
+    /** Shared by all renderers, the threads are daemons and live as long as the process. */
+    private static ExecutorService sWorkers;
+    private static int sWorkerCount;
+
+    private class Chunk implements Runnable {
+        int from;
+        int to;
+
+        @Override
+        public void run() {
+            Throwable error = null;
+
+            try {
+                mBuffer.layout(from, to);
+            } catch (Throwable t) {
+                error = t;
+            }
+
+            finished(error);
+        }
+    }
+
+    private final BoardBuffer mBuffer;
+    private Chunk[] mChunks = new Chunk[0];
+
+    // guarded by this
+    private int mPending = 0;
+    private Throwable mError;
+
+    public FramePreparer(BoardBuffer buffer) {
+        mBuffer = buffer;
+    }
+
+    private static synchronized ExecutorService workers() {
+        if (sWorkers == null) {
+            // the GL thread keeps one core busy with its own passes
+            sWorkerCount = Runtime.getRuntime().availableProcessors() - 1;
+
+            if (sWorkerCount > 0) {
+                sWorkers = Executors.newFixedThreadPool(sWorkerCount, new ThreadFactory() {
+                    private int mCount = 0;
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, "FramePreparer-" + mCount++);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+        }
+
+        return sWorkers;
+    }
+
+    /**
+     * Starts laying out the hexes collected by the last {@link BoardBuffer#apply}. Returns right
+     * away unless there are no workers or only one chunk, in which case the work is done in place.
+     * The buffer must not be applied to or updated before {@link #await()}.
+     */
+    public void prepare() {
+        await();
+        final int size = mBuffer.getLayoutCount();
+
+        if (size == 0) {
+            return;
+        }
+
+        final int chunks = (size + CHUNK - 1) / CHUNK;
+
+        if (mChunks.length < chunks) {
+            final Chunk[] grown = Arrays.copyOf(mChunks, chunks);
+
+            for (int i = mChunks.length; i < chunks; ++i) {
+                grown[i] = new Chunk();
+            }
+
+            mChunks = grown;
+        }
+
+        // a single chunk is not worth the hand over
+        final ExecutorService workers = chunks == 1 ? null : workers();
+
+        synchronized (this) {
+            mPending = chunks;
+        }
+
+        for (int i = 0; i < chunks; ++i) {
+            final Chunk chunk = mChunks[i];
+            chunk.from = i * CHUNK;
+            chunk.to = Math.min(size, chunk.from + CHUNK);
+
+            if (workers == null) {
+                chunk.run();
+            } else {
+                workers.execute(chunk);
+            }
+        }
+    }
+
+    private synchronized void finished(Throwable error) {
+        if (error != null && mError == null) {
+            mError = error;
+        }
+
+        if (--mPending == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits for the workers. Returns right away if nothing is in flight.
+     */
+    public synchronized void await() {
+        boolean interrupted = false;
+
+        while (mPending > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (mError != null) {
+            final Throwable error = mError;
+            mError = null;
+            throw new RuntimeException("Laying out board hexes failed", error);
+        }
+    }
+}
@@ -15,20 +15,25 @@
  */
 package wayfarer.gemgame.gl;
 
+import android.content.Context;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
-import android.opengl.Matrix;
 import android.util.Log;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 import javax.vecmath.Point3d;
 
-import wayfarer.gemgame.game.Hexagon;
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.game.BoardChanges;
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.game.TweenScheduler;
+import wayfarer.gemgame.mesh.BoardBuffer;
+import wayfarer.gemgame.mesh.HexagonBatch;
 import wayfarer.gemgame.mesh.Mesh;
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.MatrixHelper;
+import wayfarer.gemgame.util.MemoryLedger;
 
 /**
  * Provides drawing instructions for a GLSurfaceView object. This class
@@ -43,7 +48,61 @@ public class GemGameGLRenderer implements GLSurfaceView.Renderer {
 
     private static final String TAG = "GemGameGLRenderer";
 
-    private List<Mesh> mMeshList = new ArrayList<Mesh>();
+    /** How many off-screen meshes get their GL resources back per frame after a context loss. */
+    private static final int RESTORES_PER_FRAME = 2;
+
+    /** Frames further apart than this are not back to back, the gap says nothing about load. */
+    private static final long IDLE_NANOS = 250000000L;
+
+    /** Everything to draw. Filled from any thread, read by the GL thread through snapshots. */
+    private final Scene mScene = new Scene();
+
+    /** Snapshot the current frame is drawn from. GL thread only. */
+    private Scene.Snapshot mFrameSnapshot;
+
+    /** All board hexes, drawn with one program, quad and one texture per gem. */
+    private final HexagonBatch mBoard;
+
+    /** Draws the board either in one call from a vertex buffer or as chunk impostors depending on camera distance. */
+    private final BoardLod mBoardLod;
+
+    /** Board change events of the current frame. */
+    private final BoardChanges.Batch mBoardChanges = new BoardChanges.Batch();
+
+    /** Hex labels, drawn on top of the board. */
+    private final TextRenderer mText;
+
+    /** Gem clear effects, drawn on top of the board. */
+    private final ParticleSystem mParticles;
+
+    /** Swap, fall and clear animations of board hexes. */
+    private final TweenScheduler mTweens;
+
+    /** Scene meshes of the current frame, split by material. GL thread only. */
+    private final RenderQueue mOpaque = new RenderQueue();
+    private final RenderQueue mTransparent = new RenderQueue();
+
+    /** Paints per pixel shading counts over the frame when enabled. */
+    private final OverdrawMeter mOverdraw;
+    private volatile boolean mOverdrawDebug = false;
+
+    /** Paints the memory account over the frame when enabled. */
+    private final MemoryOverlay mMemoryOverlay;
+    private volatile boolean mMemoryDebug = false;
+
+    /** Static board is drawn from a cached layer when set. */
+    private volatile boolean mLayerCaching = false;
+
+    /** Scene resolution follows the measured frame time. */
+    private final ResolutionGovernor mGovernor = new ResolutionGovernor(1.0f / 60.0f, 0.5f, 1.0f, 0.125f, 0.15f);
+    private final ScaledTarget mScaledTarget;
+    private int mSurfaceWidth = 1;
+    private int mSurfaceHeight = 1;
+    private long mLastFrameStartNanos = 0;
+
+    /** Used to keep frames coming while something is animating. */
+    private GLSurfaceView mSurfaceView;
+    private long mLastFrameNanos = 0;
 
     /**
      * Store the view matrix. This can be thought of as our camera. This matrix transforms world space to eye space;
@@ -53,30 +112,69 @@ public class GemGameGLRenderer implements GLSurfaceView.Renderer {
 
     /** Store the projection matrix. This is used to project the scene onto a 2D viewport. */
     private float[] mProjectionMatrix = new float[16];
+    private float mAspectRatio = 1.0f;
 
+    /** Camera position as seen by the GL thread. Other threads go through mInput and mCamera. */
     private float[] mCameraPosition = {0.0f, 0.0f, 10.0f};
 
+    /** Camera input from the UI thread, merged into one update per frame. */
+    private final InputQueue mInput = new InputQueue(256);
+
+    /** Camera position published by the GL thread for the UI thread. */
+    private final CameraState mCamera = new CameraState(mCameraPosition[0], mCameraPosition[1], mCameraPosition[2]);
+
+    public GemGameGLRenderer(Context context) {
+        mBoard = new HexagonBatch(context, R.raw.per_pixel_fragment_shader, R.raw.per_pixel_vertex_shader,
+                new HexagonPool(512), new int[]{R.drawable.opaque_hex_800, R.drawable.blue_hex_800,
+                R.drawable.red_hex_800, R.drawable.white_hex_800});
+        mBoardLod = new BoardLod(context, mBoard);
+        mText = new TextRenderer(context, mBoard.getPool());
+        mParticles = new ParticleSystem(context, 4096);
+        mTweens = new TweenScheduler(mBoard.getPool(), 1024);
+        mOverdraw = new OverdrawMeter(context);
+        mMemoryOverlay = new MemoryOverlay(context);
+        mScaledTarget = new ScaledTarget(context);
+    }
+
+    public void setSurfaceView(GLSurfaceView surfaceView) {
+        mSurfaceView = surfaceView;
+    }
+
     @Override
     public void onSurfaceCreated(GL10 unused, EGLConfig config) {
         Log.d(TAG, "+ enter onSurfaceCreated");
-        GLES20.glEnable(GLES20.GL_BLEND);
-        GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        // Blending is switched on per pass, the function is the same for all of them.
+        Gl.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
         // Set the background clear color to black.
-        GLES20.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+        Gl.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 
         // Use culling to remove back faces.
-        GLES20.glEnable(GLES20.GL_CULL_FACE);
+        Gl.glEnable(GLES20.GL_CULL_FACE);
 
-        // Enable depth testing
-        //GLES20.glEnable(GLES20.GL_DEPTH_TEST);
+        // Enable depth testing. Equal depth passes, so coplanar blended meshes keep their order.
+        Gl.glEnable(GLES20.GL_DEPTH_TEST);
+        Gl.glDepthFunc(GLES20.GL_LEQUAL);
+        applyInput();
         setupCamera();
 
-        for (Mesh m : mMeshList) {
-            m.init();
-        }
+        // New context, every handle from the previous one is gone. Nothing is rebuilt here,
+        // visible things come back on their first draw and the rest over the next frames.
+        GpuResources.onContextLost();
+        mBoardLod.onContextLost();
+        mFrameSnapshot = mScene.acquire();
+        mFrameSnapshot.apply();
         Log.d(TAG, "- leave onSurfaceCreated");
     }
 
+    /**
+     * Applies camera input queued since the previous frame. GL thread only.
+     */
+    private void applyInput() {
+        if (mInput.drain(mCameraPosition) > 0) {
+            mCamera.publish(mCameraPosition[0], mCameraPosition[1], mCameraPosition[2]);
+        }
+    }
+
     private void setupCamera() {
         // Position the eye in front of the origin.
         final float eyeX = mCameraPosition[0];
@@ -93,17 +191,20 @@ public class GemGameGLRenderer implements GLSurfaceView.Renderer {
         final float upY = 1.0f;
         final float upZ = 0.0f;
 
-        Matrix.setLookAtM(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);
+        MatrixHelper.setLookAtM(mViewMatrix, 0, eyeX, eyeY, eyeZ, lookX, lookY, lookZ, upX, upY, upZ);
     }
 
     @Override
     public void onSurfaceChanged(GL10 unused, int width, int height) {
         // Set the OpenGL viewport to the same size as the surface.
-        GLES20.glViewport(0, 0, width, height);
+        Gl.glViewport(0, 0, width, height);
+        mSurfaceWidth = width;
+        mSurfaceHeight = height;
 
         // Create a new perspective projection matrix. The height will stay the same
         // while the width will vary as per aspect ratio.
         final float ratio = (float) width / height;
+        mAspectRatio = ratio;
         final float left = -ratio;
         final float right = ratio;
         final float bottom = -1.0f;
@@ -111,37 +212,260 @@ public class GemGameGLRenderer implements GLSurfaceView.Renderer {
         final float near = 1.0f;
         final float far = 100.0f;
 
-        Matrix.frustumM(mProjectionMatrix, 0, left, right, bottom, top, near, far);
+        MatrixHelper.frustumM(mProjectionMatrix, 0, left, right, bottom, top, near, far);
     }
 
     @Override
     public void onDrawFrame(GL10 unused) {
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        // Back to back frames are as far apart as the slower of CPU and GPU allows,
+        // that is the load the governor reacts to.
+        final long start = System.nanoTime();
+
+        if (mLastFrameStartNanos != 0 && start - mLastFrameStartNanos < IDLE_NANOS) {
+            mGovernor.onFrame((start - mLastFrameStartNanos) / 1e9f);
+        }
+
+        mLastFrameStartNanos = start;
+
+        // the overdraw meter needs the stencil buffer of the surface
+        final boolean overdrawDebug = mOverdrawDebug;
+        final float scale = overdrawDebug ? 1.0f : mGovernor.getScale();
+        final int width = Math.max(1, Math.round(mSurfaceWidth * scale));
+        final int height = Math.max(1, Math.round(mSurfaceHeight * scale));
+        final boolean scaled = width != mSurfaceWidth || height != mSurfaceHeight;
+
+        if (scaled) {
+            mScaledTarget.begin(width, height);
+        } else if (mScaledTarget.getWidth() != 0) {
+            mScaledTarget.release();
+        }
+
+        mBoardLod.setTarget(scaled ? mScaledTarget.getFramebufferHandle() : 0, width, height);
+        mParticles.setViewport(width, height);
+        Gl.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        applyInput();
         setupCamera();
 
-        for (Mesh m : mMeshList) {
-            m.draw(mViewMatrix, mProjectionMatrix);
+        // pick up changes published since the previous frame
+        final Scene.Snapshot snapshot = mScene.acquire();
+
+        if (snapshot != mFrameSnapshot) {
+            snapshot.apply();
+            mFrameSnapshot = snapshot;
+        }
+
+        // Frames are only drawn on demand, so don't let a long idle gap count as one step.
+        final long now = System.nanoTime();
+        final float dt = mLastFrameNanos == 0 ? 0.0f : Math.min((now - mLastFrameNanos) / 1e9f, 0.05f);
+        mLastFrameNanos = now;
+        mTweens.advance(dt);
+
+        // everything the game and the tweens changed on the board since the previous frame, in one batch
+        mBoard.getPool().getChanges().drain(mBoardChanges);
+        mBoardLod.apply(mBoardChanges);
+        mText.apply(mBoardChanges);
+
+        // The board lies in z = 0 plane, so camera Z is the distance to it.
+        mBoardLod.setLayerCaching(mLayerCaching);
+        mBoardLod.update(mCameraPosition[0], mCameraPosition[1], mCameraPosition[2]);
+
+        mOpaque.clear();
+        mTransparent.clear();
+
+        for (int i = 0; i < snapshot.size(); ++i) {
+            final Mesh m = snapshot.getMesh(i);
+
+            if (!isVisible(m)) {
+                if (!m.isInitialized()) {
+                    GpuResources.defer(m);
+                }
+            } else if (m.getMaterial() == Mesh.MATERIAL_OPAQUE) {
+                mOpaque.add(m, mCameraPosition[2] - m.getPosition()[2]);
+            } else {
+                mTransparent.add(m, mCameraPosition[2] - m.getPosition()[2]);
+            }
+        }
+
+        if (overdrawDebug) {
+            mOverdraw.begin();
+        }
+
+        // Opaque pass: nearest first with depth writes, so pixels hidden behind an opaque
+        // mesh are rejected before shading. No blending, every pixel is overwritten anyway.
+        Gl.glDisable(GLES20.GL_BLEND);
+        Gl.glDepthMask(true);
+        mOpaque.sortFrontToBack();
+
+        for (int i = 0; i < mOpaque.size(); ++i) {
+            mOpaque.get(i).draw(mViewMatrix, mProjectionMatrix);
+        }
+
+        // Transparent pass: depth tested against the opaque pass but not written,
+        // farthest first so blending composites correctly.
+        Gl.glEnable(GLES20.GL_BLEND);
+        Gl.glDepthMask(false);
+        mTransparent.sortBackToFront();
+
+        for (int i = 0; i < mTransparent.size(); ++i) {
+            mTransparent.get(i).draw(mViewMatrix, mProjectionMatrix);
+        }
+
+        mBoardLod.draw(mViewMatrix, mProjectionMatrix);
+
+        // labels are unreadable from the distances where impostors kick in
+        if (mBoardLod.getLevel() == 0) {
+            mText.draw(mViewMatrix, mProjectionMatrix);
         }
+
+        mParticles.update(dt);
+        mParticles.draw(mViewMatrix, mProjectionMatrix);
+
+        if (overdrawDebug) {
+            mOverdraw.end();
+            Gl.glEnable(GLES20.GL_DEPTH_TEST);
+        }
+
+        // glClear honours the depth mask, so leave it on for the next frame
+        Gl.glDepthMask(true);
+
+        if (scaled) {
+            mScaledTarget.end(mSurfaceWidth, mSurfaceHeight);
+        }
+
+        if (mMemoryDebug) {
+            mMemoryOverlay.draw();
+        }
+
+        final int restoring = GpuResources.restoreDeferred(RESTORES_PER_FRAME);
+
+        if ((mParticles.getLiveCount() > 0 || mTweens.isActive() || restoring > 0) && mSurfaceView != null) {
+            mSurfaceView.requestRender();
+        } else {
+            mLastFrameNanos = 0;
+        }
+    }
+
+    /**
+     * @return true if the mesh quad overlaps the view frustum
+     */
+    private boolean isVisible(Mesh m) {
+        final float[] position = m.getPosition();
+        final float[] scale = m.getScaling();
+        final float distance = mCameraPosition[2] - position[2];
+
+        if (distance <= 0) {
+            return false;
+        }
+
+        // frustum half height is 1 at the near plane 1 unit away, see onSurfaceChanged
+        return Math.abs(position[0] - mCameraPosition[0]) - Math.abs(scale[0]) <= distance * mAspectRatio
+                && Math.abs(position[1] - mCameraPosition[1]) - Math.abs(scale[1]) <= distance;
+    }
+
+    /**
+     * Shows how many times every pixel is shaded instead of hiding it. Any thread.
+     */
+    public void setOverdrawDebug(boolean enabled) {
+        mOverdrawDebug = enabled;
+
+        if (mSurfaceView != null) {
+            mSurfaceView.requestRender();
+        }
+    }
+
+    /**
+     * Shows the {@link MemoryLedger} bars over the frame and logs the account. Any thread.
+     */
+    public void setMemoryDebug(boolean enabled) {
+        mMemoryDebug = enabled;
+
+        if (enabled) {
+            Log.i(TAG, "Memory\n" + MemoryLedger.snapshot());
+        }
+
+        if (mSurfaceView != null) {
+            mSurfaceView.requestRender();
+        }
+    }
+
+    /**
+     * Draws the static part of the board from a texture that is only redrawn where cells
+     * change or when the camera leaves its margin. Pays off for big idle boards, costs a
+     * screen sized texture. Any thread.
+     */
+    public void setLayerCaching(boolean enabled) {
+        mLayerCaching = enabled;
+
+        if (mSurfaceView != null) {
+            mSurfaceView.requestRender();
+        }
+    }
+
+    /**
+     * Decides the scene resolution. Read its metrics or change its limits from any thread.
+     */
+    public ResolutionGovernor getResolutionGovernor() {
+        return mGovernor;
+    }
+
+    /**
+     * Particle effects. GL thread only, post emits with GLSurfaceView.queueEvent.
+     */
+    public ParticleSystem getParticles() {
+        return mParticles;
+    }
+
+    /**
+     * Hex animations. GL thread only, post starts with GLSurfaceView.queueEvent and request
+     * a frame, the renderer keeps drawing until the last tween is done.
+     */
+    public TweenScheduler getTweens() {
+        return mTweens;
+    }
+
+    public Scene getScene() {
+        return mScene;
+    }
+
+    /**
+     * Board hexes. Fill it from game logic, changes show up on the next frame.
+     */
+    public HexagonPool getHexagonPool() {
+        return mBoard.getPool();
+    }
+
+    /**
+     * Full detail board, its upload metrics are those of the last frame drawn at level 0.
+     */
+    public BoardBuffer getBoardBuffer() {
+        return mBoardLod.getBuffer();
     }
 
     public void addMesh(Mesh mesh) {
-        mMeshList.add(mesh);
+        mScene.add(mesh);
+        mScene.publish();
     }
 
+    /**
+     * Places the camera. Takes effect on the next frame. UI thread only.
+     */
     public void setCamera(float x, float y, float z) {
-        mCameraPosition[0] = x;
-        mCameraPosition[1] = y;
-        mCameraPosition[2] = z;
+        mInput.offerSet(x, y, z);
     }
 
-    public Point3d getCameraPos() {
-        return new Point3d(mCameraPosition[0],
-                mCameraPosition[1],
-                mCameraPosition[2]);
+    /**
+     * Moves the camera by the given delta. Takes effect on the next frame. UI thread only.
+     *
+     * @return true if a render has to be requested for the move to show up
+     */
+    public boolean moveCamera(float dx, float dy) {
+        return mInput.offerMove(dx, dy);
     }
 
-    public void addAllMeshes(List<Hexagon> meshList) {
-        mMeshList.addAll(meshList);
+    public Point3d getCameraPos() {
+        final float[] position = new float[3];
+        mCamera.read(position);
+        return new Point3d(position[0], position[1], position[2]);
     }
 
     public float[] getCurrentProjection() {
@@ -153,8 +477,8 @@ public class GemGameGLRenderer implements GLSurfaceView.Renderer {
     }
 
     public float[] getCurrentModelView() {
-        // get model view for first hexagon.
-        // Yeah-yeah! this is hack, but I don't know what to do here.
-        return mMeshList.get(1).getModelView();
+        // Model view of the first hexagon. It sits in the origin with unit scale,
+        // so that is the plain view matrix.
+        return mViewMatrix;
     }
 }
\ No newline at end of file
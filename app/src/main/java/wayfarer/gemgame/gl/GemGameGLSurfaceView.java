@@ -19,12 +19,14 @@ import android.content.Context;
 import android.graphics.PointF;
 import android.graphics.Rect;
 import android.opengl.GLSurfaceView;
-import android.opengl.Matrix;
 import android.util.Log;
 import android.view.MotionEvent;
 
 import javax.vecmath.Point3d;
 
+import wayfarer.gemgame.util.MatrixHelper;
+import wayfarer.gemgame.util.TraceLog;
+
 /**
  * A view container where OpenGL ES graphics can be drawn on screen.
  * This view can also be used to capture touch events, such as a user
@@ -32,6 +34,9 @@ import javax.vecmath.Point3d;
  */
 public class GemGameGLSurfaceView extends GLSurfaceView {
     public static final String TAG = "GemGameGLSurfaceView";
+    private static final int TRACE_UP = TraceLog.define(TAG, TraceLog.DEBUG, "Touch up at (%f, %f) of %dx%d");
+    private static final int TRACE_UP_WORLD = TraceLog.define(TAG, TraceLog.DEBUG, "world coords: (%f, %f)");
+    private static final int TRACE_MOVE = TraceLog.define(TAG, TraceLog.VERBOSE, "deltaX=%f | deltaY=%f");
 
     private final GemGameGLRenderer mRenderer;
 
@@ -40,10 +45,13 @@ public class GemGameGLSurfaceView extends GLSurfaceView {
         Log.d(TAG, "+ enter GemGameGLSurfaceView()");
         // Create an OpenGL ES 2.0 context.
         setEGLContextClientVersion(2);
+        // depth for the opaque pass, stencil for the overdraw debug view
+        setEGLConfigChooser(8, 8, 8, 8, 16, 8);
 
         // Set the Renderer for drawing on the GLSurfaceView
         Log.d(TAG, "Creating GLRenderer");
-        mRenderer = new GemGameGLRenderer();
+        mRenderer = new GemGameGLRenderer(context);
+        mRenderer.setSurfaceView(this);
         setRenderer(mRenderer);
 
         // Render the view only when there is a change in the drawing data
@@ -54,6 +62,8 @@ public class GemGameGLSurfaceView extends GLSurfaceView {
     private final float TOUCH_SCALE_FACTOR = 180.0f / 320;
     private float mPreviousX;
     private float mPreviousY;
+    /** Historical samples of the current move event, x and y interleaved. */
+    private float[] mHistory = new float[32];
 
     public GemGameGLRenderer getRenderer() {
         return mRenderer;
@@ -75,17 +85,25 @@ public class GemGameGLSurfaceView extends GLSurfaceView {
             case MotionEvent.ACTION_UP:
                 cameraPos = mRenderer.getCameraPos();
                 PointF worldCoords = GetWorldCoords(new PointF(x, y), cameraPos, frame.width(), frame.height());
-                Log.d(TAG, "Frame: " + frame);
-                Log.d(TAG, "Screen coords: " + x + ", " + y);
-                Log.d(TAG, "world coords: " + worldCoords);
+                TraceLog.log(TRACE_UP, TraceLog.bits(x), TraceLog.bits(y), frame.width(), frame.height());
+                TraceLog.log(TRACE_UP_WORLD, TraceLog.bits(worldCoords.x), TraceLog.bits(worldCoords.y));
                 break;
             case MotionEvent.ACTION_MOVE:
-                float dx = x - mPreviousX;
-                float dy = y - mPreviousY;
-                Log.d(TAG, "deltaX=" + dx + " | delataY=" + dy);
-                cameraPos = mRenderer.getCameraPos();
-                mRenderer.setCamera((float)cameraPos.x-dx/100, (float)cameraPos.y+dy/100, (float)cameraPos.z);
-                requestRender();
+                // Historical samples are batched into this event, queue them as well.
+                final int samples = e.getHistorySize();
+
+                if (2 * samples > mHistory.length) {
+                    mHistory = new float[4 * samples];
+                }
+
+                for (int h = 0; h < samples; ++h) {
+                    mHistory[2 * h] = e.getHistoricalX(h);
+                    mHistory[2 * h + 1] = e.getHistoricalY(h);
+                }
+
+                if (drag(mRenderer, mPreviousX, mPreviousY, mHistory, samples, x, y)) {
+                    requestRender();
+                }
         }
 
         mPreviousX = x;
@@ -93,6 +111,33 @@ public class GemGameGLSurfaceView extends GLSurfaceView {
         return true;
     }
 
+    /**
+     * Queues the camera moves of one drag event, the historical samples first, then the
+     * current position. The renderer merges everything queued into one camera update per
+     * frame and only the first move since the last frame has to wake it up.
+     *
+     * @param history - x and y of the historical samples, interleaved
+     * @return true if the renderer has to be woken up
+     */
+    static boolean drag(GemGameGLRenderer renderer, float previousX, float previousY, float[] history,
+                        int samples, float x, float y) {
+        TraceLog.log(TRACE_MOVE, TraceLog.bits(x - previousX), TraceLog.bits(y - previousY));
+        float lastX = previousX;
+        float lastY = previousY;
+        boolean wakeup = false;
+
+        for (int h = 0; h < samples; ++h) {
+            final float hx = history[2 * h];
+            final float hy = history[2 * h + 1];
+            wakeup |= renderer.moveCamera(-(hx - lastX) / 100, (hy - lastY) / 100);
+            lastX = hx;
+            lastY = hy;
+        }
+
+        wakeup |= renderer.moveCamera(-(x - lastX) / 100, (y - lastY) / 100);
+        return wakeup;
+    }
+
     /**
      * Calculates the transform from screen coordinate
      * system to world coordinate system coordinates
@@ -133,18 +178,16 @@ public class GemGameGLSurfaceView extends GLSurfaceView {
 
        /* Obtain the transform matrix and
        then the inverse. */
-        Log.d(TAG, "Proj " + mRenderer.getCurrentProjection());
-        Log.d(TAG, "Model " + mRenderer.getCurrentModelView());
-        Matrix.multiplyMM(
+        MatrixHelper.multiplyMM(
                 transformMatrix, 0,
                 mRenderer.getCurrentProjection(), 0,
                 mRenderer.getCurrentModelView(), 0);
-        Matrix.invertM(invertedMatrix, 0,
+        MatrixHelper.invertM(invertedMatrix, 0,
                 transformMatrix, 0);
 
        /* Apply the inverse to the point
        in clip space */
-        Matrix.multiplyMV(
+        MatrixHelper.multiplyMV(
                 outPoint, 0,
                 invertedMatrix, 0,
                 normalizedInPoint, 0);
@@ -162,7 +205,6 @@ public class GemGameGLSurfaceView extends GLSurfaceView {
                 outPoint[0] / outPoint[3],
                 outPoint[1] / outPoint[3]);
 
-
         return worldPos;
     }
 
@@ -0,0 +1,271 @@
+package wayfarer.gemgame.gl;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Static entry point for all GL calls of the game, a drop-in for android.opengl.GLES20.
+ * Calls go to the device driver unless another backend is installed, e.g. a software
+ * rasteriser for tests and benchmarks without a GPU. Constants still come from GLES20.
+ */
+public class Gl {
+    private static GlBackend sBackend = new AndroidGl();
+
+    private Gl() {}
+
+    /**
+     * Routes all following GL calls to the given backend. Must happen before the first
+     * GL call of a frame, the game never mixes backends within a context.
+     */
+    public static void setBackend(GlBackend backend) {
+        sBackend = backend;
+    }
+
+    public static GlBackend getBackend() {
+        return sBackend;
+    }
+
+    public static void glActiveTexture(int texture) {
+        sBackend.glActiveTexture(texture);
+    }
+
+    public static void glAttachShader(int program, int shader) {
+        sBackend.glAttachShader(program, shader);
+    }
+
+    public static void glBindAttribLocation(int program, int index, String name) {
+        sBackend.glBindAttribLocation(program, index, name);
+    }
+
+    public static void glBindBuffer(int target, int buffer) {
+        sBackend.glBindBuffer(target, buffer);
+    }
+
+    public static void glBindFramebuffer(int target, int framebuffer) {
+        sBackend.glBindFramebuffer(target, framebuffer);
+    }
+
+    public static void glBindRenderbuffer(int target, int renderbuffer) {
+        sBackend.glBindRenderbuffer(target, renderbuffer);
+    }
+
+    public static void glBindTexture(int target, int texture) {
+        sBackend.glBindTexture(target, texture);
+    }
+
+    public static void glBlendFunc(int sfactor, int dfactor) {
+        sBackend.glBlendFunc(sfactor, dfactor);
+    }
+
+    public static void glBufferData(int target, int size, Buffer data, int usage) {
+        sBackend.glBufferData(target, size, data, usage);
+    }
+
+    public static void glBufferSubData(int target, int offset, int size, Buffer data) {
+        sBackend.glBufferSubData(target, offset, size, data);
+    }
+
+    public static int glCheckFramebufferStatus(int target) {
+        return sBackend.glCheckFramebufferStatus(target);
+    }
+
+    public static void glClear(int mask) {
+        sBackend.glClear(mask);
+    }
+
+    public static void glClearColor(float red, float green, float blue, float alpha) {
+        sBackend.glClearColor(red, green, blue, alpha);
+    }
+
+    public static void glClearStencil(int s) {
+        sBackend.glClearStencil(s);
+    }
+
+    public static void glCompileShader(int shader) {
+        sBackend.glCompileShader(shader);
+    }
+
+    public static int glCreateProgram() {
+        return sBackend.glCreateProgram();
+    }
+
+    public static int glCreateShader(int type) {
+        return sBackend.glCreateShader(type);
+    }
+
+    public static void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        sBackend.glDeleteFramebuffers(n, framebuffers, offset);
+    }
+
+    public static void glDeleteProgram(int program) {
+        sBackend.glDeleteProgram(program);
+    }
+
+    public static void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) {
+        sBackend.glDeleteRenderbuffers(n, renderbuffers, offset);
+    }
+
+    public static void glDeleteShader(int shader) {
+        sBackend.glDeleteShader(shader);
+    }
+
+    public static void glDeleteTextures(int n, int[] textures, int offset) {
+        sBackend.glDeleteTextures(n, textures, offset);
+    }
+
+    public static void glDepthFunc(int func) {
+        sBackend.glDepthFunc(func);
+    }
+
+    public static void glDepthMask(boolean flag) {
+        sBackend.glDepthMask(flag);
+    }
+
+    public static void glDisable(int cap) {
+        sBackend.glDisable(cap);
+    }
+
+    public static void glDisableVertexAttribArray(int index) {
+        sBackend.glDisableVertexAttribArray(index);
+    }
+
+    public static void glDrawArrays(int mode, int first, int count) {
+        sBackend.glDrawArrays(mode, first, count);
+    }
+
+    public static void glEnable(int cap) {
+        sBackend.glEnable(cap);
+    }
+
+    public static void glEnableVertexAttribArray(int index) {
+        sBackend.glEnableVertexAttribArray(index);
+    }
+
+    public static void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) {
+        sBackend.glFramebufferRenderbuffer(target, attachment, renderbuffertarget, renderbuffer);
+    }
+
+    public static void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        sBackend.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+    }
+
+    public static void glGenerateMipmap(int target) {
+        sBackend.glGenerateMipmap(target);
+    }
+
+    public static void glGenBuffers(int n, int[] buffers, int offset) {
+        sBackend.glGenBuffers(n, buffers, offset);
+    }
+
+    public static void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        sBackend.glGenFramebuffers(n, framebuffers, offset);
+    }
+
+    public static void glGenRenderbuffers(int n, int[] renderbuffers, int offset) {
+        sBackend.glGenRenderbuffers(n, renderbuffers, offset);
+    }
+
+    public static void glGenTextures(int n, int[] textures, int offset) {
+        sBackend.glGenTextures(n, textures, offset);
+    }
+
+    public static int glGetAttribLocation(int program, String name) {
+        return sBackend.glGetAttribLocation(program, name);
+    }
+
+    public static String glGetProgramInfoLog(int program) {
+        return sBackend.glGetProgramInfoLog(program);
+    }
+
+    public static void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        sBackend.glGetProgramiv(program, pname, params, offset);
+    }
+
+    public static String glGetShaderInfoLog(int shader) {
+        return sBackend.glGetShaderInfoLog(shader);
+    }
+
+    public static void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        sBackend.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    public static int glGetUniformLocation(int program, String name) {
+        return sBackend.glGetUniformLocation(program, name);
+    }
+
+    public static void glLinkProgram(int program) {
+        sBackend.glLinkProgram(program);
+    }
+
+    public static void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+        sBackend.glRenderbufferStorage(target, internalformat, width, height);
+    }
+
+    public static void glScissor(int x, int y, int width, int height) {
+        sBackend.glScissor(x, y, width, height);
+    }
+
+    public static void glShaderSource(int shader, String string) {
+        sBackend.glShaderSource(shader, string);
+    }
+
+    public static void glStencilFunc(int func, int ref, int mask) {
+        sBackend.glStencilFunc(func, ref, mask);
+    }
+
+    public static void glStencilOp(int fail, int zfail, int zpass) {
+        sBackend.glStencilOp(fail, zfail, zpass);
+    }
+
+    public static void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        sBackend.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+    }
+
+    public static void glTexParameteri(int target, int pname, int param) {
+        sBackend.glTexParameteri(target, pname, param);
+    }
+
+    public static void glUniform1f(int location, float x) {
+        sBackend.glUniform1f(location, x);
+    }
+
+    public static void glUniform1i(int location, int x) {
+        sBackend.glUniform1i(location, x);
+    }
+
+    public static void glUniform4f(int location, float x, float y, float z, float w) {
+        sBackend.glUniform4f(location, x, y, z, w);
+    }
+
+    public static void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        sBackend.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    public static void glUseProgram(int program) {
+        sBackend.glUseProgram(program);
+    }
+
+    public static void glVertexAttrib4f(int indx, float x, float y, float z, float w) {
+        sBackend.glVertexAttrib4f(indx, x, y, z, w);
+    }
+
+    public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        sBackend.glVertexAttribPointer(indx, size, type, normalized, stride, ptr);
+    }
+
+    public static void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) {
+        sBackend.glVertexAttribPointer(indx, size, type, normalized, stride, offset);
+    }
+
+    public static void glViewport(int x, int y, int width, int height) {
+        sBackend.glViewport(x, y, width, height);
+    }
+
+    public static void texImage2D(int target, int level, Bitmap bitmap, int border) {
+        sBackend.texImage2D(target, level, bitmap, border);
+    }
+}
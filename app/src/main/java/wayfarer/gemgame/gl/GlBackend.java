@@ -0,0 +1,79 @@
+package wayfarer.gemgame.gl;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * The part of OpenGL ES 2.0 the game uses. Signatures are the ones of android.opengl.GLES20,
+ * so a backend is either a thin forwarder or an implementation of exactly this subset.
+ */
+public interface GlBackend {
+    void glActiveTexture(int texture);
+    void glAttachShader(int program, int shader);
+    void glBindAttribLocation(int program, int index, String name);
+    void glBindBuffer(int target, int buffer);
+    void glBindFramebuffer(int target, int framebuffer);
+    void glBindRenderbuffer(int target, int renderbuffer);
+    void glBindTexture(int target, int texture);
+    void glBlendFunc(int sfactor, int dfactor);
+    void glBufferData(int target, int size, Buffer data, int usage);
+    void glBufferSubData(int target, int offset, int size, Buffer data);
+    int glCheckFramebufferStatus(int target);
+    void glClear(int mask);
+    void glClearColor(float red, float green, float blue, float alpha);
+    void glClearStencil(int s);
+    void glCompileShader(int shader);
+    int glCreateProgram();
+    int glCreateShader(int type);
+    void glDeleteFramebuffers(int n, int[] framebuffers, int offset);
+    void glDeleteProgram(int program);
+    void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset);
+    void glDeleteShader(int shader);
+    void glDeleteTextures(int n, int[] textures, int offset);
+    void glDepthFunc(int func);
+    void glDepthMask(boolean flag);
+    void glDisable(int cap);
+    void glDisableVertexAttribArray(int index);
+    void glDrawArrays(int mode, int first, int count);
+    void glEnable(int cap);
+    void glEnableVertexAttribArray(int index);
+    void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer);
+    void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level);
+    void glGenerateMipmap(int target);
+    void glGenBuffers(int n, int[] buffers, int offset);
+    void glGenFramebuffers(int n, int[] framebuffers, int offset);
+    void glGenRenderbuffers(int n, int[] renderbuffers, int offset);
+    void glGenTextures(int n, int[] textures, int offset);
+    int glGetAttribLocation(int program, String name);
+    String glGetProgramInfoLog(int program);
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+    String glGetShaderInfoLog(int shader);
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+    int glGetUniformLocation(int program, String name);
+    void glLinkProgram(int program);
+    void glRenderbufferStorage(int target, int internalformat, int width, int height);
+    void glScissor(int x, int y, int width, int height);
+    void glShaderSource(int shader, String string);
+    void glStencilFunc(int func, int ref, int mask);
+    void glStencilOp(int fail, int zfail, int zpass);
+    void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels);
+    void glTexParameteri(int target, int pname, int param);
+    void glUniform1f(int location, float x);
+    void glUniform1i(int location, int x);
+    void glUniform4f(int location, float x, float y, float z, float w);
+    void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+    void glUseProgram(int program);
+    void glVertexAttrib4f(int indx, float x, float y, float z, float w);
+    void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr);
+    void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset);
+    void glViewport(int x, int y, int width, int height);
+
+    /**
+     * Same as android.opengl.GLUtils.texImage2D, uploads a bitmap into the bound texture.
+     */
+    void texImage2D(int target, int level, Bitmap bitmap, int border);
+}
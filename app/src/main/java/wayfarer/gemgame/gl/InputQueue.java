@@ -0,0 +1,170 @@
+package wayfarer.gemgame.gl;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Single-producer/single-consumer queue of camera input. The UI thread offers records,
+ * the GL thread drains everything queued since the last frame and merges it into one camera
+ * update. Records live in a preallocated float ring, nothing is allocated per event. The ring
+ * is lock-free, only input that finds it full takes a lock to merge into one overflow record.
+ */
+public class InputQueue {
+    private static final float MOVE = 0.0f;
+    private static final float SET = 1.0f;
+
+    /** type, x, y, z */
+    private static final int RECORD_SIZE = 4;
+
+    private final float[] mRecords;
+    private final int mMask;
+
+    /** Next record to read. Written by the consumer only. */
+    private final AtomicLong mHead = new AtomicLong();
+
+    /** Next record to write. Written by the producer only. */
+    private final AtomicLong mTail = new AtomicLong();
+
+    /** Raised by the first record after a drain, so the producer wakes the consumer once per frame. */
+    private final AtomicBoolean mWakeup = new AtomicBoolean();
+
+    // Overflow record, guarded by this. When the ring is full input is merged here instead,
+    // so nothing gets lost while the GL thread is paused. While it is set the producer only
+    // merges into it, so it is always newer than everything in the ring; drain() takes it
+    // after the ring.
+    private volatile boolean mOverflowed = false;
+    private float mOverflowType;
+    private float mOverflowX;
+    private float mOverflowY;
+    private float mOverflowZ;
+
+    /**
+     * @param capacity - queue size in records, rounded up to a power of two
+     */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mRecords = new float[size * RECORD_SIZE];
+        mMask = size - 1;
+    }
+
+    /**
+     * Producer: moves camera by the given delta.
+     *
+     * @return true if this is the first input since the last drain and a frame has to be requested
+     */
+    public boolean offerMove(float dx, float dy) {
+        return offer(MOVE, dx, dy, 0);
+    }
+
+    /**
+     * Producer: places camera at the given position, overriding any moves queued before.
+     *
+     * @return true if this is the first input since the last drain and a frame has to be requested
+     */
+    public boolean offerSet(float x, float y, float z) {
+        return offer(SET, x, y, z);
+    }
+
+    private boolean offer(float type, float x, float y, float z) {
+        // the consumer may take the overflow meanwhile, then the ring has room again
+        if (!mOverflowed || !merge(type, x, y, z, false)) {
+            final long tail = mTail.get();
+
+            if (tail - mHead.get() > mMask) {
+                merge(type, x, y, z, true);
+            } else {
+                final int offset = (int) (tail & mMask) * RECORD_SIZE;
+                mRecords[offset] = type;
+                mRecords[offset + 1] = x;
+                mRecords[offset + 2] = y;
+                mRecords[offset + 3] = z;
+                // publish the record
+                mTail.lazySet(tail + 1);
+            }
+        }
+
+        return mWakeup.compareAndSet(false, true);
+    }
+
+    /**
+     * Producer: merges the input into the overflow record.
+     *
+     * @param start - start an overflow record if there is none
+     * @return false if there was none and none was started
+     */
+    private synchronized boolean merge(float type, float x, float y, float z, boolean start) {
+        if (!mOverflowed) {
+            if (!start) {
+                return false;
+            }
+
+            mOverflowType = type;
+            mOverflowX = x;
+            mOverflowY = y;
+            mOverflowZ = z;
+            mOverflowed = true;
+        } else if (type == SET) {
+            mOverflowType = SET;
+            mOverflowX = x;
+            mOverflowY = y;
+            mOverflowZ = z;
+        } else {
+            // a move adds to a pending position as well as to a pending move
+            mOverflowX += x;
+            mOverflowY += y;
+        }
+
+        return true;
+    }
+
+    /**
+     * Consumer: applies all queued records to the camera position.
+     *
+     * @param camera - x, y, z of the camera, updated in place
+     * @return number of records applied
+     */
+    public int drain(float[] camera) {
+        // reset before reading, input arriving from now on asks for a new frame
+        mWakeup.set(false);
+
+        // read before the tail: once set, the producer stops writing to the ring, so every
+        // record older than the overflow is below the tail read next
+        final boolean overflowed = mOverflowed;
+        final long tail = mTail.get();
+        long head = mHead.get();
+        int count = (int) (tail - head);
+
+        for (; head < tail; ++head) {
+            final int offset = (int) (head & mMask) * RECORD_SIZE;
+            apply(camera, mRecords[offset], mRecords[offset + 1], mRecords[offset + 2], mRecords[offset + 3]);
+        }
+
+        mHead.lazySet(tail);
+
+        if (overflowed) {
+            takeOverflow(camera);
+            count++;
+        }
+
+        return count;
+    }
+
+    private synchronized void takeOverflow(float[] camera) {
+        apply(camera, mOverflowType, mOverflowX, mOverflowY, mOverflowZ);
+        mOverflowed = false;
+    }
+
+    private static void apply(float[] camera, float type, float x, float y, float z) {
+        if (type == SET) {
+            camera[0] = x;
+            camera[1] = y;
+            camera[2] = z;
+        } else {
+            camera[0] += x;
+            camera[1] += y;
+        }
+    }
+}
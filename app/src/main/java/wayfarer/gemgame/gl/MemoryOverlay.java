@@ -0,0 +1,115 @@
+package wayfarer.gemgame.gl;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.MemoryLedger;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Debug view of the {@link MemoryLedger}, one bar per category in the top left corner. A bar
+ * spans the budget of its category, or its high-water mark if there is no budget. The fill is
+ * the current size, green within the budget and red over it, the white tick is the peak.
+ *
+ * GL thread only.
+ */
+public class MemoryOverlay {
+    private static final float LEFT = -0.95f;
+    private static final float TOP = 0.95f;
+    private static final float WIDTH = 0.6f;
+    private static final float BAR_HEIGHT = 0.04f;
+    private static final float GAP = 0.02f;
+    private static final float TICK_WIDTH = 0.006f;
+
+    /** Track, fill and peak tick of every category, two triangles each. */
+    private static final int RECTS = MemoryLedger.CATEGORIES * 3;
+    private static final int FLOATS_PER_RECT = 12;
+
+    // premultiplied, half transparent like the overdraw heat map
+    private static final float[] TRACK = {0.1f, 0.1f, 0.1f, 0.5f};
+    private static final float[] WITHIN = {0.0f, 0.5f, 0.0f, 0.5f};
+    private static final float[] OVER = {0.5f, 0.0f, 0.0f, 0.5f};
+    private static final float[] PEAK = {1.0f, 1.0f, 1.0f, 1.0f};
+
+    private final Context mContext;
+    private final FloatBuffer mRects;
+
+    private int mGeneration = 0;
+    private int mProgramHandle;
+    private int mPositionHandle;
+    private int mColorHandle;
+
+    public MemoryOverlay(Context context) {
+        mContext = context;
+        mRects = ByteBuffer.allocateDirect(RECTS * FLOATS_PER_RECT * 4).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        MemoryLedger.add(MemoryLedger.DIRECT, RECTS * FLOATS_PER_RECT * 4, 1);
+    }
+
+    /**
+     * Paints the bars over whatever is bound, expects the full surface viewport.
+     */
+    public void draw() {
+        if (!GpuResources.isCurrent(mGeneration)) {
+            // plain clip space quads in one colour, same as the overdraw heat map
+            mProgramHandle = GpuResources.program(mContext, R.raw.overdraw_vertex_shader,
+                    R.raw.overdraw_fragment_shader, new String[]{"a_Position"});
+            mPositionHandle = Gl.glGetAttribLocation(mProgramHandle, "a_Position");
+            mColorHandle = Gl.glGetUniformLocation(mProgramHandle, "u_Color");
+            mGeneration = GpuResources.getGeneration();
+        }
+
+        Gl.glDisable(GLES20.GL_DEPTH_TEST);
+        Gl.glEnable(GLES20.GL_BLEND);
+        Gl.glUseProgram(mProgramHandle);
+        mRects.position(0);
+        Gl.glVertexAttribPointer(mPositionHandle, 2, GLES20.GL_FLOAT, false, 0, mRects);
+        Gl.glEnableVertexAttribArray(mPositionHandle);
+
+        int rect = 0;
+        float top = TOP;
+
+        for (int category = 0; category < MemoryLedger.CATEGORIES; ++category) {
+            final long bytes = MemoryLedger.getBytes(category);
+            final long peak = MemoryLedger.getPeakBytes(category);
+            final long budget = MemoryLedger.getBudget(category);
+
+            // programs have no size, categories nothing was ever reported to show nothing
+            if (peak == 0 && budget == 0) {
+                continue;
+            }
+
+            final float scale = WIDTH / Math.max(budget != 0 ? budget : peak, 1);
+            final float bottom = top - BAR_HEIGHT;
+            final float peakX = LEFT + Math.min(peak * scale, WIDTH);
+
+            rect = drawRect(rect, LEFT, bottom, LEFT + WIDTH, top, TRACK);
+            rect = drawRect(rect, LEFT, bottom, LEFT + Math.min(bytes * scale, WIDTH), top,
+                    budget != 0 && bytes > budget ? OVER : WITHIN);
+            rect = drawRect(rect, peakX - TICK_WIDTH, bottom, peakX, top, PEAK);
+            top = bottom - GAP;
+        }
+
+        Gl.glEnable(GLES20.GL_DEPTH_TEST);
+    }
+
+    private int drawRect(int rect, float left, float bottom, float right, float top, float[] color) {
+        final int offset = rect * FLOATS_PER_RECT;
+        mRects.position(offset);
+        mRects.put(left).put(top).put(left).put(bottom).put(right).put(top);
+        mRects.put(left).put(bottom).put(right).put(bottom).put(right).put(top);
+        mRects.position(0);
+
+        Gl.glUniform4f(mColorHandle, color[0], color[1], color[2], color[3]);
+        Gl.glDrawArrays(GLES20.GL_TRIANGLES, rect * 6, 6);
+        return rect + 1;
+    }
+}
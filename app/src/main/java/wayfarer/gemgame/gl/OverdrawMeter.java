@@ -0,0 +1,102 @@
+package wayfarer.gemgame.gl;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.MemoryLedger;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Debug view of how many times every pixel is shaded. While measuring, every fragment that
+ * passes the depth test increments the stencil value of its pixel. {@link #end()} then paints
+ * the counts over the frame: blue 1, green 2, yellow 3, orange 4, red 5 and more.
+ *
+ * Needs a stencil buffer in the EGL config. GL thread only.
+ */
+public class OverdrawMeter {
+    private static final int LEVELS = 5;
+
+    /** Premultiplied heat colours, half transparent so the frame stays recognisable. */
+    private static final float[][] HEAT = {
+            {0.0f, 0.0f, 0.5f, 0.5f},
+            {0.0f, 0.5f, 0.0f, 0.5f},
+            {0.5f, 0.5f, 0.0f, 0.5f},
+            {0.5f, 0.25f, 0.0f, 0.5f},
+            {0.5f, 0.0f, 0.0f, 0.5f}
+    };
+
+    private final Context mContext;
+    private final FloatBuffer mQuad;
+
+    private int mGeneration = 0;
+    private int mProgramHandle;
+    private int mPositionHandle;
+    private int mColorHandle;
+
+    public OverdrawMeter(Context context) {
+        mContext = context;
+        // two triangles covering the whole clip space
+        final float[] quad = {
+                -1.0f, 1.0f,
+                -1.0f, -1.0f,
+                1.0f, 1.0f,
+                -1.0f, -1.0f,
+                1.0f, -1.0f,
+                1.0f, 1.0f
+        };
+        mQuad = ByteBuffer.allocateDirect(quad.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        mQuad.put(quad).position(0);
+        MemoryLedger.add(MemoryLedger.DIRECT, quad.length * 4, 1);
+    }
+
+    /**
+     * Starts counting. Call before the first pass of the frame.
+     */
+    public void begin() {
+        Gl.glClearStencil(0);
+        Gl.glClear(GLES20.GL_STENCIL_BUFFER_BIT);
+        Gl.glEnable(GLES20.GL_STENCIL_TEST);
+        Gl.glStencilFunc(GLES20.GL_ALWAYS, 0, 0xff);
+        // fragments rejected by the depth test are not shaded, so they do not count
+        Gl.glStencilOp(GLES20.GL_KEEP, GLES20.GL_KEEP, GLES20.GL_INCR);
+    }
+
+    /**
+     * Stops counting and paints the heat map over the frame.
+     */
+    public void end() {
+        if (!GpuResources.isCurrent(mGeneration)) {
+            mProgramHandle = GpuResources.program(mContext, R.raw.overdraw_vertex_shader,
+                    R.raw.overdraw_fragment_shader, new String[]{"a_Position"});
+            mPositionHandle = Gl.glGetAttribLocation(mProgramHandle, "a_Position");
+            mColorHandle = Gl.glGetUniformLocation(mProgramHandle, "u_Color");
+            mGeneration = GpuResources.getGeneration();
+        }
+
+        Gl.glStencilOp(GLES20.GL_KEEP, GLES20.GL_KEEP, GLES20.GL_KEEP);
+        Gl.glDisable(GLES20.GL_DEPTH_TEST);
+        Gl.glEnable(GLES20.GL_BLEND);
+        Gl.glUseProgram(mProgramHandle);
+        mQuad.position(0);
+        Gl.glVertexAttribPointer(mPositionHandle, 2, GLES20.GL_FLOAT, false, 0, mQuad);
+        Gl.glEnableVertexAttribArray(mPositionHandle);
+
+        for (int level = 1; level <= LEVELS; ++level) {
+            // the last colour also takes everything above it
+            Gl.glStencilFunc(level == LEVELS ? GLES20.GL_LEQUAL : GLES20.GL_EQUAL, level, 0xff);
+            final float[] c = HEAT[level - 1];
+            Gl.glUniform4f(mColorHandle, c[0], c[1], c[2], c[3]);
+            Gl.glDrawArrays(GLES20.GL_TRIANGLES, 0, 6);
+        }
+
+        Gl.glDisable(GLES20.GL_STENCIL_TEST);
+    }
+}
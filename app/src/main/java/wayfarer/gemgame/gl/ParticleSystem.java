@@ -0,0 +1,247 @@
+package wayfarer.gemgame.gl;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.MatrixHelper;
+import wayfarer.gemgame.util.MemoryLedger;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Burst effects for gem clears. Particle state lives in preallocated parallel float arrays,
+ * dead particles are swapped out with the last live one, so simulation allocates nothing.
+ * All live particles are streamed into one dynamic vertex buffer per frame and drawn as
+ * point sprites with a single draw call.
+ *
+ * All methods must be called on the GL thread (use GLSurfaceView.queueEvent from elsewhere).
+ */
+public class ParticleSystem {
+    /** How many bytes per float. */
+    private static final int BYTES_PER_FLOAT = 4;
+
+    /** X, Y, Z, R, G, B, A, size */
+    private static final int FLOATS_PER_PARTICLE = 8;
+
+    private static final float GRAVITY = -9.0f;
+    private static final float DRAG = 1.5f;
+
+    private final Context mContext;
+    private final int mCapacity;
+    private int mLive = 0;
+
+    // particle state, one slot per particle
+    private final float[] mX;
+    private final float[] mY;
+    private final float[] mZ;
+    private final float[] mVx;
+    private final float[] mVy;
+    private final float[] mLife;
+    private final float[] mMaxLife;
+    private final float[] mSize;
+    private final float[] mR;
+    private final float[] mG;
+    private final float[] mB;
+
+    private final FloatBuffer mVertices;
+    private float[] mViewProjectionMatrix = new float[16];
+    private int mSeed = 0x2545F491;
+
+    private int mGeneration = 0;
+    private int mProgramHandle;
+    private int mBufferHandle;
+    private int mMVPMatrixHandle;
+    private int mPointScaleHandle;
+    private int mPositionHandle;
+    private int mColorHandle;
+    private int mSizeHandle;
+    private int mViewportHeight = 1;
+
+    /**
+     * @param maxParticles - cap on live particles, bursts over the cap are cut
+     */
+    public ParticleSystem(Context context, int maxParticles) {
+        mContext = context;
+        mCapacity = maxParticles;
+        mX = new float[maxParticles];
+        mY = new float[maxParticles];
+        mZ = new float[maxParticles];
+        mVx = new float[maxParticles];
+        mVy = new float[maxParticles];
+        mLife = new float[maxParticles];
+        mMaxLife = new float[maxParticles];
+        mSize = new float[maxParticles];
+        mR = new float[maxParticles];
+        mG = new float[maxParticles];
+        mB = new float[maxParticles];
+        mVertices = ByteBuffer.allocateDirect(maxParticles * FLOATS_PER_PARTICLE * BYTES_PER_FLOAT)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        MemoryLedger.add(MemoryLedger.HEAP, 11L * maxParticles * BYTES_PER_FLOAT, 11);
+        MemoryLedger.add(MemoryLedger.DIRECT, (long) maxParticles * FLOATS_PER_PARTICLE * BYTES_PER_FLOAT, 1);
+    }
+
+    /**
+     * Creates program and vertex buffer. Done on the first draw in every GL context.
+     */
+    private void init() {
+        mProgramHandle = GpuResources.program(mContext, R.raw.particle_vertex_shader,
+                R.raw.particle_fragment_shader, new String[]{"a_Position", "a_Color", "a_Size"});
+        mMVPMatrixHandle = Gl.glGetUniformLocation(mProgramHandle, "u_MVPMatrix");
+        mPointScaleHandle = Gl.glGetUniformLocation(mProgramHandle, "u_PointScale");
+        mPositionHandle = Gl.glGetAttribLocation(mProgramHandle, "a_Position");
+        mColorHandle = Gl.glGetAttribLocation(mProgramHandle, "a_Color");
+        mSizeHandle = Gl.glGetAttribLocation(mProgramHandle, "a_Size");
+
+        mBufferHandle = GpuResources.buffer();
+        // storage is orphaned every frame, but always at capacity
+        MemoryLedger.add(MemoryLedger.BUFFER, (long) mCapacity * FLOATS_PER_PARTICLE * BYTES_PER_FLOAT, 1);
+        mGeneration = GpuResources.getGeneration();
+    }
+
+    public void setViewport(int width, int height) {
+        mViewportHeight = height;
+    }
+
+    public int getLiveCount() {
+        return mLive;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Spawns particles flying out of a point.
+     *
+     * @param count - particles to spawn, cut to the free capacity
+     * @param speed - initial speed in world units per second
+     * @param life - life time in seconds
+     * @param size - particle size in world units
+     */
+    public void emitBurst(float x, float y, float z, int count, float speed, float life, float size,
+                          float r, float g, float b) {
+        final int spawn = Math.min(count, mCapacity - mLive);
+
+        for (int i = 0; i < spawn; ++i) {
+            final int p = mLive++;
+            final double angle = 2 * Math.PI * random();
+            final float v = speed * (0.5f + 0.5f * random());
+            mX[p] = x;
+            mY[p] = y;
+            mZ[p] = z;
+            mVx[p] = v * (float) Math.cos(angle);
+            mVy[p] = v * (float) Math.sin(angle);
+            mMaxLife[p] = life * (0.75f + 0.25f * random());
+            mLife[p] = mMaxLife[p];
+            mSize[p] = size;
+            mR[p] = r;
+            mG[p] = g;
+            mB[p] = b;
+        }
+    }
+
+    /**
+     * Advances the simulation.
+     *
+     * @param dt - seconds since the previous update
+     */
+    public void update(float dt) {
+        final float drag = Math.max(0.0f, 1.0f - DRAG * dt);
+        int p = 0;
+
+        while (p < mLive) {
+            mLife[p] -= dt;
+
+            if (mLife[p] <= 0) {
+                // move the last live particle into this slot and look at it again
+                mLive--;
+                copy(mLive, p);
+                continue;
+            }
+
+            mVy[p] += GRAVITY * dt;
+            mVx[p] *= drag;
+            mVy[p] *= drag;
+            mX[p] += mVx[p] * dt;
+            mY[p] += mVy[p] * dt;
+            p++;
+        }
+    }
+
+    public void draw(float[] viewMatrix, float[] projectionMatrix) {
+        if (mLive == 0) {
+            return;
+        }
+
+        if (!GpuResources.isCurrent(mGeneration)) {
+            init();
+        }
+
+        mVertices.clear();
+
+        for (int p = 0; p < mLive; ++p) {
+            mVertices.put(mX[p]).put(mY[p]).put(mZ[p]);
+            mVertices.put(mR[p]).put(mG[p]).put(mB[p]).put(mLife[p] / mMaxLife[p]);
+            mVertices.put(mSize[p]);
+        }
+
+        mVertices.position(0);
+
+        Gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mBufferHandle);
+        // Orphan last frame's storage, so the driver does not wait for it to be consumed.
+        Gl.glBufferData(GLES20.GL_ARRAY_BUFFER, mCapacity * FLOATS_PER_PARTICLE * BYTES_PER_FLOAT,
+                null, GLES20.GL_STREAM_DRAW);
+        Gl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, mLive * FLOATS_PER_PARTICLE * BYTES_PER_FLOAT,
+                mVertices);
+
+        Gl.glUseProgram(mProgramHandle);
+        MatrixHelper.multiplyMM(mViewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
+        Gl.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mViewProjectionMatrix, 0);
+        // projection[5] is the vertical focal length, half the viewport maps it to pixels
+        Gl.glUniform1f(mPointScaleHandle, projectionMatrix[5] * mViewportHeight / 2);
+
+        final int stride = FLOATS_PER_PARTICLE * BYTES_PER_FLOAT;
+        Gl.glVertexAttribPointer(mPositionHandle, 3, GLES20.GL_FLOAT, false, stride, 0);
+        Gl.glEnableVertexAttribArray(mPositionHandle);
+        Gl.glVertexAttribPointer(mColorHandle, 4, GLES20.GL_FLOAT, false, stride, 3 * BYTES_PER_FLOAT);
+        Gl.glEnableVertexAttribArray(mColorHandle);
+        Gl.glVertexAttribPointer(mSizeHandle, 1, GLES20.GL_FLOAT, false, stride, 7 * BYTES_PER_FLOAT);
+        Gl.glEnableVertexAttribArray(mSizeHandle);
+
+        Gl.glDrawArrays(GLES20.GL_POINTS, 0, mLive);
+
+        Gl.glDisableVertexAttribArray(mSizeHandle);
+        Gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    }
+
+    private void copy(int from, int to) {
+        mX[to] = mX[from];
+        mY[to] = mY[from];
+        mZ[to] = mZ[from];
+        mVx[to] = mVx[from];
+        mVy[to] = mVy[from];
+        mLife[to] = mLife[from];
+        mMaxLife[to] = mMaxLife[from];
+        mSize[to] = mSize[from];
+        mR[to] = mR[from];
+        mG[to] = mG[from];
+        mB[to] = mB[from];
+    }
+
+    /**
+     * xorshift, uniform in [0, 1). Cheaper than java.util.Random and allocation free.
+     */
+    private float random() {
+        mSeed ^= mSeed << 13;
+        mSeed ^= mSeed >>> 17;
+        mSeed ^= mSeed << 5;
+        return (mSeed >>> 8) / (float) (1 << 24);
+    }
+}
@@ -0,0 +1,80 @@
+package wayfarer.gemgame.gl;
+
+import wayfarer.gemgame.mesh.Mesh;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Meshes of one render pass with their distance to the camera. Storage is reused from frame
+ * to frame and sorting is an insertion sort, which is close to linear because the order
+ * rarely changes between frames.
+ */
+public class RenderQueue {
+    private Mesh[] mMeshes = new Mesh[16];
+    private float[] mDepths = new float[16];
+    private int mSize = 0;
+
+    public void clear() {
+        // drop references, so removed meshes can be collected
+        for (int i = 0; i < mSize; ++i) {
+            mMeshes[i] = null;
+        }
+
+        mSize = 0;
+    }
+
+    public void add(Mesh mesh, float depth) {
+        if (mSize == mMeshes.length) {
+            Mesh[] meshes = new Mesh[mSize * 2];
+            float[] depths = new float[mSize * 2];
+            System.arraycopy(mMeshes, 0, meshes, 0, mSize);
+            System.arraycopy(mDepths, 0, depths, 0, mSize);
+            mMeshes = meshes;
+            mDepths = depths;
+        }
+
+        mMeshes[mSize] = mesh;
+        mDepths[mSize] = depth;
+        mSize++;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public Mesh get(int i) {
+        return mMeshes[i];
+    }
+
+    /**
+     * Nearest first. Opaque meshes go this way, so hidden fragments fail the depth test early.
+     */
+    public void sortFrontToBack() {
+        sort(1.0f);
+    }
+
+    /**
+     * Farthest first. Blended meshes go this way, so they composite correctly.
+     */
+    public void sortBackToFront() {
+        sort(-1.0f);
+    }
+
+    private void sort(float sign) {
+        for (int i = 1; i < mSize; ++i) {
+            final Mesh mesh = mMeshes[i];
+            final float depth = mDepths[i];
+            int j = i - 1;
+
+            while (j >= 0 && mDepths[j] * sign > depth * sign) {
+                mMeshes[j + 1] = mMeshes[j];
+                mDepths[j + 1] = mDepths[j];
+                j--;
+            }
+
+            mMeshes[j + 1] = mesh;
+            mDepths[j + 1] = depth;
+        }
+    }
+}
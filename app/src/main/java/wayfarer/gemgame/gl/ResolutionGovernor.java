@@ -0,0 +1,170 @@
+package wayfarer.gemgame.gl;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Picks the fraction of the surface resolution the scene is rendered at from measured
+ * frame times.
+ *
+ * Frame times are smoothed with an exponential moving average. Above the budget plus the
+ * hysteresis band the scale steps down, below the budget minus the band it steps up, inside
+ * the band it stays. A vsync capped frame never gets below the budget, so after a long calm
+ * stretch the governor probes one step up anyway. A probe that pushes the frame over budget
+ * is undone and the next probe waits twice as long. After every change the average gets a
+ * few frames to settle before the next decision.
+ *
+ * {@link #onFrame(float)} is GL thread only, the rest can be called from any thread.
+ */
+public class ResolutionGovernor {
+    /** Weight of the newest frame in the moving average. */
+    private static final float SMOOTHING = 0.1f;
+
+    /** Frames after a change before the next decision. */
+    private static final int SETTLE_FRAMES = 20;
+
+    /** Calm frames before the first probe up and the cap of the backoff. */
+    private static final int PROBE_FRAMES = 120;
+    private static final int MAX_PROBE_FRAMES = 120 * 16;
+
+    private final float mTargetFrameTime;
+    private final float mStep;
+    private final float mHysteresis;
+    private volatile float mMinScale;
+    private volatile float mMaxScale;
+
+    // GL thread only
+    private int mFramesSinceChange = 0;
+    private int mProbeFrames = PROBE_FRAMES;
+    private boolean mProbing = false;
+
+    // metrics
+    private volatile float mScale;
+    private volatile float mSmoothedFrameTime = 0.0f;
+    private volatile int mSamples = 0;
+    private volatile int mDownscales = 0;
+    private volatile int mUpscales = 0;
+    private volatile int mFailedProbes = 0;
+
+    /**
+     * @param targetFrameTime - frame budget in seconds
+     * @param step            - scale change per decision
+     * @param hysteresis      - relative width of the band around the budget where the scale is kept
+     */
+    public ResolutionGovernor(float targetFrameTime, float minScale, float maxScale, float step, float hysteresis) {
+        mTargetFrameTime = targetFrameTime;
+        mMinScale = minScale;
+        mMaxScale = maxScale;
+        mStep = step;
+        mHysteresis = hysteresis;
+        mScale = maxScale;
+    }
+
+    /**
+     * Changes the allowed range. The current scale is clamped into it on the next frame.
+     */
+    public void setLimits(float minScale, float maxScale) {
+        mMinScale = minScale;
+        mMaxScale = maxScale;
+    }
+
+    /**
+     * Takes the duration of a frame in seconds.
+     *
+     * @return true if the scale changed
+     */
+    public boolean onFrame(float frameTime) {
+        mSmoothedFrameTime = mSamples == 0 ? frameTime
+                : mSmoothedFrameTime + SMOOTHING * (frameTime - mSmoothedFrameTime);
+        mSamples++;
+        mFramesSinceChange++;
+
+        final float min = mMinScale;
+        final float max = mMaxScale;
+        final float scale = mScale;
+
+        if (scale < min || scale > max) {
+            return setScale(Math.max(min, Math.min(max, scale)));
+        }
+
+        if (mFramesSinceChange < SETTLE_FRAMES) {
+            return false;
+        }
+
+        if (mSmoothedFrameTime > mTargetFrameTime * (1 + mHysteresis)) {
+            if (mProbing) {
+                mFailedProbes++;
+                mProbeFrames = Math.min(mProbeFrames * 2, MAX_PROBE_FRAMES);
+            }
+
+            mProbing = false;
+
+            if (scale > min) {
+                mDownscales++;
+                return setScale(Math.max(min, scale - mStep));
+            }
+
+            return false;
+        }
+
+        // a probe still within budget after settling has held
+        mProbing = false;
+
+        if (scale < max && mSmoothedFrameTime < mTargetFrameTime * (1 - mHysteresis)) {
+            mUpscales++;
+            return setScale(Math.min(max, scale + mStep));
+        }
+
+        if (scale < max && mFramesSinceChange >= mProbeFrames) {
+            mProbing = true;
+            mUpscales++;
+            return setScale(Math.min(max, scale + mStep));
+        }
+
+        return false;
+    }
+
+    private boolean setScale(float scale) {
+        mFramesSinceChange = 0;
+
+        if (scale == mScale) {
+            return false;
+        }
+
+        mScale = scale;
+        return true;
+    }
+
+    /**
+     * @return fraction of the surface width and height to render at
+     */
+    public float getScale() {
+        return mScale;
+    }
+
+    /**
+     * @return moving average of the frame time in seconds
+     */
+    public float getSmoothedFrameTime() {
+        return mSmoothedFrameTime;
+    }
+
+    public int getSamples() {
+        return mSamples;
+    }
+
+    public int getDownscales() {
+        return mDownscales;
+    }
+
+    public int getUpscales() {
+        return mUpscales;
+    }
+
+    /**
+     * @return probes up that were undone because the frame went over budget
+     */
+    public int getFailedProbes() {
+        return mFailedProbes;
+    }
+}
@@ -0,0 +1,193 @@
+package wayfarer.gemgame.gl;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.MemoryLedger;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Offscreen colour and depth target the scene is drawn into at reduced resolution, then
+ * stretched over the surface with bilinear filtering. There is no stencil buffer, so the
+ * overdraw meter has to draw straight to the surface.
+ *
+ * GL thread only.
+ */
+public class ScaledTarget {
+    private final Context mContext;
+    private final FloatBuffer mQuadPositions;
+    private final FloatBuffer mQuadTextureCoordinates;
+
+    private int mGeneration = 0;
+    private int mProgramHandle;
+    private int mPositionHandle;
+    private int mTextureCoordinateHandle;
+    private int mTextureUniformHandle;
+    private int mFramebufferHandle;
+    private int mTextureHandle;
+    private int mDepthHandle;
+
+    /** Size of the allocated storage, 0 if there is none. */
+    private int mWidth = 0;
+    private int mHeight = 0;
+
+    public ScaledTarget(Context context) {
+        mContext = context;
+        // two triangles covering the whole clip space and the whole texture
+        final float[] positions = {
+                -1.0f, -1.0f,
+                1.0f, -1.0f,
+                -1.0f, 1.0f,
+                -1.0f, 1.0f,
+                1.0f, -1.0f,
+                1.0f, 1.0f
+        };
+        final float[] textureCoordinates = {
+                0.0f, 0.0f,
+                1.0f, 0.0f,
+                0.0f, 1.0f,
+                0.0f, 1.0f,
+                1.0f, 0.0f,
+                1.0f, 1.0f
+        };
+        mQuadPositions = ByteBuffer.allocateDirect(positions.length * 4).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        mQuadPositions.put(positions).position(0);
+        mQuadTextureCoordinates = ByteBuffer.allocateDirect(textureCoordinates.length * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        mQuadTextureCoordinates.put(textureCoordinates).position(0);
+        MemoryLedger.add(MemoryLedger.DIRECT, (positions.length + textureCoordinates.length) * 4, 2);
+    }
+
+    private void init() {
+        mProgramHandle = GpuResources.program(mContext, R.raw.upscale_vertex_shader, R.raw.upscale_fragment_shader,
+                new String[]{"a_Position", "a_TexCoordinate"});
+        mPositionHandle = Gl.glGetAttribLocation(mProgramHandle, "a_Position");
+        mTextureCoordinateHandle = Gl.glGetAttribLocation(mProgramHandle, "a_TexCoordinate");
+        mTextureUniformHandle = Gl.glGetUniformLocation(mProgramHandle, "u_Texture");
+
+        final int[] handle = new int[1];
+        Gl.glGenTextures(1, handle, 0);
+        mTextureHandle = handle[0];
+        Gl.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureHandle);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+        Gl.glGenRenderbuffers(1, handle, 0);
+        mDepthHandle = handle[0];
+        Gl.glGenFramebuffers(1, handle, 0);
+        mFramebufferHandle = handle[0];
+
+        mWidth = 0;
+        mHeight = 0;
+        mGeneration = GpuResources.getGeneration();
+    }
+
+    private void allocate(int width, int height) {
+        Gl.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureHandle);
+        Gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+        Gl.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, mDepthHandle);
+        Gl.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, GLES20.GL_DEPTH_COMPONENT16, width, height);
+        MemoryLedger.resize(MemoryLedger.TEXTURE, 4L * mWidth * mHeight, 4L * width * height);
+        MemoryLedger.resize(MemoryLedger.RENDERBUFFER, 2L * mWidth * mHeight, 2L * width * height);
+
+        Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferHandle);
+        Gl.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, mTextureHandle, 0);
+        Gl.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_DEPTH_ATTACHMENT,
+                GLES20.GL_RENDERBUFFER, mDepthHandle);
+        final int status = Gl.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+
+        if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+            throw new RuntimeException("Error creating scaled framebuffer: " + status);
+        }
+
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Redirects drawing into the target, (re)allocating it for the given size if needed.
+     */
+    public void begin(int width, int height) {
+        if (!GpuResources.isCurrent(mGeneration)) {
+            init();
+        }
+
+        if (width != mWidth || height != mHeight) {
+            allocate(width, height);
+        } else {
+            Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFramebufferHandle);
+        }
+
+        Gl.glViewport(0, 0, width, height);
+    }
+
+    /**
+     * Goes back to the surface and stretches the target over it.
+     */
+    public void end(int surfaceWidth, int surfaceHeight) {
+        Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        Gl.glViewport(0, 0, surfaceWidth, surfaceHeight);
+
+        // every surface pixel is overwritten, nothing to test or blend against
+        Gl.glDisable(GLES20.GL_DEPTH_TEST);
+        Gl.glDisable(GLES20.GL_BLEND);
+        Gl.glUseProgram(mProgramHandle);
+        Gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        Gl.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureHandle);
+        Gl.glUniform1i(mTextureUniformHandle, 0);
+        mQuadPositions.position(0);
+        Gl.glVertexAttribPointer(mPositionHandle, 2, GLES20.GL_FLOAT, false, 0, mQuadPositions);
+        Gl.glEnableVertexAttribArray(mPositionHandle);
+        mQuadTextureCoordinates.position(0);
+        Gl.glVertexAttribPointer(mTextureCoordinateHandle, 2, GLES20.GL_FLOAT, false, 0, mQuadTextureCoordinates);
+        Gl.glEnableVertexAttribArray(mTextureCoordinateHandle);
+        Gl.glDrawArrays(GLES20.GL_TRIANGLES, 0, 6);
+        Gl.glEnable(GLES20.GL_DEPTH_TEST);
+    }
+
+    /**
+     * Frees the target, e.g. once the scene is back at full size. The next begin builds it again.
+     */
+    public void release() {
+        if (GpuResources.isCurrent(mGeneration) && mWidth != 0) {
+            final int[] handles = {mFramebufferHandle};
+            Gl.glDeleteFramebuffers(1, handles, 0);
+            handles[0] = mDepthHandle;
+            Gl.glDeleteRenderbuffers(1, handles, 0);
+            handles[0] = mTextureHandle;
+            Gl.glDeleteTextures(1, handles, 0);
+            MemoryLedger.resize(MemoryLedger.TEXTURE, 4L * mWidth * mHeight, 0);
+            MemoryLedger.resize(MemoryLedger.RENDERBUFFER, 2L * mWidth * mHeight, 0);
+        }
+
+        // handles are gone, start over on the next begin
+        mGeneration = 0;
+        mWidth = 0;
+        mHeight = 0;
+    }
+
+    public int getFramebufferHandle() {
+        return mFramebufferHandle;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+}
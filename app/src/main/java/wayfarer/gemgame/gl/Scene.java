@@ -0,0 +1,148 @@
+package wayfarer.gemgame.gl;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import wayfarer.gemgame.mesh.Mesh;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Scene container shared between game logic and the GL thread.
+ *
+ * Game logic threads stage their changes (add/remove/move/retexture) and call {@link #publish()}
+ * once a batch is complete. Publishing freezes the staged scene into an immutable {@link Snapshot}
+ * that the GL thread picks up with a single atomic read per frame. Meshes themselves are only
+ * touched on the GL thread, when a new snapshot is applied.
+ */
+public class Scene {
+    private static class Node {
+        final Mesh mesh;
+        final float[] position = new float[3];
+        int texture;
+
+        Node(Mesh mesh) {
+            this.mesh = mesh;
+            System.arraycopy(mesh.getPosition(), 0, position, 0, 3);
+            texture = mesh.getTextureRes();
+        }
+    }
+
+    /**
+     * Frozen state of the scene. Never changes after publishing.
+     */
+    public static class Snapshot {
+        private final Mesh[] mMeshes;
+        private final float[] mPositions;
+        private final int[] mTextures;
+
+        private Snapshot(List<Node> nodes) {
+            final int size = nodes.size();
+            mMeshes = new Mesh[size];
+            mPositions = new float[size * 3];
+            mTextures = new int[size];
+
+            for (int i = 0; i < size; ++i) {
+                Node n = nodes.get(i);
+                mMeshes[i] = n.mesh;
+                System.arraycopy(n.position, 0, mPositions, i * 3, 3);
+                mTextures[i] = n.texture;
+            }
+        }
+
+        public int size() {
+            return mMeshes.length;
+        }
+
+        public Mesh getMesh(int i) {
+            return mMeshes[i];
+        }
+
+        /**
+         * Pushes the snapshot state into the meshes. GL resources are left to the first draw.
+         * GL thread only.
+         */
+        public void apply() {
+            for (int i = 0; i < mMeshes.length; ++i) {
+                final Mesh m = mMeshes[i];
+                final float[] position = m.getPosition();
+                final int offset = i * 3;
+
+                if (position[0] != mPositions[offset] || position[1] != mPositions[offset + 1]
+                        || position[2] != mPositions[offset + 2]) {
+                    m.setPosition(mPositions[offset], mPositions[offset + 1], mPositions[offset + 2]);
+                }
+
+                if (m.getTextureRes() != mTextures[i]) {
+                    m.setTexrure(mTextures[i]);
+                }
+            }
+        }
+    }
+
+    // staging area, guarded by this
+    private final List<Node> mNodes = new ArrayList<>();
+    private final Map<Mesh, Node> mNodeByMesh = new IdentityHashMap<>();
+
+    private final AtomicReference<Snapshot> mPublished =
+            new AtomicReference<>(new Snapshot(new ArrayList<Node>()));
+
+    public synchronized void add(Mesh mesh) {
+        if (mNodeByMesh.containsKey(mesh)) {
+            return;
+        }
+
+        Node n = new Node(mesh);
+        mNodes.add(n);
+        mNodeByMesh.put(mesh, n);
+    }
+
+    /**
+     * Drops the mesh from the scene and takes it off the memory ledger, it must not be added
+     * again. Snapshots published before keep drawing it until the next publish.
+     */
+    public synchronized void remove(Mesh mesh) {
+        Node n = mNodeByMesh.remove(mesh);
+
+        if (n != null) {
+            mNodes.remove(n);
+            mesh.release();
+        }
+    }
+
+    public synchronized void move(Mesh mesh, float x, float y, float z) {
+        Node n = mNodeByMesh.get(mesh);
+
+        if (n != null) {
+            n.position[0] = x;
+            n.position[1] = y;
+            n.position[2] = z;
+        }
+    }
+
+    public synchronized void retexture(Mesh mesh, int textureRes) {
+        Node n = mNodeByMesh.get(mesh);
+
+        if (n != null) {
+            n.texture = textureRes;
+        }
+    }
+
+    /**
+     * Makes all changes staged so far visible to the GL thread.
+     */
+    public synchronized void publish() {
+        mPublished.set(new Snapshot(mNodes));
+    }
+
+    /**
+     * Latest published snapshot. Lock-free, safe to call every frame.
+     */
+    public Snapshot acquire() {
+        return mPublished.get();
+    }
+}
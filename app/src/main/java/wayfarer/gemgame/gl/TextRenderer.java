@@ -0,0 +1,395 @@
+package wayfarer.gemgame.gl;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.game.BoardChanges;
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.MatrixHelper;
+import wayfarer.gemgame.util.MemoryLedger;
+import wayfarer.gemgame.util.ShaderVariant;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Draws the labels of all board hexes in one call.
+ *
+ * Printable ASCII is rasterised once into a glyph atlas. Every hex owns a fixed slot of
+ * {@link #MAX_CHARS} glyph quads in one vertex buffer. Only hexes named by {@link BoardChanges}
+ * events of their position or label are laid out again, and uploaded on the next draw merged
+ * into contiguous runs. Nothing else is looked at, a frame without label changes costs nothing.
+ */
+public class TextRenderer {
+    private static final String TAG = "TextRenderer";
+
+    /** Longer labels are cut. */
+    public static final int MAX_CHARS = 6;
+
+    /** Label height in world units, hexes are 2 units across. */
+    private static final float CHAR_HEIGHT = 0.5f;
+
+    static final char FIRST_CHAR = ' ';
+    static final char LAST_CHAR = '~';
+    static final int ATLAS_COLUMNS = 16;
+    static final int CELL_SIZE = 32;
+    static final int ATLAS_WIDTH = 512;
+    static final int ATLAS_HEIGHT = 256;
+
+    /** How many bytes per float. */
+    private static final int BYTES_PER_FLOAT = 4;
+
+    /** X, Y, Z, S, T */
+    private static final int FLOATS_PER_VERTEX = 5;
+    private static final int FLOATS_PER_SLOT = MAX_CHARS * 6 * FLOATS_PER_VERTEX;
+
+    /** Fields that move or change a label. */
+    private static final int LABEL_FIELDS = BoardChanges.POSITION | BoardChanges.TEXT;
+
+    /**
+     * Measures and rasterises the glyphs. Android text rendering by default, headless tests
+     * plug in their own.
+     */
+    public interface Font {
+        /**
+         * @return advance of the glyph in atlas pixels
+         */
+        float measure(char c);
+
+        /**
+         * Creates the glyph atlas in the current context, printable ASCII in cells of
+         * {@link TextRenderer#CELL_SIZE}, {@link TextRenderer#ATLAS_COLUMNS} per row, starting at the top left.
+         */
+        int createAtlas();
+    }
+
+    public static final Font ANDROID_FONT = new Font() {
+        @Override
+        public float measure(char c) {
+            return paint().measureText(String.valueOf(c));
+        }
+
+        @Override
+        public int createAtlas() {
+            Bitmap bitmap = Bitmap.createBitmap(ATLAS_WIDTH, ATLAS_HEIGHT, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+            Paint paint = paint();
+            final float baseline = CELL_SIZE * 0.8f;
+            final char[] glyph = new char[1];
+
+            for (char c = FIRST_CHAR; c <= LAST_CHAR; ++c) {
+                final int i = c - FIRST_CHAR;
+                glyph[0] = c;
+                canvas.drawText(glyph, 0, 1, (i % ATLAS_COLUMNS) * CELL_SIZE,
+                        (i / ATLAS_COLUMNS) * CELL_SIZE + baseline, paint);
+            }
+
+            final int[] handle = new int[1];
+            Gl.glGenTextures(1, handle, 0);
+            Gl.glBindTexture(GLES20.GL_TEXTURE_2D, handle[0]);
+            Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            Gl.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+            bitmap.recycle();
+            return handle[0];
+        }
+
+        private Paint paint() {
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setColor(Color.WHITE);
+            paint.setTextSize(CELL_SIZE * 0.8f);
+            paint.setTypeface(Typeface.DEFAULT_BOLD);
+            return paint;
+        }
+    };
+
+    private static Font sFont = ANDROID_FONT;
+
+    private final Context mContext;
+    /** Glyph advances, measured on the first label laid out, no GL needed. */
+    private final float[] mAdvance = new float[LAST_CHAR - FIRST_CHAR + 1];
+    private boolean mMeasured = false;
+
+    private final HexagonPool mPool;
+    private int mSlots = 0;
+    private int mCapacity = 0;
+    /** Copy of the buffer contents, survives context loss. */
+    private FloatBuffer mVertices;
+    private boolean[] mDirty = new boolean[0];
+    private int[] mDirtySlots = new int[0];
+    private int mDirtyCount = 0;
+    private boolean mReallocate = true;
+
+    private float[] mViewProjectionMatrix = new float[16];
+
+    private int mGeneration = 0;
+    private int mProgramHandle;
+    private int mTextureHandle;
+    private int mBufferHandle;
+    private int mBufferBytes = 0;
+    private int mMVPMatrixHandle;
+    private int mTextureUniformHandle;
+    private int mPositionHandle;
+    private int mTextureCoordinateHandle;
+
+    public TextRenderer(Context context, HexagonPool pool) {
+        mContext = context;
+        mPool = pool;
+    }
+
+    public static void setFont(Font font) {
+        sFont = font;
+    }
+
+    /**
+     * Builds atlas, program and buffer. Done on the first draw in every GL context.
+     */
+    private void init() {
+        mProgramHandle = ShaderVariant.program(mContext, R.raw.per_pixel_vertex_shader,
+                R.raw.per_pixel_fragment_shader, ShaderVariant.TEXTURED);
+        mMVPMatrixHandle = Gl.glGetUniformLocation(mProgramHandle, "u_MVPMatrix");
+        mTextureUniformHandle = Gl.glGetUniformLocation(mProgramHandle, "u_Texture");
+        mPositionHandle = Gl.glGetAttribLocation(mProgramHandle, "a_Position");
+        mTextureCoordinateHandle = Gl.glGetAttribLocation(mProgramHandle, "a_TexCoordinate");
+
+        mTextureHandle = createAtlas();
+        mBufferHandle = GpuResources.buffer();
+        mBufferBytes = 0;
+        mReallocate = true;
+        mGeneration = GpuResources.getGeneration();
+    }
+
+    /**
+     * Rasterises all printable ASCII into one texture.
+     */
+    private int createAtlas() {
+        final int handle = sFont.createAtlas();
+
+        if (handle == 0) {
+            throw new RuntimeException("Error creating glyph atlas.");
+        }
+
+        MemoryLedger.add(MemoryLedger.TEXTURE, 4L * ATLAS_WIDTH * ATLAS_HEIGHT, 1);
+        return handle;
+    }
+
+    /**
+     * Fills the glyph advances, independent of any GL context, so labels laid out before the
+     * first draw are as wide as later ones.
+     */
+    private void measure() {
+        for (char c = FIRST_CHAR; c <= LAST_CHAR; ++c) {
+            mAdvance[c - FIRST_CHAR] = Math.min(sFont.measure(c), CELL_SIZE);
+        }
+
+        mMeasured = true;
+    }
+
+    /**
+     * Lays out the labels of hexes moved or relabelled by the batch. No GL calls, the upload
+     * waits for the next draw, so batches of frames where labels are not drawn pile up here.
+     */
+    public void apply(BoardChanges.Batch changes) {
+        // events are recorded after the slot count grows, so every drained index below it is valid
+        final int slots = mPool.size();
+        reserve(slots);
+        mSlots = slots;
+
+        for (int n = 0; n < changes.size(); ++n) {
+            final int slot = changes.getIndex(n);
+
+            if (slot < slots && (changes.getFields(n) & LABEL_FIELDS) != 0) {
+                layout(slot);
+
+                if (!mDirty[slot]) {
+                    mDirty[slot] = true;
+                    mDirtySlots[mDirtyCount++] = slot;
+                }
+            }
+        }
+    }
+
+    private void reserve(int slots) {
+        if (slots <= mCapacity) {
+            return;
+        }
+
+        final int capacity = Math.max(slots, Math.max(mCapacity * 2, 64));
+        MemoryLedger.resize(MemoryLedger.DIRECT, (long) mCapacity * FLOATS_PER_SLOT * BYTES_PER_FLOAT,
+                (long) capacity * FLOATS_PER_SLOT * BYTES_PER_FLOAT);
+        final FloatBuffer vertices = ByteBuffer.allocateDirect(capacity * FLOATS_PER_SLOT * BYTES_PER_FLOAT)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        if (mVertices != null) {
+            mVertices.position(0);
+            vertices.put(mVertices);
+            vertices.position(0);
+        }
+
+        mVertices = vertices;
+        mDirty = Arrays.copyOf(mDirty, capacity);
+        mDirtySlots = Arrays.copyOf(mDirtySlots, capacity);
+        mCapacity = capacity;
+        mReallocate = true;
+    }
+
+    public void draw(float[] viewMatrix, float[] projectionMatrix) {
+        final int slots = mSlots;
+
+        // nothing to show, and the atlas is not even built until there is
+        if (slots == 0 || mPool.getLabelCount() == 0) {
+            return;
+        }
+
+        if (!GpuResources.isCurrent(mGeneration)) {
+            init();
+        }
+
+        Gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mBufferHandle);
+        upload();
+
+        Gl.glUseProgram(mProgramHandle);
+        MatrixHelper.multiplyMM(mViewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
+        Gl.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mViewProjectionMatrix, 0);
+
+        Gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        Gl.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureHandle);
+        Gl.glUniform1i(mTextureUniformHandle, 0);
+
+        final int stride = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+        Gl.glVertexAttribPointer(mPositionHandle, 3, GLES20.GL_FLOAT, false, stride, 0);
+        Gl.glEnableVertexAttribArray(mPositionHandle);
+        Gl.glVertexAttribPointer(mTextureCoordinateHandle, 2, GLES20.GL_FLOAT, false, stride,
+                3 * BYTES_PER_FLOAT);
+        Gl.glEnableVertexAttribArray(mTextureCoordinateHandle);
+
+        Gl.glDrawArrays(GLES20.GL_TRIANGLES, 0, slots * MAX_CHARS * 6);
+
+        Gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Uploads the slots laid out since the last draw. Expects the vertex buffer to be bound.
+     */
+    private void upload() {
+        if (mReallocate) {
+            final int bytes = mCapacity * FLOATS_PER_SLOT * BYTES_PER_FLOAT;
+            mVertices.position(0);
+            Gl.glBufferData(GLES20.GL_ARRAY_BUFFER, bytes, mVertices, GLES20.GL_DYNAMIC_DRAW);
+            MemoryLedger.resize(MemoryLedger.BUFFER, mBufferBytes, bytes);
+            mBufferBytes = bytes;
+            mReallocate = false;
+
+            for (int n = 0; n < mDirtyCount; ++n) {
+                mDirty[mDirtySlots[n]] = false;
+            }
+
+            mDirtyCount = 0;
+            return;
+        }
+
+        if (mDirtyCount == 0) {
+            return;
+        }
+
+        // one upload per run of neighbouring dirty slots
+        Arrays.sort(mDirtySlots, 0, mDirtyCount);
+        int n = 0;
+
+        while (n < mDirtyCount) {
+            final int first = mDirtySlots[n];
+            int last = first;
+            mDirty[first] = false;
+            n++;
+
+            while (n < mDirtyCount && mDirtySlots[n] == last + 1) {
+                last++;
+                mDirty[last] = false;
+                n++;
+            }
+
+            mVertices.position(first * FLOATS_PER_SLOT);
+            Gl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, first * FLOATS_PER_SLOT * BYTES_PER_FLOAT,
+                    (last - first + 1) * FLOATS_PER_SLOT * BYTES_PER_FLOAT, mVertices);
+        }
+
+        mVertices.position(0);
+        mDirtyCount = 0;
+    }
+
+    /**
+     * Writes glyph quads of the hex label centered on the hex, unused quads collapse to a point.
+     */
+    private void layout(int slot) {
+        final String text = mPool.getText(slot);
+        final int length = text == null ? 0 : Math.min(text.length(), MAX_CHARS);
+
+        if (length > 0 && !mMeasured) {
+            measure();
+        }
+
+        final float scale = CHAR_HEIGHT / CELL_SIZE;
+        float width = 0;
+
+        for (int i = 0; i < length; ++i) {
+            width += mAdvance[glyphIndex(text.charAt(i))];
+        }
+
+        float x = mPool.getX(slot) - width * scale / 2;
+        final float bottom = mPool.getY(slot) - CHAR_HEIGHT / 2;
+        final float top = bottom + CHAR_HEIGHT;
+        final float z = mPool.getZ(slot);
+        int offset = slot * FLOATS_PER_SLOT;
+
+        for (int i = 0; i < MAX_CHARS; ++i) {
+            if (i >= length) {
+                for (int v = 0; v < 6; ++v) {
+                    offset = put(offset, 0, 0, 0, 0, 0);
+                }
+                continue;
+            }
+
+            final int glyph = glyphIndex(text.charAt(i));
+            final float advance = mAdvance[glyph];
+            final float right = x + advance * scale;
+            final float s0 = (float) ((glyph % ATLAS_COLUMNS) * CELL_SIZE) / ATLAS_WIDTH;
+            final float s1 = s0 + advance / ATLAS_WIDTH;
+            final float t0 = (float) ((glyph / ATLAS_COLUMNS) * CELL_SIZE) / ATLAS_HEIGHT;
+            final float t1 = t0 + (float) CELL_SIZE / ATLAS_HEIGHT;
+
+            // same winding and bitmap-flipped T as the mesh quads
+            offset = put(offset, x, top, z, s0, t0);
+            offset = put(offset, x, bottom, z, s0, t1);
+            offset = put(offset, right, top, z, s1, t0);
+            offset = put(offset, x, bottom, z, s0, t1);
+            offset = put(offset, right, bottom, z, s1, t1);
+            offset = put(offset, right, top, z, s1, t0);
+            x = right;
+        }
+    }
+
+    private int put(int offset, float x, float y, float z, float s, float t) {
+        mVertices.put(offset, x);
+        mVertices.put(offset + 1, y);
+        mVertices.put(offset + 2, z);
+        mVertices.put(offset + 3, s);
+        mVertices.put(offset + 4, t);
+        return offset + FLOATS_PER_VERTEX;
+    }
+
+    private static int glyphIndex(char c) {
+        return c < FIRST_CHAR || c > LAST_CHAR ? '?' - FIRST_CHAR : c - FIRST_CHAR;
+    }
+}
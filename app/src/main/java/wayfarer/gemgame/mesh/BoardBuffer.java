@@ -0,0 +1,410 @@
+package wayfarer.gemgame.mesh;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.game.BoardChanges;
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.gl.Gl;
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.MatrixHelper;
+import wayfarer.gemgame.util.MemoryLedger;
+import wayfarer.gemgame.util.ShaderVariant;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * The full detail board in one vertex buffer, drawn with a single call. Every hex owns a
+ * fixed slot of one world space quad whose texture coordinates point into an atlas of all
+ * gem textures, baked once per GL context from the textures of a {@link HexagonBatch}.
+ *
+ * Only hexes named by {@link BoardChanges} events are laid out again. {@link #apply} just
+ * collects them, {@link #layout(int, int)} writes their quads and may run on worker threads,
+ * see {@link wayfarer.gemgame.gl.FramePreparer}. Their slots are uploaded on the next
+ * {@link #update()}, merged into contiguous runs, so the upload grows with the number of
+ * changed hexes rather than with the board. The whole buffer is only sent when it has to
+ * grow or the GL context was lost.
+ *
+ * GL thread only, apart from {@link #layout(int, int)}.
+ */
+public class BoardBuffer {
+    /**
+     * Atlas tile edge in pixels, one tile per gem. A power of two, so every mip level down to
+     * one texel per tile keeps the tiles apart.
+     */
+    private static final int TILE_SIZE = 512;
+
+    /**
+     * Transparent border around each gem in its tile, wide enough that linear sampling of the
+     * first mip levels never reaches the neighbouring tile.
+     */
+    private static final int TILE_GUTTER = 16;
+
+    /** How many bytes per float. */
+    private static final int BYTES_PER_FLOAT = 4;
+
+    /** X, Y, Z, S, T */
+    private static final int FLOATS_PER_VERTEX = 5;
+    private static final int FLOATS_PER_SLOT = 6 * FLOATS_PER_VERTEX;
+
+    /** Fields that move or retexture a quad, flag and label changes don't touch the buffer. */
+    private static final int VERTEX_FIELDS = BoardChanges.POSITION | BoardChanges.RADIUS | BoardChanges.GEM;
+
+    /** X, Y of the quad corners in the same order and winding as {@link Mesh}. */
+    private static final float[] CORNERS = {
+            -1.0f, 1.0f,
+            -1.0f, -1.0f,
+            1.0f, 1.0f,
+            -1.0f, -1.0f,
+            1.0f, -1.0f,
+            1.0f, 1.0f
+    };
+
+    private final Context mContext;
+    private final HexagonBatch mBoard;
+    private final HexagonPool mPool;
+    private final int mColumns;
+    private final int mRows;
+
+    /** Copy of the buffer contents, survives context loss. */
+    private FloatBuffer mVertices;
+    private int mCapacity = 0;
+    private int mSlots = 0;
+    private boolean[] mDirty = new boolean[0];
+    private int[] mDirtySlots = new int[0];
+    private int mDirtyCount = 0;
+    /** Slots changed by the last batch, each once, to be laid out before the next update. */
+    private int[] mLayoutSlots = new int[0];
+    private int mLayoutCount = 0;
+
+    private final float[] mViewProjectionMatrix = new float[16];
+
+    private int mGeneration = 0;
+    /** Slots the GPU buffer holds, 0 until the next update sends everything. */
+    private int mBufferCapacity = 0;
+    private int mProgramHandle;
+    private int mBufferHandle;
+    private int mAtlasHandle;
+    private int mMVPMatrixHandle;
+    private int mTextureUniformHandle;
+    private int mPositionHandle;
+    private int mTextureCoordinateHandle;
+
+    // metrics of the last update
+    private int mUploadedBytes = 0;
+    private int mUploadRuns = 0;
+
+    public BoardBuffer(Context context, HexagonBatch board) {
+        mContext = context;
+        mBoard = board;
+        mPool = board.getPool();
+        mColumns = (int) Math.ceil(Math.sqrt(board.getGemCount()));
+        mRows = (board.getGemCount() + mColumns - 1) / mColumns;
+    }
+
+    /**
+     * Collects the hexes changed by the batch, to be laid out by {@link #layout(int, int)} before
+     * the next batch or {@link #update()}. No GL calls, the upload waits for {@link #update()},
+     * so batches of frames where the board is not drawn at full detail pile up here.
+     */
+    public void apply(BoardChanges.Batch changes) {
+        // events are recorded after the slot count grows, so every drained index below it is valid
+        final int slots = mPool.size();
+        reserve(slots);
+        mSlots = slots;
+        mLayoutCount = 0;
+
+        // a batch names every slot once, so does the layout list
+        for (int n = 0; n < changes.size(); ++n) {
+            final int slot = changes.getIndex(n);
+
+            if (slot < slots && (changes.getFields(n) & VERTEX_FIELDS) != 0) {
+                mLayoutSlots[mLayoutCount++] = slot;
+
+                if (!mDirty[slot]) {
+                    mDirty[slot] = true;
+                    mDirtySlots[mDirtyCount++] = slot;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return slots collected by the last {@link #apply}
+     */
+    public int getLayoutCount() {
+        return mLayoutCount;
+    }
+
+    /**
+     * Lays out the slots collected by the last {@link #apply} from index from up to to. Any thread,
+     * calls for disjoint ranges may run at the same time; the caller makes sure they are done
+     * before the next {@link #apply} or {@link #update()}.
+     */
+    public void layout(int from, int to) {
+        for (int n = from; n < to; ++n) {
+            layout(mLayoutSlots[n]);
+        }
+    }
+
+    private void reserve(int slots) {
+        if (slots <= mCapacity) {
+            return;
+        }
+
+        final int capacity = Math.max(slots, Math.max(mCapacity * 2, 64));
+        MemoryLedger.resize(MemoryLedger.DIRECT, (long) mCapacity * FLOATS_PER_SLOT * BYTES_PER_FLOAT,
+                (long) capacity * FLOATS_PER_SLOT * BYTES_PER_FLOAT);
+        final FloatBuffer vertices = ByteBuffer.allocateDirect(capacity * FLOATS_PER_SLOT * BYTES_PER_FLOAT)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        if (mVertices != null) {
+            mVertices.position(0);
+            vertices.put(mVertices);
+            vertices.position(0);
+        }
+
+        mVertices = vertices;
+        mDirty = Arrays.copyOf(mDirty, capacity);
+        mDirtySlots = Arrays.copyOf(mDirtySlots, capacity);
+        mLayoutSlots = new int[capacity];
+        mCapacity = capacity;
+    }
+
+    private void init() {
+        mProgramHandle = ShaderVariant.program(mContext, R.raw.per_pixel_vertex_shader,
+                R.raw.per_pixel_fragment_shader, ShaderVariant.TEXTURED);
+        mMVPMatrixHandle = Gl.glGetUniformLocation(mProgramHandle, "u_MVPMatrix");
+        mTextureUniformHandle = Gl.glGetUniformLocation(mProgramHandle, "u_Texture");
+        mPositionHandle = Gl.glGetAttribLocation(mProgramHandle, "a_Position");
+        mTextureCoordinateHandle = Gl.glGetAttribLocation(mProgramHandle, "a_TexCoordinate");
+        mBufferHandle = GpuResources.buffer();
+        mAtlasHandle = bakeAtlas();
+        mBufferCapacity = 0;
+        mGeneration = GpuResources.getGeneration();
+    }
+
+    /**
+     * Draws every gem texture into its tile of a new atlas texture.
+     */
+    private int bakeAtlas() {
+        final int width = mColumns * TILE_SIZE;
+        final int height = mRows * TILE_SIZE;
+        final int[] handle = new int[1];
+
+        Gl.glGenTextures(1, handle, 0);
+        final int atlas = handle[0];
+        Gl.glBindTexture(GLES20.GL_TEXTURE_2D, atlas);
+        // tiles are smaller than the gem textures and drawn smaller still, so filter and mipmap
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        Gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+        // the mip chain adds a third
+        MemoryLedger.add(MemoryLedger.TEXTURE, 4L * width * height * 4 / 3, 1);
+
+        Gl.glGenFramebuffers(1, handle, 0);
+        Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, handle[0]);
+        Gl.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, atlas, 0);
+        final int status = Gl.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+
+        if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+            throw new RuntimeException("Error creating atlas framebuffer: " + status);
+        }
+
+        // Gems are copied alpha included into the middle of their tiles, the gutters stay clear.
+        // Rows go bottom-up, the T coordinates in layout() account for it.
+        Gl.glViewport(0, 0, width, height);
+        Gl.glDisable(GLES20.GL_BLEND);
+        Gl.glDisable(GLES20.GL_DEPTH_TEST);
+        Gl.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        final float[] view = new float[16];
+        final float[] projection = new float[16];
+        final float[] model = new float[16];
+        MatrixHelper.setIdentityM(view, 0);
+        MatrixHelper.orthoM(projection, 0, 0, mColumns, 0, mRows, -1.0f, 1.0f);
+
+        final float scale = 0.5f * (TILE_SIZE - 2 * TILE_GUTTER) / TILE_SIZE;
+        mBoard.restore();
+        mBoard.bindProgram();
+
+        for (int gem = 0; gem < mBoard.getGemCount(); ++gem) {
+            MatrixHelper.setIdentityM(model, 0);
+            MatrixHelper.translateM(model, 0, gem % mColumns + 0.5f, gem / mColumns + 0.5f, 0);
+            MatrixHelper.scaleM(model, 0, scale, scale, 1.0f);
+            mBoard.bindTexture(mBoard.gemTexture(gem));
+            // shrinking the gem with nearest sampling would drop texels, linear just for the copy
+            Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            mBoard.drawQuad(view, projection, model);
+            Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+        }
+
+        Gl.glEnable(GLES20.GL_DEPTH_TEST);
+        Gl.glEnable(GLES20.GL_BLEND);
+        Gl.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        Gl.glDeleteFramebuffers(1, handle, 0);
+
+        Gl.glBindTexture(GLES20.GL_TEXTURE_2D, atlas);
+        Gl.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+        return atlas;
+    }
+
+    /**
+     * Builds the GL objects if the context is new and uploads pending slots. Baking the atlas
+     * changes the viewport, leaves the surface bound and blending and depth test enabled,
+     * as the board pass has them.
+     *
+     * @return true if the atlas was baked and the caller has to restore its target
+     */
+    public boolean update() {
+        boolean baked = false;
+
+        if (!GpuResources.isCurrent(mGeneration)) {
+            init();
+            baked = true;
+        }
+
+        mUploadedBytes = 0;
+        mUploadRuns = 0;
+
+        if (mBufferCapacity == mCapacity && mDirtyCount == 0) {
+            return baked;
+        }
+
+        Gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mBufferHandle);
+
+        if (mBufferCapacity != mCapacity) {
+            mVertices.position(0);
+            Gl.glBufferData(GLES20.GL_ARRAY_BUFFER, mCapacity * FLOATS_PER_SLOT * BYTES_PER_FLOAT, mVertices,
+                    GLES20.GL_DYNAMIC_DRAW);
+            MemoryLedger.resize(MemoryLedger.BUFFER, (long) mBufferCapacity * FLOATS_PER_SLOT * BYTES_PER_FLOAT,
+                    (long) mCapacity * FLOATS_PER_SLOT * BYTES_PER_FLOAT);
+            mBufferCapacity = mCapacity;
+            mUploadedBytes = mCapacity * FLOATS_PER_SLOT * BYTES_PER_FLOAT;
+            mUploadRuns = 1;
+
+            for (int n = 0; n < mDirtyCount; ++n) {
+                mDirty[mDirtySlots[n]] = false;
+            }
+
+            mDirtyCount = 0;
+        } else if (mDirtyCount > 0) {
+            uploadRuns();
+        }
+
+        Gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        return baked;
+    }
+
+    /**
+     * One upload per run of neighbouring dirty slots. Expects the buffer to be bound.
+     */
+    private void uploadRuns() {
+        Arrays.sort(mDirtySlots, 0, mDirtyCount);
+        int n = 0;
+
+        while (n < mDirtyCount) {
+            final int first = mDirtySlots[n];
+            int last = first;
+            mDirty[first] = false;
+            n++;
+
+            while (n < mDirtyCount && mDirtySlots[n] == last + 1) {
+                last++;
+                mDirty[last] = false;
+                n++;
+            }
+
+            final int bytes = (last - first + 1) * FLOATS_PER_SLOT * BYTES_PER_FLOAT;
+            mVertices.position(first * FLOATS_PER_SLOT);
+            Gl.glBufferSubData(GLES20.GL_ARRAY_BUFFER, first * FLOATS_PER_SLOT * BYTES_PER_FLOAT, bytes,
+                    mVertices);
+            mUploadedBytes += bytes;
+            mUploadRuns++;
+        }
+
+        mVertices.position(0);
+        mDirtyCount = 0;
+    }
+
+    /**
+     * Draws all hexes. {@link #update()} must be called before in the same context.
+     */
+    public void draw(float[] viewMatrix, float[] projectionMatrix) {
+        if (mSlots == 0) {
+            return;
+        }
+
+        Gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mBufferHandle);
+        Gl.glUseProgram(mProgramHandle);
+        MatrixHelper.multiplyMM(mViewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
+        Gl.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mViewProjectionMatrix, 0);
+
+        Gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        Gl.glBindTexture(GLES20.GL_TEXTURE_2D, mAtlasHandle);
+        Gl.glUniform1i(mTextureUniformHandle, 0);
+
+        final int stride = FLOATS_PER_VERTEX * BYTES_PER_FLOAT;
+        Gl.glVertexAttribPointer(mPositionHandle, 3, GLES20.GL_FLOAT, false, stride, 0);
+        Gl.glEnableVertexAttribArray(mPositionHandle);
+        Gl.glVertexAttribPointer(mTextureCoordinateHandle, 2, GLES20.GL_FLOAT, false, stride,
+                3 * BYTES_PER_FLOAT);
+        Gl.glEnableVertexAttribArray(mTextureCoordinateHandle);
+
+        Gl.glDrawArrays(GLES20.GL_TRIANGLES, 0, mSlots * 6);
+
+        Gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Writes the world space quad of the hex with texture coordinates into its gem tile.
+     * Absolute puts only, the buffer position is left alone for concurrent callers.
+     */
+    private void layout(int slot) {
+        final float x = mPool.getX(slot);
+        final float y = mPool.getY(slot);
+        final float z = mPool.getZ(slot);
+        final float radius = mPool.getRadius(slot);
+        final int gem = mPool.getGem(slot);
+        final int column = gem % mColumns;
+        final int row = gem / mColumns;
+        // the quad covers the gem only, its gutter is not drawn
+        final float inset = (float) TILE_GUTTER / TILE_SIZE;
+        int offset = slot * FLOATS_PER_SLOT;
+
+        for (int v = 0; v < CORNERS.length; v += 2) {
+            final float u = inset + (CORNERS[v] + 1.0f) / 2 * (1.0f - 2 * inset);
+            final float w = inset + (CORNERS[v + 1] + 1.0f) / 2 * (1.0f - 2 * inset);
+            mVertices.put(offset++, x + CORNERS[v] * radius);
+            mVertices.put(offset++, y + CORNERS[v + 1] * radius);
+            mVertices.put(offset++, z);
+            mVertices.put(offset++, (column + u) / mColumns);
+            mVertices.put(offset++, (row + w) / mRows);
+        }
+    }
+
+    /**
+     * @return bytes sent to the GPU by the last update
+     */
+    public int getUploadedBytes() {
+        return mUploadedBytes;
+    }
+
+    /**
+     * @return glBufferData or glBufferSubData calls of the last update
+     */
+    public int getUploadRuns() {
+        return mUploadRuns;
+    }
+}
@@ -0,0 +1,132 @@
+package wayfarer.gemgame.mesh;
+
+import android.content.Context;
+
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.MatrixHelper;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Draws every hex of a {@link HexagonPool} with one shared program, quad and one texture per
+ * gem. Hexes are grouped by gem, so each texture is bound once per frame whatever the board size.
+ */
+public class HexagonBatch extends Mesh {
+    private final HexagonPool mPool;
+    private final int[] mGemTextureRes;
+    private final int[] mGemTextureHandles;
+    private final int[] mGemTextureGenerations;
+
+    private float[] mInstanceMatrix = new float[16];
+
+    /**
+     * @param gemTextureRes - texture of every gem, indexed by gem type
+     */
+    public HexagonBatch(Context context, int fragmentShaderRes, int vertexShaderRes, HexagonPool pool,
+                        int[] gemTextureRes) {
+        super(context, fragmentShaderRes, vertexShaderRes, gemTextureRes[0]);
+        mPool = pool;
+        mGemTextureRes = gemTextureRes;
+        mGemTextureHandles = new int[gemTextureRes.length];
+        mGemTextureGenerations = new int[gemTextureRes.length];
+    }
+
+    public HexagonPool getPool() {
+        return mPool;
+    }
+
+    public int getGemCount() {
+        return mGemTextureRes.length;
+    }
+
+    /**
+     * Gem textures are loaded on first use, gems missing from the board cost nothing.
+     */
+    int gemTexture(int gem) {
+        if (!GpuResources.isCurrent(mGemTextureGenerations[gem])) {
+            mGemTextureHandles[gem] = loadTexture(mGemTextureRes[gem]);
+            mGemTextureGenerations[gem] = GpuResources.getGeneration();
+        }
+
+        return mGemTextureHandles[gem];
+    }
+
+    @Override
+    public void draw(float[] viewMatrix, float[] projectionMatrix) {
+        final int size = mPool.size();
+
+        if (size == 0) {
+            return;
+        }
+
+        restore();
+        bindProgram();
+
+        for (int gem = 0; gem < mGemTextureHandles.length; ++gem) {
+            boolean bound = false;
+
+            for (int i = 0; i < size; ++i) {
+                if (mPool.getGem(i) == gem) {
+                    if (!bound) {
+                        bindTexture(gemTexture(gem));
+                        bound = true;
+                    }
+
+                    drawInstance(viewMatrix, projectionMatrix, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws only the given hexes, in the given order.
+     */
+    public void draw(float[] viewMatrix, float[] projectionMatrix, int[] hexes, int count) {
+        restore();
+        bindProgram();
+        int boundGem = -1;
+
+        for (int n = 0; n < count; ++n) {
+            final int i = hexes[n];
+            final int gem = mPool.getGem(i);
+
+            if (gem != boundGem) {
+                bindTexture(gemTexture(gem));
+                boundGem = gem;
+            }
+
+            drawInstance(viewMatrix, projectionMatrix, i);
+        }
+    }
+
+    private void drawInstance(float[] viewMatrix, float[] projectionMatrix, int i) {
+        instanceMatrix(i, mInstanceMatrix);
+        drawQuad(viewMatrix, projectionMatrix, mInstanceMatrix);
+    }
+
+    /**
+     * Writes the model matrix of the hex to m[0..15].
+     */
+    private void instanceMatrix(int i, float[] m) {
+        // translate * scale, written directly instead of going through identity, translate and scale
+        final float radius = mPool.getRadius(i);
+        m[0] = radius;
+        m[1] = 0;
+        m[2] = 0;
+        m[3] = 0;
+        m[4] = 0;
+        m[5] = radius;
+        m[6] = 0;
+        m[7] = 0;
+        m[8] = 0;
+        m[9] = 0;
+        m[10] = 1;
+        m[11] = 0;
+        m[12] = mPool.getX(i);
+        m[13] = mPool.getY(i);
+        m[14] = mPool.getZ(i);
+        m[15] = 1;
+    }
+}
@@ -17,19 +17,28 @@ package wayfarer.gemgame.mesh;
 
 import android.content.Context;
 import android.opengl.GLES20;
-import android.opengl.Matrix;
-import android.util.Log;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 
-import wayfarer.gemgame.util.RawResourceReader;
-import wayfarer.gemgame.util.ShaderHelper;
-import wayfarer.gemgame.util.TextureHelper;
+import wayfarer.gemgame.gl.Gl;
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.MatrixHelper;
+import wayfarer.gemgame.util.MemoryLedger;
+import wayfarer.gemgame.util.ShaderVariant;
+import wayfarer.gemgame.util.TraceLog;
 
-public class Mesh {
+public class Mesh implements GpuResources.Restorable {
     public static final String TAG = "Mesh";
+    private static final int TRACE_INIT = TraceLog.define(TAG, TraceLog.DEBUG, "init: program %d, texture %d");
+    private static final int TRACE_INITIALIZED = TraceLog.define(TAG, TraceLog.VERBOSE, "init: already initialized");
+
+    /** Covers every pixel of its quad. Drawn first, front to back, with depth writes and no blending. */
+    public static final int MATERIAL_OPAQUE = 0;
+
+    /** Has see-through parts. Drawn after opaque meshes, back to front, blended. */
+    public static final int MATERIAL_TRANSPARENT = 1;
 
     private final Context mActivityContext;
 
@@ -42,21 +51,18 @@ public class Mesh {
     /** Size of the color data in elements. */
     private final int mColorDataSize = 4;
 
-    /** Size of the normal data in elements. */
-    private final int mNormalDataSize = 3;
-
     /** Size of the texture coordinate data in elements. */
     private final int mTextureCoordinateDataSize = 2;
     private final int mFragmentShaderResId;
     private final int mVertexShaderResId;
+    /** {@link ShaderVariant} features of the program, decide which attributes and uniforms are bound. */
+    private final int mFeatures;
     private int mTextureResId;
+    private int mMaterial = MATERIAL_TRANSPARENT;
 
     /** This will be used to pass in the transformation matrix. */
     private int mMVPMatrixHandle;
 
-    /** This will be used to pass in the modelview matrix. */
-    private int mMVMatrixHandle;
-
     /** This will be used to pass in the texture. */
     private int mTextureUniformHandle;
 
@@ -69,17 +75,29 @@ public class Mesh {
     /** This will be used to pass in model texture coordinate information. */
     private int mTextureCoordinateHandle;
 
-    /** Store our model data in a float buffer. */
+    /** This will be used to pass in the texture region, ATLAS_UV only. */
+    private int mAtlasRectHandle;
+
+    /** Store our model data in a float buffer. Colours only for VERTEX_COLOR. */
     private final FloatBuffer mMeshPositions;
     private final FloatBuffer mMeshColors;
     private final FloatBuffer mMeshTextureCoordinates;
 
+    /** Share of the vertex buffers in {@link MemoryLedger#DIRECT}, 0 once released. */
+    private long mDirectBytes = 0;
+    private int mDirectBuffers = 0;
+
+    /** Offset and size of the texture region drawn, whole texture unless ATLAS_UV. */
+    private final float[] mTextureRegion = {0.0f, 0.0f, 1.0f, 1.0f};
+
     /** This is a handle to our cube shading program. */
     private int mProgramHandle;
 
     /** This is a handle to our texture data. */
     private int mTextureDataHandle;
-    private boolean initialized = false;
+
+    /** GL context generation the handles above belong to, 0 before the first init. */
+    private int mGeneration = 0;
     private float[] mPosition = {0.0f, 0.0f, 0.0f};
 
     /**
@@ -93,22 +111,35 @@ public class Mesh {
 
     protected String getVertexShader(int res)
     {
-        return RawResourceReader.readTextFileFromRawResource(mActivityContext, res);
+        return GpuResources.text(mActivityContext, res);
     }
 
     protected String getFragmentShader(int res)
     {
-        return RawResourceReader.readTextFileFromRawResource(mActivityContext, res);
+        return GpuResources.text(mActivityContext, res);
+    }
+
+    protected int loadTexture(int res)
+    {
+        return GpuResources.texture(mActivityContext, res);
     }
 
     /**
-     * Sets up the drawing object data for use in an OpenGL ES context.
+     * Sets up the drawing object data for use in an OpenGL ES context. Textured, no vertex colours.
      */
     public Mesh(Context context, int fragmentShaderRes, int vertexShaderRes, int textureRes) {
+        this(context, fragmentShaderRes, vertexShaderRes, textureRes, ShaderVariant.TEXTURED);
+    }
+
+    /**
+     * @param features - {@link ShaderVariant} features the mesh is drawn with
+     */
+    public Mesh(Context context, int fragmentShaderRes, int vertexShaderRes, int textureRes, int features) {
         mActivityContext = context;
         mFragmentShaderResId = fragmentShaderRes;
         mVertexShaderResId = vertexShaderRes;
         mTextureResId = textureRes;
+        mFeatures = features;
         // Define points for a rectangle mesh.
         // X, Y, Z
         final float[] meshPositionData =
@@ -130,12 +161,12 @@ public class Mesh {
         // R, G, B, A
         final float[] meshColorData =
                 {
-                        0.0f, 0.0f, 0.0f, 1.0f,
-                        0.0f, 0.0f, 0.0f, 1.0f,
-                        0.0f, 0.0f, 0.0f, 1.0f,
-                        0.0f, 0.0f, 0.0f, 1.0f,
-                        0.0f, 0.0f, 0.0f, 1.0f,
-                        0.0f, 0.0f, 0.0f, 1.0f
+                        1.0f, 1.0f, 1.0f, 1.0f,
+                        1.0f, 1.0f, 1.0f, 1.0f,
+                        1.0f, 1.0f, 1.0f, 1.0f,
+                        1.0f, 1.0f, 1.0f, 1.0f,
+                        1.0f, 1.0f, 1.0f, 1.0f,
+                        1.0f, 1.0f, 1.0f, 1.0f
                 };
 
         // S, T (or X, Y)
@@ -157,38 +188,61 @@ public class Mesh {
         mMeshPositions = ByteBuffer.allocateDirect(meshPositionData.length * mBytesPerFloat)
                 .order(ByteOrder.nativeOrder()).asFloatBuffer();
         mMeshPositions.put(meshPositionData).position(0);
+        reportDirect(meshPositionData.length * mBytesPerFloat);
 
-        mMeshColors = ByteBuffer.allocateDirect(meshColorData.length * mBytesPerFloat)
-                .order(ByteOrder.nativeOrder()).asFloatBuffer();
-        mMeshColors.put(meshColorData).position(0);
+        if (hasFeature(ShaderVariant.VERTEX_COLOR)) {
+            mMeshColors = ByteBuffer.allocateDirect(meshColorData.length * mBytesPerFloat)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            mMeshColors.put(meshColorData).position(0);
+            reportDirect(meshColorData.length * mBytesPerFloat);
+        } else {
+            mMeshColors = null;
+        }
 
         mMeshTextureCoordinates = ByteBuffer.allocateDirect(meshTextureCoordinateData.length * mBytesPerFloat)
                 .order(ByteOrder.nativeOrder()).asFloatBuffer();
         mMeshTextureCoordinates.put(meshTextureCoordinateData).position(0);
+        reportDirect(meshTextureCoordinateData.length * mBytesPerFloat);
     }
 
-    public void init() {
-        Log.d(TAG, "+ enter init");
+    private void reportDirect(int bytes) {
+        MemoryLedger.add(MemoryLedger.DIRECT, bytes, 1);
+        mDirectBytes += bytes;
+        mDirectBuffers++;
+    }
 
-        if (!initialized) {
-            Log.d(TAG, "Creating programm and texture");
+    /**
+     * Takes the vertex buffers off the {@link MemoryLedger} once the mesh is dropped. Safe to
+     * call more than once. Subclasses owning GL objects free them here too.
+     */
+    public void release() {
+        MemoryLedger.remove(MemoryLedger.DIRECT, mDirectBytes, mDirectBuffers);
+        mDirectBytes = 0;
+        mDirectBuffers = 0;
+    }
+
+    public void init() {
+        if (!isInitialized()) {
             final String vertexShader = getVertexShader(mVertexShaderResId);
             final String fragmentShader = getFragmentShader(mFragmentShaderResId);
 
-            final int vertexShaderHandle = ShaderHelper.compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);
-            final int fragmentShaderHandle = ShaderHelper.compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);
-
-            mProgramHandle = ShaderHelper.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle,
-                    new String[]{"a_Position", "a_Color", "a_TexCoordinate"});
+            // meshes with the same shaders and features share one program
+            mProgramHandle = ShaderVariant.program(vertexShader, fragmentShader, mFeatures);
+            // handles not in the variant stay -1 and are never touched
+            mMVPMatrixHandle = Gl.glGetUniformLocation(mProgramHandle, "u_MVPMatrix");
+            mTextureUniformHandle = Gl.glGetUniformLocation(mProgramHandle, "u_Texture");
+            mAtlasRectHandle = Gl.glGetUniformLocation(mProgramHandle, "u_AtlasRect");
+            mPositionHandle = Gl.glGetAttribLocation(mProgramHandle, "a_Position");
+            mColorHandle = Gl.glGetAttribLocation(mProgramHandle, "a_Color");
+            mTextureCoordinateHandle = Gl.glGetAttribLocation(mProgramHandle, "a_TexCoordinate");
 
             // Load the texture
-            mTextureDataHandle = TextureHelper.loadTexture(mActivityContext, mTextureResId);
-            initialized = true;
+            mTextureDataHandle = loadTexture(mTextureResId);
+            mGeneration = GpuResources.getGeneration();
+            TraceLog.log(TRACE_INIT, mProgramHandle, mTextureDataHandle);
         } else {
-            Log.d(TAG, "Already initialized.");
+            TraceLog.log(TRACE_INITIALIZED);
         }
-
-        Log.d(TAG, "- leave init");
     }
 
     /**
@@ -196,66 +250,94 @@ public class Mesh {
      *
      */
     public void draw(float[] viewMatrix, float[] projectionMatrix) {
-        // Set our per-vertex lighting program.
-        GLES20.glUseProgram(mProgramHandle);
+        restore();
+        bindProgram();
+        bindTexture(mTextureDataHandle);
 
-        // Set program handles for cube drawing.
-        mMVPMatrixHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_MVPMatrix");
-        mMVMatrixHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_MVMatrix");
-        mTextureUniformHandle = GLES20.glGetUniformLocation(mProgramHandle, "u_Texture");
-        mPositionHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Position");
-        mColorHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_Color");
-        mTextureCoordinateHandle = GLES20.glGetAttribLocation(mProgramHandle, "a_TexCoordinate");
-
-        // Set the active texture unit to texture unit 0.
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        // Move mesh in space
+        MatrixHelper.setIdentityM(mModelMatrix, 0);
+        MatrixHelper.translateM(mModelMatrix, 0, mPosition[0], mPosition[1], mPosition[2]);
+        MatrixHelper.scaleM(mModelMatrix, 0, mScale[0], mScale[1], mScale[2]);
+        //MatrixHelper.rotateM(mModelMatrix, 0, 0.0f, 1.0f, 0.0f, 0.0f);
 
-        // Bind the texture to this unit.
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mTextureDataHandle);
+        drawQuad(viewMatrix, projectionMatrix, mModelMatrix);
+    }
 
-        // Tell the texture uniform sampler to use this texture in the shader by binding to texture unit 0.
-        GLES20.glUniform1i(mTextureUniformHandle, 0);
+    /**
+     * Sets up program, texture unit and vertex attributes. Everything drawn with
+     * {@link #drawQuad} until the next program switch shares this state.
+     */
+    protected void bindProgram() {
+        // Set our per-vertex lighting program.
+        Gl.glUseProgram(mProgramHandle);
 
         // Pass in the position information
         mMeshPositions.position(0);
-        GLES20.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
+        Gl.glVertexAttribPointer(mPositionHandle, mPositionDataSize, GLES20.GL_FLOAT, false,
                 0, mMeshPositions);
 
-        GLES20.glEnableVertexAttribArray(mPositionHandle);
+        Gl.glEnableVertexAttribArray(mPositionHandle);
+
+        if (hasFeature(ShaderVariant.TEXTURED)) {
+            // Set the active texture unit to texture unit 0.
+            Gl.glActiveTexture(GLES20.GL_TEXTURE0);
 
-        // Pass in the color information
-        mMeshColors.position(0);
-        GLES20.glVertexAttribPointer(mColorHandle, mNormalDataSize, GLES20.GL_FLOAT, false,
-                0, mMeshColors);
+            // Tell the texture uniform sampler to use this texture in the shader by binding to texture unit 0.
+            Gl.glUniform1i(mTextureUniformHandle, 0);
 
-        GLES20.glEnableVertexAttribArray(mColorHandle);
+            // Pass in the texture coordinate information
+            mMeshTextureCoordinates.position(0);
+            Gl.glVertexAttribPointer(mTextureCoordinateHandle, mTextureCoordinateDataSize, GLES20.GL_FLOAT, false,
+                    0, mMeshTextureCoordinates);
 
-        // Pass in the texture coordinate information
-        mMeshTextureCoordinates.position(0);
-        GLES20.glVertexAttribPointer(mTextureCoordinateHandle, mTextureCoordinateDataSize, GLES20.GL_FLOAT, false,
-                0, mMeshTextureCoordinates);
+            Gl.glEnableVertexAttribArray(mTextureCoordinateHandle);
+        }
 
-        GLES20.glEnableVertexAttribArray(mTextureCoordinateHandle);
+        if (hasFeature(ShaderVariant.ATLAS_UV)) {
+            Gl.glUniform4f(mAtlasRectHandle, mTextureRegion[0], mTextureRegion[1], mTextureRegion[2],
+                    mTextureRegion[3]);
+        }
 
-        // Move mesh in space
-        Matrix.setIdentityM(mModelMatrix, 0);
-        Matrix.translateM(mModelMatrix, 0, mPosition[0], mPosition[1], mPosition[2]);
-        Matrix.scaleM(mModelMatrix, 0, mScale[0], mScale[1], mScale[2]);
-        //Matrix.rotateM(mModelMatrix, 0, 0.0f, 1.0f, 0.0f, 0.0f);
+        if (hasFeature(ShaderVariant.VERTEX_COLOR)) {
+            // Pass in the color information
+            mMeshColors.position(0);
+            Gl.glVertexAttribPointer(mColorHandle, mColorDataSize, GLES20.GL_FLOAT, false,
+                    0, mMeshColors);
+
+            Gl.glEnableVertexAttribArray(mColorHandle);
+        }
+    }
+
+    /**
+     * Binds the texture to texture unit 0.
+     */
+    protected void bindTexture(int textureHandle) {
+        Gl.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle);
+    }
 
+    /**
+     * Draws the quad placed by the given model matrix. {@link #bindProgram()} must be called before.
+     */
+    protected void drawQuad(float[] viewMatrix, float[] projectionMatrix, float[] modelMatrix) {
         // This multiplies the view matrix by the model matrix, and stores the result in the MVP matrix
         // (which currently contains model * view).
-        Matrix.multiplyMM(mModelViewMatrix, 0, viewMatrix, 0, mModelMatrix, 0);
+        MatrixHelper.multiplyMM(mModelViewMatrix, 0, viewMatrix, 0, modelMatrix, 0);
         // This multiplies the modelview matrix by the projection matrix, and stores the result in the MVP matrix
         // (which now contains model * view * projection).
-        Matrix.multiplyMM(mModelViewProjectionMatrix, 0, projectionMatrix, 0, mModelViewMatrix, 0);
+        MatrixHelper.multiplyMM(mModelViewProjectionMatrix, 0, projectionMatrix, 0, mModelViewMatrix, 0);
 
-        // Pass in the modelview matrix.
-        GLES20.glUniformMatrix4fv(mMVMatrixHandle, 1, false, mModelViewMatrix, 0);
+        submitQuad(mModelViewProjectionMatrix, 0);
+    }
+
+    /**
+     * Draws the quad with the matrix computed beforehand.
+     * {@link #bindProgram()} must be called before.
+     */
+    protected void submitQuad(float[] mvpMatrix, int mvpOffset) {
         // Pass in the combined matrix.
-        GLES20.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mModelViewProjectionMatrix, 0);
+        Gl.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mvpMatrix, mvpOffset);
 
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLES, 0, 6);
+        Gl.glDrawArrays(GLES20.GL_TRIANGLES, 0, 6);
     }
 
     public void setPosition(float x, float y, float z) {
@@ -270,14 +352,72 @@ public class Mesh {
         mScale[2] = sz;
     }
 
+    /**
+     * Shows only part of the texture, for meshes with {@link ShaderVariant#ATLAS_UV}.
+     */
+    public void setTextureRegion(float u, float v, float width, float height) {
+        mTextureRegion[0] = u;
+        mTextureRegion[1] = v;
+        mTextureRegion[2] = width;
+        mTextureRegion[3] = height;
+    }
+
+    public boolean hasFeature(int feature) {
+        return (mFeatures & feature) != 0;
+    }
+
     public void setTexrure(int textureResId) {
         mTextureResId = textureResId;
 
-        if (initialized) {
-            mTextureDataHandle = TextureHelper.loadTexture(mActivityContext, mTextureResId);
+        if (isInitialized()) {
+            mTextureDataHandle = loadTexture(mTextureResId);
+        }
+    }
+
+    /**
+     * Builds program and texture if there are none in the current GL context yet.
+     */
+    @Override
+    public void restore() {
+        if (!isInitialized()) {
+            init();
         }
     }
 
+    /**
+     * @param material - {@link #MATERIAL_OPAQUE} or {@link #MATERIAL_TRANSPARENT}, picks the render pass
+     */
+    public void setMaterial(int material) {
+        mMaterial = material;
+    }
+
+    public int getMaterial() {
+        return mMaterial;
+    }
+
+    public int getTextureRes() {
+        return mTextureResId;
+    }
+
+    /**
+     * @return true if the GL handles are valid in the current context
+     */
+    public boolean isInitialized() {
+        return GpuResources.isCurrent(mGeneration);
+    }
+
+    public float[] getPosition() {
+        return mPosition;
+    }
+
+    public float[] getScaling() {
+        return mScale;
+    }
+
+    protected int getTextureHandle() {
+        return mTextureDataHandle;
+    }
+
     public float[] getModelView() {
         return mModelViewMatrix;
     }
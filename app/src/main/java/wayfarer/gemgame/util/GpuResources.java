@@ -0,0 +1,211 @@
+package wayfarer.gemgame.util;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import wayfarer.gemgame.gl.Gl;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Bookkeeping of every GL program, texture and buffer the game creates.
+ *
+ * GL handles die with their context, so everything is stamped with the generation it was
+ * created in. {@link #onContextLost()} bumps the generation and forgets the caches, nothing
+ * is rebuilt right away. Owners compare their stamp with {@link #isCurrent(int)} and rebuild
+ * on first use, so whatever is on screen comes back first. Owners that are not drawn go to
+ * {@link #defer(Restorable)} and are rebuilt a few per frame by {@link #restoreDeferred(int)}.
+ *
+ * GL thread only.
+ */
+public class GpuResources {
+    private static final String TAG = "GpuResources";
+
+    /**
+     * Where shader sources and textures come from. Resources of the APK by default,
+     * headless tests plug in files and generated textures.
+     */
+    public interface Loader {
+        String readText(Context context, int res);
+
+        /**
+         * Creates a texture in the current context.
+         */
+        int loadTexture(Context context, int res);
+    }
+
+    public static final Loader RESOURCE_LOADER = new Loader() {
+        @Override
+        public String readText(Context context, int res) {
+            return RawResourceReader.readTextFileFromRawResource(context, res);
+        }
+
+        @Override
+        public int loadTexture(Context context, int res) {
+            return TextureHelper.loadTexture(context, res);
+        }
+    };
+
+    public interface Restorable {
+        /**
+         * Recreates the GL objects of the owner in the current context, if they are stale.
+         */
+        void restore();
+    }
+
+    private static Loader sLoader = RESOURCE_LOADER;
+    private static int sGeneration = 1;
+    private static final Map<Integer, Integer> sTextures = new HashMap<>();
+    private static final Map<String, Integer> sPrograms = new HashMap<>();
+    private static final Set<Restorable> sDeferred = new LinkedHashSet<>();
+
+    // objects created in the current generation
+    private static int sTextureCount = 0;
+    private static int sProgramCount = 0;
+    private static int sBufferCount = 0;
+
+    private GpuResources() {}
+
+    public static void setLoader(Loader loader) {
+        sLoader = loader;
+    }
+
+    public static int getGeneration() {
+        return sGeneration;
+    }
+
+    /**
+     * @return true if something stamped with the given generation still has valid handles
+     */
+    public static boolean isCurrent(int generation) {
+        return generation == sGeneration;
+    }
+
+    /**
+     * Invalidates every handle handed out so far. Call when a new context has been created.
+     */
+    public static void onContextLost() {
+        sGeneration++;
+        sTextures.clear();
+        sPrograms.clear();
+        sDeferred.clear();
+        sTextureCount = 0;
+        sProgramCount = 0;
+        sBufferCount = 0;
+        TextureHelper.resetTextureCache();
+        MemoryLedger.onContextLost();
+    }
+
+    /**
+     * Texture of a drawable resource, loaded once per generation.
+     */
+    public static int texture(Context context, int res) {
+        Integer handle = sTextures.get(res);
+
+        if (handle == null) {
+            handle = sLoader.loadTexture(context, res);
+            sTextures.put(res, handle);
+            sTextureCount++;
+        }
+
+        return handle;
+    }
+
+    /**
+     * Program built from the given sources, linked once per generation and shared by all callers.
+     */
+    public static int program(String vertexShader, String fragmentShader, String[] attributes) {
+        final StringBuilder key = new StringBuilder(vertexShader).append('\0').append(fragmentShader);
+
+        for (String attribute : attributes) {
+            key.append('\0').append(attribute);
+        }
+
+        final String k = key.toString();
+        Integer handle = sPrograms.get(k);
+
+        if (handle == null) {
+            final int vertexShaderHandle = ShaderHelper.compileShader(GLES20.GL_VERTEX_SHADER, vertexShader);
+            final int fragmentShaderHandle = ShaderHelper.compileShader(GLES20.GL_FRAGMENT_SHADER, fragmentShader);
+            handle = ShaderHelper.createAndLinkProgram(vertexShaderHandle, fragmentShaderHandle, attributes);
+            sPrograms.put(k, handle);
+            sProgramCount++;
+            MemoryLedger.add(MemoryLedger.PROGRAM, 0, 1);
+        }
+
+        return handle;
+    }
+
+    /**
+     * Text of a raw resource, usually a shader source.
+     */
+    public static String text(Context context, int res) {
+        return sLoader.readText(context, res);
+    }
+
+    /**
+     * Program built from raw shader resources.
+     */
+    public static int program(Context context, int vertexShaderRes, int fragmentShaderRes, String[] attributes) {
+        return program(text(context, vertexShaderRes), text(context, fragmentShaderRes), attributes);
+    }
+
+    /**
+     * New buffer object, owned by the caller.
+     */
+    public static int buffer() {
+        final int[] handle = new int[1];
+        Gl.glGenBuffers(1, handle, 0);
+        sBufferCount++;
+        return handle[0];
+    }
+
+    /**
+     * Something stale that is not on screen right now, rebuild it when there is time.
+     */
+    public static void defer(Restorable restorable) {
+        sDeferred.add(restorable);
+    }
+
+    /**
+     * Rebuilds up to budget deferred owners, oldest first.
+     *
+     * @return how many are still waiting
+     */
+    public static int restoreDeferred(int budget) {
+        // called every frame, don't create an iterator for nothing
+        if (sDeferred.isEmpty()) {
+            return 0;
+        }
+
+        Iterator<Restorable> it = sDeferred.iterator();
+
+        while (budget > 0 && it.hasNext()) {
+            Restorable r = it.next();
+            it.remove();
+            r.restore();
+            budget--;
+        }
+
+        return sDeferred.size();
+    }
+
+    public static int getTextureCount() {
+        return sTextureCount;
+    }
+
+    public static int getProgramCount() {
+        return sProgramCount;
+    }
+
+    public static int getBufferCount() {
+        return sBufferCount;
+    }
+}
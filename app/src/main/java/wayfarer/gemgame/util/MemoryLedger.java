@@ -0,0 +1,245 @@
+package wayfarer.gemgame.util;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Running account of the memory the game holds, in bytes and objects per category. Owners
+ * report what they allocate and free, GPU sizes are estimated from texture dimensions and
+ * buffer sizes as the driver gets them, so they say nothing about driver padding or mipmaps.
+ * Programs are counted, their size is unknown.
+ *
+ * Every category keeps its high-water mark and may have a budget. Owners that can do with
+ * less ask {@link #fits} before they allocate, see {@link #setMemoryClass(int)} for budgets
+ * per device class. GPU categories are emptied by {@link #onContextLost()}, owners only give
+ * back what they created in the current context.
+ *
+ * Thread safe.
+ */
+public class MemoryLedger {
+    /** Game model storage on the Java heap. */
+    public static final int HEAP = 0;
+    /** Direct NIO buffers of vertex data. */
+    public static final int DIRECT = 1;
+    /** Texture storage, 4 bytes per RGBA texel. */
+    public static final int TEXTURE = 2;
+    /** Vertex buffer objects. */
+    public static final int BUFFER = 3;
+    /** Renderbuffer storage, e.g. depth of offscreen targets. */
+    public static final int RENDERBUFFER = 4;
+    /** Linked programs, objects only. */
+    public static final int PROGRAM = 5;
+    public static final int CATEGORIES = 6;
+
+    private static final String[] NAMES = {"heap", "direct", "texture", "buffer", "renderbuffer", "program"};
+    private static final boolean[] GPU = {false, false, true, true, true, true};
+
+    /**
+     * Share of the app heap limit each category may use, see {@link #setMemoryClass(int)}.
+     * GPU memory comes out of the same RAM on phones, the heap limit is the best hint there is.
+     */
+    private static final float[] MEMORY_CLASS_SHARE = {0.25f, 0.0625f, 0.25f, 0.0625f, 0.0625f, 0.0f};
+
+    private static final long[] sBytes = new long[CATEGORIES];
+    private static final int[] sObjects = new int[CATEGORIES];
+    private static final long[] sPeakBytes = new long[CATEGORIES];
+    private static final int[] sPeakObjects = new int[CATEGORIES];
+    /** 0 for no budget. */
+    private static final long[] sBudgets = new long[CATEGORIES];
+
+    private MemoryLedger() {}
+
+    /**
+     * Something was allocated.
+     */
+    public static synchronized void add(int category, long bytes, int objects) {
+        sBytes[category] += bytes;
+        sObjects[category] += objects;
+        sPeakBytes[category] = Math.max(sPeakBytes[category], sBytes[category]);
+        sPeakObjects[category] = Math.max(sPeakObjects[category], sObjects[category]);
+    }
+
+    /**
+     * Something was freed. Freeing more than is left means something was freed twice or never
+     * added, and fails rather than hiding it.
+     */
+    public static synchronized void remove(int category, long bytes, int objects) {
+        if (bytes > sBytes[category] || objects > sObjects[category]) {
+            throw new IllegalStateException("Freeing " + bytes + " bytes in " + objects + " of "
+                    + getName(category) + ", only " + sBytes[category] + " in " + sObjects[category] + " left");
+        }
+
+        sBytes[category] -= bytes;
+        sObjects[category] -= objects;
+    }
+
+    /**
+     * Storage of one object was replaced, e.g. a texture got a new size. A size of 0 stands
+     * for no object, so this also covers the first allocation and the release.
+     */
+    public static synchronized void resize(int category, long oldBytes, long newBytes) {
+        remove(category, oldBytes, oldBytes > 0 ? 1 : 0);
+        add(category, newBytes, newBytes > 0 ? 1 : 0);
+    }
+
+    /**
+     * Forgets the GPU categories, everything in them died with the context. Peaks stay.
+     */
+    public static synchronized void onContextLost() {
+        for (int i = 0; i < CATEGORIES; ++i) {
+            if (GPU[i]) {
+                sBytes[i] = 0;
+                sObjects[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * @param bytes - 0 for no budget
+     */
+    public static synchronized void setBudget(int category, long bytes) {
+        sBudgets[category] = bytes;
+    }
+
+    /**
+     * Sets the budgets for a device by its heap limit, as ActivityManager.getMemoryClass()
+     * reports it. A 64 MB phone gets 16 MB of textures, a 256 MB tablet 64 MB.
+     */
+    public static synchronized void setMemoryClass(int megabytes) {
+        for (int i = 0; i < CATEGORIES; ++i) {
+            sBudgets[i] = (long) (MEMORY_CLASS_SHARE[i] * megabytes * 1024 * 1024);
+        }
+    }
+
+    /**
+     * @return true if bytes more stay within the budget of the category
+     */
+    public static synchronized boolean fits(int category, long bytes) {
+        return sBudgets[category] == 0 || sBytes[category] + bytes <= sBudgets[category];
+    }
+
+    public static synchronized boolean isOverBudget(int category) {
+        return sBudgets[category] != 0 && sBytes[category] > sBudgets[category];
+    }
+
+    public static synchronized long getBytes(int category) {
+        return sBytes[category];
+    }
+
+    public static synchronized long getPeakBytes(int category) {
+        return sPeakBytes[category];
+    }
+
+    public static synchronized long getBudget(int category) {
+        return sBudgets[category];
+    }
+
+    public static String getName(int category) {
+        return NAMES[category];
+    }
+
+    public static synchronized Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * Zeroes counts, peaks and budgets. For tests.
+     */
+    public static synchronized void reset() {
+        for (int i = 0; i < CATEGORIES; ++i) {
+            sBytes[i] = 0;
+            sObjects[i] = 0;
+            sPeakBytes[i] = 0;
+            sPeakObjects[i] = 0;
+            sBudgets[i] = 0;
+        }
+    }
+
+    /**
+     * The account at one moment, immutable.
+     */
+    public static final class Snapshot {
+        private final long[] mBytes = sBytes.clone();
+        private final int[] mObjects = sObjects.clone();
+        private final long[] mPeakBytes = sPeakBytes.clone();
+        private final int[] mPeakObjects = sPeakObjects.clone();
+        private final long[] mBudgets = sBudgets.clone();
+
+        private Snapshot() {}
+
+        public long getBytes(int category) {
+            return mBytes[category];
+        }
+
+        public int getObjects(int category) {
+            return mObjects[category];
+        }
+
+        public long getPeakBytes(int category) {
+            return mPeakBytes[category];
+        }
+
+        public int getPeakObjects(int category) {
+            return mPeakObjects[category];
+        }
+
+        public long getBudget(int category) {
+            return mBudgets[category];
+        }
+
+        public boolean isOverBudget(int category) {
+            return mBudgets[category] != 0 && mBytes[category] > mBudgets[category];
+        }
+
+        public long getTotalBytes() {
+            long total = 0;
+
+            for (long bytes : mBytes) {
+                total += bytes;
+            }
+
+            return total;
+        }
+
+        /**
+         * @return estimated bytes of all GPU categories
+         */
+        public long getGpuBytes() {
+            long total = 0;
+
+            for (int i = 0; i < CATEGORIES; ++i) {
+                if (GPU[i]) {
+                    total += mBytes[i];
+                }
+            }
+
+            return total;
+        }
+
+        /**
+         * One line per category: bytes, objects, peaks and budget in KB.
+         */
+        @Override
+        public String toString() {
+            final StringBuilder out = new StringBuilder();
+
+            for (int i = 0; i < CATEGORIES; ++i) {
+                out.append(NAMES[i]).append(": ").append(mBytes[i] / 1024).append(" KB in ")
+                        .append(mObjects[i]).append(", peak ").append(mPeakBytes[i] / 1024).append(" KB in ")
+                        .append(mPeakObjects[i]);
+
+                if (mBudgets[i] != 0) {
+                    out.append(", budget ").append(mBudgets[i] / 1024).append(" KB");
+
+                    if (isOverBudget(i)) {
+                        out.append(" EXCEEDED");
+                    }
+                }
+
+                out.append('\n');
+            }
+
+            return out.append("total: ").append(getTotalBytes() / 1024).append(" KB").toString();
+        }
+    }
+}
@@ -3,6 +3,8 @@ package wayfarer.gemgame.util;
 import android.opengl.GLES20;
 import android.util.Log;
 
+import wayfarer.gemgame.gl.Gl;
+
 public class ShaderHelper
 {
 	private static final String TAG = "ShaderHelper";
@@ -16,25 +18,25 @@ public class ShaderHelper
 	 */
 	public static int compileShader(final int shaderType, final String shaderSource) 
 	{
-		int shaderHandle = GLES20.glCreateShader(shaderType);
+		int shaderHandle = Gl.glCreateShader(shaderType);
 
 		if (shaderHandle != 0) 
 		{
 			// Pass in the shader source.
-			GLES20.glShaderSource(shaderHandle, shaderSource);
+			Gl.glShaderSource(shaderHandle, shaderSource);
 
 			// Compile the shader.
-			GLES20.glCompileShader(shaderHandle);
+			Gl.glCompileShader(shaderHandle);
 
 			// Get the compilation status.
 			final int[] compileStatus = new int[1];
-			GLES20.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+			Gl.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
 
 			// If the compilation failed, delete the shader.
 			if (compileStatus[0] == 0) 
 			{
-				Log.e(TAG, "Error compiling shader: " + GLES20.glGetShaderInfoLog(shaderHandle));
-				GLES20.glDeleteShader(shaderHandle);
+				Log.e(TAG, "Error compiling shader: " + Gl.glGetShaderInfoLog(shaderHandle));
+				Gl.glDeleteShader(shaderHandle);
 				shaderHandle = 0;
 			}
 		}
@@ -57,15 +59,15 @@ public class ShaderHelper
 	 */
 	public static int createAndLinkProgram(final int vertexShaderHandle, final int fragmentShaderHandle, final String[] attributes) 
 	{
-		int programHandle = GLES20.glCreateProgram();
+		int programHandle = Gl.glCreateProgram();
 		
 		if (programHandle != 0) 
 		{
 			// Bind the vertex shader to the program.
-			GLES20.glAttachShader(programHandle, vertexShaderHandle);			
+			Gl.glAttachShader(programHandle, vertexShaderHandle);			
 
 			// Bind the fragment shader to the program.
-			GLES20.glAttachShader(programHandle, fragmentShaderHandle);
+			Gl.glAttachShader(programHandle, fragmentShaderHandle);
 			
 			// Bind attributes
 			if (attributes != null)
@@ -73,22 +75,22 @@ public class ShaderHelper
 				final int size = attributes.length;
 				for (int i = 0; i < size; i++)
 				{
-					GLES20.glBindAttribLocation(programHandle, i, attributes[i]);
+					Gl.glBindAttribLocation(programHandle, i, attributes[i]);
 				}						
 			}
 			
 			// Link the two shaders together into a program.
-			GLES20.glLinkProgram(programHandle);
+			Gl.glLinkProgram(programHandle);
 
 			// Get the link status.
 			final int[] linkStatus = new int[1];
-			GLES20.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
+			Gl.glGetProgramiv(programHandle, GLES20.GL_LINK_STATUS, linkStatus, 0);
 
 			// If the link failed, delete the program.
 			if (linkStatus[0] == 0) 
 			{				
-				Log.e(TAG, "Error compiling program: " + GLES20.glGetProgramInfoLog(programHandle));
-				GLES20.glDeleteProgram(programHandle);
+				Log.e(TAG, "Error compiling program: " + Gl.glGetProgramInfoLog(programHandle));
+				Gl.glDeleteProgram(programHandle);
 				programHandle = 0;
 			}
 		}
@@ -0,0 +1,87 @@
+package wayfarer.gemgame.util;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Builds a program for a combination of features from one pair of GLSL sources. The features
+ * go in front of both sources as #defines and the sources leave out, with #ifdef, whatever the
+ * combination does not need. Every combination is linked once per GL context on first use, see
+ * {@link GpuResources#program(String, String, String[])}, and binds only its own attributes.
+ */
+public class ShaderVariant {
+    /** Colour from u_Texture sampled at a_TexCoordinate. */
+    public static final int TEXTURED = 1;
+
+    /** Colour from the a_Color attribute, multiplies the texture if there is one. */
+    public static final int VERTEX_COLOR = 2;
+
+    /** a_TexCoordinate spans the region of the texture set by u_AtlasRect (offset xy, size zw). */
+    public static final int ATLAS_UV = 4;
+
+    private static final String[] DEFINES = {"TEXTURED", "VERTEX_COLOR", "ATLAS_UV"};
+
+    private ShaderVariant() {}
+
+    /**
+     * @return the source with the #defines of the features in front
+     */
+    public static String source(String source, int features) {
+        final StringBuilder result = new StringBuilder();
+
+        for (int i = 0; i < DEFINES.length; ++i) {
+            if ((features & (1 << i)) != 0) {
+                result.append("#define ").append(DEFINES[i]).append('\n');
+            }
+        }
+
+        return result.append(source).toString();
+    }
+
+    /**
+     * @return the attributes the variant reads, a_Position first
+     */
+    public static String[] attributes(int features) {
+        final List<String> attributes = new ArrayList<>();
+        attributes.add("a_Position");
+
+        if ((features & TEXTURED) != 0) {
+            attributes.add("a_TexCoordinate");
+        }
+
+        if ((features & VERTEX_COLOR) != 0) {
+            attributes.add("a_Color");
+        }
+
+        return attributes.toArray(new String[attributes.size()]);
+    }
+
+    /**
+     * Program of the variant, shared by everything drawing with the same sources and features.
+     */
+    public static int program(String vertexShader, String fragmentShader, int features) {
+        if ((features & (TEXTURED | VERTEX_COLOR)) == 0) {
+            throw new IllegalArgumentException("Variant " + features + " has no colour source");
+        }
+
+        if ((features & ATLAS_UV) != 0 && (features & TEXTURED) == 0) {
+            throw new IllegalArgumentException("ATLAS_UV needs TEXTURED");
+        }
+
+        return GpuResources.program(source(vertexShader, features), source(fragmentShader, features),
+                attributes(features));
+    }
+
+    /**
+     * Program of the variant built from raw shader resources.
+     */
+    public static int program(Context context, int vertexShaderRes, int fragmentShaderRes, int features) {
+        return program(GpuResources.text(context, vertexShaderRes), GpuResources.text(context, fragmentShaderRes),
+                features);
+    }
+}
@@ -4,10 +4,11 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
 
 import java.util.HashMap;
 
+import wayfarer.gemgame.gl.Gl;
+
 public class TextureHelper
 {
 	private static HashMap<Integer, Integer> textureMapCache = new HashMap<>();
@@ -24,7 +25,7 @@ public class TextureHelper
 
 		final int[] textureHandle = new int[1];
 		
-		GLES20.glGenTextures(1, textureHandle, 0);
+		Gl.glGenTextures(1, textureHandle, 0);
 		
 		if (textureHandle[0] != 0)
 		{
@@ -35,14 +36,15 @@ public class TextureHelper
 			final Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), resourceId, options);
 						
 			// Bind to the texture in OpenGL
-			GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+			Gl.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
 			
 			// Set filtering
-			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+			Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+			Gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
 			
 			// Load the bitmap into the bound texture.
-			GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+			Gl.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+			MemoryLedger.add(MemoryLedger.TEXTURE, 4L * bitmap.getWidth() * bitmap.getHeight(), 1);
 			
 			// Recycle the bitmap, since its data has been loaded into OpenGL.
 			bitmap.recycle();						
@@ -0,0 +1,249 @@
+package wayfarer.gemgame.util;
+
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Diagnostic logging for hot paths. Messages are declared once with {@link #define} as a tag,
+ * a level and a format, a call site then passes only the event id and up to four primitive
+ * arguments. Nothing is formatted and nothing is allocated: below the current level a call
+ * is one array read and a compare, above it the event is stored in a fixed binary ring of the
+ * last {@link #CAPACITY} events. The ring is turned into text only when asked to with
+ * {@link #dump(StringBuilder)} or {@link #dumpToLog()}.
+ *
+ * Formats know "%d" (integer), "%x" (hex integer), "%f" (float passed through {@link #bits})
+ * and "%%". Writers never lock, a slot overwritten while it is dumped is skipped.
+ *
+ * Thread safe.
+ */
+public class TraceLog {
+    // same values as android.util.Log
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int OFF = Integer.MAX_VALUE;
+
+    public static final int CAPACITY = 2048;
+    public static final int MAX_EVENTS = 256;
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_ARGS = 4;
+    private static final long BUSY = -1;
+
+    // event definitions, written once by define()
+    private static final String[] sTags = new String[MAX_EVENTS];
+    private static final String[] sFormats = new String[MAX_EVENTS];
+    private static final int[] sEventLevels = new int[MAX_EVENTS];
+    private static int sEventCount = 0;
+
+    /** Off unless the app turns it on, release builds pay for the level check only. */
+    private static volatile int sLevel = OFF;
+
+    // the ring, a slot is valid while sSeq holds the sequence number it was written with
+    private static final AtomicLong sNext = new AtomicLong();
+    private static final AtomicLongArray sSeq = new AtomicLongArray(CAPACITY);
+    private static final int[] sEvent = new int[CAPACITY];
+    private static final long[] sTime = new long[CAPACITY];
+    private static final long[] sArgs = new long[CAPACITY * MAX_ARGS];
+
+    static {
+        for (int i = 0; i < CAPACITY; ++i) {
+            sSeq.set(i, BUSY);
+        }
+    }
+
+    private TraceLog() {}
+
+    /**
+     * Declares a message, meant for static final fields of the logging class.
+     *
+     * @return the event id to log with
+     */
+    public static synchronized int define(String tag, int level, String format) {
+        if (sEventCount == MAX_EVENTS) {
+            throw new IllegalStateException("More than " + MAX_EVENTS + " trace events");
+        }
+
+        sTags[sEventCount] = tag;
+        sFormats[sEventCount] = format;
+        sEventLevels[sEventCount] = level;
+        return sEventCount++;
+    }
+
+    /**
+     * Events below the level are dropped, {@link #OFF} drops all of them.
+     */
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    public static int getLevel() {
+        return sLevel;
+    }
+
+    public static boolean isEnabled(int event) {
+        return sEventLevels[event] >= sLevel;
+    }
+
+    /**
+     * @return the float as an argument for a "%f"
+     */
+    public static long bits(float value) {
+        return Float.floatToRawIntBits(value);
+    }
+
+    public static void log(int event) {
+        if (sEventLevels[event] >= sLevel) {
+            write(event, 0, 0, 0, 0);
+        }
+    }
+
+    public static void log(int event, long a) {
+        if (sEventLevels[event] >= sLevel) {
+            write(event, a, 0, 0, 0);
+        }
+    }
+
+    public static void log(int event, long a, long b) {
+        if (sEventLevels[event] >= sLevel) {
+            write(event, a, b, 0, 0);
+        }
+    }
+
+    public static void log(int event, long a, long b, long c) {
+        if (sEventLevels[event] >= sLevel) {
+            write(event, a, b, c, 0);
+        }
+    }
+
+    public static void log(int event, long a, long b, long c, long d) {
+        if (sEventLevels[event] >= sLevel) {
+            write(event, a, b, c, d);
+        }
+    }
+
+    private static void write(int event, long a, long b, long c, long d) {
+        final long seq = sNext.getAndIncrement();
+        final int slot = (int) seq & MASK;
+        final int args = slot * MAX_ARGS;
+
+        sSeq.set(slot, BUSY);
+        sEvent[slot] = event;
+        sTime[slot] = System.nanoTime();
+        sArgs[args] = a;
+        sArgs[args + 1] = b;
+        sArgs[args + 2] = c;
+        sArgs[args + 3] = d;
+        // publishes the slot
+        sSeq.set(slot, seq);
+    }
+
+    /**
+     * Appends the events in the ring as text, oldest first, one per line.
+     *
+     * @return number of events appended
+     */
+    public static int dump(StringBuilder out) {
+        return dump(out, false);
+    }
+
+    /**
+     * Writes the events in the ring to logcat at their own level.
+     *
+     * @return number of events written
+     */
+    public static int dumpToLog() {
+        return dump(new StringBuilder(), true);
+    }
+
+    private static int dump(StringBuilder out, boolean toLog) {
+        final long end = sNext.get();
+        final long[] args = new long[MAX_ARGS];
+        final StringBuilder line = new StringBuilder();
+        int count = 0;
+
+        for (long seq = Math.max(0, end - CAPACITY); seq < end; ++seq) {
+            final int slot = (int) seq & MASK;
+
+            if (sSeq.get(slot) != seq) {
+                continue;
+            }
+
+            final int event = sEvent[slot];
+            final long time = sTime[slot];
+            System.arraycopy(sArgs, slot * MAX_ARGS, args, 0, MAX_ARGS);
+
+            if (sSeq.get(slot) != seq) {
+                // overwritten while it was read
+                continue;
+            }
+
+            // milliseconds of System.nanoTime() with three decimals
+            final long micros = time / 1000;
+            line.setLength(0);
+            line.append(micros / 1000).append('.');
+
+            for (long digit = 100; digit > 1 && micros % 1000 < digit; digit /= 10) {
+                line.append('0');
+            }
+
+            line.append(micros % 1000).append(' ');
+
+            if (toLog) {
+                format(line, sFormats[event], args);
+                Log.println(sEventLevels[event], sTags[event], line.toString());
+            } else {
+                line.append(sTags[event]).append(": ");
+                format(line, sFormats[event], args);
+                out.append(line).append('\n');
+            }
+
+            count++;
+        }
+
+        return count;
+    }
+
+    private static void format(StringBuilder out, String format, long[] args) {
+        int arg = 0;
+
+        for (int i = 0; i < format.length(); ++i) {
+            final char c = format.charAt(i);
+
+            if (c != '%' || i + 1 == format.length()) {
+                out.append(c);
+                continue;
+            }
+
+            final char type = format.charAt(++i);
+
+            if (type == '%') {
+                out.append('%');
+            } else if (arg == MAX_ARGS) {
+                out.append('%').append(type);
+            } else if (type == 'd') {
+                out.append(args[arg++]);
+            } else if (type == 'x') {
+                out.append(Long.toHexString(args[arg++]));
+            } else if (type == 'f') {
+                out.append(Float.intBitsToFloat((int) args[arg++]));
+            } else {
+                out.append('%').append(type);
+            }
+        }
+    }
+
+    /**
+     * Forgets the recorded events. Events logged at the same time may survive.
+     */
+    public static void clear() {
+        for (int i = 0; i < CAPACITY; ++i) {
+            sSeq.set(i, BUSY);
+        }
+    }
+}
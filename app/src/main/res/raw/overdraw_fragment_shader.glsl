@@ -0,0 +1,9 @@
+precision mediump float;       	// Set the default precision to medium. We don't need as high of a
+								// precision in the fragment shader.
+uniform vec4 u_Color;			// Heat colour of the overdraw level being drawn, premultiplied.
+
+// The entry point for our fragment shader.
+void main()
+{
+	gl_FragColor = u_Color;
+}
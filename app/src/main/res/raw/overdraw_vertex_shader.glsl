@@ -0,0 +1,7 @@
+attribute vec4 a_Position;		// Full screen quad corner, already in clip space.
+
+// The entry point for our vertex shader.
+void main()
+{
+	gl_Position = a_Position;
+}
@@ -0,0 +1,14 @@
+precision mediump float;       	// Set the default precision to medium. We don't need as high of a
+								// precision in the fragment shader.
+varying vec4 v_Color;			// Interpolated particle color.
+
+// The entry point for our fragment shader.
+void main()
+{
+	// Round soft sprite out of the square point.
+	vec2 d = gl_PointCoord - vec2(0.5);
+	float falloff = 1.0 - smoothstep(0.25, 0.5, length(d));
+
+	// Zero alpha with premultiplied color adds up with the ONE, ONE_MINUS_SRC_ALPHA blending.
+	gl_FragColor = vec4(v_Color.rgb * v_Color.a * falloff, 0.0);
+}
@@ -0,0 +1,18 @@
+uniform mat4 u_MVPMatrix;		// A constant representing the combined model/view/projection matrix.
+uniform float u_PointScale;		// Pixels per world unit at distance 1 from the eye.
+
+attribute vec4 a_Position;		// Per-particle position information we will pass in.
+attribute vec4 a_Color;			// Per-particle color, alpha fades the particle out.
+attribute float a_Size;			// Per-particle size in world units.
+
+varying vec4 v_Color;			// This will be passed into the fragment shader.
+
+// The entry point for our vertex shader.
+void main()
+{
+	v_Color = a_Color;
+
+	gl_Position = u_MVPMatrix * a_Position;
+	// Keep the size in world units, points are sized in pixels.
+	gl_PointSize = a_Size * u_PointScale / gl_Position.w;
+}
@@ -1,13 +1,26 @@
-precision mediump float;       	// Set the default precision to medium. We don't need as high of a 
+// Built as variants, see ShaderVariant: TEXTURED, VERTEX_COLOR and ATLAS_UV are #defined in front.
+precision mediump float;       	// Set the default precision to medium. We don't need as high of a
 								// precision in the fragment shader.
+#ifdef TEXTURED
 uniform sampler2D u_Texture;    // The input texture.
 varying vec2 v_TexCoordinate;   // Interpolated texture coordinate per fragment.
-varying vec4 v_Color;
-  
+#endif
+
+#ifdef VERTEX_COLOR
+varying vec4 v_Color;           // Interpolated color per fragment.
+#endif
+
 // The entry point for our fragment shader.
-void main()                    		
+void main()
 {
+#ifdef TEXTURED
+#ifdef VERTEX_COLOR
+	gl_FragColor = texture2D(u_Texture, v_TexCoordinate) * v_Color;
+#else
     // set colour of the texture
 	gl_FragColor = texture2D(u_Texture, v_TexCoordinate);
-}                                                                     	
-
+#endif
+#else
+	gl_FragColor = v_Color;
+#endif
+}
@@ -1,23 +1,39 @@
-uniform mat4 u_MVPMatrix;		// A constant representing the combined model/view/projection matrix.      		       
-uniform mat4 u_MVMatrix;		// A constant representing the combined model/view matrix.       		
-		  			
-attribute vec4 a_Position;		// Per-vertex position information we will pass in.   				
-attribute vec4 a_Color;			// Per-vertex color information we will pass in. 				
-attribute vec2 a_TexCoordinate; // Per-vertex texture coordinate information we will pass in.
-		  
+// Built as variants, see ShaderVariant: TEXTURED, VERTEX_COLOR and ATLAS_UV are #defined in front.
+uniform mat4 u_MVPMatrix;		// A constant representing the combined model/view/projection matrix.
+
+attribute vec4 a_Position;		// Per-vertex position information we will pass in.
+
+#ifdef VERTEX_COLOR
+attribute vec4 a_Color;			// Per-vertex color information we will pass in.
 varying vec4 v_Color;			// This will be passed into the fragment shader.
+#endif
+
+#ifdef TEXTURED
+attribute vec2 a_TexCoordinate; // Per-vertex texture coordinate information we will pass in.
 varying vec2 v_TexCoordinate;   // This will be passed into the fragment shader.
-		  
-// The entry point for our vertex shader.  
-void main()                                                 	
-{                                                         
+#ifdef ATLAS_UV
+uniform vec4 u_AtlasRect;       // Offset (xy) and size (zw) of the texture region the quad shows.
+#endif
+#endif
+
+// The entry point for our vertex shader.
+void main()
+{
+#ifdef VERTEX_COLOR
 	// Pass through the color.
 	v_Color = a_Color;
-	
+#endif
+
+#ifdef TEXTURED
 	// Pass through the texture coordinate.
-	v_TexCoordinate = a_TexCoordinate;                                      
+#ifdef ATLAS_UV
+	v_TexCoordinate = u_AtlasRect.xy + a_TexCoordinate * u_AtlasRect.zw;
+#else
+	v_TexCoordinate = a_TexCoordinate;
+#endif
+#endif
 
 	// gl_Position is a special variable used to store the final position.
 	// Multiply the vertex by the matrix to get the final point in normalized screen coordinates.
-	gl_Position = u_MVPMatrix * a_Position;                       		  
-}                                                          
\ No newline at end of file
+	gl_Position = u_MVPMatrix * a_Position;
+}
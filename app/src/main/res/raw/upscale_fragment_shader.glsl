@@ -0,0 +1,12 @@
+precision mediump float;       	// Set the default precision to medium. We don't need as high of a
+								// precision in the fragment shader.
+uniform sampler2D u_Texture;    // The scene rendered at reduced resolution.
+
+varying vec2 v_TexCoordinate;   // Interpolated texture coordinate per fragment.
+
+// The entry point for our fragment shader.
+void main()
+{
+	// Bilinear filtering of the texture does the upscaling.
+	gl_FragColor = texture2D(u_Texture, v_TexCoordinate);
+}
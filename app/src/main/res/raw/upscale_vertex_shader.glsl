@@ -0,0 +1,11 @@
+attribute vec4 a_Position;		// Full screen quad corner, already in clip space.
+attribute vec2 a_TexCoordinate; // Matching spot of the offscreen scene.
+
+varying vec2 v_TexCoordinate;   // This will be passed into the fragment shader.
+
+// The entry point for our vertex shader.
+void main()
+{
+	v_TexCoordinate = a_TexCoordinate;
+	gl_Position = a_Position;
+}
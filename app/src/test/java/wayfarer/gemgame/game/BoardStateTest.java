@@ -0,0 +1,71 @@
+package wayfarer.gemgame.game;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BoardStateTest {
+
+    @Test
+    public void changes_leaveOlderStatesIntactAndDiffCheaply() throws Exception {
+        final int size = HexGrid.hexagon(10).size();
+        final BoardState empty = BoardState.filled(size, Hexagon.GEM_EMPTY);
+        final BoardState one = empty.with(300, Hexagon.GEM_RED);
+        assertSame(one, one.with(300, Hexagon.GEM_RED));
+
+        final BoardState move = one.edit()
+                .set(0, Hexagon.GEM_BLUE)
+                .set(1, Hexagon.GEM_WHITE)
+                .set(1, Hexagon.GEM_RED)
+                .set(330, Hexagon.GEM_BLUE)
+                .commit();
+
+        assertEquals(Hexagon.GEM_EMPTY, empty.get(300));
+        assertEquals(Hexagon.GEM_RED, one.get(300));
+        assertEquals(Hexagon.GEM_EMPTY, one.get(0));
+        assertEquals(Hexagon.GEM_RED, move.get(1));
+        assertEquals(Hexagon.GEM_RED, move.get(300));
+
+        final int[] cells = new int[size];
+        assertEquals(3, move.diff(one, cells));
+        assertArrayEquals(new int[]{0, 1, 330}, Arrays.copyOf(cells, 3));
+        assertEquals(0, move.diff(move, cells));
+
+        // a branch off an older state does not see the newer one
+        final BoardState branch = one.with(0, Hexagon.GEM_WHITE);
+        assertEquals(Hexagon.GEM_WHITE, branch.get(0));
+        assertEquals(Hexagon.GEM_BLUE, move.get(0));
+    }
+
+    @Test
+    public void history_undoesRedoesAndForgetsOldest() throws Exception {
+        BoardState state = BoardState.filled(40, 0);
+        final BoardHistory history = new BoardHistory(state, 3);
+
+        for (int move = 1; move <= 5; ++move) {
+            state = state.with(move, move);
+            history.push(state);
+        }
+
+        assertEquals(3, history.getUndoCount());
+        assertEquals(0, history.undo().get(5));
+        assertEquals(0, history.undo().get(4));
+        assertEquals(3, history.current().get(3));
+        assertEquals(4, history.redo().get(4));
+        assertEquals(1, history.getRedoCount());
+
+        // a new move drops what was undone
+        history.push(history.current().with(10, 1));
+        assertEquals(0, history.getRedoCount());
+        assertSame(history.current(), history.redo());
+
+        while (history.getUndoCount() > 0) {
+            history.undo();
+        }
+
+        // moves 1 and 2 were forgotten
+        assertEquals(2, history.current().get(2));
+    }
+}
@@ -0,0 +1,129 @@
+package wayfarer.gemgame.game;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GemClustersTest {
+    private final HexGrid mGrid = HexGrid.hexagon(6);
+
+    @Test
+    public void place_joinsEqualNeighboursAndRemoveSplitsTheGroup() throws Exception {
+        final GemClusters clusters = new GemClusters(mGrid);
+        final int center = 0;
+        final int up = mGrid.neighbour(center, 0);
+        final int down = mGrid.neighbour(center, 3);
+        final int right = mGrid.neighbour(center, 1);
+
+        clusters.place(up, Hexagon.GEM_RED);
+        clusters.place(down, Hexagon.GEM_RED);
+        clusters.place(right, Hexagon.GEM_BLUE);
+        assertFalse(clusters.connected(up, down));
+        assertEquals(1, clusters.getLargestSize());
+
+        // the center bridges both red gems, the blue one stays apart
+        clusters.place(center, Hexagon.GEM_RED);
+        assertTrue(clusters.connected(up, down));
+        assertFalse(clusters.connected(up, right));
+        assertEquals(3, clusters.getClusterSize(down));
+        assertEquals(3, clusters.getLargestSize());
+        assertEquals(clusters.find(up), clusters.getLargest());
+
+        final int[] out = new int[mGrid.size()];
+        assertEquals(3, clusters.getCluster(up, out));
+
+        clusters.remove(new int[]{center}, 1);
+        assertFalse(clusters.connected(up, down));
+        assertEquals(1, clusters.getClusterSize(up));
+        assertEquals(0, clusters.getClusterSize(center));
+        assertEquals(1, clusters.getLargestSize());
+        assertEquals(3, clusters.getClusterCount(1));
+    }
+
+    @Test
+    public void randomMoves_matchAFloodFill() throws Exception {
+        final Random random = new Random(49);
+        final GemClusters clusters = new GemClusters(mGrid);
+        final int[] gems = new int[mGrid.size()];
+
+        for (int i = 0; i < gems.length; ++i) {
+            gems[i] = random.nextInt(4);
+        }
+
+        clusters.build(gems);
+        check(clusters, gems);
+
+        final int[] out = new int[mGrid.size()];
+
+        for (int move = 0; move < 500; ++move) {
+            final int cell = random.nextInt(gems.length);
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    // clear the whole group, like a cluster clear does
+                    final int count = clusters.getCluster(cell, out);
+                    clusters.remove(out, count);
+
+                    for (int i = 0; i < count; ++i) {
+                        gems[out[i]] = Hexagon.GEM_EMPTY;
+                    }
+                    break;
+                case 1:
+                    if (gems[cell] == Hexagon.GEM_EMPTY) {
+                        gems[cell] = 1 + random.nextInt(3);
+                        clusters.place(cell, gems[cell]);
+                    }
+                    break;
+                default:
+                    gems[cell] = random.nextInt(4);
+                    clusters.set(cell, gems[cell]);
+                    break;
+            }
+
+            check(clusters, gems);
+        }
+    }
+
+    /**
+     * Compares every group and the largest size with a flood fill over the gems.
+     */
+    private void check(GemClusters clusters, int[] gems) {
+        final int[] group = new int[gems.length];
+        final int[] stack = new int[gems.length];
+        final int[] neighbours = new int[HexGrid.DIRECTIONS];
+        int largest = 0;
+
+        for (int start = 0; start < gems.length; ++start) {
+            if (gems[start] == Hexagon.GEM_EMPTY) {
+                assertEquals(-1, clusters.find(start));
+            } else if (group[start] == 0) {
+                int size = 0;
+                int top = 0;
+                stack[top++] = start;
+                group[start] = start + 1;
+
+                while (top > 0) {
+                    final int cell = stack[--top];
+                    size++;
+                    assertTrue(clusters.connected(start, cell));
+
+                    for (int n = mGrid.neighbours(cell, neighbours) - 1; n >= 0; --n) {
+                        final int next = neighbours[n];
+
+                        if (gems[next] == gems[start] && group[next] == 0) {
+                            group[next] = start + 1;
+                            stack[top++] = next;
+                        }
+                    }
+                }
+
+                assertEquals(size, clusters.getClusterSize(start));
+                largest = Math.max(largest, size);
+            }
+        }
+
+        assertEquals(largest, clusters.getLargestSize());
+    }
+}
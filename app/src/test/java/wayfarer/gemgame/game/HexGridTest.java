@@ -0,0 +1,107 @@
+package wayfarer.gemgame.game;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class HexGridTest {
+    private final HexGrid mGrid = HexGrid.hexagon(10);
+
+    @Test
+    public void hexagon_hasExpectedCells() throws Exception {
+        assertEquals(331, mGrid.size());
+        assertEquals(0, mGrid.indexOf(0, 0, 0));
+        assertEquals(-1, mGrid.indexOf(11, -11, 0));
+        assertEquals(-1, mGrid.indexOf(1, 1, 1));
+
+        for (int i = 0; i < mGrid.size(); ++i) {
+            assertEquals(i, mGrid.indexOf(mGrid.getX(i), mGrid.getY(i), mGrid.getZ(i)));
+        }
+    }
+
+    @Test
+    public void neighbours_areClippedByBoard() throws Exception {
+        int[] out = new int[6];
+        assertEquals(6, mGrid.neighbours(0, out));
+        assertEquals(3, mGrid.neighbours(mGrid.indexOf(10, 0, -10), out));
+        assertEquals(4, mGrid.neighbours(mGrid.indexOf(10, -5, -5), out));
+    }
+
+    @Test
+    public void ring_spiral_range_haveExpectedSizes() throws Exception {
+        int[] out = new int[mGrid.size()];
+
+        for (int r = 1; r <= 10; ++r) {
+            assertEquals(6 * r, mGrid.ring(0, r, out));
+
+            for (int i = 0; i < 6 * r; ++i) {
+                assertEquals(r, mGrid.distance(0, out[i]));
+            }
+
+            assertEquals(3 * r * (r + 1) + 1, mGrid.spiral(0, r, out));
+            assertEquals(3 * r * (r + 1) + 1, mGrid.range(0, r, out));
+        }
+
+        // range around a corner is cut by the board edge
+        assertEquals(4, mGrid.range(mGrid.indexOf(10, 0, -10), 1, out));
+    }
+
+    @Test
+    public void line_isContinuous() throws Exception {
+        int[] out = new int[32];
+        final int from = mGrid.indexOf(-10, 3, 7);
+        final int to = mGrid.indexOf(8, -8, 0);
+        final int count = mGrid.line(from, to, out);
+
+        assertEquals(mGrid.distance(from, to) + 1, count);
+        assertEquals(from, out[0]);
+        assertEquals(to, out[count - 1]);
+
+        for (int i = 1; i < count; ++i) {
+            assertEquals(1, mGrid.distance(out[i - 1], out[i]));
+        }
+    }
+
+    @Test
+    public void queries_doNotAllocate() throws Exception {
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+        final int[] out = new int[mGrid.size()];
+        final HexGrid.CellVisitor visitor = new HexGrid.CellVisitor() {
+            @Override
+            public boolean visit(int cell) {
+                out[0] = cell;
+                return true;
+            }
+        };
+        // warm up, so class loading and compilation do not count
+        int sink = runQueries(out, visitor, 2000);
+        final long before = threads.getThreadAllocatedBytes(thread);
+        sink += runQueries(out, visitor, 10000);
+        final long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(sink > 0);
+        // a little slack for the measuring itself
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private int runQueries(int[] out, HexGrid.CellVisitor visitor, int iterations) {
+        int sink = 0;
+
+        for (int i = 0; i < iterations; ++i) {
+            final int cell = i % mGrid.size();
+            sink += mGrid.neighbours(cell, out);
+            sink += mGrid.ring(cell, 3, out);
+            sink += mGrid.spiral(cell, 2, out);
+            sink += mGrid.range(cell, 4, out);
+            sink += mGrid.line(cell, mGrid.size() - 1 - cell, out);
+            mGrid.forEachInRange(cell, 2, visitor);
+            mGrid.forEachOnLine(cell, 0, visitor);
+        }
+
+        return sink;
+    }
+}
@@ -0,0 +1,89 @@
+package wayfarer.gemgame.game;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HexagonPoolTest {
+
+    @Test
+    public void acquire_growsAndKeepsEarlierSlots() throws Exception {
+        final HexagonPool pool = new HexagonPool(2);
+        final Hexagon first = pool.acquire();
+        first.setPosition(1.0f, 2.0f, 3.0f);
+        first.setGem(Hexagon.GEM_RED);
+        first.setText("7");
+
+        for (int i = 1; i < 5; ++i) {
+            assertEquals(i, pool.acquire().getIndex());
+        }
+
+        assertEquals(5, pool.size());
+        assertSame(first, pool.get(0));
+        assertEquals(2.0f, pool.getY(0), 0.0f);
+        assertEquals(Hexagon.GEM_RED, pool.getGem(0));
+        assertEquals("7", pool.getText(0));
+        assertEquals(1, pool.getLabelCount());
+
+        // fresh slots start out as a plain empty hex
+        assertEquals(1.0f, pool.getRadius(4), 0.0f);
+        assertEquals(Hexagon.GEM_EMPTY, pool.getGem(4));
+        assertEquals(0, pool.getFlags(4));
+        assertNull(pool.getText(4));
+    }
+
+    @Test
+    public void reset_recyclesSlotsAndHandles() throws Exception {
+        final HexagonPool pool = new HexagonPool(4);
+        final Hexagon[] handles = new Hexagon[3];
+
+        for (int i = 0; i < handles.length; ++i) {
+            handles[i] = pool.acquire();
+            handles[i].setGem(Hexagon.GEM_BLUE);
+            handles[i].setFlags(Hexagon.FLAG_ANIMATED);
+            handles[i].setText("x");
+        }
+
+        final int textVersion = pool.getTextVersion(1);
+        pool.reset();
+        assertEquals(0, pool.size());
+        assertEquals(0, pool.getLabelCount());
+
+        // the same handles come back, reset to defaults, and label caches see a new text
+        for (int i = 0; i < 2; ++i) {
+            assertSame(handles[i], pool.acquire());
+            assertEquals(Hexagon.GEM_EMPTY, pool.getGem(i));
+            assertEquals(0, pool.getFlags(i));
+            assertNull(pool.getText(i));
+        }
+
+        assertEquals(2, pool.size());
+        assertNotEquals(textVersion, pool.getTextVersion(1));
+    }
+
+    @Test
+    public void changes_nameEverySlotOnceWithTheFieldsThatChanged() throws Exception {
+        final HexagonPool pool = new HexagonPool(4);
+        final BoardChanges.Batch batch = new BoardChanges.Batch();
+        pool.acquire();
+        pool.acquire();
+        pool.getChanges().drain(batch);
+        assertEquals(2, batch.size());
+        assertEquals(BoardChanges.ALL, batch.getFields(0));
+
+        pool.get(1).setGem(Hexagon.GEM_WHITE);
+        pool.get(0).setPosition(1.0f, 0.0f, 0.0f);
+        pool.get(1).setText("a");
+        pool.get(1).setGem(Hexagon.GEM_RED);
+        assertEquals(2, pool.getChanges().pending());
+
+        pool.getChanges().drain(batch);
+        assertEquals(2, batch.size());
+        // in order of the first change
+        assertEquals(1, batch.getIndex(0));
+        assertEquals(BoardChanges.GEM | BoardChanges.TEXT, batch.getFields(0));
+        assertEquals(0, batch.getIndex(1));
+        assertEquals(BoardChanges.POSITION, batch.getFields(1));
+        assertEquals(0, pool.getChanges().pending());
+    }
+}
@@ -0,0 +1,108 @@
+package wayfarer.gemgame.game;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class LevelGeneratorTest {
+    private static final int[] GEMS = {Hexagon.GEM_BLUE, Hexagon.GEM_RED, Hexagon.GEM_WHITE};
+
+    @Test
+    public void generate_isPlayableAndSameForAnyThreadCount() throws Exception {
+        final HexGrid grid = HexGrid.hexagon(40);
+        final LevelGenerator generator = new LevelGenerator(grid, GEMS);
+        assertTrue(generator.getRegionCount() > 1);
+
+        final int[] serial = new int[grid.size()];
+        final int[] parallel = new int[grid.size()];
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            assertTrue(generator.generate(42, serial, null));
+            assertTrue(generator.generate(42, parallel, executor));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertArrayEquals(serial, parallel);
+        assertTrue(generator.hasNoMatch(serial));
+        assertTrue(generator.countMoves(serial) > 0);
+
+        final int[] other = new int[grid.size()];
+        assertTrue(generator.generate(43, other, null));
+        assertFalse(Arrays.equals(serial, other));
+    }
+
+    @Test
+    public void generate_smallBoardGetsAMove() throws Exception {
+        final HexGrid grid = HexGrid.hexagon(2);
+        final LevelGenerator generator = new LevelGenerator(grid, GEMS);
+        final int[] board = new int[grid.size()];
+
+        for (long seed = 0; seed < 50; ++seed) {
+            assertTrue(generator.generate(seed, board, null));
+            assertTrue(generator.hasNoMatch(board));
+            assertTrue(generator.countMoves(board) > 0);
+        }
+    }
+
+    @Test
+    public void generate_radius120() throws Exception {
+        final HexGrid grid = HexGrid.hexagon(120);
+        final LevelGenerator generator = new LevelGenerator(grid, GEMS);
+        final int[] serial = new int[grid.size()];
+        final int[] parallel = new int[grid.size()];
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            assertTrue(generator.generate(7, serial, null));
+            assertTrue(generator.generate(7, parallel, executor));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertArrayEquals(serial, parallel);
+        assertTrue(generator.hasNoMatch(parallel));
+        assertTrue(generator.countMoves(parallel) > 0);
+    }
+
+    /**
+     * Timing of the parallel generator, run with -Dgemgame.benchmark=true. Needs more than one core.
+     */
+    @Test
+    public void benchmark_radius120ParallelIsFaster() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("gemgame.benchmark"));
+        final int threads = Runtime.getRuntime().availableProcessors();
+        Assume.assumeTrue(threads > 1);
+
+        final HexGrid grid = HexGrid.hexagon(120);
+        final LevelGenerator generator = new LevelGenerator(grid, GEMS);
+        final int[] board = new int[grid.size()];
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            // warm up, so compilation does not count
+            for (int i = 0; i < 3; ++i) {
+                generator.generate(i, board, null);
+                generator.generate(i, board, executor);
+            }
+
+            long start = System.nanoTime();
+            generator.generate(7, board, null);
+            final long serial = System.nanoTime() - start;
+            start = System.nanoTime();
+            generator.generate(7, board, executor);
+            final long parallel = System.nanoTime() - start;
+
+            assertTrue("serial " + serial / 1000 + " us, " + threads + " threads " + parallel / 1000 + " us",
+                    parallel < serial);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package wayfarer.gemgame.game;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class SolverCacheTest {
+    private static final int[] GEMS = {Hexagon.GEM_BLUE, Hexagon.GEM_RED, Hexagon.GEM_WHITE};
+
+    private final HexGrid mGrid = HexGrid.hexagon(3);
+    private final LevelGenerator mGenerator = new LevelGenerator(mGrid, GEMS);
+
+    /** Move count as the value, the first cell of a playable swap as the hint. */
+    private final SolverCache.Solver mSolver = new SolverCache.Solver() {
+        @Override
+        public SolverCache.Result solve(int[] board) {
+            mSolves++;
+            return new SolverCache.Result(mGenerator.countMoves(board), hint(board));
+        }
+    };
+
+    private int mSolves = 0;
+
+    private int hint(int[] board) {
+        for (int cell = 0; cell < board.length; ++cell) {
+            for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+                final int other = mGrid.neighbour(cell, d);
+
+                if (other >= 0 && board[other] != board[cell]) {
+                    final int[] swapped = board.clone();
+                    swapped[cell] = board[other];
+                    swapped[other] = board[cell];
+
+                    if (!mGenerator.hasNoMatch(swapped)) {
+                        return cell;
+                    }
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * The board turned by 60 degrees, then mirrored if asked to.
+     */
+    private int[] turn(int[] board, boolean mirror) {
+        final int[] result = new int[board.length];
+
+        for (int cell = 0; cell < board.length; ++cell) {
+            final int x = mGrid.getX(cell);
+            final int y = mGrid.getY(cell);
+            final int z = mGrid.getZ(cell);
+            result[mirror ? mGrid.indexOf(-z, -y, -x) : mGrid.indexOf(-z, -x, -y)] = board[cell];
+        }
+
+        return result;
+    }
+
+    @Test
+    public void rotationsAndMirrors_shareOneEntryWithCellsInTheirOwnOrientation() throws Exception {
+        final SolverCache cache = new SolverCache(mGrid);
+        assertEquals(12, cache.getSymmetryCount());
+
+        int[] board = new int[mGrid.size()];
+        assertTrue(mGenerator.generate(7, board, null));
+        cache.get(board, mSolver);
+
+        for (int i = 0; i < 12; ++i) {
+            board = turn(board, i % 5 == 0);
+            final SolverCache.Result result = cache.get(board, mSolver);
+            final int hint = result.getCell(0);
+
+            assertEquals(mGenerator.countMoves(board), result.getValue());
+            assertTrue(hint >= 0);
+
+            // the hint cell, turned back into this orientation, still has a swap that matches
+            boolean playable = false;
+
+            for (int d = 0; d < HexGrid.DIRECTIONS; ++d) {
+                final int other = mGrid.neighbour(hint, d);
+
+                if (other >= 0) {
+                    final int[] swapped = board.clone();
+                    swapped[hint] = board[other];
+                    swapped[other] = board[hint];
+                    playable |= !mGenerator.hasNoMatch(swapped);
+                }
+            }
+
+            assertTrue(playable);
+        }
+
+        assertEquals(1, mSolves);
+        assertEquals(1, cache.size());
+        assertEquals(12.0f / 13, cache.getHitRate(), 1e-6f);
+    }
+
+    @Test
+    public void cache_evictsLeastRecentlyUsedAndSurvivesSaveAndLoad() throws Exception {
+        final SolverCache cache = new SolverCache(mGrid, 2);
+        final int[][] boards = new int[3][mGrid.size()];
+
+        for (int i = 0; i < boards.length; ++i) {
+            assertTrue(mGenerator.generate(100 + i, boards[i], null));
+            cache.get(boards[i], mSolver);
+        }
+
+        // the first board was pushed out by the third
+        assertEquals(2, cache.size());
+        assertNull(cache.lookup(boards[0]));
+        assertNotNull(cache.lookup(turn(boards[1], true)));
+
+        final File file = File.createTempFile("solver", ".cache");
+        file.deleteOnExit();
+        cache.save(file);
+
+        final SolverCache loaded = new SolverCache(mGrid, 2);
+        assertEquals(2, loaded.load(file));
+        assertEquals(0.0f, loaded.getHitRate(), 0.0f);
+        assertEquals(mGenerator.countMoves(boards[2]), loaded.lookup(turn(boards[2], false)).getValue());
+        assertNotNull(loaded.lookup(boards[1]));
+
+        try {
+            new SolverCache(HexGrid.hexagon(4)).load(file);
+            fail("Loaded the cache of another grid");
+        } catch (java.io.IOException expected) {
+            // different grid, different cell indexes
+        }
+    }
+}
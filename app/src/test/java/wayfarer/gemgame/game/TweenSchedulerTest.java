@@ -0,0 +1,70 @@
+package wayfarer.gemgame.game;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TweenSchedulerTest {
+
+    @Test
+    public void tween_isFrameRateIndependentAndLandsOnTarget() throws Exception {
+        final HexagonPool fast = new HexagonPool(1);
+        final HexagonPool slow = new HexagonPool(1);
+        fast.acquire();
+        slow.acquire();
+        final TweenScheduler fastTweens = new TweenScheduler(fast, 4);
+        final TweenScheduler slowTweens = new TweenScheduler(slow, 4);
+        fastTweens.start(0, TweenScheduler.PROPERTY_X, 6.0f, 0.0f, 0.5f, TweenScheduler.EASE_IN_OUT);
+        slowTweens.start(0, TweenScheduler.PROPERTY_X, 6.0f, 0.0f, 0.5f, TweenScheduler.EASE_IN_OUT);
+        assertTrue((fast.getFlags(0) & Hexagon.FLAG_ANIMATED) != 0);
+
+        // same time span at 120 and 30 frames per second land on the same step
+        for (int i = 0; i < 12; ++i) {
+            fastTweens.advance(1.0f / 120.0f);
+        }
+
+        for (int i = 0; i < 3; ++i) {
+            slowTweens.advance(1.0f / 30.0f);
+        }
+
+        assertEquals(fast.getX(0), slow.getX(0), 1e-4f);
+        assertTrue(fast.getX(0) > 0.0f && fast.getX(0) < 3.0f);
+
+        // an odd frame time ends between two steps, the value lies between them too
+        fastTweens.advance(TweenScheduler.STEP / 2);
+        assertTrue(fast.getX(0) > slow.getX(0));
+
+        for (int i = 0; i < 60 && fastTweens.isActive(); ++i) {
+            fastTweens.advance(1.0f / 60.0f);
+        }
+
+        assertFalse(fastTweens.isActive());
+        assertEquals(6.0f, fast.getX(0), 0.0f);
+        assertEquals(0, fast.getFlags(0) & Hexagon.FLAG_ANIMATED);
+    }
+
+    @Test
+    public void idleScheduler_touchesNothing() throws Exception {
+        final HexagonPool pool = new HexagonPool(2);
+        pool.acquire();
+        pool.acquire();
+        final TweenScheduler tweens = new TweenScheduler(pool, 1);
+
+        // over capacity jumps straight to the end
+        tweens.start(0, TweenScheduler.PROPERTY_RADIUS, 0.5f, 0.2f, 0.5f, TweenScheduler.EASE_OUT);
+        tweens.start(1, TweenScheduler.PROPERTY_RADIUS, 0.0f, 0.0f, 0.5f, TweenScheduler.EASE_OUT);
+        assertEquals(0.0f, pool.getRadius(1), 0.0f);
+        assertEquals(1, tweens.getActiveCount());
+
+        // a waiting tween reports no change
+        pool.getChanges().drain(new BoardChanges.Batch());
+        tweens.advance(0.1f);
+        assertEquals(0, pool.getChanges().pending());
+
+        tweens.clear();
+        final int version = pool.getVersion();
+        tweens.advance(1.0f);
+        assertFalse(tweens.isActive());
+        assertEquals(version, pool.getVersion());
+    }
+}
@@ -0,0 +1,132 @@
+package wayfarer.gemgame.game.pack;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import wayfarer.gemgame.game.HexGrid;
+
+import static org.junit.Assert.*;
+
+public class LevelPackTest {
+
+    private static Level level(int n) {
+        final int radius = 2 + n % 9;
+        final byte[] gems = new byte[HexGrid.hexagon(radius).size()];
+
+        for (int i = 0; i < gems.length; ++i) {
+            gems[i] = (byte) ((i * 7 + n) % 3 + 1);
+        }
+
+        return new Level(radius, 0.2f, gems, 20 + n % 10, 1000 * n, new int[]{0, n % 5, 0, 3});
+    }
+
+    @Test
+    public void pack_decodesLevelsLazilyIntoASmallCache() throws Exception {
+        final int count = 3000;
+        final LevelPackWriter writer = new LevelPackWriter();
+
+        for (int i = 0; i < count; ++i) {
+            writer.add(level(i));
+        }
+
+        final File file = File.createTempFile("levels", ".pack");
+        file.deleteOnExit();
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            writer.writeTo(out);
+        }
+
+        try (LevelPack pack = LevelPack.open(file, 4)) {
+            assertEquals(count, pack.size());
+            assertEquals(0, pack.getDecodeCount());
+
+            for (int i : new int[]{2999, 0, 1234}) {
+                final Level expected = level(i);
+                final Level actual = pack.get(i);
+                assertEquals(expected.getRadius(), actual.getRadius());
+                assertEquals(expected.getDelta(), actual.getDelta(), 0f);
+                assertEquals(expected.getMoveLimit(), actual.getMoveLimit());
+                assertEquals(expected.getScoreGoal(), actual.getScoreGoal());
+                assertArrayEquals(expected.getGemGoals(), actual.getGemGoals());
+                assertArrayEquals(expected.getGems(), actual.getGems());
+            }
+
+            assertEquals(3, pack.getDecodeCount());
+            assertSame(pack.get(0), pack.get(0));
+            assertEquals(3, pack.getDecodeCount());
+            assertEquals(2, pack.getCacheHits());
+
+            // 2999 is the least recently used and falls out of the cache
+            pack.get(1);
+            pack.get(2);
+            assertEquals(5, pack.getDecodeCount());
+            pack.get(0);
+            pack.get(2999);
+            assertEquals(6, pack.getDecodeCount());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void get_failsOnceClosed() throws Exception {
+        final LevelPackWriter writer = new LevelPackWriter();
+        writer.add(level(0));
+        final File file = File.createTempFile("levels", ".pack");
+        file.deleteOnExit();
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            writer.writeTo(out);
+        }
+
+        final LevelPack pack = LevelPack.open(file);
+        pack.get(0);
+        pack.close();
+        pack.close();
+        pack.get(0);
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws Exception {
+        final File file = File.createTempFile("levels", ".pack");
+        file.deleteOnExit();
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[64]);
+        }
+
+        LevelPack.open(file).close();
+    }
+
+    @Test
+    public void get_rejectsLevelsWhoseGemsDoNotFillTheBoard() throws Exception {
+        final byte[] gems = level(0).getGems();
+        final LevelPackWriter writer = new LevelPackWriter();
+        writer.add(level(0));
+        writer.add(new Level(-1, 0.2f, new byte[0], 20, 0, new int[0]));
+        writer.add(new Level(Integer.MAX_VALUE, 0.2f, gems, 20, 0, new int[0]));
+        writer.add(new Level(3, 0.2f, gems, 20, 0, new int[0]));
+
+        final File file = File.createTempFile("levels", ".pack");
+        file.deleteOnExit();
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            writer.writeTo(out);
+        }
+
+        try (LevelPack pack = LevelPack.open(file)) {
+            assertArrayEquals(gems, pack.get(0).getGems());
+
+            for (int i = 1; i < pack.size(); ++i) {
+                try {
+                    pack.get(i);
+                    fail("Level " + i + " was accepted");
+                } catch (IOException expected) {
+                    // radius out of range or gem count off
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package wayfarer.gemgame.game.path;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import wayfarer.gemgame.game.HexGrid;
+
+import static org.junit.Assert.*;
+
+public class PathFinderTest {
+    private final HexGrid mGrid = HexGrid.hexagon(100);
+
+    @Test
+    public void findPath_onOpenBoard_isStraight() throws Exception {
+        NavGrid nav = new NavGrid(mGrid);
+        SearchContext context = new SearchContext(mGrid.size());
+        int[] path = new int[mGrid.size()];
+        final int from = mGrid.indexOf(-100, 0, 100);
+        final int to = mGrid.indexOf(100, 0, -100);
+
+        assertEquals(201, PathFinder.findPath(nav, from, to, context, path));
+        assertEquals(from, path[0]);
+        assertEquals(to, path[200]);
+    }
+
+    @Test
+    public void findPath_goesAroundWall() throws Exception {
+        NavGrid nav = new NavGrid(mGrid);
+        SearchContext context = new SearchContext(mGrid.size());
+        int[] path = new int[mGrid.size()];
+
+        // wall along x = 0 with a single gap at the board edge
+        for (int y = -99; y <= 100; ++y) {
+            nav.setBlocked(mGrid.indexOf(0, y, -y), true);
+        }
+
+        final int from = mGrid.indexOf(-5, 0, 5);
+        final int to = mGrid.indexOf(5, 0, -5);
+        final int length = PathFinder.findPath(nav, from, to, context, path);
+
+        assertTrue(length > 11);
+
+        for (int i = 1; i < length; ++i) {
+            assertEquals(1, mGrid.distance(path[i - 1], path[i]));
+            assertFalse(nav.isBlocked(path[i]));
+        }
+
+        // close the gap
+        nav.setBlocked(mGrid.indexOf(0, -100, 100), true);
+        assertEquals(0, PathFinder.findPath(nav, from, to, context, path));
+    }
+
+    @Test
+    public void distanceField_incrementalRepair_matchesRebuild() throws Exception {
+        final HexGrid grid = HexGrid.hexagon(20);
+        NavGrid nav = new NavGrid(grid);
+        DistanceField field = nav.createDistanceField();
+        int[] sources = {0, grid.indexOf(15, -15, 0), grid.indexOf(-7, 20, -13)};
+        field.setSources(sources, sources.length);
+        Random random = new Random(42);
+
+        for (int step = 0; step < 3000; ++step) {
+            final int cell = random.nextInt(grid.size());
+            nav.setBlocked(cell, random.nextInt(3) != 0);
+
+            if (step % 100 == 0) {
+                NavGrid copy = new NavGrid(grid);
+
+                for (int i = 0; i < grid.size(); ++i) {
+                    copy.setBlocked(i, nav.isBlocked(i));
+                }
+
+                DistanceField reference = copy.createDistanceField();
+                reference.setSources(sources, sources.length);
+
+                for (int i = 0; i < grid.size(); ++i) {
+                    assertEquals("cell " + i + " at step " + step, reference.getDistance(i), field.getDistance(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void distanceField_nextStep_leadsToSource() throws Exception {
+        NavGrid nav = new NavGrid(mGrid);
+        DistanceField field = nav.createDistanceField();
+        field.setSources(new int[]{0}, 1);
+
+        int cell = mGrid.indexOf(60, -10, -50);
+        int steps = 0;
+
+        while (field.nextStep(cell) >= 0) {
+            cell = field.nextStep(cell);
+            steps++;
+        }
+
+        assertEquals(0, cell);
+        assertEquals(60, steps);
+    }
+}
@@ -0,0 +1,69 @@
+package wayfarer.gemgame.gl;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Checks how much a hot path allocates. The path runs a few thousand times to get past class
+ * loading, lazy setup and JIT compilation, then is measured in a few rounds while the bytes
+ * allocated by the calling thread are counted. The JIT occasionally allocates on the thread it
+ * deoptimizes, so the cheapest round counts, an allocation made by every call shows up in all
+ * of them. A path over its budget fails with its name, the average per call and the total.
+ *
+ * Needs a JVM that counts per thread allocations (HotSpot does), tests are skipped elsewhere.
+ * Run with -XX:-DoEscapeAnalysis, or the JIT may hide allocations ART would still make.
+ */
+class AllocationBudget {
+    static final int WARMUP = 2000;
+    static final int ITERATIONS = 2000;
+    static final int ROUNDS = 4;
+
+    private AllocationBudget() {}
+
+    private static com.sun.management.ThreadMXBean threads() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("No per thread allocation counter",
+                threads instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported());
+        ((com.sun.management.ThreadMXBean) threads).setThreadAllocatedMemoryEnabled(true);
+        return (com.sun.management.ThreadMXBean) threads;
+    }
+
+    /**
+     * @param path         - name of the path for the report
+     * @param bytesPerCall - budget, average bytes one call may allocate
+     */
+    static void check(String path, long bytesPerCall, Runnable body) {
+        final com.sun.management.ThreadMXBean threads = threads();
+        final long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP; ++i) {
+            body.run();
+        }
+
+        long total = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS; ++round) {
+            final long start = threads.getThreadAllocatedBytes(thread);
+
+            for (int i = 0; i < ITERATIONS; ++i) {
+                body.run();
+            }
+
+            total = Math.min(total, threads.getThreadAllocatedBytes(thread) - start);
+        }
+
+        // one-off allocations below a byte per call, e.g. the counter itself, are no regression
+        if (total / ITERATIONS > bytesPerCall) {
+            fail(path + " allocates " + total / ITERATIONS + " bytes per call, budget " + bytesPerCall
+                    + " (" + total + " bytes in " + ITERATIONS + " calls)");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package wayfarer.gemgame.gl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.game.Hexagon;
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.game.Playground;
+import wayfarer.gemgame.game.util.PlaygroundUtil;
+import wayfarer.gemgame.mesh.Mesh;
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.TraceLog;
+
+/**
+ * Hot paths that must not allocate, run against {@link NullGl} so only the game's own work
+ * is counted. Budgets are bytes per call, see {@link AllocationBudget}.
+ */
+public class AllocationBudgetTest {
+    private static final int SIZE = 64;
+
+    private GemGameGLRenderer mRenderer;
+
+    @Before
+    public void setUp() throws Exception {
+        Gl.setBackend(new NullGl());
+        GpuResources.setLoader(SoftwareGlTest.FILE_LOADER);
+        mRenderer = new GemGameGLRenderer(null);
+        PlaygroundUtil.calculateHexCircle(mRenderer.getHexagonPool(), 0, 0, 0, 5, 0.2f);
+        mRenderer.onSurfaceCreated(null, null);
+        mRenderer.onSurfaceChanged(null, SIZE, SIZE);
+        mRenderer.setCamera(0, 0, 10);
+        // a GC or JIT pause must not switch resolution in the middle of a measurement
+        mRenderer.getResolutionGovernor().setLimits(1.0f, 1.0f);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        TraceLog.setLevel(TraceLog.OFF);
+        Gl.setBackend(new AndroidGl());
+        GpuResources.setLoader(GpuResources.RESOURCE_LOADER);
+    }
+
+    @Test
+    public void onDrawFrame_staticBoard() throws Exception {
+        AllocationBudget.check("GemGameGLRenderer.onDrawFrame, static board", 0, new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.onDrawFrame(null);
+            }
+        });
+    }
+
+    @Test
+    public void onDrawFrame_impostorBoard() throws Exception {
+        // far enough for baked chunks
+        mRenderer.setCamera(0, 0, 30);
+        AllocationBudget.check("GemGameGLRenderer.onDrawFrame, impostor board", 0, new Runnable() {
+            @Override
+            public void run() {
+                mRenderer.onDrawFrame(null);
+            }
+        });
+    }
+
+    @Test
+    public void onDrawFrame_changingCells() throws Exception {
+        final HexagonPool pool = mRenderer.getHexagonPool();
+        AllocationBudget.check("GemGameGLRenderer.onDrawFrame, two cells regemmed per frame", 0, new Runnable() {
+            private int mFrame = 0;
+
+            @Override
+            public void run() {
+                mFrame++;
+                pool.get(mFrame % pool.size()).setGem(Hexagon.GEM_RED);
+                pool.get((mFrame * 7) % pool.size()).setGem(Hexagon.GEM_BLUE);
+                mRenderer.onDrawFrame(null);
+            }
+        });
+    }
+
+    @Test
+    public void onDrawFrame_changingCellsAtImpostorLevel() throws Exception {
+        final HexagonPool pool = mRenderer.getHexagonPool();
+        // far enough for baked chunks, every frame rebakes the chunks of two cells
+        mRenderer.setCamera(0, 0, 30);
+        AllocationBudget.check("GemGameGLRenderer.onDrawFrame, two cells regemmed per impostor frame", 0,
+                new Runnable() {
+                    private int mFrame = 0;
+
+                    @Override
+                    public void run() {
+                        mFrame++;
+                        pool.get(mFrame % pool.size()).setGem(Hexagon.GEM_RED);
+                        pool.get((mFrame * 7) % pool.size()).setGem(Hexagon.GEM_BLUE);
+                        mRenderer.onDrawFrame(null);
+                    }
+                });
+    }
+
+    @Test
+    public void levelRebuild() throws Exception {
+        final HexagonPool pool = mRenderer.getHexagonPool();
+        final Playground playground = new Playground();
+        AllocationBudget.check("PlaygroundUtil.calculateHexCircle, next level", 0, new Runnable() {
+            private int mLevel = 0;
+
+            @Override
+            public void run() {
+                mLevel++;
+                PlaygroundUtil.calculateHexCircle(playground, pool, 0, 0, 0, 4 + mLevel % 2, 0.2f);
+            }
+        });
+    }
+
+    @Test
+    public void meshDraw() throws Exception {
+        final Mesh mesh = new Mesh(null, R.raw.per_pixel_fragment_shader, R.raw.per_pixel_vertex_shader,
+                R.drawable.beach_sand_backgroung);
+        mesh.init();
+        final float[] view = mRenderer.getCurrentView();
+        final float[] projection = mRenderer.getCurrentProjection();
+        AllocationBudget.check("Mesh.draw", 0, new Runnable() {
+            @Override
+            public void run() {
+                mesh.draw(view, projection);
+            }
+        });
+    }
+
+    /**
+     * A drag event with two historical samples, traced, and the frame that applies it. A
+     * MotionEvent can't be made off device, so this starts past reading it.
+     */
+    @Test
+    public void touchDrag() throws Exception {
+        TraceLog.setLevel(TraceLog.VERBOSE);
+        final float[] history = {100.5f, 200.25f, 101.0f, 200.0f};
+        AllocationBudget.check("GemGameGLSurfaceView.drag", 0, new Runnable() {
+            @Override
+            public void run() {
+                GemGameGLSurfaceView.drag(mRenderer, 100.0f, 200.5f, history, 2, 101.5f, 199.75f);
+                mRenderer.onDrawFrame(null);
+            }
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package wayfarer.gemgame.gl;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CameraStateTest {
+
+    @Test
+    public void read_returnsTheLastPublishedPosition() throws Exception {
+        final CameraState state = new CameraState(1.0f, 2.0f, 3.0f);
+        final float[] out = new float[3];
+
+        state.read(out);
+        assertArrayEquals(new float[]{1.0f, 2.0f, 3.0f}, out, 0.0f);
+
+        state.publish(4.0f, 5.0f, 6.0f);
+        state.publish(7.0f, 8.0f, 9.0f);
+        state.read(out);
+        assertArrayEquals(new float[]{7.0f, 8.0f, 9.0f}, out, 0.0f);
+    }
+
+    @Test
+    public void concurrentReads_neverSeeAHalfWrittenPosition() throws Exception {
+        final CameraState state = new CameraState(0.0f, 0.0f, 0.0f);
+        final int publishes = 500000;
+        final AtomicReference<String> torn = new AtomicReference<>();
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final float[] out = new float[3];
+                float last = 0.0f;
+
+                while (last < publishes && torn.get() == null) {
+                    state.read(out);
+
+                    // every publish is (i, 2i, 3i) and i only grows
+                    if (out[1] != 2 * out[0] || out[2] != 3 * out[0] || out[0] < last) {
+                        torn.set(out[0] + ", " + out[1] + ", " + out[2] + " after " + last);
+                    }
+
+                    last = out[0];
+                }
+            }
+        });
+
+        reader.start();
+
+        for (int i = 1; i <= publishes; ++i) {
+            state.publish(i, 2 * i, 3 * i);
+        }
+
+        reader.join(10000);
+        assertFalse(reader.isAlive());
+        assertNull(torn.get());
+    }
+}
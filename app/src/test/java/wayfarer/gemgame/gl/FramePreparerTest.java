@@ -0,0 +1,78 @@
+package wayfarer.gemgame.gl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import wayfarer.gemgame.game.Hexagon;
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.game.util.PlaygroundUtil;
+import wayfarer.gemgame.util.GpuResources;
+
+import static org.junit.Assert.*;
+
+public class FramePreparerTest {
+    private static final int SIZE = 96;
+
+    private SoftwareGl mGl;
+
+    @After
+    public void tearDown() throws Exception {
+        Gl.setBackend(new AndroidGl());
+        GpuResources.setLoader(GpuResources.RESOURCE_LOADER);
+    }
+
+    /**
+     * A renderer on a fresh software context with a board of several layout chunks.
+     */
+    private GemGameGLRenderer renderer() {
+        mGl = new SoftwareGl(SIZE, SIZE);
+        Gl.setBackend(mGl);
+        GpuResources.setLoader(SoftwareGlTest.FILE_LOADER);
+        final GemGameGLRenderer renderer = new GemGameGLRenderer(null);
+        PlaygroundUtil.calculateHexCircle(renderer.getHexagonPool(), 0, 0, 0, 10, 0.2f);
+        renderer.onSurfaceCreated(null, null);
+        renderer.onSurfaceChanged(null, SIZE, SIZE);
+        return renderer;
+    }
+
+    private static void regem(HexagonPool pool) {
+        for (int i = 0; i < pool.size(); ++i) {
+            pool.get(i).setGem(Hexagon.GEM_BLUE + i % 3);
+        }
+    }
+
+    private int[] pixels() {
+        final int[] pixels = new int[SIZE * SIZE];
+
+        for (int y = 0; y < SIZE; ++y) {
+            for (int x = 0; x < SIZE; ++x) {
+                pixels[y * SIZE + x] = mGl.getPixel(x, y);
+            }
+        }
+
+        return pixels;
+    }
+
+    @Test
+    public void changesLaidOutByWorkers_matchABoardBuiltInOnePiece() throws Exception {
+        final GemGameGLRenderer changed = renderer();
+        final HexagonPool pool = changed.getHexagonPool();
+        assertTrue(pool.size() > 4 * 64);
+        changed.onDrawFrame(null);
+        changed.onDrawFrame(null);
+
+        regem(pool);
+        changed.onDrawFrame(null);
+        // every slot changed, one run
+        assertEquals(1, changed.getBoardBuffer().getUploadRuns());
+        assertEquals(pool.size() * 6 * 5 * 4, changed.getBoardBuffer().getUploadedBytes());
+        final int[] actual = pixels();
+
+        final GemGameGLRenderer built = renderer();
+        regem(built.getHexagonPool());
+        built.onDrawFrame(null);
+        built.onDrawFrame(null);
+
+        assertArrayEquals(pixels(), actual);
+    }
+}
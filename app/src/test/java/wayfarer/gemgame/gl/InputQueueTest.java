@@ -0,0 +1,89 @@
+package wayfarer.gemgame.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InputQueueTest {
+
+    @Test
+    public void drain_appliesRecordsInOrderAcrossTheRingEnd() throws Exception {
+        final InputQueue queue = new InputQueue(4);
+        final float[] camera = {0.0f, 0.0f, 10.0f};
+
+        for (int round = 0; round < 10; ++round) {
+            // the first input after a drain asks for a frame, the rest doesn't
+            assertTrue(queue.offerMove(1.0f, 0.0f));
+            assertFalse(queue.offerMove(0.0f, 2.0f));
+            assertFalse(queue.offerMove(1.0f, 1.0f));
+            assertEquals(3, queue.drain(camera));
+        }
+
+        assertArrayEquals(new float[]{20.0f, 30.0f, 10.0f}, camera, 0.0f);
+        assertEquals(0, queue.drain(camera));
+    }
+
+    @Test
+    public void set_overridesEarlierMoves() throws Exception {
+        final InputQueue queue = new InputQueue(8);
+        final float[] camera = {0.0f, 0.0f, 10.0f};
+
+        queue.offerMove(5.0f, 5.0f);
+        queue.offerSet(1.0f, 2.0f, 30.0f);
+        queue.offerMove(0.5f, -0.5f);
+        queue.drain(camera);
+
+        assertArrayEquals(new float[]{1.5f, 1.5f, 30.0f}, camera, 0.0f);
+    }
+
+    @Test
+    public void fullRing_mergesIntoOneRecordThatTheNextDrainTakes() throws Exception {
+        final InputQueue queue = new InputQueue(2);
+        final float[] camera = {0.0f, 0.0f, 10.0f};
+
+        // two records fill the ring, the rest merges, a set overriding the moves before it
+        queue.offerMove(1.0f, 0.0f);
+        queue.offerMove(1.0f, 0.0f);
+        queue.offerMove(100.0f, 100.0f);
+        queue.offerSet(-1.0f, -2.0f, 20.0f);
+        queue.offerMove(0.25f, 0.25f);
+
+        // the finger is lifted here, nothing flushes the overflow but the drain itself
+        assertEquals(3, queue.drain(camera));
+        assertArrayEquals(new float[]{-0.75f, -1.75f, 20.0f}, camera, 0.0f);
+        assertEquals(0, queue.drain(camera));
+
+        // back to the ring afterwards
+        assertTrue(queue.offerMove(1.0f, 1.0f));
+        assertEquals(1, queue.drain(camera));
+        assertArrayEquals(new float[]{0.25f, -0.75f, 20.0f}, camera, 0.0f);
+    }
+
+    @Test
+    public void concurrentProducer_losesNothing() throws Exception {
+        final InputQueue queue = new InputQueue(4);
+        final int moves = 200000;
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < moves; ++i) {
+                    queue.offerMove(1.0f, 2.0f);
+                }
+            }
+        });
+
+        final float[] camera = {0.0f, 0.0f, 0.0f};
+        producer.start();
+
+        while (producer.isAlive()) {
+            queue.drain(camera);
+        }
+
+        producer.join();
+        queue.drain(camera);
+
+        // whole numbers stay exact in a float this far
+        assertEquals(moves, camera[0], 0.0f);
+        assertEquals(2 * moves, camera[1], 0.0f);
+    }
+}
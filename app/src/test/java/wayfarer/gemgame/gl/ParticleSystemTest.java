@@ -0,0 +1,86 @@
+package wayfarer.gemgame.gl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.MatrixHelper;
+
+import static org.junit.Assert.*;
+
+public class ParticleSystemTest {
+    private static final int SIZE = 32;
+
+    private SoftwareGl mGl;
+
+    @Before
+    public void setUp() throws Exception {
+        mGl = new SoftwareGl(SIZE, SIZE);
+        Gl.setBackend(mGl);
+        GpuResources.setLoader(SoftwareGlTest.FILE_LOADER);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Gl.setBackend(new AndroidGl());
+        GpuResources.setLoader(GpuResources.RESOURCE_LOADER);
+    }
+
+    @Test
+    public void emitBurst_isCutAtCapacity() throws Exception {
+        final ParticleSystem particles = new ParticleSystem(null, 100);
+
+        particles.emitBurst(0, 0, 0, 60, 1.0f, 1.0f, 0.1f, 1, 1, 1);
+        assertEquals(60, particles.getLiveCount());
+        particles.emitBurst(0, 0, 0, 60, 1.0f, 1.0f, 0.1f, 1, 1, 1);
+        assertEquals(100, particles.getLiveCount());
+        particles.emitBurst(0, 0, 0, 1, 1.0f, 1.0f, 0.1f, 1, 1, 1);
+        assertEquals(100, particles.getLiveCount());
+    }
+
+    @Test
+    public void deadParticles_areSwappedOutAndTheRestDrawnAsOnePointBatch() throws Exception {
+        final ParticleSystem particles = new ParticleSystem(null, 100);
+        // short lived red ones around long lived blue ones, all standing still at the origin
+        particles.emitBurst(0, 0, 0, 30, 0.0f, 0.1f, 0.5f, 1, 0, 0);
+        particles.emitBurst(0, 0, 0, 20, 0.0f, 10.0f, 0.5f, 0, 0, 1);
+        particles.emitBurst(0, 0, 0, 30, 0.0f, 0.1f, 0.5f, 1, 0, 0);
+
+        particles.update(0.2f);
+        assertEquals(20, particles.getLiveCount());
+
+        final float[] view = new float[16];
+        final float[] projection = new float[16];
+        MatrixHelper.setIdentityM(view, 0);
+        MatrixHelper.orthoM(projection, 0, -1, 1, -1, 1, -1, 1);
+        Gl.glViewport(0, 0, SIZE, SIZE);
+        particles.setViewport(SIZE, SIZE);
+        mGl.resetCounters();
+        particles.draw(view, projection);
+
+        assertEquals(1, mGl.getDrawCalls());
+        assertEquals(20, mGl.getPointsDrawn());
+        // only blue ones are left, a red one moved into a dead slot would show up anywhere
+        int blue = 0;
+
+        for (int y = 0; y < SIZE; ++y) {
+            for (int x = 0; x < SIZE; ++x) {
+                final int pixel = mGl.getPixel(x, y);
+                assertEquals(0, (pixel >> 16) & 0xff);
+
+                if ((pixel & 0xff) > 0) {
+                    blue++;
+                }
+            }
+        }
+
+        assertTrue(blue > 0);
+
+        particles.update(20.0f);
+        assertEquals(0, particles.getLiveCount());
+        mGl.resetCounters();
+        particles.draw(view, projection);
+        assertEquals(0, mGl.getDrawCalls());
+    }
+}
@@ -0,0 +1,63 @@
+package wayfarer.gemgame.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResolutionGovernorTest {
+    private static final float BUDGET = 1.0f / 60.0f;
+
+    private final ResolutionGovernor mGovernor = new ResolutionGovernor(BUDGET, 0.5f, 1.0f, 0.125f, 0.15f);
+
+    private void frames(int count, float frameTime) {
+        for (int i = 0; i < count; ++i) {
+            mGovernor.onFrame(frameTime);
+        }
+    }
+
+    @Test
+    public void slowFrames_stepDownToMin() throws Exception {
+        frames(1000, BUDGET * 2);
+        assertEquals(0.5f, mGovernor.getScale(), 0.0f);
+        assertEquals(4, mGovernor.getDownscales());
+        assertEquals(0, mGovernor.getUpscales());
+    }
+
+    @Test
+    public void framesInsideBand_keepScale() throws Exception {
+        frames(100, BUDGET * 2);
+        final float scale = mGovernor.getScale();
+
+        // short of the first probe
+        frames(60, BUDGET * 1.1f);
+        assertEquals(scale, mGovernor.getScale(), 0.0f);
+    }
+
+    @Test
+    public void fastFrames_stepBackUp() throws Exception {
+        frames(1000, BUDGET * 2);
+        frames(1000, BUDGET * 0.5f);
+        assertEquals(1.0f, mGovernor.getScale(), 0.0f);
+        assertEquals(mGovernor.getDownscales(), mGovernor.getUpscales());
+    }
+
+    @Test
+    public void failedProbes_backOff() throws Exception {
+        // vsync capped at budget below max: the governor probes up, finds it too slow and goes back
+        frames(1000, BUDGET * 2);
+        int probes = 0;
+
+        for (int i = 0; i < 4000; ++i) {
+            final boolean atMin = mGovernor.getScale() == 0.5f;
+            mGovernor.onFrame(atMin ? BUDGET : BUDGET * 2);
+
+            if (atMin && mGovernor.getScale() > 0.5f) {
+                probes++;
+            }
+        }
+
+        assertTrue(mGovernor.getFailedProbes() > 0);
+        // without backoff there would be a probe every few hundred frames
+        assertTrue(probes < 8);
+    }
+}
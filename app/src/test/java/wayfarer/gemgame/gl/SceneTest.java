@@ -0,0 +1,64 @@
+package wayfarer.gemgame.gl;
+
+import org.junit.Test;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.mesh.Mesh;
+
+import static org.junit.Assert.*;
+
+public class SceneTest {
+
+    private static Mesh mesh(int textureRes) {
+        return new Mesh(null, R.raw.per_pixel_fragment_shader, R.raw.per_pixel_vertex_shader, textureRes);
+    }
+
+    @Test
+    public void acquire_returnsTheSameSnapshotUntilTheNextPublish() throws Exception {
+        final Scene scene = new Scene();
+        final Scene.Snapshot empty = scene.acquire();
+        assertEquals(0, empty.size());
+        assertSame(empty, scene.acquire());
+
+        final Mesh mesh = mesh(R.drawable.blue_hex_800);
+        scene.add(mesh);
+        assertSame(empty, scene.acquire());
+
+        scene.publish();
+        final Scene.Snapshot published = scene.acquire();
+        assertNotSame(empty, published);
+        assertSame(published, scene.acquire());
+        assertEquals(1, published.size());
+        assertSame(mesh, published.getMesh(0));
+        // published snapshots never change
+        assertEquals(0, empty.size());
+    }
+
+    @Test
+    public void stagedChanges_reachTheMeshesOnlyThroughAPublishedSnapshot() throws Exception {
+        final Scene scene = new Scene();
+        final Mesh mesh = mesh(R.drawable.blue_hex_800);
+        mesh.setPosition(1.0f, 2.0f, 3.0f);
+        scene.add(mesh);
+        scene.publish();
+        final Scene.Snapshot first = scene.acquire();
+
+        scene.move(mesh, 4.0f, 5.0f, 6.0f);
+        scene.retexture(mesh, R.drawable.red_hex_800);
+        assertArrayEquals(new float[]{1.0f, 2.0f, 3.0f}, mesh.getPosition(), 0.0f);
+        assertEquals(R.drawable.blue_hex_800, mesh.getTextureRes());
+
+        // the GL thread keeps applying what it has
+        first.apply();
+        assertArrayEquals(new float[]{1.0f, 2.0f, 3.0f}, mesh.getPosition(), 0.0f);
+
+        scene.publish();
+        scene.acquire().apply();
+        assertArrayEquals(new float[]{4.0f, 5.0f, 6.0f}, mesh.getPosition(), 0.0f);
+        assertEquals(R.drawable.red_hex_800, mesh.getTextureRes());
+
+        scene.remove(mesh);
+        scene.publish();
+        assertEquals(0, scene.acquire().size());
+    }
+}
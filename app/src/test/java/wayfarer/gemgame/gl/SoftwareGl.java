@@ -0,0 +1,1257 @@
+package wayfarer.gemgame.gl;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Project GemGame
+ * Created by wayfarer on 10/19/26.
+ *
+ * Pure Java implementation of the {@link GlBackend} subset, rasterising into memory. Lets the
+ * renderer run on a machine without a GPU and counts what a frame costs: draw calls, state
+ * changes, fragments shaded and how often every pixel was shaded.
+ *
+ * GLSL is not interpreted. A program is classified by what its sources declare, which covers
+ * the game's shaders: position is transformed by u_MVPMatrix if the vertex shader has one,
+ * gl_PointSize means a_Size * u_PointScale / w point sprites, and the colour comes from
+ * texture2D(u_Texture), u_Color, a round gl_PointCoord sprite of a_Color or a_Color, in that
+ * order of preference, of what is left after #define, #ifdef, #ifndef, #else and #endif are
+ * applied. Sampling is nearest with clamp to edge. Framebuffer objects take a
+ * colour texture and optionally a depth renderbuffer, never stencil. Tests against a missing
+ * buffer pass, as they do on a device.
+ */
+public class SoftwareGl implements GlBackend {
+    private static final Pattern ATTRIBUTE = Pattern.compile("attribute\\s+\\w+\\s+(\\w+)\\s*;");
+    private static final int MAX_ATTRIBUTES = 8;
+    private static final int MAX_TEXTURE_UNITS = 8;
+
+    private static class Texture {
+        int width;
+        int height;
+        /** RGBA, premultiplied as uploaded, row 0 first. */
+        float[] rgba = new float[0];
+    }
+
+    private static class Renderbuffer {
+        float[] depth = new float[0];
+    }
+
+    /** Colour texture and depth renderbuffer names, 0 if not attached. */
+    private static class Framebuffer {
+        int color;
+        int depth;
+    }
+
+    private static class Shader {
+        final int type;
+        String source = "";
+
+        Shader(int type) {
+            this.type = type;
+        }
+    }
+
+    private static class Program {
+        Shader vertex;
+        Shader fragment;
+        final Map<String, Integer> attributes = new HashMap<>();
+        final Map<String, Integer> uniformLocations = new HashMap<>();
+        final Map<Integer, float[]> uniforms = new HashMap<>();
+
+        boolean transformed;
+        boolean points;
+        boolean textured;
+        boolean uniformColor;
+        boolean sprite;
+
+        float[] uniform(String name) {
+            final Integer location = uniformLocations.get(name);
+            return location == null ? null : uniforms.get(location);
+        }
+    }
+
+    private static class Attribute {
+        boolean enabled;
+        int size = 4;
+        int stride;
+        Buffer pointer;
+        int buffer;
+        int offset;
+        final float[] constant = {0, 0, 0, 1};
+    }
+
+    private int mNextName = 1;
+    private final Map<Integer, Texture> mTextures = new HashMap<>();
+    private final Map<Integer, ByteBuffer> mBuffers = new HashMap<>();
+    private final Map<Integer, Shader> mShaders = new HashMap<>();
+    private final Map<Integer, Program> mPrograms = new HashMap<>();
+    private final Map<Integer, Framebuffer> mFramebuffers = new HashMap<>();
+    private final Map<Integer, Renderbuffer> mRenderbuffers = new HashMap<>();
+    private final Attribute[] mAttributes = new Attribute[MAX_ATTRIBUTES];
+
+    // default framebuffer
+    private final int mWidth;
+    private final int mHeight;
+    private final float[] mColor;
+    private final float[] mDepth;
+    private final int[] mStencil;
+    private final int[] mOverdraw;
+
+    // state
+    private boolean mBlend;
+    private boolean mDepthTest;
+    private boolean mCullFace;
+    private boolean mStencilTest;
+    private boolean mScissorTest;
+    private int mScissorX;
+    private int mScissorY;
+    private int mScissorWidth;
+    private int mScissorHeight;
+    private int mBlendSrc = GLES20.GL_ONE;
+    private int mBlendDst = GLES20.GL_ZERO;
+    private int mDepthFunc = GLES20.GL_LESS;
+    private boolean mDepthMask = true;
+    private int mStencilFunc = GLES20.GL_ALWAYS;
+    private int mStencilRef;
+    private int mStencilMask = 0xff;
+    private int mStencilFail = GLES20.GL_KEEP;
+    private int mStencilDepthFail = GLES20.GL_KEEP;
+    private int mStencilPass = GLES20.GL_KEEP;
+    private final float[] mClearColor = new float[4];
+    private int mClearStencil;
+    private int mViewportX;
+    private int mViewportY;
+    private int mViewportWidth;
+    private int mViewportHeight;
+    private int mProgram;
+    private int mActiveTexture;
+    private final int[] mBoundTextures = new int[MAX_TEXTURE_UNITS];
+    private int mArrayBuffer;
+    private int mFramebuffer;
+    private int mRenderbuffer;
+
+    // counters
+    private int mDrawCalls;
+    private int mPointsDrawn;
+    private int mStateChanges;
+    private int mRedundantStateCalls;
+    private long mFragmentsShaded;
+    private long mFragmentsRejected;
+
+    // per draw scratch
+    private final float[][] mClip = new float[3][4];
+    private final float[][] mVaryings = new float[3][6];
+    private final float[] mFetch = new float[4];
+    private final float[] mFragment = new float[4];
+
+    public SoftwareGl(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mColor = new float[width * height * 4];
+        mDepth = new float[width * height];
+        mStencil = new int[width * height];
+        mOverdraw = new int[width * height];
+        mViewportWidth = width;
+        mViewportHeight = height;
+
+        for (int i = 0; i < MAX_ATTRIBUTES; ++i) {
+            mAttributes[i] = new Attribute();
+        }
+    }
+
+    // ---- inspection ----
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return colour of the default framebuffer as ARGB, y = 0 is the bottom row
+     */
+    public int getPixel(int x, int y) {
+        final int p = (y * mWidth + x) * 4;
+        return (toByte(mColor[p + 3]) << 24) | (toByte(mColor[p]) << 16) | (toByte(mColor[p + 1]) << 8)
+                | toByte(mColor[p + 2]);
+    }
+
+    /**
+     * @return how many fragments were shaded at the pixel since the last {@link #resetCounters()}
+     */
+    public int getOverdraw(int x, int y) {
+        return mOverdraw[y * mWidth + x];
+    }
+
+    /**
+     * @return shaded fragments per pixel that was shaded at least once
+     */
+    public float getAverageOverdraw() {
+        long shaded = 0;
+        int covered = 0;
+
+        for (int count : mOverdraw) {
+            if (count > 0) {
+                shaded += count;
+                covered++;
+            }
+        }
+
+        return covered == 0 ? 0 : (float) shaded / covered;
+    }
+
+    public int getDrawCalls() {
+        return mDrawCalls;
+    }
+
+    /**
+     * @return vertices drawn as GL_POINTS
+     */
+    public int getPointsDrawn() {
+        return mPointsDrawn;
+    }
+
+    /**
+     * Calls that actually changed a bit of pipeline state: program, texture, buffer and
+     * framebuffer bindings, capabilities, blend, depth and stencil setup, viewport.
+     */
+    public int getStateChanges() {
+        return mStateChanges;
+    }
+
+    /**
+     * State calls that set what was already set.
+     */
+    public int getRedundantStateCalls() {
+        return mRedundantStateCalls;
+    }
+
+    public long getFragmentsShaded() {
+        return mFragmentsShaded;
+    }
+
+    /**
+     * Fragments rasterised and then thrown away by the depth or stencil test.
+     */
+    public long getFragmentsRejected() {
+        return mFragmentsRejected;
+    }
+
+    public void resetCounters() {
+        mDrawCalls = 0;
+        mPointsDrawn = 0;
+        mStateChanges = 0;
+        mRedundantStateCalls = 0;
+        mFragmentsShaded = 0;
+        mFragmentsRejected = 0;
+
+        for (int i = 0; i < mOverdraw.length; ++i) {
+            mOverdraw[i] = 0;
+        }
+    }
+
+    private void state(boolean changed) {
+        if (changed) {
+            mStateChanges++;
+        } else {
+            mRedundantStateCalls++;
+        }
+    }
+
+    private static int toByte(float v) {
+        return Math.max(0, Math.min(255, Math.round(v * 255)));
+    }
+
+    // ---- objects ----
+
+    private int name() {
+        return mNextName++;
+    }
+
+    private void gen(int n, int[] out, int offset) {
+        for (int i = 0; i < n; ++i) {
+            out[offset + i] = name();
+        }
+    }
+
+    /**
+     * Samples level 0 only, so there is nothing to build.
+     */
+    @Override
+    public void glGenerateMipmap(int target) {
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        gen(n, buffers, offset);
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        gen(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        for (int i = 0; i < n; ++i) {
+            textures[offset + i] = name();
+            mTextures.put(textures[offset + i], new Texture());
+        }
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        for (int i = 0; i < n; ++i) {
+            mFramebuffers.remove(framebuffers[offset + i]);
+        }
+    }
+
+    @Override
+    public void glGenRenderbuffers(int n, int[] renderbuffers, int offset) {
+        for (int i = 0; i < n; ++i) {
+            renderbuffers[offset + i] = name();
+            mRenderbuffers.put(renderbuffers[offset + i], new Renderbuffer());
+        }
+    }
+
+    @Override
+    public void glDeleteRenderbuffers(int n, int[] renderbuffers, int offset) {
+        for (int i = 0; i < n; ++i) {
+            mRenderbuffers.remove(renderbuffers[offset + i]);
+        }
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        for (int i = 0; i < n; ++i) {
+            mTextures.remove(textures[offset + i]);
+        }
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        final int name = name();
+        mShaders.put(name, new Shader(type));
+        return name;
+    }
+
+    @Override
+    public void glShaderSource(int shader, String string) {
+        mShaders.get(shader).source = preprocess(string);
+    }
+
+    /**
+     * Drops the lines #ifdef and friends leave out, nothing else of the preprocessor.
+     */
+    private static String preprocess(String source) {
+        final StringBuilder result = new StringBuilder();
+        final Set<String> defined = new HashSet<>();
+        // one entry per open #if, true while its lines are kept
+        final Deque<Boolean> active = new ArrayDeque<>();
+        boolean on = true;
+
+        for (String line : source.split("\n")) {
+            final String[] words = line.trim().split("\\s+");
+
+            if (words[0].equals("#ifdef") || words[0].equals("#ifndef")) {
+                active.push(on);
+                on = on && defined.contains(words[1]) == words[0].equals("#ifdef");
+            } else if (words[0].equals("#else")) {
+                on = active.peek() && !on;
+            } else if (words[0].equals("#endif")) {
+                on = active.pop();
+            } else if (on) {
+                if (words[0].equals("#define")) {
+                    defined.add(words[1]);
+                } else {
+                    result.append(line).append('\n');
+                }
+            }
+        }
+
+        return result.toString();
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        params[offset] = GLES20.GL_TRUE;
+    }
+
+    @Override
+    public String glGetShaderInfoLog(int shader) {
+        return "";
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        mShaders.remove(shader);
+    }
+
+    @Override
+    public int glCreateProgram() {
+        final int name = name();
+        mPrograms.put(name, new Program());
+        return name;
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        final Program p = mPrograms.get(program);
+        final Shader s = mShaders.get(shader);
+
+        if (s.type == GLES20.GL_VERTEX_SHADER) {
+            p.vertex = s;
+        } else {
+            p.fragment = s;
+        }
+    }
+
+    @Override
+    public void glBindAttribLocation(int program, int index, String name) {
+        mPrograms.get(program).attributes.put(name, index);
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        final Program p = mPrograms.get(program);
+        final String vertex = p.vertex.source;
+        final String fragment = p.fragment.source;
+        final Matcher m = ATTRIBUTE.matcher(vertex);
+
+        while (m.find()) {
+            if (!p.attributes.containsKey(m.group(1))) {
+                int index = 0;
+
+                while (p.attributes.containsValue(index)) {
+                    index++;
+                }
+
+                p.attributes.put(m.group(1), index);
+            }
+        }
+
+        p.transformed = vertex.contains("u_MVPMatrix");
+        p.points = vertex.contains("gl_PointSize");
+        p.textured = fragment.contains("texture2D");
+        p.uniformColor = fragment.contains("u_Color");
+        p.sprite = fragment.contains("gl_PointCoord");
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        params[offset] = GLES20.GL_TRUE;
+    }
+
+    @Override
+    public String glGetProgramInfoLog(int program) {
+        return "";
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        mPrograms.remove(program);
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        final Integer index = mPrograms.get(program).attributes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        final Program p = mPrograms.get(program);
+        Integer location = p.uniformLocations.get(name);
+
+        if (location == null) {
+            location = p.uniformLocations.size();
+            p.uniformLocations.put(name, location);
+        }
+
+        return location;
+    }
+
+    // ---- state ----
+
+    @Override
+    public void glUseProgram(int program) {
+        state(mProgram != program);
+        mProgram = program;
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        final int unit = texture - GLES20.GL_TEXTURE0;
+        state(mActiveTexture != unit);
+        mActiveTexture = unit;
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        state(mBoundTextures[mActiveTexture] != texture);
+        mBoundTextures[mActiveTexture] = texture;
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        state(mArrayBuffer != buffer);
+        mArrayBuffer = buffer;
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        state(mFramebuffer != framebuffer);
+        mFramebuffer = framebuffer;
+    }
+
+    @Override
+    public void glBindRenderbuffer(int target, int renderbuffer) {
+        mRenderbuffer = renderbuffer;
+    }
+
+    /**
+     * Depth formats only, every depth is kept as a float.
+     */
+    @Override
+    public void glRenderbufferStorage(int target, int internalformat, int width, int height) {
+        mRenderbuffers.get(mRenderbuffer).depth = new float[width * height];
+    }
+
+    private Framebuffer framebuffer() {
+        Framebuffer f = mFramebuffers.get(mFramebuffer);
+
+        if (f == null) {
+            f = new Framebuffer();
+            mFramebuffers.put(mFramebuffer, f);
+        }
+
+        return f;
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        framebuffer().color = texture;
+    }
+
+    @Override
+    public void glFramebufferRenderbuffer(int target, int attachment, int renderbuffertarget, int renderbuffer) {
+        framebuffer().depth = renderbuffer;
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        return GLES20.GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    @Override
+    public void glEnable(int cap) {
+        setCap(cap, true);
+    }
+
+    @Override
+    public void glDisable(int cap) {
+        setCap(cap, false);
+    }
+
+    private void setCap(int cap, boolean enabled) {
+        switch (cap) {
+            case GLES20.GL_BLEND:
+                state(mBlend != enabled);
+                mBlend = enabled;
+                break;
+            case GLES20.GL_DEPTH_TEST:
+                state(mDepthTest != enabled);
+                mDepthTest = enabled;
+                break;
+            case GLES20.GL_CULL_FACE:
+                state(mCullFace != enabled);
+                mCullFace = enabled;
+                break;
+            case GLES20.GL_STENCIL_TEST:
+                state(mStencilTest != enabled);
+                mStencilTest = enabled;
+                break;
+            case GLES20.GL_SCISSOR_TEST:
+                state(mScissorTest != enabled);
+                mScissorTest = enabled;
+                break;
+            default:
+                throw new UnsupportedOperationException("Capability " + cap);
+        }
+    }
+
+    @Override
+    public void glBlendFunc(int sfactor, int dfactor) {
+        state(mBlendSrc != sfactor || mBlendDst != dfactor);
+        mBlendSrc = sfactor;
+        mBlendDst = dfactor;
+    }
+
+    @Override
+    public void glDepthFunc(int func) {
+        state(mDepthFunc != func);
+        mDepthFunc = func;
+    }
+
+    @Override
+    public void glDepthMask(boolean flag) {
+        state(mDepthMask != flag);
+        mDepthMask = flag;
+    }
+
+    @Override
+    public void glStencilFunc(int func, int ref, int mask) {
+        state(mStencilFunc != func || mStencilRef != ref || mStencilMask != mask);
+        mStencilFunc = func;
+        mStencilRef = ref;
+        mStencilMask = mask;
+    }
+
+    @Override
+    public void glStencilOp(int fail, int zfail, int zpass) {
+        state(mStencilFail != fail || mStencilDepthFail != zfail || mStencilPass != zpass);
+        mStencilFail = fail;
+        mStencilDepthFail = zfail;
+        mStencilPass = zpass;
+    }
+
+    @Override
+    public void glScissor(int x, int y, int width, int height) {
+        state(mScissorX != x || mScissorY != y || mScissorWidth != width || mScissorHeight != height);
+        mScissorX = x;
+        mScissorY = y;
+        mScissorWidth = width;
+        mScissorHeight = height;
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        state(mViewportX != x || mViewportY != y || mViewportWidth != width || mViewportHeight != height);
+        mViewportX = x;
+        mViewportY = y;
+        mViewportWidth = width;
+        mViewportHeight = height;
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        mClearColor[0] = red;
+        mClearColor[1] = green;
+        mClearColor[2] = blue;
+        mClearColor[3] = alpha;
+    }
+
+    @Override
+    public void glClearStencil(int s) {
+        mClearStencil = s;
+    }
+
+    @Override
+    public void glClear(int mask) {
+        final Texture target = target();
+        final float[] color = target == null ? mColor : target.rgba;
+        final float[] depth = targetDepth();
+        final boolean clearColor = (mask & GLES20.GL_COLOR_BUFFER_BIT) != 0;
+        final boolean clearDepth = (mask & GLES20.GL_DEPTH_BUFFER_BIT) != 0 && mDepthMask && depth != null;
+        final boolean clearStencil = (mask & GLES20.GL_STENCIL_BUFFER_BIT) != 0 && target == null;
+        final int width = targetWidth();
+        final int height = targetHeight();
+
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                if (!scissor(x, y)) {
+                    continue;
+                }
+
+                final int i = y * width + x;
+
+                if (clearColor) {
+                    System.arraycopy(mClearColor, 0, color, i * 4, 4);
+                }
+
+                if (clearDepth) {
+                    depth[i] = 1.0f;
+                }
+
+                if (clearStencil) {
+                    mStencil[i] = mClearStencil & 0xff;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the pixel passes the scissor test
+     */
+    private boolean scissor(int x, int y) {
+        return !mScissorTest || (x >= mScissorX && x < mScissorX + mScissorWidth && y >= mScissorY
+                && y < mScissorY + mScissorHeight);
+    }
+
+    // ---- data ----
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format,
+                             int type, Buffer pixels) {
+        if (level != 0) {
+            return;
+        }
+
+        final Texture t = mTextures.get(mBoundTextures[mActiveTexture]);
+        t.width = width;
+        t.height = height;
+        t.rgba = new float[width * height * 4];
+
+        if (pixels != null) {
+            final ByteBuffer bytes = (ByteBuffer) pixels;
+            final int start = bytes.position();
+
+            for (int i = 0; i < t.rgba.length; ++i) {
+                t.rgba[i] = (bytes.get(start + i) & 0xff) / 255.0f;
+            }
+        }
+    }
+
+    @Override
+    public void texImage2D(int target, int level, Bitmap bitmap, int border) {
+        throw new UnsupportedOperationException("Bitmaps need a device, load textures through GpuResources.Loader");
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        final ByteBuffer storage = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+        mBuffers.put(mArrayBuffer, storage);
+
+        if (data != null) {
+            copy(data, storage, 0, size);
+        }
+    }
+
+    @Override
+    public void glBufferSubData(int target, int offset, int size, Buffer data) {
+        copy(data, mBuffers.get(mArrayBuffer), offset, size);
+    }
+
+    private static void copy(Buffer data, ByteBuffer storage, int offset, int size) {
+        if (data instanceof FloatBuffer) {
+            final FloatBuffer floats = (FloatBuffer) data;
+            final int start = floats.position();
+
+            for (int i = 0; i < size / 4; ++i) {
+                storage.putFloat(offset + i * 4, floats.get(start + i));
+            }
+        } else {
+            final ByteBuffer bytes = (ByteBuffer) data;
+            final int start = bytes.position();
+
+            for (int i = 0; i < size; ++i) {
+                storage.put(offset + i, bytes.get(start + i));
+            }
+        }
+    }
+
+    // ---- vertex input and uniforms ----
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        mAttributes[index].enabled = true;
+    }
+
+    @Override
+    public void glDisableVertexAttribArray(int index) {
+        mAttributes[index].enabled = false;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        final Attribute a = mAttributes[indx];
+        a.size = size;
+        a.stride = stride;
+        a.pointer = ptr;
+        // like GL, the client pointer starts at the position the buffer has right now
+        a.offset = ptr.position();
+        a.buffer = 0;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int indx, int size, int type, boolean normalized, int stride, int offset) {
+        final Attribute a = mAttributes[indx];
+        a.size = size;
+        a.stride = stride;
+        a.pointer = null;
+        a.buffer = mArrayBuffer;
+        a.offset = offset;
+    }
+
+    @Override
+    public void glVertexAttrib4f(int indx, float x, float y, float z, float w) {
+        final float[] c = mAttributes[indx].constant;
+        c[0] = x;
+        c[1] = y;
+        c[2] = z;
+        c[3] = w;
+    }
+
+    private void uniform(int location, float... values) {
+        if (location >= 0) {
+            mPrograms.get(mProgram).uniforms.put(location, values);
+        }
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        uniform(location, x);
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        uniform(location, x);
+    }
+
+    @Override
+    public void glUniform4f(int location, float x, float y, float z, float w) {
+        uniform(location, x, y, z, w);
+    }
+
+    @Override
+    public void glUniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        final float[] m = new float[16];
+        System.arraycopy(value, offset, m, 0, 16);
+        uniform(location, m);
+    }
+
+    /**
+     * Reads attribute name of the vertex into mFetch, missing components as in (0, 0, 0, 1).
+     */
+    private float[] fetch(Program p, String name, int vertex) {
+        mFetch[0] = 0;
+        mFetch[1] = 0;
+        mFetch[2] = 0;
+        mFetch[3] = 1;
+        final Integer index = p.attributes.get(name);
+
+        if (index == null) {
+            return mFetch;
+        }
+
+        final Attribute a = mAttributes[index];
+
+        if (!a.enabled) {
+            System.arraycopy(a.constant, 0, mFetch, 0, 4);
+            return mFetch;
+        }
+
+        if (a.pointer != null) {
+            final FloatBuffer floats = (FloatBuffer) a.pointer;
+            final int stride = a.stride == 0 ? a.size : a.stride / 4;
+            final int start = a.offset + vertex * stride;
+
+            for (int c = 0; c < a.size; ++c) {
+                mFetch[c] = floats.get(start + c);
+            }
+        } else {
+            final ByteBuffer bytes = mBuffers.get(a.buffer);
+            final int stride = a.stride == 0 ? a.size * 4 : a.stride;
+            final int start = a.offset + vertex * stride;
+
+            for (int c = 0; c < a.size; ++c) {
+                mFetch[c] = bytes.getFloat(start + c * 4);
+            }
+        }
+
+        return mFetch;
+    }
+
+    // ---- drawing ----
+
+    private Texture target() {
+        return mFramebuffer == 0 ? null : mTextures.get(mFramebuffers.get(mFramebuffer).color);
+    }
+
+    /**
+     * @return depth buffer of the bound framebuffer, null if it has none
+     */
+    private float[] targetDepth() {
+        if (mFramebuffer == 0) {
+            return mDepth;
+        }
+
+        final Renderbuffer r = mRenderbuffers.get(mFramebuffers.get(mFramebuffer).depth);
+        return r == null ? null : r.depth;
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        mDrawCalls++;
+        final Program p = mPrograms.get(mProgram);
+
+        if (mode == GLES20.GL_POINTS) {
+            mPointsDrawn += count;
+
+            for (int v = first; v < first + count; ++v) {
+                vertex(p, v, 0);
+                point(p);
+            }
+        } else if (mode == GLES20.GL_TRIANGLES) {
+            for (int v = first; v + 2 < first + count; v += 3) {
+                vertex(p, v, 0);
+                vertex(p, v + 1, 1);
+                vertex(p, v + 2, 2);
+                triangle(p);
+            }
+        } else {
+            throw new UnsupportedOperationException("Draw mode " + mode);
+        }
+    }
+
+    /**
+     * Runs the vertex stage: clip position into mClip[slot], colour, texture coordinate and
+     * point size into mVaryings[slot].
+     */
+    private void vertex(Program p, int v, int slot) {
+        final float[] position = fetch(p, "a_Position", v);
+        final float[] clip = mClip[slot];
+
+        if (p.transformed) {
+            final float[] m = p.uniform("u_MVPMatrix");
+
+            for (int r = 0; r < 4; ++r) {
+                clip[r] = m[r] * position[0] + m[4 + r] * position[1] + m[8 + r] * position[2]
+                        + m[12 + r] * position[3];
+            }
+        } else {
+            System.arraycopy(position, 0, clip, 0, 4);
+        }
+
+        final float[] varyings = mVaryings[slot];
+        final float[] color = fetch(p, "a_Color", v);
+        System.arraycopy(color, 0, varyings, 0, 4);
+        final float[] tex = fetch(p, "a_TexCoordinate", v);
+        varyings[4] = tex[0];
+        varyings[5] = tex[1];
+
+        if (p.points) {
+            final float[] scale = p.uniform("u_PointScale");
+            // a_Size goes into the S slot, sprites have no texture coordinate
+            varyings[4] = fetch(p, "a_Size", v)[0] * (scale == null ? 1 : scale[0]) / clip[3];
+        }
+    }
+
+    private int targetWidth() {
+        final Texture t = target();
+        return t == null ? mWidth : t.width;
+    }
+
+    private int targetHeight() {
+        final Texture t = target();
+        return t == null ? mHeight : t.height;
+    }
+
+    private float windowX(float[] clip) {
+        return mViewportX + (clip[0] / clip[3] + 1) * 0.5f * mViewportWidth;
+    }
+
+    private float windowY(float[] clip) {
+        return mViewportY + (clip[1] / clip[3] + 1) * 0.5f * mViewportHeight;
+    }
+
+    private void triangle(Program p) {
+        final float[] c0 = mClip[0];
+        final float[] c1 = mClip[1];
+        final float[] c2 = mClip[2];
+
+        // no near plane clipping, the game never draws across the eye plane
+        if (c0[3] <= 0 || c1[3] <= 0 || c2[3] <= 0) {
+            return;
+        }
+
+        final float x0 = windowX(c0), y0 = windowY(c0);
+        final float x1 = windowX(c1), y1 = windowY(c1);
+        final float x2 = windowX(c2), y2 = windowY(c2);
+        final float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+
+        if (area == 0 || (mCullFace && area < 0)) {
+            return;
+        }
+
+        final int minX = Math.max(0, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+        final int maxX = Math.min(targetWidth() - 1, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+        final int minY = Math.max(0, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+        final int maxY = Math.min(targetHeight() - 1, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+        final float w0 = 1 / c0[3], w1 = 1 / c1[3], w2 = 1 / c2[3];
+        final float z0 = c0[2] * w0, z1 = c1[2] * w1, z2 = c2[2] * w2;
+
+        for (int y = minY; y <= maxY; ++y) {
+            final float py = y + 0.5f;
+
+            for (int x = minX; x <= maxX; ++x) {
+                final float px = x + 0.5f;
+                float b0 = ((x1 - px) * (y2 - py) - (x2 - px) * (y1 - py)) / area;
+                float b1 = ((x2 - px) * (y0 - py) - (x0 - px) * (y2 - py)) / area;
+                float b2 = 1 - b0 - b1;
+
+                // pixels exactly on a shared edge go to one side only
+                if (!inside(b0, y2 - y1, x1 - x2) || !inside(b1, y0 - y2, x2 - x0) || !inside(b2, y1 - y0, x0 - x1)) {
+                    continue;
+                }
+
+                final float depth = (b0 * z0 + b1 * z1 + b2 * z2) * 0.5f + 0.5f;
+                // perspective correct weights for the varyings
+                final float q0 = b0 * w0, q1 = b1 * w1, q2 = b2 * w2;
+                final float q = q0 + q1 + q2;
+                final float[] v0 = mVaryings[0], v1 = mVaryings[1], v2 = mVaryings[2];
+                final float[] f = mFragment;
+
+                if (!tests(x, y, depth)) {
+                    continue;
+                }
+
+                final float s = (q0 * v0[4] + q1 * v1[4] + q2 * v2[4]) / q;
+                final float t = (q0 * v0[5] + q1 * v1[5] + q2 * v2[5]) / q;
+
+                if (p.textured) {
+                    sample(p, s, t, f);
+                } else if (p.uniformColor) {
+                    System.arraycopy(p.uniform("u_Color"), 0, f, 0, 4);
+                } else {
+                    for (int c = 0; c < 4; ++c) {
+                        f[c] = (q0 * v0[c] + q1 * v1[c] + q2 * v2[c]) / q;
+                    }
+                }
+
+                write(x, y, depth, f);
+            }
+        }
+    }
+
+    /**
+     * Top-left fill rule on the edge function: on-edge pixels belong to top and left edges only.
+     */
+    private static boolean inside(float b, float dy, float dx) {
+        return b > 0 || (b == 0 && (dy > 0 || (dy == 0 && dx < 0)));
+    }
+
+    private void point(Program p) {
+        final float[] clip = mClip[0];
+
+        if (clip[3] <= 0) {
+            return;
+        }
+
+        final float[] v = mVaryings[0];
+        final float size = v[4];
+        final float cx = windowX(clip);
+        final float cy = windowY(clip);
+        final float depth = clip[2] / clip[3] * 0.5f + 0.5f;
+        final int minX = Math.max(0, (int) Math.floor(cx - size / 2));
+        final int maxX = Math.min(targetWidth() - 1, (int) Math.ceil(cx + size / 2) - 1);
+        final int minY = Math.max(0, (int) Math.floor(cy - size / 2));
+        final int maxY = Math.min(targetHeight() - 1, (int) Math.ceil(cy + size / 2) - 1);
+        final float[] f = mFragment;
+
+        for (int y = minY; y <= maxY; ++y) {
+            for (int x = minX; x <= maxX; ++x) {
+                // gl_PointCoord, origin in the upper left corner
+                final float s = (x + 0.5f - (cx - size / 2)) / size;
+                final float t = 1 - (y + 0.5f - (cy - size / 2)) / size;
+
+                if (s < 0 || s > 1 || t < 0 || t > 1 || !tests(x, y, depth)) {
+                    continue;
+                }
+
+                if (p.sprite) {
+                    final float d = (float) Math.sqrt((s - 0.5f) * (s - 0.5f) + (t - 0.5f) * (t - 0.5f));
+                    final float falloff = 1 - smoothstep(0.25f, 0.5f, d);
+                    f[0] = v[0] * v[3] * falloff;
+                    f[1] = v[1] * v[3] * falloff;
+                    f[2] = v[2] * v[3] * falloff;
+                    f[3] = 0;
+                } else {
+                    System.arraycopy(v, 0, f, 0, 4);
+                }
+
+                write(x, y, depth, f);
+            }
+        }
+    }
+
+    private static float smoothstep(float edge0, float edge1, float x) {
+        final float t = Math.max(0, Math.min(1, (x - edge0) / (edge1 - edge0)));
+        return t * t * (3 - 2 * t);
+    }
+
+    private void sample(Program p, float s, float t, float[] out) {
+        final float[] unit = p.uniform("u_Texture");
+        final Texture texture = mTextures.get(mBoundTextures[unit == null ? 0 : (int) unit[0]]);
+
+        if (texture == null || texture.width == 0) {
+            // incomplete texture samples as opaque black
+            out[0] = 0;
+            out[1] = 0;
+            out[2] = 0;
+            out[3] = 1;
+            return;
+        }
+
+        final int x = Math.max(0, Math.min(texture.width - 1, (int) Math.floor(s * texture.width)));
+        final int y = Math.max(0, Math.min(texture.height - 1, (int) Math.floor(t * texture.height)));
+        System.arraycopy(texture.rgba, (y * texture.width + x) * 4, out, 0, 4);
+    }
+
+    /**
+     * Scissor, stencil and depth tests with their stencil updates.
+     *
+     * @return true if the fragment survives and gets shaded
+     */
+    private boolean tests(int x, int y, float depth) {
+        if (!scissor(x, y)) {
+            return false;
+        }
+
+        final float[] depthBuffer = targetDepth();
+        final int i = y * targetWidth() + x;
+        // framebuffer objects never have a stencil attachment here
+        final boolean stencilTest = mStencilTest && mFramebuffer == 0;
+
+        if (stencilTest && !compare(mStencilFunc, mStencilRef & mStencilMask, mStencil[i] & mStencilMask)) {
+            mStencil[i] = stencilOp(mStencilFail, mStencil[i]);
+            mFragmentsRejected++;
+            return false;
+        }
+
+        if (mDepthTest && depthBuffer != null && !compare(mDepthFunc, depth, depthBuffer[i])) {
+            if (stencilTest) {
+                mStencil[i] = stencilOp(mStencilDepthFail, mStencil[i]);
+            }
+
+            mFragmentsRejected++;
+            return false;
+        }
+
+        if (stencilTest) {
+            mStencil[i] = stencilOp(mStencilPass, mStencil[i]);
+        }
+
+        return true;
+    }
+
+    private static boolean compare(int func, float value, float stored) {
+        switch (func) {
+            case GLES20.GL_NEVER:
+                return false;
+            case GLES20.GL_LESS:
+                return value < stored;
+            case GLES20.GL_EQUAL:
+                return value == stored;
+            case GLES20.GL_LEQUAL:
+                return value <= stored;
+            case GLES20.GL_GREATER:
+                return value > stored;
+            case GLES20.GL_NOTEQUAL:
+                return value != stored;
+            case GLES20.GL_GEQUAL:
+                return value >= stored;
+            default:
+                return true;
+        }
+    }
+
+    private int stencilOp(int op, int value) {
+        switch (op) {
+            case GLES20.GL_ZERO:
+                return 0;
+            case GLES20.GL_REPLACE:
+                return mStencilRef & 0xff;
+            case GLES20.GL_INCR:
+                return Math.min(255, value + 1);
+            case GLES20.GL_DECR:
+                return Math.max(0, value - 1);
+            case GLES20.GL_INVERT:
+                return ~value & 0xff;
+            default:
+                return value;
+        }
+    }
+
+    private void write(int x, int y, float depth, float[] f) {
+        mFragmentsShaded++;
+        final Texture target = target();
+        final float[] depthBuffer = targetDepth();
+        final int i = y * targetWidth() + x;
+        final float[] color;
+
+        if (mDepthTest && mDepthMask && depthBuffer != null) {
+            depthBuffer[i] = depth;
+        }
+
+        if (target == null) {
+            mOverdraw[i]++;
+            color = mColor;
+        } else {
+            color = target.rgba;
+        }
+
+        final int p = i * 4;
+
+        if (!mBlend) {
+            for (int c = 0; c < 4; ++c) {
+                color[p + c] = clamp(f[c]);
+            }
+            return;
+        }
+
+        final float srcAlpha = f[3];
+        final float dstAlpha = color[p + 3];
+
+        for (int c = 0; c < 4; ++c) {
+            color[p + c] = clamp(f[c] * factor(mBlendSrc, srcAlpha, dstAlpha)
+                    + color[p + c] * factor(mBlendDst, srcAlpha, dstAlpha));
+        }
+    }
+
+    private static float factor(int factor, float srcAlpha, float dstAlpha) {
+        switch (factor) {
+            case GLES20.GL_ZERO:
+                return 0;
+            case GLES20.GL_ONE:
+                return 1;
+            case GLES20.GL_SRC_ALPHA:
+                return srcAlpha;
+            case GLES20.GL_ONE_MINUS_SRC_ALPHA:
+                return 1 - srcAlpha;
+            case GLES20.GL_DST_ALPHA:
+                return dstAlpha;
+            case GLES20.GL_ONE_MINUS_DST_ALPHA:
+                return 1 - dstAlpha;
+            default:
+                throw new UnsupportedOperationException("Blend factor " + factor);
+        }
+    }
+
+    private static float clamp(float v) {
+        return Math.max(0, Math.min(1, v));
+    }
+}
@@ -0,0 +1,310 @@
+package wayfarer.gemgame.gl;
+
+import android.content.Context;
+import android.opengl.GLES20;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.game.Hexagon;
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.game.util.PlaygroundUtil;
+import wayfarer.gemgame.mesh.BoardBuffer;
+import wayfarer.gemgame.mesh.HexagonBatch;
+import wayfarer.gemgame.util.GpuResources;
+import wayfarer.gemgame.util.MatrixHelper;
+import wayfarer.gemgame.util.ShaderVariant;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renders real frames without a device through {@link SoftwareGl}.
+ */
+public class SoftwareGlTest {
+    private static final int SIZE = 96;
+
+    /** Shaders from the source tree, every texture a solid colour derived from its id. */
+    static final GpuResources.Loader FILE_LOADER = new GpuResources.Loader() {
+        @Override
+        public String readText(Context context, int res) {
+            try {
+                for (Field field : R.raw.class.getFields()) {
+                    if (field.getInt(null) == res) {
+                        final File file = new File("src/main/res/raw/" + field.getName() + ".glsl");
+                        return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+                    }
+                }
+            } catch (IllegalAccessException | IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            throw new IllegalArgumentException("No raw resource " + res);
+        }
+
+        @Override
+        public int loadTexture(Context context, int res) {
+            final int[] handle = new int[1];
+            Gl.glGenTextures(1, handle, 0);
+            Gl.glBindTexture(GLES20.GL_TEXTURE_2D, handle[0]);
+            final ByteBuffer pixel = ByteBuffer.allocate(4);
+            pixel.put(0, (byte) (0x40 + (res & 0x3f))).put(1, (byte) 0x80).put(2, (byte) 0xc0).put(3, (byte) 0xff);
+            Gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, 1, 1, 0, GLES20.GL_RGBA,
+                    GLES20.GL_UNSIGNED_BYTE, pixel);
+            return handle[0];
+        }
+    };
+
+    private SoftwareGl mGl;
+    private GemGameGLRenderer mRenderer;
+
+    @Before
+    public void setUp() throws Exception {
+        mGl = new SoftwareGl(SIZE, SIZE);
+        Gl.setBackend(mGl);
+        GpuResources.setLoader(FILE_LOADER);
+        mRenderer = new GemGameGLRenderer(null);
+        PlaygroundUtil.calculateHexCircle(mRenderer.getHexagonPool(), 0, 0, 0, 2, 0.2f);
+        mRenderer.onSurfaceCreated(null, null);
+        mRenderer.onSurfaceChanged(null, SIZE, SIZE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Gl.setBackend(new AndroidGl());
+        GpuResources.setLoader(GpuResources.RESOURCE_LOADER);
+    }
+
+    private int[] frame() {
+        mGl.resetCounters();
+        mRenderer.onDrawFrame(null);
+        final int[] pixels = new int[SIZE * SIZE];
+
+        for (int y = 0; y < SIZE; ++y) {
+            for (int x = 0; x < SIZE; ++x) {
+                pixels[y * SIZE + x] = mGl.getPixel(x, y);
+            }
+        }
+
+        return pixels;
+    }
+
+    @Test
+    public void frame_drawsBoardAndCountsWork() throws Exception {
+        // the first frame also bakes the gem atlas, one quad per gem
+        frame();
+        assertEquals(4 + 1, mGl.getDrawCalls());
+
+        // the whole board from one vertex buffer
+        frame();
+        assertEquals(1, mGl.getDrawCalls());
+        assertTrue(mGl.getFragmentsShaded() > 0);
+        assertTrue(mGl.getAverageOverdraw() >= 1.0f);
+        // board centre shows the empty gem texture, the corner the clear colour
+        assertEquals(0xff0080c0 | (0x40 + (R.drawable.opaque_hex_800 & 0x3f)) << 16,
+                mGl.getPixel(SIZE / 2, SIZE / 2));
+        assertEquals(0, mGl.getPixel(0, 0));
+        assertEquals(0, mGl.getOverdraw(0, 0));
+    }
+
+    @Test
+    public void frame_isDeterministic() throws Exception {
+        frame();
+        final int[] first = frame();
+        final long fragments = mGl.getFragmentsShaded();
+        final int[] second = frame();
+
+        assertArrayEquals(first, second);
+        assertEquals(fragments, mGl.getFragmentsShaded());
+    }
+
+    @Test
+    public void boardChanges_uploadOnlyChangedRuns() throws Exception {
+        frame();
+        final HexagonPool pool = mRenderer.getHexagonPool();
+        final BoardBuffer buffer = mRenderer.getBoardBuffer();
+        // the first frame sends the whole buffer, an unchanged board nothing
+        assertEquals(1, buffer.getUploadRuns());
+        frame();
+        assertEquals(0, buffer.getUploadRuns());
+
+        // the centre hex and its first neighbour are one run, the last hex another
+        pool.get(0).setGem(Hexagon.GEM_RED);
+        pool.get(1).setGem(Hexagon.GEM_RED);
+        pool.get(1).setGem(Hexagon.GEM_WHITE);
+        pool.get(pool.size() - 1).setGem(Hexagon.GEM_BLUE);
+        // flags don't touch the board buffer
+        pool.get(3).setFlags(Hexagon.FLAG_ANIMATED);
+        frame();
+
+        assertEquals(2, buffer.getUploadRuns());
+        assertEquals(3 * 6 * 5 * 4, buffer.getUploadedBytes());
+        assertEquals(0xff0080c0 | (0x40 + (R.drawable.red_hex_800 & 0x3f)) << 16,
+                mGl.getPixel(SIZE / 2, SIZE / 2));
+
+        frame();
+        assertEquals(0, buffer.getUploadRuns());
+    }
+
+    @Test
+    public void impostors_bakeOnceThenCutDrawCalls() throws Exception {
+        final int[] near = frame();
+        final int nearDrawCalls = mGl.getDrawCalls();
+
+        mRenderer.setCamera(0, 0, 40);
+        frame();
+        // baking draws every hex into the chunk texture once
+        assertTrue(mGl.getDrawCalls() > nearDrawCalls);
+
+        frame();
+        assertTrue(mGl.getDrawCalls() < nearDrawCalls);
+        // still the board in the middle, only smaller
+        assertEquals(near[SIZE / 2 * SIZE + SIZE / 2], mGl.getPixel(SIZE / 2, SIZE / 2));
+    }
+
+    @Test
+    public void impostors_rebakeOnlyTheChunkOfAChangedCell() throws Exception {
+        final HexagonPool pool = mRenderer.getHexagonPool();
+        mRenderer.setCamera(0, 0, 40);
+        frame();
+        frame();
+        // one quad per chunk, the small board straddles the chunk corner at the origin
+        final int chunks = mGl.getDrawCalls();
+        assertTrue(chunks > 1 && chunks < pool.size());
+
+        // a regem rebakes its chunk only: the chunk hexes and its quad, then quads again
+        pool.get(0).setGem(Hexagon.GEM_RED);
+        frame();
+        final int rebake = mGl.getDrawCalls() - chunks;
+        assertTrue(rebake > 0 && rebake < pool.size());
+        assertEquals(0xff0080c0 | (0x40 + (R.drawable.red_hex_800 & 0x3f)) << 16,
+                mGl.getPixel(SIZE / 2, SIZE / 2));
+        frame();
+        assertEquals(chunks, mGl.getDrawCalls());
+
+        // starting an animation rebakes the chunk once without the hex, moving it rebakes nothing
+        pool.get(1).setFlags(Hexagon.FLAG_ANIMATED);
+        frame();
+        assertTrue(mGl.getDrawCalls() > chunks + 1);
+
+        for (int i = 0; i < 3; ++i) {
+            pool.get(1).setPosition(pool.getX(1) + 0.01f, pool.getY(1), 0.0f);
+            frame();
+            assertEquals(chunks + 1, mGl.getDrawCalls());
+        }
+    }
+
+    @Test
+    public void overdrawDebug_paintsOverTheFrame() throws Exception {
+        frame();
+        final int board = mGl.getPixel(SIZE / 2, SIZE / 2);
+
+        mRenderer.setOverdrawDebug(true);
+        frame();
+        assertNotEquals(board, mGl.getPixel(SIZE / 2, SIZE / 2));
+        // nothing was drawn in the corner, so no heat either
+        assertEquals(0, mGl.getPixel(0, 0));
+    }
+
+    @Test
+    public void scaledFrame_isUpscaledToTheSurface() throws Exception {
+        // atlas baking makes the first frame too long to count for the governor
+        frame();
+        final int[] full = frame();
+
+        mRenderer.getResolutionGovernor().setLimits(0.5f, 0.5f);
+        frame();
+        assertEquals(0.5f, mRenderer.getResolutionGovernor().getScale(), 0.0f);
+        // board plus the upscale quad
+        assertEquals(1 + 1, mGl.getDrawCalls());
+        assertEquals(full[SIZE / 2 * SIZE + SIZE / 2], mGl.getPixel(SIZE / 2, SIZE / 2));
+        assertEquals(0, mGl.getPixel(0, 0));
+    }
+
+    @Test
+    public void layerCaching_steadyFrameIsOneQuadPlusAnimated() throws Exception {
+        // big enough for a changed hex to dirty only a part of the layer
+        PlaygroundUtil.calculateHexCircle(mRenderer.getHexagonPool(), 0, 0, 0, 6, 0.2f);
+        final int[] full = frame();
+
+        mRenderer.setLayerCaching(true);
+        frame();
+        // first frame bakes every hex, then draws the layer
+        assertEquals(mRenderer.getHexagonPool().size() + 1, mGl.getDrawCalls());
+
+        final int[] cached = frame();
+        assertEquals(1, mGl.getDrawCalls());
+        assertEquals(full[SIZE / 2 * SIZE + SIZE / 2], cached[SIZE / 2 * SIZE + SIZE / 2]);
+
+        // the centre hex starts animating: its region is rebaked without it, then it goes on top
+        mRenderer.getHexagonPool().get(0).setFlags(Hexagon.FLAG_ANIMATED);
+        frame();
+        assertTrue(mGl.getDrawCalls() < mRenderer.getHexagonPool().size());
+        frame();
+        assertEquals(2, mGl.getDrawCalls());
+        assertEquals(full[SIZE / 2 * SIZE + SIZE / 2], mGl.getPixel(SIZE / 2, SIZE / 2));
+
+        // changes at opposite corners are redrawn as two regions, not one spanning the board
+        final HexagonPool pool = mRenderer.getHexagonPool();
+        pool.get(pool.size() - 1).setGem(Hexagon.GEM_RED);
+        pool.get(pool.size() - 1 - 3 * 6).setGem(Hexagon.GEM_RED);
+        frame();
+        assertTrue(mGl.getDrawCalls() - 2 < pool.size() / 3);
+        frame();
+        assertEquals(2, mGl.getDrawCalls());
+    }
+
+    @Test
+    public void layerCaching_cappedTextureIsNotRebuiltEveryFrame() throws Exception {
+        final HexagonPool pool = mRenderer.getHexagonPool();
+        final HexagonBatch board = new HexagonBatch(null, R.raw.per_pixel_fragment_shader,
+                R.raw.per_pixel_vertex_shader, pool, new int[]{R.drawable.opaque_hex_800});
+        final BoardLayer layer = new BoardLayer(null, board);
+
+        // a phone held upright asks for more than the largest layer texture
+        assertTrue(layer.update(0, 0, 10, 1080, 1920));
+        assertFalse(layer.update(0, 0, 10, 1080, 1920));
+        assertFalse(layer.update(0, 0, 11, 1080, 1920));
+    }
+
+    @Test
+    public void matrixHelper_invertsLookAt() throws Exception {
+        final float[] view = new float[16];
+        final float[] inverse = new float[16];
+        final float[] product = new float[16];
+
+        MatrixHelper.setLookAtM(view, 0, 1, 2, 10, 1, 2, 0, 0, 1, 0);
+        assertTrue(MatrixHelper.invertM(inverse, 0, view, 0));
+        MatrixHelper.multiplyMM(product, 0, view, 0, inverse, 0);
+
+        for (int i = 0; i < 16; ++i) {
+            assertEquals(i % 5 == 0 ? 1.0f : 0.0f, product[i], 1e-5f);
+        }
+    }
+
+    @Test
+    public void shaderVariants_linkOncePerCombinationWithTheirOwnAttributes() throws Exception {
+        final int textured = ShaderVariant.program(null, R.raw.per_pixel_vertex_shader,
+                R.raw.per_pixel_fragment_shader, ShaderVariant.TEXTURED);
+        final int coloured = ShaderVariant.program(null, R.raw.per_pixel_vertex_shader,
+                R.raw.per_pixel_fragment_shader, ShaderVariant.VERTEX_COLOR);
+
+        // same sources and features, same program
+        assertEquals(textured, ShaderVariant.program(null, R.raw.per_pixel_vertex_shader,
+                R.raw.per_pixel_fragment_shader, ShaderVariant.TEXTURED));
+        assertNotEquals(textured, coloured);
+
+        assertTrue(Gl.glGetAttribLocation(textured, "a_TexCoordinate") >= 0);
+        assertEquals(-1, Gl.glGetAttribLocation(textured, "a_Color"));
+        assertTrue(Gl.glGetAttribLocation(coloured, "a_Color") >= 0);
+        assertEquals(-1, Gl.glGetAttribLocation(coloured, "a_TexCoordinate"));
+    }
+}
@@ -0,0 +1,72 @@
+package wayfarer.gemgame.gl;
+
+import android.opengl.GLES20;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.game.util.PlaygroundUtil;
+import wayfarer.gemgame.util.GpuResources;
+
+import static org.junit.Assert.*;
+
+public class TextRendererTest {
+    private static final int SIZE = 96;
+
+    /** Every glyph half a cell wide and solid white. */
+    private static final TextRenderer.Font SOLID_FONT = new TextRenderer.Font() {
+        @Override
+        public float measure(char c) {
+            return TextRenderer.CELL_SIZE / 2;
+        }
+
+        @Override
+        public int createAtlas() {
+            final int[] handle = new int[1];
+            Gl.glGenTextures(1, handle, 0);
+            Gl.glBindTexture(GLES20.GL_TEXTURE_2D, handle[0]);
+            final byte[] white = new byte[4 * TextRenderer.ATLAS_WIDTH * TextRenderer.ATLAS_HEIGHT];
+            Arrays.fill(white, (byte) 0xff);
+            Gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, TextRenderer.ATLAS_WIDTH,
+                    TextRenderer.ATLAS_HEIGHT, 0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, ByteBuffer.wrap(white));
+            return handle[0];
+        }
+    };
+
+    private SoftwareGl mGl;
+    private GemGameGLRenderer mRenderer;
+
+    @Before
+    public void setUp() throws Exception {
+        mGl = new SoftwareGl(SIZE, SIZE);
+        Gl.setBackend(mGl);
+        GpuResources.setLoader(SoftwareGlTest.FILE_LOADER);
+        TextRenderer.setFont(SOLID_FONT);
+        mRenderer = new GemGameGLRenderer(null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Gl.setBackend(new AndroidGl());
+        GpuResources.setLoader(GpuResources.RESOURCE_LOADER);
+        TextRenderer.setFont(TextRenderer.ANDROID_FONT);
+    }
+
+    @Test
+    public void labelSetBeforeTheFirstFrame_isDrawnOnIt() throws Exception {
+        final HexagonPool pool = mRenderer.getHexagonPool();
+        PlaygroundUtil.calculateHexCircle(pool, 0, 0, 0, 2, 0.2f);
+        // the centre hex, before any GL context exists
+        pool.get(0).setText("8");
+        mRenderer.onSurfaceCreated(null, null);
+        mRenderer.onSurfaceChanged(null, SIZE, SIZE);
+
+        mRenderer.onDrawFrame(null);
+        assertEquals(0xffffffff, mGl.getPixel(SIZE / 2, SIZE / 2));
+    }
+}
@@ -0,0 +1,125 @@
+package wayfarer.gemgame.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import wayfarer.gemgame.R;
+import wayfarer.gemgame.game.HexagonPool;
+import wayfarer.gemgame.game.util.PlaygroundUtil;
+import wayfarer.gemgame.gl.BoardLayer;
+import wayfarer.gemgame.gl.ChunkImpostor;
+import wayfarer.gemgame.gl.Scene;
+import wayfarer.gemgame.mesh.HexagonBatch;
+import wayfarer.gemgame.mesh.Mesh;
+
+import static org.junit.Assert.*;
+
+public class MemoryLedgerTest {
+    @Before
+    public void setUp() {
+        MemoryLedger.reset();
+    }
+
+    @After
+    public void tearDown() {
+        MemoryLedger.reset();
+    }
+
+    @Test
+    public void snapshot_keepsPeaksAcrossResizesAndContextLoss() throws Exception {
+        MemoryLedger.resize(MemoryLedger.TEXTURE, 0, 4096);
+        MemoryLedger.resize(MemoryLedger.TEXTURE, 4096, 1024);
+        MemoryLedger.add(MemoryLedger.TEXTURE, 2048, 1);
+        MemoryLedger.add(MemoryLedger.DIRECT, 100, 2);
+
+        final MemoryLedger.Snapshot before = MemoryLedger.snapshot();
+        MemoryLedger.onContextLost();
+        final MemoryLedger.Snapshot after = MemoryLedger.snapshot();
+
+        assertEquals(3072, before.getBytes(MemoryLedger.TEXTURE));
+        assertEquals(2, before.getObjects(MemoryLedger.TEXTURE));
+        assertEquals(4096, before.getPeakBytes(MemoryLedger.TEXTURE));
+        assertEquals(3172, before.getTotalBytes());
+        assertEquals(3072, before.getGpuBytes());
+
+        // GPU storage died with the context, direct buffers did not
+        assertEquals(0, after.getBytes(MemoryLedger.TEXTURE));
+        assertEquals(0, after.getObjects(MemoryLedger.TEXTURE));
+        assertEquals(4096, after.getPeakBytes(MemoryLedger.TEXTURE));
+        assertEquals(100, after.getBytes(MemoryLedger.DIRECT));
+        // snapshots don't follow the ledger
+        assertEquals(3072, before.getBytes(MemoryLedger.TEXTURE));
+    }
+
+    @Test
+    public void budgets_followTheMemoryClassAndRefuseWhatDoesNotFit() throws Exception {
+        assertTrue(MemoryLedger.fits(MemoryLedger.TEXTURE, Long.MAX_VALUE / 2));
+
+        MemoryLedger.setMemoryClass(64);
+        assertEquals(16 * 1024 * 1024, MemoryLedger.getBudget(MemoryLedger.TEXTURE));
+
+        MemoryLedger.add(MemoryLedger.TEXTURE, 15 * 1024 * 1024, 1);
+        assertTrue(MemoryLedger.fits(MemoryLedger.TEXTURE, 1024 * 1024));
+        assertFalse(MemoryLedger.fits(MemoryLedger.TEXTURE, 1024 * 1024 + 1));
+
+        MemoryLedger.add(MemoryLedger.TEXTURE, 2 * 1024 * 1024, 1);
+        assertTrue(MemoryLedger.isOverBudget(MemoryLedger.TEXTURE));
+        assertTrue(MemoryLedger.snapshot().toString().contains("texture: 17408 KB in 2"));
+        assertTrue(MemoryLedger.snapshot().toString().contains("EXCEEDED"));
+    }
+
+    @Test
+    public void hexagonPool_reportsItsStorageAsItGrows() throws Exception {
+        final HexagonPool pool = new HexagonPool(4);
+        final long initial = MemoryLedger.getBytes(MemoryLedger.HEAP);
+
+        for (int i = 0; i < 5; ++i) {
+            pool.acquire();
+        }
+
+        // capacity doubled to 8 slots, plus one handle per acquired slot
+        assertEquals(2 * initial + 5 * 16, MemoryLedger.getBytes(MemoryLedger.HEAP));
+    }
+
+    @Test
+    public void discardedMeshes_giveTheirDirectBuffersBack() throws Exception {
+        final HexagonPool pool = new HexagonPool(64);
+        PlaygroundUtil.calculateHexCircle(pool, 0, 0, 0, 3, 0.2f);
+        final HexagonBatch board = new HexagonBatch(null, R.raw.per_pixel_fragment_shader,
+                R.raw.per_pixel_vertex_shader, pool, new int[]{R.drawable.opaque_hex_800});
+        final long bytes = MemoryLedger.getBytes(MemoryLedger.DIRECT);
+        final int objects = MemoryLedger.snapshot().getObjects(MemoryLedger.DIRECT);
+
+        // impostors come and go with every level change, layers with caching and context loss
+        for (int round = 0; round < 10; ++round) {
+            final ChunkImpostor impostor = new ChunkImpostor(null, board, 64);
+
+            for (int i = 0; i < pool.size(); ++i) {
+                impostor.add(i);
+            }
+
+            final BoardLayer layer = new BoardLayer(null, board);
+            assertTrue(MemoryLedger.getBytes(MemoryLedger.DIRECT) > bytes);
+            impostor.release();
+            layer.release();
+            layer.release();
+        }
+
+        final Scene scene = new Scene();
+        final Mesh mesh = new Mesh(null, R.raw.per_pixel_fragment_shader, R.raw.per_pixel_vertex_shader,
+                R.drawable.opaque_hex_800);
+        scene.add(mesh);
+        scene.remove(mesh);
+
+        assertEquals(bytes, MemoryLedger.getBytes(MemoryLedger.DIRECT));
+        assertEquals(objects, MemoryLedger.snapshot().getObjects(MemoryLedger.DIRECT));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void remove_refusesToFreeMoreThanWasAdded() throws Exception {
+        MemoryLedger.add(MemoryLedger.DIRECT, 96, 1);
+        MemoryLedger.remove(MemoryLedger.DIRECT, 96, 1);
+        MemoryLedger.remove(MemoryLedger.DIRECT, 96, 1);
+    }
+}
@@ -0,0 +1,49 @@
+package wayfarer.gemgame.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TraceLogTest {
+    private static final int TRACE_HEX = TraceLog.define("Test", TraceLog.VERBOSE, "hex%d at (%f, %f) %x 100%%");
+    private static final int TRACE_FRAME = TraceLog.define("Test", TraceLog.INFO, "frame %d");
+
+    @After
+    public void tearDown() {
+        TraceLog.setLevel(TraceLog.OFF);
+        TraceLog.clear();
+    }
+
+    @Test
+    public void log_recordsOnlyEnabledEventsAndDecodesOnDump() throws Exception {
+        TraceLog.clear();
+        TraceLog.log(TRACE_FRAME, 1);
+        TraceLog.setLevel(TraceLog.INFO);
+        TraceLog.log(TRACE_HEX, 7, TraceLog.bits(1.5f), TraceLog.bits(-2f), 255);
+        TraceLog.log(TRACE_FRAME, 2);
+        TraceLog.setLevel(TraceLog.VERBOSE);
+        TraceLog.log(TRACE_HEX, 7, TraceLog.bits(1.5f), TraceLog.bits(-2f), 255);
+
+        final StringBuilder out = new StringBuilder();
+        assertEquals(2, TraceLog.dump(out));
+        final String[] lines = out.toString().split("\n");
+        assertTrue(lines[0], lines[0].endsWith(" Test: frame 2"));
+        assertTrue(lines[1], lines[1].endsWith(" Test: hex7 at (1.5, -2.0) ff 100%"));
+    }
+
+    @Test
+    public void dump_keepsTheNewestEventsWhenTheRingWraps() throws Exception {
+        TraceLog.clear();
+        TraceLog.setLevel(TraceLog.DEBUG);
+
+        for (int i = 0; i < TraceLog.CAPACITY + 10; ++i) {
+            TraceLog.log(TRACE_FRAME, i);
+        }
+
+        final StringBuilder out = new StringBuilder();
+        assertEquals(TraceLog.CAPACITY, TraceLog.dump(out));
+        assertTrue(out.indexOf(" Test: frame 10\n") > 0);
+        assertEquals(-1, out.indexOf("frame 9\n"));
+    }
+}